@@ -0,0 +1,183 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * A builder of proxy beans, that collects the property values by slot and creates the bean in one step,
+ * without the proxied setter calls.
+ *
+ * <b>Use</b>
+ * <pre>
+ * BeanBuilder&lt;IModel&gt; builder;
+ *
+ * builder = ProxyBeanFactory.builder(IModel.class);
+ * for(...)
+ * {
+ *     model = builder.reset().set("id", id).set("name", name).buildFrozen();
+ * }
+ * </pre>
+ *
+ * A builder can be reused for many builds: the collected values are kept after a build, to
+ * create beans that share most of its values, until {@link #reset()}.
+ * The builders are not thread safe.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class BeanBuilder<T>
+{
+    /** The descriptor of the built type */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The collected values, by slot */
+    private final Object[] values;
+
+    /**
+     * Constructor with the descriptor of the type to build.
+     * @param descriptor The descriptor
+     * @see ProxyBeanFactory#builder(Class)
+     */
+    public BeanBuilder(BeanDescriptor<T> descriptor)
+    {
+        this.descriptor = descriptor;
+        values = descriptor.getDefaultValues().clone();
+    }
+
+    /**
+     * The descriptor of the built type.
+     * @return The descriptor
+     */
+    public BeanDescriptor<T> getDescriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * Sets the value of a property.
+     * @param property The property name
+     * @param value The value; null for primitive properties means the default value
+     * @return This builder
+     * @throws IllegalArgumentException If the type has not the property or the value is not of the property type
+     */
+    public BeanBuilder<T> set(String property, Object value)
+    {
+        int slot;
+
+        if((slot = descriptor.slotOf(property)) < 0)
+        {
+            throw new IllegalArgumentException("No property '" + property + "' on " + descriptor.getImplementedType().getName());
+        }
+        return set(slot, value);
+    }
+
+    /**
+     * Sets the value of a property, by its descriptor slot.
+     * @param slot The slot
+     * @param value The value; null for primitive properties means the default value
+     * @return This builder
+     * @throws IllegalArgumentException If the value is not of the property type
+     * @throws ConstraintViolationException If the value violates a constraint of the property
+     */
+    public BeanBuilder<T> set(int slot, Object value)
+    {
+        if(descriptor.accepts(slot, value) == false)
+        {
+            throw new IllegalArgumentException("Not valid value for '" + descriptor.getName(slot) + "': " + value.getClass().getName());
+        }
+        if(descriptor.hasConstraints())
+        {
+            descriptor.checkConstraints(slot, value == null ? descriptor.getDefaultValue(slot) : value);
+        }
+        values[slot] = value == null ? descriptor.getDefaultValue(slot) : descriptor.deduplicate(slot, value);
+        return this;
+    }
+
+    /**
+     * Gets the collected value of a property, by its descriptor slot.
+     * @param slot The slot
+     * @return The value
+     */
+    public Object get(int slot)
+    {
+        return values[slot];
+    }
+
+    /**
+     * Collects all the values of a bean.
+     * @param bean The bean, a proxy bean or other implementation of the type
+     * @return This builder
+     */
+    public BeanBuilder<T> from(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) != null && proxy.getDescriptor() == descriptor)
+        {
+            for(int n = 0; n < values.length; n++)
+            {
+                values[n] = proxy.getSlot(n);
+            }
+            return this;
+        }
+        for(int n = 0; n < values.length; n++)
+        {
+            if(descriptor.getGetter(n) != null)
+            {
+                try
+                {
+                    set(n, descriptor.getGetter(n).invoke(bean));
+                }
+                catch(Exception e)
+                {
+                    /* Includes: IllegalAccessException, InvocationTargetException */
+                    throw new RuntimeException("On copy of '" + descriptor.getName(n) + "'", e);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Sets all the properties to its default values.
+     * @return This builder
+     */
+    public BeanBuilder<T> reset()
+    {
+        System.arraycopy(descriptor.getDefaultValues(), 0, values, 0, values.length);
+        return this;
+    }
+
+    /**
+     * Creates a mutable bean with the collected values.
+     * @return The bean
+     */
+    public T build()
+    {
+        return descriptor.newProxy(descriptor.newHandler(values.clone(), false));
+    }
+
+    /**
+     * Creates a {@link ProxyBeanImpl#freeze() frozen} bean with the collected values.
+     * @return The bean
+     */
+    public T buildFrozen()
+    {
+        return descriptor.newProxy(descriptor.newHandler(values.clone(), true));
+    }
+}
@@ -0,0 +1,464 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.IntFunction;
+
+/**
+ * A comparator of beans by its properties, compiled against the {@link BeanDescriptor descriptor}.
+ *
+ * <b>Use</b>
+ * <pre>
+ * BeanComparator&lt;IModel&gt; order;
+ *
+ * order = BeanComparator.of(IModel.class).by("lastName").by("birthDate", true, false);
+ * order.parallelSort(models);
+ * </pre>
+ *
+ * The values of proxy beans are compared by slot, without the proxied getters; the primitive
+ * properties are compared by its primitive values and the other properties as {@link Comparable}.
+ * The null values are ordered first or last, for each property, on ascending and descending orders.
+ * Other implementations of the type are read with a {@link PropertyPath}.
+ *
+ * The comparators are immutable: each {@link #by(String) key} added creates a new comparator.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class BeanComparator<T> implements Comparator<T>
+{
+    /** The descriptor of the compared type */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The keys, by priority */
+    private final Key<T>[] keys;
+
+    /**
+     * Creates a comparator without keys, that considers all the beans equal.
+     * @param type The compared type
+     * @return The comparator
+     * @throws IllegalArgumentException If the type is not an interface
+     */
+    public static <T> BeanComparator<T> of(Class<T> type)
+    {
+        return new BeanComparator<T>(BeanDescriptor.forType(type), newKeys(0));
+    }
+
+    /**
+     * Constructor.
+     * @param descriptor The descriptor of the compared type
+     * @param keys The keys
+     */
+    private BeanComparator(BeanDescriptor<T> descriptor, Key<T>[] keys)
+    {
+        this.descriptor = descriptor;
+        this.keys = keys;
+    }
+
+    /**
+     * Creates the array of keys.
+     * @param size The number of keys
+     * @return The array
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Key<T>[] newKeys(int size)
+    {
+        return (Key<T>[]) new Key<?>[size];
+    }
+
+    /**
+     * A comparator with an added key, on ascending order with the nulls last.
+     * @param property The property
+     * @return The new comparator
+     * @throws IllegalArgumentException If the type has not the property, or it is not primitive nor comparable
+     */
+    public BeanComparator<T> by(String property)
+    {
+        return by(property, false, false);
+    }
+
+    /**
+     * A comparator with an added key.
+     * @param property The property
+     * @param descending If the order is descending
+     * @param nullsFirst If the null values are ordered before the not null values
+     * @return The new comparator
+     * @throws IllegalArgumentException If the type has not the property, or it is not primitive nor comparable
+     */
+    public BeanComparator<T> by(String property, boolean descending, boolean nullsFirst)
+    {
+        Key<T>[] added;
+
+        added = Arrays.copyOf(keys, keys.length + 1);
+        added[keys.length] = new Key<T>(descriptor, property, descending, nullsFirst);
+        return new BeanComparator<T>(descriptor, added);
+    }
+
+    @Override
+    public int compare(T o1, T o2)
+    {
+        ProxyBeanImpl<T> p1, p2;
+        int result;
+
+        p1 = ProxyBeanUtils.proxyBeanOf(o1);
+        p2 = ProxyBeanUtils.proxyBeanOf(o2);
+        for(Key<T> key : keys)
+        {
+            if((result = key.compare(key.valueOf(o1, p1), key.valueOf(o2, p2))) != 0)
+            {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts an array of beans. The key values are read once for each bean.
+     * @param beans The beans
+     */
+    public void sort(T[] beans)
+    {
+        Row<T>[] rows;
+
+        rows = rowsOf(beans);
+        Arrays.sort(rows, rowComparator());
+        for(int n = 0; n < rows.length; n++)
+        {
+            beans[n] = rows[n].bean;
+        }
+    }
+
+    /**
+     * Sorts an array of beans with the {@link Arrays#parallelSort(Object[], Comparator) parallel sort},
+     * for very large arrays. The key values are read once for each bean, in parallel.
+     * @param beans The beans
+     */
+    public void parallelSort(final T[] beans)
+    {
+        final Row<T>[] rows;
+
+        rows = newRows(beans.length);
+        Arrays.parallelSetAll(rows, new IntFunction<Row<T>>()
+        {
+            @Override
+            public Row<T> apply(int n)
+            {
+                return new Row<T>(beans[n], valuesOf(beans[n]));
+            }
+        });
+        Arrays.parallelSort(rows, rowComparator());
+        Arrays.parallelSetAll(beans, new IntFunction<T>()
+        {
+            @Override
+            public T apply(int n)
+            {
+                return rows[n].bean;
+            }
+        });
+    }
+
+    /**
+     * Sorts a list of beans. The key values are read once for each bean.
+     * @param beans The beans
+     */
+    public void sort(List<T> beans)
+    {
+        ListIterator<T> it;
+        Row<T>[] rows;
+        T bean;
+
+        rows = newRows(beans.size());
+        it = beans.listIterator();
+        for(int n = 0; n < rows.length; n++)
+        {
+            bean = it.next();
+            rows[n] = new Row<T>(bean, valuesOf(bean));
+        }
+        Arrays.sort(rows, rowComparator());
+        it = beans.listIterator();
+        for(Row<T> row : rows)
+        {
+            it.next();
+            it.set(row.bean);
+        }
+    }
+
+    /**
+     * The rows of an array of beans.
+     * @param beans The beans
+     * @return The rows, with the key values
+     */
+    private Row<T>[] rowsOf(T[] beans)
+    {
+        Row<T>[] rows;
+
+        rows = newRows(beans.length);
+        for(int n = 0; n < beans.length; n++)
+        {
+            rows[n] = new Row<T>(beans[n], valuesOf(beans[n]));
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the array of rows.
+     * @param size The number of rows
+     * @return The array
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Row<T>[] newRows(int size)
+    {
+        return (Row<T>[]) new Row<?>[size];
+    }
+
+    /**
+     * The key values of a bean.
+     * @param bean The bean
+     * @return The values, by key
+     */
+    private Object[] valuesOf(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        Object[] values;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        values = new Object[keys.length];
+        for(int n = 0; n < keys.length; n++)
+        {
+            values[n] = keys[n].valueOf(bean, proxy);
+        }
+        return values;
+    }
+
+    /**
+     * The comparator of the rows, by its key values.
+     * @return The comparator
+     */
+    private Comparator<Row<T>> rowComparator()
+    {
+        return new Comparator<Row<T>>()
+        {
+            @Override
+            public int compare(Row<T> r1, Row<T> r2)
+            {
+                int result;
+
+                for(int n = 0; n < keys.length; n++)
+                {
+                    if((result = keys[n].compare(r1.values[n], r2.values[n])) != 0)
+                    {
+                        return result;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * A bean with its key values, to sort.
+     */
+    private static final class Row<T>
+    {
+        final T bean;
+
+        final Object[] values;
+
+        Row(T bean, Object[] values)
+        {
+            this.bean = bean;
+            this.values = values;
+        }
+    }
+
+    /**
+     * A compiled key of the comparator.
+     */
+    private static final class Key<T>
+    {
+        /** Comparison of long values */
+        private static final int LONG = 0;
+
+        /** Comparison of int, short, byte and char values */
+        private static final int INT = 1;
+
+        /** Comparison of double values */
+        private static final int DOUBLE = 2;
+
+        /** Comparison of float values */
+        private static final int FLOAT = 3;
+
+        /** Comparison of boolean values */
+        private static final int BOOLEAN = 4;
+
+        /** Comparison of comparable values */
+        private static final int COMPARABLE = 5;
+
+        /** The descriptor of the compared type */
+        final BeanDescriptor<T> descriptor;
+
+        /** The property */
+        final String property;
+
+        /** The property slot */
+        final int slot;
+
+        /** The comparison kind */
+        final int kind;
+
+        /** If the order is descending */
+        final boolean descending;
+
+        /** If the null values are first */
+        final boolean nullsFirst;
+
+        /** The accessor for the beans that are not proxy beans of the type */
+        final PropertyPath<T> path;
+
+        /**
+         * Constructor, that resolves the property.
+         * @param descriptor The descriptor of the compared type
+         * @param property The property
+         * @param descending If the order is descending
+         * @param nullsFirst If the null values are first
+         * @throws IllegalArgumentException If the type has not the property, or it is not primitive nor comparable
+         */
+        Key(BeanDescriptor<T> descriptor, String property, boolean descending, boolean nullsFirst)
+        {
+            Class<?> type;
+
+            if((slot = descriptor.slotOf(property)) < 0)
+            {
+                throw new IllegalArgumentException("No property '" + property + "' on " + descriptor.getImplementedType().getName());
+            }
+            type = descriptor.getType(slot);
+            if(type == long.class)
+            {
+                kind = LONG;
+            }
+            else if(type == int.class || type == short.class || type == byte.class || type == char.class)
+            {
+                kind = INT;
+            }
+            else if(type == double.class)
+            {
+                kind = DOUBLE;
+            }
+            else if(type == float.class)
+            {
+                kind = FLOAT;
+            }
+            else if(type == boolean.class)
+            {
+                kind = BOOLEAN;
+            }
+            else if(Comparable.class.isAssignableFrom(type))
+            {
+                kind = COMPARABLE;
+            }
+            else
+            {
+                throw new IllegalArgumentException("The property '" + property + "' is not comparable");
+            }
+            this.descriptor = descriptor;
+            this.property = property;
+            this.descending = descending;
+            this.nullsFirst = nullsFirst;
+            path = PropertyPath.compile(descriptor.getImplementedType(), property);
+        }
+
+        /**
+         * The key value of a bean.
+         * @param bean The bean
+         * @param proxy The bean implementation, if it is a proxy bean
+         * @return The value
+         */
+        Object valueOf(T bean, ProxyBeanImpl<T> proxy)
+        {
+            if(proxy != null && proxy.getDescriptor() == descriptor)
+            {
+                return proxy.getSlot(slot);
+            }
+            return path.get(bean);
+        }
+
+        /**
+         * Compares two key values.
+         * @param v1 The first value
+         * @param v2 The second value
+         * @return The comparison, on the key order
+         */
+        int compare(Object v1, Object v2)
+        {
+            if(v1 == v2)
+            {
+                return 0;
+            }
+            if(v1 == null)
+            {
+                return nullsFirst ? -1 : 1;
+            }
+            if(v2 == null)
+            {
+                return nullsFirst ? 1 : -1;
+            }
+            return descending ? compareValues(v2, v1) : compareValues(v1, v2);
+        }
+
+        /**
+         * Compares two not null values, on ascending order.
+         * @param v1 The first value
+         * @param v2 The second value
+         * @return The comparison
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private int compareValues(Object v1, Object v2)
+        {
+            switch(kind)
+            {
+                case LONG:
+                    return Long.compare(((Long) v1).longValue(), ((Long) v2).longValue());
+                case INT:
+                    return Integer.compare(intValue(v1), intValue(v2));
+                case DOUBLE:
+                    return Double.compare(((Double) v1).doubleValue(), ((Double) v2).doubleValue());
+                case FLOAT:
+                    return Float.compare(((Float) v1).floatValue(), ((Float) v2).floatValue());
+                case BOOLEAN:
+                    return Boolean.compare(((Boolean) v1).booleanValue(), ((Boolean) v2).booleanValue());
+                default:
+                    return ((Comparable) v1).compareTo(v2);
+            }
+        }
+
+        /**
+         * The int value of an int, short, byte or char value.
+         * @param value The value
+         * @return The int value
+         */
+        private static int intValue(Object value)
+        {
+            return value instanceof Character ? ((Character) value).charValue() : ((Number) value).intValue();
+        }
+    }
+}
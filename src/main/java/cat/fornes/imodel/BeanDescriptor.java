@@ -0,0 +1,1325 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import static cat.fornes.imodel.ProxyBeanUtils.isGetter;
+import static cat.fornes.imodel.ProxyBeanUtils.isProperty;
+import static cat.fornes.imodel.ProxyBeanUtils.propertyName;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import cat.fornes.imodel.annotations.Deduplicated;
+import cat.fornes.imodel.annotations.Derived;
+import cat.fornes.imodel.annotations.HashedBy;
+import cat.fornes.imodel.annotations.Identity;
+import cat.fornes.imodel.annotations.PackedStorage;
+import cat.fornes.imodel.annotations.SparseStorage;
+import cat.fornes.imodel.utils.HashStrategy;
+import cat.fornes.imodel.utils.StringPool;
+
+/**
+ * The per-interface description of a proxy bean.
+ *
+ * Resolves once, for each implemented interface, the bean properties and assigns
+ * each of them a <i>slot</i>: an index in the order the properties appear on the
+ * interface. The descriptors are cached, so the reflective work is not repeated
+ * for every created bean.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class BeanDescriptor<T>
+{
+    /** Invocation code of a not described method */
+    static final int CODE_UNKNOWN = -1;
+
+    /** Invocation code of {@link Object#hashCode()} */
+    static final int CODE_HASH_CODE = -2;
+
+    /** Invocation code of {@link Object#toString()} */
+    static final int CODE_TO_STRING = -3;
+
+    /** Invocation code of {@link Object#equals(Object)} */
+    static final int CODE_EQUALS = -4;
+
+    /** Invocation code of a <code>clone()</code> method of the interface */
+    static final int CODE_CLONE = -5;
+
+    /** Invocation code of a <code>freeze()</code> method of the interface */
+    static final int CODE_FREEZE = -6;
+
+    /** The number of properties from which the beans use the sparse storage, without {@link SparseStorage} */
+    public static final int SPARSE_WIDTH = 64;
+
+    /** The descriptors cache, by implemented type */
+    private static final ConcurrentMap<Class<?>, BeanDescriptor<?>> DESCRIPTORS = new ConcurrentHashMap<Class<?>, BeanDescriptor<?>>();
+
+    /** Implemented type */
+    private final Class<T> implementedType;
+
+    /** Property names, by slot */
+    private final String[] names;
+
+    /** Property types, by slot */
+    private final Class<?>[] types;
+
+    /** Getter methods, by slot */
+    private final Method[] getters;
+
+    /** Setter methods, by slot */
+    private final Method[] setters;
+
+    /** Default values, by slot */
+    private final Object[] defaults;
+
+    /** Property types, by slot, with the primitive types as its wrappers */
+    private final Class<?>[] boxedTypes;
+
+    /** The compiled constraints, by slot; null if the type has not constraints */
+    private final PropertyConstraint[] constraints;
+
+    /** The string pools, by slot; null if no property is deduplicated */
+    private volatile StringPool[] stringPools;
+
+    /** The perfect hash of the property names to its slots */
+    private final PerfectHash slots;
+
+    /** The default methods, by index */
+    private final Method[] defaultMethods;
+
+    /** The handles of the default methods, as (proxy, arguments array) to result; null if not accessible */
+    private final MethodHandle[] defaultHandles;
+
+    /** The failures resolving the handles of the default methods, by index */
+    private final Throwable[] defaultFailures;
+
+    /** If the result of the default methods is memoized, by index */
+    private final boolean[] derived;
+
+    /** The indexes of the memoized default methods that depend on each slot; null if none */
+    private final int[][] dependents;
+
+    /** The slot remappings of the projections of other types to this one, by source descriptor */
+    private final ConcurrentMap<BeanDescriptor<?>, int[]> projections = new ConcurrentHashMap<BeanDescriptor<?>, int[]>();
+
+    /** Invocation codes, by method: the slot for getters, the size plus the slot for setters,
+     * twice the size plus the index for default methods */
+    private final Map<Method, Integer> codes;
+
+    /** The proxy class constructor */
+    private final Constructor<?> proxyConstructor;
+
+    /** The hash strategy for the beans */
+    private final HashStrategy hashStrategy;
+
+    /** The {@link Identity} slots, in slot order; null if the beans are equal by all the values */
+    private final int[] identitySlots;
+
+    /** If the beans use the sparse storage */
+    private final boolean sparse;
+
+    /** The layout of the packed storage; null if the beans do not use it */
+    private final PackedLayout packedLayout;
+
+    /** The hash terms of the default values, by slot, for the sparse storage */
+    private final long[] defaultTerms;
+
+    /** The hash seed plus the sum of the default terms */
+    private final long defaultHashSum;
+
+    /** The text representation prefix: "SimpleName [" */
+    private final String textPrefix;
+
+    /** The slots in text representation order (by property name) */
+    private final int[] textOrder;
+
+    /** The text representation labels, in text order: "name=", ", name=", ... */
+    private final String[] textLabels;
+
+    /** The length of the last text representation, as a size hint for the next */
+    private volatile int textLengthHint;
+
+    /** The interceptors, by slot; null if the type has not interceptors */
+    private volatile BeanInterceptor[][] interceptors;
+
+    /**
+     * Gets the descriptor for the type.
+     * @param type The interface type
+     * @return The (cached) descriptor
+     * @throws IllegalArgumentException If the type is not an interface
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanDescriptor<T> forType(Class<T> type)
+    {
+        BeanDescriptor<T> descriptor;
+        BeanDescriptor<T> previous;
+
+        if((descriptor = (BeanDescriptor<T>) DESCRIPTORS.get(type)) == null)
+        {
+            descriptor = new BeanDescriptor<T>(type);
+            if((previous = (BeanDescriptor<T>) DESCRIPTORS.putIfAbsent(type, descriptor)) != null)
+            {
+                descriptor = previous;
+            }
+        }
+        return descriptor;
+    }
+
+    /**
+     * Constructor with the type to describe.
+     * @param type The interface type
+     * @throws IllegalArgumentException If the type is not an interface
+     */
+    private BeanDescriptor(Class<T> type)
+    {
+        List<String> propertyNames;
+        Map<String, Method> getterMethods, setterMethods;
+        String name;
+        Method getter, setter;
+        String[] sortedNames;
+        long sum;
+        int n;
+
+        if(type.isInterface() == false)
+        {
+            // Only interfaces
+            throw new IllegalArgumentException("ProxyBeanImpl can only implement interfaces. '" + type.getName() + "' is not an interface");
+        }
+        implementedType = type;
+        propertyNames = new ArrayList<String>();
+        getterMethods = new HashMap<String, Method>();
+        setterMethods = new HashMap<String, Method>();
+        for(Method method : type.getMethods())
+        {
+            if(Modifier.isPublic(method.getModifiers()) && method.isDefault() == false && isProperty(method.getName()))
+            {
+                name = propertyName(method.getName());
+                if(getterMethods.containsKey(name) == false && setterMethods.containsKey(name) == false)
+                {
+                    propertyNames.add(name);
+                }
+                if(isGetter(method.getName()))
+                {
+                    getterMethods.put(name, method);
+                }
+                else
+                {
+                    setterMethods.put(name, method);
+                }
+            }
+        }
+        n = propertyNames.size();
+        names = propertyNames.toArray(new String[n]);
+        types = new Class<?>[n];
+        getters = new Method[n];
+        setters = new Method[n];
+        defaults = new Object[n];
+        boxedTypes = new Class<?>[n];
+        slots = new PerfectHash(names);
+        for(int i = 0; i < n; i++)
+        {
+            getter = getterMethods.get(names[i]);
+            setter = setterMethods.get(names[i]);
+            getters[i] = getter;
+            setters[i] = setter;
+            types[i] = getter != null ? getter.getReturnType() : setter.getParameterTypes()[0];
+            defaults[i] = defaultValue(types[i]);
+            boxedTypes[i] = types[i].isPrimitive() ? defaults[i].getClass() : types[i];
+        }
+        constraints = constraints();
+        stringPools = stringPools();
+        defaultMethods = defaultMethods(type);
+        defaultHandles = new MethodHandle[defaultMethods.length];
+        defaultFailures = new Throwable[defaultMethods.length];
+        derived = new boolean[defaultMethods.length];
+        for(int i = 0; i < defaultMethods.length; i++)
+        {
+            try
+            {
+                defaultHandles[i] = specialHandle(type, defaultMethods[i]);
+            }
+            catch(Exception e)
+            {
+                defaultFailures[i] = e;
+            }
+            derived[i] = defaultMethods[i].isAnnotationPresent(Derived.class);
+        }
+        dependents = dependents();
+        codes = invocationCodes(type);
+        hashStrategy = hashStrategy(type);
+        identitySlots = identitySlots();
+        if(type.isAnnotationPresent(PackedStorage.class))
+        {
+            if(type.isAnnotationPresent(SparseStorage.class) && type.getAnnotation(SparseStorage.class).value())
+            {
+                throw new IllegalArgumentException("Type " + type.getName() + " with both the sparse and the packed storage");
+            }
+            packedLayout = new PackedLayout(types);
+            sparse = false;
+        }
+        else
+        {
+            packedLayout = null;
+            sparse = type.isAnnotationPresent(SparseStorage.class) ? type.getAnnotation(SparseStorage.class).value() : n >= SPARSE_WIDTH;
+        }
+        defaultTerms = new long[n];
+        sum = hashStrategy.seed(n);
+        for(int i = 0; i < n; i++)
+        {
+            defaultTerms[i] = hashStrategy.term(i, n, defaults[i]);
+            sum += defaultTerms[i];
+        }
+        defaultHashSum = sum;
+        textPrefix = type.getSimpleName() + " [";
+        textOrder = new int[n];
+        textLabels = new String[n];
+        sortedNames = names.clone();
+        Arrays.sort(sortedNames);
+        for(int i = 0; i < n; i++)
+        {
+            textOrder[i] = slots.indexOf(sortedNames[i]);
+            textLabels[i] = (i == 0 ? "" : ", ") + sortedNames[i] + "=";
+        }
+        textLengthHint = textPrefix.length() + 1;
+        try
+        {
+            proxyConstructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new IllegalStateException("Proxy class without handler constructor for '" + type.getName() + "'", e);
+        }
+    }
+
+    /**
+     * The string pools of the {@link Deduplicated} properties.
+     * @return The pools, by slot; null if no property is deduplicated
+     * @throws IllegalArgumentException If a deduplicated property is not a text
+     */
+    private StringPool[] stringPools()
+    {
+        StringPool[] result;
+        boolean any;
+
+        result = new StringPool[names.length];
+        any = false;
+        for(int i = 0; i < names.length; i++)
+        {
+            if(getters[i] != null && getters[i].isAnnotationPresent(Deduplicated.class)
+                || setters[i] != null && setters[i].isAnnotationPresent(Deduplicated.class))
+            {
+                if(types[i] != String.class)
+                {
+                    throw new IllegalArgumentException("Deduplicated property '" + names[i] + "' on " + implementedType.getName() + " is not a String");
+                }
+                result[i] = StringPool.shared();
+                any = true;
+            }
+        }
+        return any ? result : null;
+    }
+
+    /**
+     * The slots of the {@link Identity} properties.
+     * @return The slots, in slot order; null if no property is an identity one
+     */
+    private int[] identitySlots()
+    {
+        int[] result;
+        int count;
+
+        result = new int[names.length];
+        count = 0;
+        for(int i = 0; i < names.length; i++)
+        {
+            if(getters[i] != null && getters[i].isAnnotationPresent(Identity.class)
+                || setters[i] != null && setters[i].isAnnotationPresent(Identity.class))
+            {
+                result[count++] = i;
+            }
+        }
+        return count == 0 ? null : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * The default methods of a type.
+     * @param type The interface type
+     * @return The default methods
+     * @throws IllegalArgumentException If a {@link Derived} method has parameters or has not result
+     */
+    private static Method[] defaultMethods(Class<?> type)
+    {
+        List<Method> result;
+
+        result = new ArrayList<Method>();
+        for(Method method : type.getMethods())
+        {
+            if(method.isDefault())
+            {
+                if(method.isAnnotationPresent(Derived.class) && method.getParameterTypes().length > 0)
+                {
+                    throw new IllegalArgumentException("Derived method '" + method.getName() + "' on " + type.getName() + " with parameters");
+                }
+                if(method.isAnnotationPresent(Derived.class) && method.getReturnType() == void.class)
+                {
+                    throw new IllegalArgumentException("Derived method '" + method.getName() + "' on " + type.getName() + " without result");
+                }
+                result.add(method);
+            }
+        }
+        return result.toArray(new Method[result.size()]);
+    }
+
+    /**
+     * The handle that calls a default method on a proxy, without the dispatch to the proxy.
+     * Resolved by a private look up on the interface: with <code>MethodHandles.privateLookupIn</code>
+     * since Java 9, else with the private constructor of the look ups of Java 8.
+     * @param type The interface type
+     * @param method The default method
+     * @return The handle, as (proxy, arguments array) to result
+     * @throws ReflectiveOperationException If the method is not accessible
+     */
+    private static MethodHandle specialHandle(Class<?> type, Method method) throws ReflectiveOperationException
+    {
+        Constructor<Lookup> constructor;
+        MethodHandle handle;
+        Lookup lookup;
+        Method privateLookupIn;
+
+        try
+        {
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, Lookup.class);
+            lookup = (Lookup) privateLookupIn.invoke(null, method.getDeclaringClass(), MethodHandles.lookup());
+        }
+        catch(NoSuchMethodException e)
+        {
+            // Java 8
+            constructor = Lookup.class.getDeclaredConstructor(Class.class, int.class);
+            constructor.setAccessible(true);
+            lookup = constructor.newInstance(method.getDeclaringClass(), Lookup.PRIVATE);
+        }
+        handle = lookup.unreflectSpecial(method, method.getDeclaringClass());
+        handle = handle.asType(handle.type().generic());
+        return handle.asSpreader(Object[].class, method.getParameterTypes().length);
+    }
+
+    /**
+     * The memoized default methods that depend on each slot.
+     * @return The indexes of the methods, by slot
+     * @throws IllegalArgumentException If a dependency is not a property
+     */
+    private int[][] dependents()
+    {
+        List<List<Integer>> bySlot;
+        String[] dependencies;
+        int[][] result;
+        int slot;
+
+        bySlot = new ArrayList<List<Integer>>();
+        for(int i = 0; i < names.length; i++)
+        {
+            bySlot.add(new ArrayList<Integer>());
+        }
+        for(int d = 0; d < defaultMethods.length; d++)
+        {
+            if(derived[d] == false)
+            {
+                continue;
+            }
+            dependencies = defaultMethods[d].getAnnotation(Derived.class).value();
+            for(int i = 0; i < names.length; i++)
+            {
+                if(dependencies.length == 0)
+                {
+                    bySlot.get(i).add(d);
+                }
+            }
+            for(String dependency : dependencies)
+            {
+                if((slot = slotOf(dependency)) < 0)
+                {
+                    throw new IllegalArgumentException("Unknown dependency '" + dependency + "' of " + defaultMethods[d].getName() + " on " + implementedType.getName());
+                }
+                bySlot.get(slot).add(d);
+            }
+        }
+        result = new int[names.length][];
+        for(int i = 0; i < names.length; i++)
+        {
+            if(bySlot.get(i).isEmpty() == false)
+            {
+                result[i] = new int[bySlot.get(i).size()];
+                for(int k = 0; k < result[i].length; k++)
+                {
+                    result[i][k] = bySlot.get(i).get(k);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the constraints of the properties, from the annotations of its accessors.
+     * @return The constraints, by slot; null if no property has constraints
+     * @throws IllegalArgumentException If a constraint does not apply to its property
+     */
+    private PropertyConstraint[] constraints()
+    {
+        PropertyConstraint[] result;
+        boolean any;
+
+        result = new PropertyConstraint[names.length];
+        any = false;
+        for(int i = 0; i < names.length; i++)
+        {
+            try
+            {
+                result[i] = PropertyConstraint.compile(types[i], getters[i], setters[i]);
+            }
+            catch(IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Not valid constraint of '" + names[i] + "' on " + implementedType.getName(), e);
+            }
+            any |= result[i] != null;
+        }
+        return any ? result : null;
+    }
+
+    /**
+     * Resolves the invocation codes of the methods of a type.
+     * @param type The interface type
+     * @return The codes, by method
+     */
+    private Map<Method, Integer> invocationCodes(Class<T> type)
+    {
+        Map<Method, Integer> result;
+
+        result = new HashMap<Method, Integer>();
+        for(int i = 0; i < names.length; i++)
+        {
+            if(getters[i] != null)
+            {
+                result.put(getters[i], i);
+            }
+            if(setters[i] != null)
+            {
+                result.put(setters[i], names.length + i);
+            }
+        }
+        for(int d = 0; d < defaultMethods.length; d++)
+        {
+            result.put(defaultMethods[d], 2 * names.length + d);
+        }
+        for(Method method : type.getMethods())
+        {
+            if(method.isDefault())
+            {
+                continue;
+            }
+            if(method.getParameterTypes().length == 0 && "clone".equals(method.getName()))
+            {
+                result.put(method, CODE_CLONE);
+            }
+            if(method.getParameterTypes().length == 0 && "freeze".equals(method.getName()))
+            {
+                result.put(method, CODE_FREEZE);
+            }
+        }
+        try
+        {
+            result.put(Object.class.getMethod("hashCode"), CODE_HASH_CODE);
+            result.put(Object.class.getMethod("toString"), CODE_TO_STRING);
+            result.put(Object.class.getMethod("equals", Object.class), CODE_EQUALS);
+        }
+        catch(NoSuchMethodException e)
+        {
+            throw new IllegalStateException("Object methods not found", e);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the hash strategy of a type, from its {@link HashedBy} annotation.
+     * @param type The interface type
+     * @return The hash strategy
+     * @throws IllegalArgumentException If the strategy can not be created
+     */
+    private static HashStrategy hashStrategy(Class<?> type)
+    {
+        HashedBy hashedBy;
+
+        if((hashedBy = type.getAnnotation(HashedBy.class)) == null || hashedBy.value() == HashStrategy.Polynomial.class)
+        {
+            return HashStrategy.POLYNOMIAL;
+        }
+        if(hashedBy.value() == HashStrategy.Mixed64.class)
+        {
+            return HashStrategy.MIXED_64;
+        }
+        try
+        {
+            return hashedBy.value().newInstance();
+        }
+        catch(Exception e)
+        {
+            /* Includes: InstantiationException, IllegalAccessException */
+            throw new IllegalArgumentException("Can not create the hash strategy of '" + type.getName() + "'", e);
+        }
+    }
+
+    /**
+     * The default value for a property type: the zero representation for primitives, null otherwise.
+     * @param type The property type
+     * @return The default value
+     */
+    private static Object defaultValue(Class<?> type)
+    {
+        if(type.isPrimitive() == false)
+        {
+            return null;
+        }
+        if(type == byte.class)
+        {
+            return Byte.valueOf((byte) 0);
+        }
+        if(type == short.class)
+        {
+            return Short.valueOf((short) 0);
+        }
+        if(type == int.class)
+        {
+            return Integer.valueOf(0);
+        }
+        if(type == long.class)
+        {
+            return Long.valueOf(0L);
+        }
+        if(type == float.class)
+        {
+            return Float.valueOf(0F);
+        }
+        if(type == double.class)
+        {
+            return Double.valueOf(0D);
+        }
+        if(type == char.class)
+        {
+            return Character.valueOf('\u0000');
+        }
+        if(type == boolean.class)
+        {
+            return Boolean.FALSE;
+        }
+        // Unknown??
+        throw new IllegalArgumentException("No handler found for type '" + type.getSimpleName() + "'.");
+    }
+
+    /**
+     * Creates a proxy instance of the described type, backed by the handler.
+     * The proxy class constructor is resolved once, on descriptor creation.
+     * @param handler The invocation handler
+     * @return The proxy
+     */
+    @SuppressWarnings("unchecked")
+    public T newProxy(InvocationHandler handler)
+    {
+        try
+        {
+            return (T) proxyConstructor.newInstance(handler);
+        }
+        catch(Exception e)
+        {
+            /* Includes: InstantiationException, IllegalAccessException, InvocationTargetException */
+            throw new IllegalStateException("On proxy creation for '" + implementedType.getName() + "'", e);
+        }
+    }
+
+    /**
+     * Creates the implementation of a bean of the described type, with the
+     * {@link BeanInterceptor interceptors} of the type if it has.
+     * @param values The values, by slot, with the default values for primitives instead of null; not copied
+     * @param frozen If the bean is frozen
+     * @return The implementation
+     */
+    public ProxyBeanImpl<T> newHandler(Object[] values, boolean frozen)
+    {
+        BeanInterceptor[][] chains;
+
+        if((chains = interceptors) != null)
+        {
+            return new InterceptedProxyBeanImpl<T>(this, values, frozen, chains);
+        }
+        if(sparse)
+        {
+            return new SparseProxyBeanImpl<T>(this, values, frozen);
+        }
+        if(packedLayout != null)
+        {
+            return new PackedProxyBeanImpl<T>(this, values, frozen);
+        }
+        return new ProxyBeanImpl<T>(this, values, frozen);
+    }
+
+    /**
+     * Creates the implementation of a new bean of the described type, with the default values.
+     * @return The implementation
+     * @see #newHandler(Object[], boolean)
+     */
+    public ProxyBeanImpl<T> newHandler()
+    {
+        if(sparse && interceptors == null)
+        {
+            return new SparseProxyBeanImpl<T>(this);
+        }
+        if(packedLayout != null && interceptors == null)
+        {
+            return new PackedProxyBeanImpl<T>(this);
+        }
+        return newHandler(defaults.clone(), false);
+    }
+
+    /**
+     * Creates the implementation of a projection of a bean to the described type: a view that shares
+     * the values of the bean, without copying them. The projection of a projection shares the values
+     * of its source.
+     * @param source The implementation of the source bean
+     * @return The implementation of the view
+     * @throws IllegalArgumentException If the described type is not compatible with the source type
+     * @see #projectionOf(BeanDescriptor)
+     */
+    public ProxyBeanImpl<T> newProjection(ProxyBeanImpl<?> source)
+    {
+        ProjectionProxyBeanImpl<?> projection;
+        int[] slots, sourceSlots;
+
+        if(source instanceof ProjectionProxyBeanImpl)
+        {
+            projection = (ProjectionProxyBeanImpl<?>) source;
+            sourceSlots = projectionOf(projection.getSource().getDescriptor());
+            return new ProjectionProxyBeanImpl<T>(this, projection.getSource(), sourceSlots);
+        }
+        slots = projectionOf(source.getDescriptor());
+        return new ProjectionProxyBeanImpl<T>(this, source, slots);
+    }
+
+    /**
+     * The slot remapping of the projection of a type to the described one. The types are compatible if
+     * the source type has all the properties of this one: of the same type, or of a subtype for the
+     * properties without setter on this one.
+     * @param source The descriptor of the source type
+     * @return The slots of the source, by slot; not to be modified
+     * @throws IllegalArgumentException If the types are not compatible
+     */
+    int[] projectionOf(BeanDescriptor<?> source)
+    {
+        int[] slots;
+        int slot;
+
+        if((slots = projections.get(source)) != null)
+        {
+            return slots;
+        }
+        slots = new int[names.length];
+        for(int n = 0; n < names.length; n++)
+        {
+            if((slot = source.slotOf(names[n])) < 0)
+            {
+                throw new IllegalArgumentException("Can not project " + source.getImplementedType().getName() + " to "
+                    + implementedType.getName() + " without '" + names[n] + "'");
+            }
+            if(types[n] != source.getType(slot) && (setters[n] != null || types[n].isPrimitive() || types[n].isAssignableFrom(source.getType(slot)) == false))
+            {
+                throw new IllegalArgumentException("Can not project " + source.getImplementedType().getName() + " to "
+                    + implementedType.getName() + ": '" + names[n] + "' is " + source.getType(slot).getName());
+            }
+            slots[n] = slot;
+        }
+        projections.putIfAbsent(source, slots);
+        return slots;
+    }
+
+    /**
+     * Creates the implementation of a lazy bean of the described type, whose values are decoded
+     * on its first access. The beans of types with {@link BeanInterceptor interceptors} decode all the
+     * values on creation, to the handler of {@link #newHandler(Object[], boolean)}.
+     * @param decoder The decoder of the values
+     * @return The implementation
+     */
+    public ProxyBeanImpl<T> newLazyHandler(SlotDecoder decoder)
+    {
+        Object[] values;
+
+        if(interceptors != null)
+        {
+            values = new Object[names.length];
+            for(int n = 0; n < values.length; n++)
+            {
+                values[n] = decoder.decode(n);
+            }
+            return newHandler(values, false);
+        }
+        return new LazyProxyBeanImpl<T>(this, decoder);
+    }
+
+    /**
+     * Checks if the beans use the {@link SparseStorage sparse storage}.
+     * The beans of types with {@link BeanInterceptor interceptors} use the dense storage.
+     * @return true for the sparse storage
+     */
+    public boolean isSparse()
+    {
+        return sparse;
+    }
+
+    /**
+     * Checks if the beans use the {@link PackedStorage packed storage}.
+     * The beans of types with {@link BeanInterceptor interceptors} use the dense storage.
+     * @return true for the packed storage
+     */
+    public boolean isPacked()
+    {
+        return packedLayout != null;
+    }
+
+    /**
+     * The layout of the packed storage.
+     * @return The layout; null if the beans do not use the packed storage
+     */
+    PackedLayout getPackedLayout()
+    {
+        return packedLayout;
+    }
+
+    /**
+     * The hash term of the default value of a slot.
+     * @param slot The slot
+     * @return The term
+     */
+    long getDefaultTerm(int slot)
+    {
+        return defaultTerms[slot];
+    }
+
+    /**
+     * The hash seed plus the terms of all the default values: the hash sum of a bean with the default values.
+     * @return The sum
+     */
+    long getDefaultHashSum()
+    {
+        return defaultHashSum;
+    }
+
+    /**
+     * Adds an interceptor of all the properties, for the beans created from now on.
+     * @param interceptor The interceptor
+     */
+    public void addInterceptor(BeanInterceptor interceptor)
+    {
+        for(int n = 0; n < names.length; n++)
+        {
+            addInterceptor(n, interceptor);
+        }
+    }
+
+    /**
+     * Adds an interceptor of a property, for the beans created from now on.
+     * @param name The property name
+     * @param interceptor The interceptor
+     * @throws IllegalArgumentException If the type has not the property
+     */
+    public void addInterceptor(String name, BeanInterceptor interceptor)
+    {
+        int slot;
+
+        if((slot = slotOf(name)) < 0)
+        {
+            throw new IllegalArgumentException("Unknown property " + name + " on " + implementedType.getName());
+        }
+        addInterceptor(slot, interceptor);
+    }
+
+    /**
+     * Adds an interceptor of a slot.
+     * @param slot The slot
+     * @param interceptor The interceptor
+     */
+    private synchronized void addInterceptor(int slot, BeanInterceptor interceptor)
+    {
+        BeanInterceptor[][] chains;
+        BeanInterceptor[] chain;
+
+        chains = interceptors == null ? new BeanInterceptor[names.length][] : interceptors.clone();
+        chain = chains[slot] == null ? new BeanInterceptor[1] : Arrays.copyOf(chains[slot], chains[slot].length + 1);
+        chain[chain.length - 1] = interceptor;
+        chains[slot] = chain;
+        interceptors = chains;
+    }
+
+    /**
+     * Removes an interceptor from all the properties, for the beans created from now on.
+     * @param interceptor The interceptor
+     * @return true if the interceptor was found
+     */
+    public synchronized boolean removeInterceptor(BeanInterceptor interceptor)
+    {
+        BeanInterceptor[][] chains;
+        List<BeanInterceptor> kept;
+        boolean found, any;
+
+        if(interceptors == null)
+        {
+            return false;
+        }
+        chains = interceptors.clone();
+        found = false;
+        any = false;
+        for(int n = 0; n < chains.length; n++)
+        {
+            if(chains[n] != null)
+            {
+                kept = new ArrayList<BeanInterceptor>(Arrays.asList(chains[n]));
+                found |= kept.remove(interceptor);
+                chains[n] = kept.isEmpty() ? null : kept.toArray(new BeanInterceptor[kept.size()]);
+                any |= chains[n] != null;
+            }
+        }
+        interceptors = any ? chains : null;
+        return found;
+    }
+
+    /**
+     * The interceptors, by slot.
+     * @return The interceptors, null if the type has not interceptors; not to be modified
+     */
+    BeanInterceptor[][] getInterceptorChains()
+    {
+        return interceptors;
+    }
+
+    /**
+     * Sets the pool that deduplicates the values of a text property, on the setter, the builder,
+     * the deserialization and the {@link cat.fornes.imodel.io.BeanCodec decoding}, for the values
+     * set from now on.
+     * @param name The property name
+     * @param pool The pool; null to not deduplicate the property
+     * @throws IllegalArgumentException If the type has not the property or it is not a String
+     */
+    public synchronized void setStringPool(String name, StringPool pool)
+    {
+        StringPool[] pools;
+        boolean any;
+        int slot;
+
+        if((slot = slotOf(name)) < 0 || types[slot] != String.class)
+        {
+            throw new IllegalArgumentException("Unknown String property " + name + " on " + implementedType.getName());
+        }
+        pools = stringPools == null ? new StringPool[names.length] : stringPools.clone();
+        pools[slot] = pool;
+        any = false;
+        for(StringPool current : pools)
+        {
+            any |= current != null;
+        }
+        stringPools = any ? pools : null;
+    }
+
+    /**
+     * The pool that deduplicates the values of a property.
+     * @param slot The slot
+     * @return The pool; null if the property is not deduplicated
+     */
+    public StringPool getStringPool(int slot)
+    {
+        StringPool[] pools;
+
+        return (pools = stringPools) == null ? null : pools[slot];
+    }
+
+    /**
+     * Deduplicates a value of a property, if the property has a pool.
+     * @param slot The slot
+     * @param value The value
+     * @return The pooled value, or the value
+     */
+    Object deduplicate(int slot, Object value)
+    {
+        StringPool[] pools;
+
+        if((pools = stringPools) == null || pools[slot] == null || value == null)
+        {
+            return value;
+        }
+        return pools[slot].deduplicate((String) value);
+    }
+
+    /**
+     * Checks if the type has {@link cat.fornes.imodel.annotations.NotNull constraints} on its properties.
+     * @return true if a property has constraints
+     */
+    public boolean hasConstraints()
+    {
+        return constraints != null;
+    }
+
+    /**
+     * Checks a value against the constraints of a property.
+     * @param slot The slot
+     * @param value The value
+     * @throws ConstraintViolationException If the value violates a constraint
+     */
+    public void checkConstraints(int slot, Object value)
+    {
+        PropertyConstraint constraint;
+        String violation;
+
+        if(constraints != null && (constraint = constraints[slot]) != null && (violation = constraint.check(value)) != null)
+        {
+            throw new ConstraintViolationException(implementedType.getSimpleName() + "." + names[slot] + " " + violation,
+                Collections.singletonList(names[slot]));
+        }
+    }
+
+    /**
+     * Checks all the values of a bean against the constraints of the properties.
+     * @param values The values, by slot
+     * @throws ConstraintViolationException If some value violates a constraint, with all the violations
+     */
+    void checkConstraints(Object[] values)
+    {
+        StringBuilder stb;
+        List<String> violated;
+        String violation;
+
+        if(constraints == null)
+        {
+            return;
+        }
+        stb = null;
+        violated = null;
+        for(int n = 0; n < values.length; n++)
+        {
+            if(constraints[n] != null && (violation = constraints[n].check(values[n])) != null)
+            {
+                if(stb == null)
+                {
+                    stb = new StringBuilder();
+                    violated = new ArrayList<String>();
+                }
+                stb.append(violated.isEmpty() ? "" : "; ").append(implementedType.getSimpleName()).append('.').append(names[n]).append(' ').append(violation);
+                violated.add(names[n]);
+            }
+        }
+        if(stb != null)
+        {
+            throw new ConstraintViolationException(stb.toString(), violated);
+        }
+    }
+
+    /**
+     * The described interface.
+     * @return The implemented type
+     */
+    public Class<T> getImplementedType()
+    {
+        return implementedType;
+    }
+
+    /**
+     * The number of default methods.
+     * @return The number of default methods
+     */
+    int getDefaultMethodCount()
+    {
+        return defaultMethods.length;
+    }
+
+    /**
+     * The handle of a default method.
+     * @param index The index of the default method
+     * @return The handle, as (proxy, arguments array) to result
+     * @throws UnsupportedOperationException If the method is not accessible
+     */
+    MethodHandle getDefaultHandle(int index)
+    {
+        if(defaultHandles[index] == null)
+        {
+            throw new UnsupportedOperationException("Call to not accessible '" + defaultMethods[index].getName() + "'", defaultFailures[index]);
+        }
+        return defaultHandles[index];
+    }
+
+    /**
+     * Checks if the result of a default method is memoized.
+     * @param index The index of the default method
+     * @return true if it is {@link Derived}
+     */
+    boolean isDerived(int index)
+    {
+        return derived[index];
+    }
+
+    /**
+     * The memoized default methods that depend on a slot.
+     * @param slot The slot
+     * @return The indexes of the methods; null if none
+     */
+    int[] getDependents(int slot)
+    {
+        return dependents[slot];
+    }
+
+    /**
+     * The number of properties (slots).
+     * @return The number of properties
+     */
+    public int size()
+    {
+        return names.length;
+    }
+
+    /**
+     * The slot of a property, by a perfect hash of the names: without allocating, also for the unknown names.
+     * @param name The property name
+     * @return The slot, or -1 if the type has not this property
+     */
+    public int slotOf(String name)
+    {
+        return slots.indexOf(name);
+    }
+
+    /**
+     * Resolves a property to a reusable handle of its slot.
+     * @param name The property name
+     * @return The property handle
+     * @throws IllegalArgumentException If the type has not the property
+     */
+    public BeanProperty<T> property(String name)
+    {
+        int slot;
+
+        if((slot = slots.indexOf(name)) < 0)
+        {
+            throw new IllegalArgumentException("Unknown property " + name + " on " + implementedType.getName());
+        }
+        return new BeanProperty<T>(this, slot);
+    }
+
+    /**
+     * The property names, in slot order.
+     * @return An unmodifiable list of names
+     */
+    public List<String> getNames()
+    {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * The property name of a slot.
+     * @param slot The slot
+     * @return The property name
+     */
+    public String getName(int slot)
+    {
+        return names[slot];
+    }
+
+    /**
+     * The property type of a slot.
+     * @param slot The slot
+     * @return The property type
+     */
+    public Class<?> getType(int slot)
+    {
+        return types[slot];
+    }
+
+    /**
+     * Check if the property type of a slot is primitive.
+     * @param slot The slot
+     * @return <b>true</b> if the property type is primitive
+     */
+    public boolean isPrimitive(int slot)
+    {
+        return types[slot].isPrimitive();
+    }
+
+    /**
+     * The default value of a slot.
+     * @param slot The slot
+     * @return The zero representation for primitive types, null otherwise
+     */
+    public Object getDefaultValue(int slot)
+    {
+        return defaults[slot];
+    }
+
+    /**
+     * The default values, by slot.
+     * @return The default values, not to be modified
+     */
+    Object[] getDefaultValues()
+    {
+        return defaults;
+    }
+
+    /**
+     * Check if a value can be assigned to the property of a slot.
+     * @param slot The slot
+     * @param value The value; null is accepted, as the default value for primitive properties
+     * @return <b>true</b> if the value is null or an instance of the property type (or its wrapper)
+     */
+    public boolean accepts(int slot, Object value)
+    {
+        return value == null || boxedTypes[slot].isInstance(value);
+    }
+
+    /**
+     * The getter method of a slot.
+     * @param slot The slot
+     * @return The getter method, or null if the property is write only
+     */
+    public Method getGetter(int slot)
+    {
+        return getters[slot];
+    }
+
+    /**
+     * The setter method of a slot.
+     * @param slot The slot
+     * @return The setter method, or null if the property is read only
+     */
+    public Method getSetter(int slot)
+    {
+        return setters[slot];
+    }
+
+    /**
+     * The hash strategy for the beans of the type.
+     * @return The hash strategy
+     * @see HashedBy
+     */
+    public HashStrategy getHashStrategy()
+    {
+        return hashStrategy;
+    }
+
+    /**
+     * Checks if the beans are equal by its {@link Identity} properties only.
+     * @return true if some property is an identity one
+     * @see ProxyBeanImpl#equals(Object)
+     */
+    public boolean hasIdentity()
+    {
+        return identitySlots != null;
+    }
+
+    /**
+     * Checks if a property is an {@link Identity} one.
+     * @param slot The property slot
+     * @return true if the property is an identity one
+     */
+    public boolean isIdentity(int slot)
+    {
+        return identitySlots != null && Arrays.binarySearch(identitySlots, slot) >= 0;
+    }
+
+    /**
+     * The slots of the {@link Identity} properties.
+     * @return The slots, in slot order, not to be modified; null if the beans are equal by all the values
+     */
+    int[] getIdentitySlots()
+    {
+        return identitySlots;
+    }
+
+    /**
+     * The invocation code of a method, resolved without locking.
+     * @param method The invoked method
+     * @return The slot for getters, the {@link #size()} plus the slot for setters,
+     *         a negative code for the object methods, or {@link #CODE_UNKNOWN}
+     */
+    int codeOf(Method method)
+    {
+        Integer code;
+
+        code = codes.get(method);
+        return code == null ? CODE_UNKNOWN : code.intValue();
+    }
+
+    /**
+     * The text representation prefix.
+     * @return "SimpleName ["
+     */
+    String getTextPrefix()
+    {
+        return textPrefix;
+    }
+
+    /**
+     * The slots in the text representation order.
+     * @return The slots, not to be modified
+     */
+    int[] getTextOrder()
+    {
+        return textOrder;
+    }
+
+    /**
+     * The labels of the text representation, in text order.
+     * @return The labels, with the separator included, not to be modified
+     */
+    String[] getTextLabels()
+    {
+        return textLabels;
+    }
+
+    /**
+     * A hint for the length of the text representations.
+     * @return The length of a recent text representation
+     */
+    int getTextLengthHint()
+    {
+        return textLengthHint;
+    }
+
+    /**
+     * Updates the hint for the length of the text representations.
+     * @param length The length of a text representation
+     */
+    void setTextLengthHint(int length)
+    {
+        textLengthHint = length;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * An interceptor of the getter and setter calls of proxy beans, for cross-cutting behaviour
+ * as auditing, access control or value transformation.
+ *
+ * The interceptors are {@link BeanDescriptor#addInterceptor(BeanInterceptor) registered} on the
+ * descriptor of an interface, for all the properties or for one, and are applied to the beans
+ * created after the registration. The interceptors of a property are called in registration
+ * order, each with the value returned by the previous one. The direct slot access of
+ * {@link ProxyBeanImpl#getSlot(int)} and {@link ProxyBeanImpl#setSlot(int, Object)} is not intercepted.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public interface BeanInterceptor
+{
+    /**
+     * Intercepts a getter call.
+     * @param bean The implementation of the bean
+     * @param slot The slot of the property
+     * @param value The property value, or the value returned by the previous interceptor
+     * @return The value to return; not null for primitive properties
+     */
+    Object onGet(ProxyBeanImpl<?> bean, int slot, Object value);
+
+    /**
+     * Intercepts a setter call. An exception vetoes the call.
+     * @param bean The implementation of the bean
+     * @param slot The slot of the property
+     * @param value The set value, or the value returned by the previous interceptor
+     * @return The value to set
+     */
+    Object onSet(ProxyBeanImpl<?> bean, int slot, Object value);
+}
@@ -0,0 +1,41 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * A listener of the property changes of proxy beans.
+ *
+ * The listeners are notified on the writing thread, after the new value is set,
+ * by the setters and by {@link ProxyBeanImpl#setSlot(int, Object)}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ * @see ProxyBeanImpl#addListener(BeanListener)
+ */
+public interface BeanListener
+{
+    /**
+     * A property of a bean has been set.
+     * @param bean The implementation of the changed bean
+     * @param slot The slot of the property, on the bean {@link ProxyBeanImpl#getDescriptor() descriptor}
+     * @param oldValue The previous value
+     * @param newValue The new value, that can be equal to the previous one
+     */
+    void propertyChanged(ProxyBeanImpl<?> bean, int slot, Object oldValue, Object newValue);
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * A resolved property of a type: a reusable handle of its slot, for the access by name without
+ * resolving the name on each access.
+ * <pre>
+ * BeanProperty&lt;IModel&gt; name = BeanDescriptor.forType(IModel.class).property("name");
+ * name.set(model, "Octavi");
+ * </pre>
+ * The access is as the accessors of the property: with the {@link BeanInterceptor interceptors},
+ * the constraints and the deduplication of the setter. The handles are thread safe.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class BeanProperty<T>
+{
+    /** The descriptor */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The slot */
+    private final int slot;
+
+    /**
+     * Constructor.
+     * @param descriptor The descriptor
+     * @param slot The slot
+     */
+    BeanProperty(BeanDescriptor<T> descriptor, int slot)
+    {
+        this.descriptor = descriptor;
+        this.slot = slot;
+    }
+
+    /**
+     * The descriptor of the type.
+     * @return The descriptor
+     */
+    public BeanDescriptor<T> getDescriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * The slot of the property.
+     * @return The slot
+     */
+    public int getSlot()
+    {
+        return slot;
+    }
+
+    /**
+     * The property name.
+     * @return The name
+     */
+    public String getName()
+    {
+        return descriptor.getName(slot);
+    }
+
+    /**
+     * The property type.
+     * @return The type
+     */
+    public Class<?> getType()
+    {
+        return descriptor.getType(slot);
+    }
+
+    /**
+     * Gets the value of the property of a bean.
+     * @param bean The bean, a proxy bean of the type
+     * @return The value
+     * @throws IllegalArgumentException If the bean is not a proxy bean of the type
+     */
+    public Object get(T bean)
+    {
+        return proxyOf(bean).doGetter(slot);
+    }
+
+    /**
+     * Sets the value of the property of a bean.
+     * @param bean The bean, a proxy bean of the type
+     * @param value The value; null for primitive properties means the default value
+     * @throws IllegalArgumentException If the bean is not a proxy bean of the type or the value is not of the property type
+     * @throws IllegalStateException If the bean is {@link ProxyBeanImpl#freeze() frozen}
+     * @throws ConstraintViolationException If the value violates a constraint of the property
+     */
+    public void set(T bean, Object value)
+    {
+        if(descriptor.accepts(slot, value) == false)
+        {
+            throw new IllegalArgumentException("Not valid value for '" + getName() + "': " + value.getClass().getName());
+        }
+        proxyOf(bean).doSetter(slot, value);
+    }
+
+    /**
+     * The implementation of a bean.
+     * @param bean The bean
+     * @return The implementation
+     * @throws IllegalArgumentException If the bean is not a proxy bean of the type
+     */
+    private ProxyBeanImpl<T> proxyOf(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) == null || proxy.getDescriptor() != descriptor)
+        {
+            throw new IllegalArgumentException("Not a proxy bean of " + descriptor.getImplementedType().getName());
+        }
+        return proxy;
+    }
+
+    @Override
+    public String toString()
+    {
+        return descriptor.getImplementedType().getSimpleName() + "." + getName();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A value that violates the constraints of a property, as {@link cat.fornes.imodel.annotations.NotNull}
+ * or {@link cat.fornes.imodel.annotations.Range}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class ConstraintViolationException extends IllegalArgumentException
+{
+    private static final long serialVersionUID = 0L;
+
+    /** The names of the violated properties */
+    private final List<String> properties;
+
+    /**
+     * Constructor.
+     * @param message The violations description
+     * @param properties The names of the violated properties
+     */
+    public ConstraintViolationException(String message, List<String> properties)
+    {
+        super(message);
+        this.properties = Collections.unmodifiableList(properties);
+    }
+
+    /**
+     * The names of the violated properties.
+     * @return The property names
+     */
+    public List<String> getProperties()
+    {
+        return properties;
+    }
+}
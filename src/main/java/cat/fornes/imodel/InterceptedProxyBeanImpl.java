@@ -0,0 +1,97 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * The implementation of the beans of a type with {@link BeanInterceptor interceptors}.
+ *
+ * The descriptor creates it instead of a plain {@link ProxyBeanImpl} when the type has
+ * interceptors, so the beans without interceptors keep the plain getter and setter path.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class InterceptedProxyBeanImpl<T> extends ProxyBeanImpl<T>
+{
+    private static final long serialVersionUID = 0L;
+
+    /** The interceptors, by slot; null for the slots without interceptors */
+    private transient BeanInterceptor[][] chains;
+
+    /**
+     * Constructor.
+     * @param descriptor The descriptor of the interface type to implement
+     * @param values The values, by slot; not copied
+     * @param frozen If the bean is frozen
+     * @param chains The interceptors, by slot
+     */
+    InterceptedProxyBeanImpl(BeanDescriptor<T> descriptor, Object[] values, boolean frozen, BeanInterceptor[][] chains)
+    {
+        super(descriptor, values, frozen);
+        this.chains = chains;
+    }
+
+    /**
+     * On deserialize, takes the current interceptors of the type.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        chains = getDescriptor().getInterceptorChains();
+    }
+
+    @Override
+    protected Object doGetter(int slot)
+    {
+        BeanInterceptor[] chain;
+        Object value;
+
+        value = super.doGetter(slot);
+        if(chains != null && (chain = chains[slot]) != null)
+        {
+            for(BeanInterceptor interceptor : chain)
+            {
+                value = interceptor.onGet(this, slot, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    protected void doSetter(int slot, Object... arguments)
+    {
+        BeanInterceptor[] chain;
+        Object value;
+
+        if(chains == null || (chain = chains[slot]) == null)
+        {
+            super.doSetter(slot, arguments);
+            return;
+        }
+        value = arguments[0];
+        for(BeanInterceptor interceptor : chain)
+        {
+            value = interceptor.onSet(this, slot, value);
+        }
+        super.doSetter(slot, value);
+    }
+}
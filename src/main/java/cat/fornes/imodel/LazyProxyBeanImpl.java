@@ -0,0 +1,201 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Arrays;
+
+/**
+ * The implementation of the lazy beans: the values are decoded from a {@link SlotDecoder} on its first
+ * access and kept, so the properties not read are never decoded.
+ *
+ * The decoded values are published under the bean lock, not to lose a concurrent write; the reads of
+ * the values already decoded do not lock. A bean that was not written keeps its decoder as
+ * {@link #getUnmodifiedDecoder() unmodified}, so its encoding can be reused as it is.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class LazyProxyBeanImpl<T> extends ProxyBeanImpl<T>
+{
+    private static final long serialVersionUID = 0L;
+
+    /** The marker of the values not decoded yet */
+    private static final Object UNDECODED = new Object();
+
+    /** The decoder; null for a deserialized bean */
+    private transient volatile SlotDecoder decoder;
+
+    /** The values, by slot, with the marker for the values not decoded yet */
+    private transient volatile Object[] cache;
+
+    /** If the bean was written */
+    private transient volatile boolean modified;
+
+    /**
+     * Constructor.
+     * @param descriptor The descriptor of the interface type to implement
+     * @param decoder The decoder of the values
+     */
+    LazyProxyBeanImpl(BeanDescriptor<T> descriptor, SlotDecoder decoder)
+    {
+        super(descriptor, null, false);
+        this.decoder = decoder;
+        cache = new Object[descriptor.size()];
+        Arrays.fill(cache, UNDECODED);
+    }
+
+    @Override
+    public Object getSlot(int slot)
+    {
+        Object value;
+
+        if((value = cache[slot]) != UNDECODED)
+        {
+            return value;
+        }
+        return decode(slot);
+    }
+
+    @Override
+    protected Object doGetter(int slot)
+    {
+        return getSlot(slot);
+    }
+
+    /**
+     * Decodes a value and keeps it, unless it was written meanwhile.
+     * @param slot The slot
+     * @return The value
+     */
+    private Object decode(int slot)
+    {
+        Object[] current;
+        Object value;
+
+        value = decoder.decode(slot);
+        synchronized(this)
+        {
+            current = cache;
+            if(current[slot] == UNDECODED)
+            {
+                current[slot] = value;
+                // Publishes the decoded value
+                cache = current;
+            }
+            else
+            {
+                value = current[slot];
+            }
+        }
+        return value;
+    }
+
+    @Override
+    void write(int slot, Object value)
+    {
+        Object previous, written;
+        boolean notify;
+
+        written = value == null ? getDescriptor().getDefaultValue(slot) : value;
+        notify = hasListeners();
+        previous = notify ? getSlot(slot) : null;
+        synchronized(this)
+        {
+            cache[slot] = written;
+            modified = true;
+        }
+        if(notify)
+        {
+            notifyListeners(slot, previous, written);
+        }
+    }
+
+    @Override
+    Object[] readValues()
+    {
+        Object[] values;
+
+        if(isVersioned())
+        {
+            synchronized(this)
+            {
+                values = new Object[cache.length];
+                for(int n = 0; n < values.length; n++)
+                {
+                    values[n] = getSlot(n);
+                }
+            }
+            return values;
+        }
+        values = new Object[cache.length];
+        for(int n = 0; n < values.length; n++)
+        {
+            values[n] = getSlot(n);
+        }
+        return values;
+    }
+
+    @Override
+    void writeValues(Object[] replaced)
+    {
+        synchronized(this)
+        {
+            cache = replaced;
+            modified = true;
+        }
+    }
+
+    @Override
+    void republish()
+    {
+        cache = cache;
+    }
+
+    @Override
+    public SlotDecoder getUnmodifiedDecoder()
+    {
+        return modified ? null : decoder;
+    }
+
+    /**
+     * The number of decoded values.
+     * @return The number of values
+     */
+    int decodedSlots()
+    {
+        int count;
+
+        count = 0;
+        for(Object value : cache)
+        {
+            if(value != UNDECODED)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long estimateFootprint()
+    {
+        // Proxy, handler and values array, without the decoder
+        return 16L + 48L + align(16L + 4L * cache.length);
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * The layout of the {@link cat.fornes.imodel.annotations.PackedStorage packed storage} of a type.
+ *
+ * Each primitive or enum property has a bit field in an array of 64 bits words: one bit for the
+ * booleans, the natural width for the other primitives and 8 or 16 bits for the enum ordinals,
+ * plus one so the 0 is null. The fields are placed by decreasing width, so every field is aligned
+ * to its width and is never split between two words. The other properties have a position in an
+ * array of references.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class PackedLayout
+{
+    /** Kind of the properties held as references */
+    static final int REFERENCE = 0;
+
+    static final int BOOLEAN = 1;
+
+    static final int BYTE = 2;
+
+    static final int SHORT = 3;
+
+    static final int CHAR = 4;
+
+    static final int INT = 5;
+
+    static final int FLOAT = 6;
+
+    static final int LONG = 7;
+
+    static final int DOUBLE = 8;
+
+    static final int ENUM = 9;
+
+    /** The field widths, in decreasing order */
+    private static final int[] WIDTHS = { 64, 32, 16, 8, 1 };
+
+    /** The kinds, by slot */
+    private final int[] kinds;
+
+    /** The first bit of the field or the reference position, by slot */
+    private final int[] positions;
+
+    /** The field masks, by slot */
+    private final long[] masks;
+
+    /** The enum constants, by slot */
+    private final Object[][] constants;
+
+    /** The number of words */
+    private final int words;
+
+    /** The number of references */
+    private final int references;
+
+    /**
+     * Constructor.
+     * @param types The property types, by slot
+     */
+    PackedLayout(Class<?>[] types)
+    {
+        int[] widths;
+        int bit, count;
+
+        kinds = new int[types.length];
+        positions = new int[types.length];
+        masks = new long[types.length];
+        constants = new Object[types.length][];
+        widths = new int[types.length];
+        count = 0;
+        for(int n = 0; n < types.length; n++)
+        {
+            kinds[n] = kindOf(types[n]);
+            if(kinds[n] == ENUM)
+            {
+                constants[n] = types[n].getEnumConstants();
+                widths[n] = constants[n].length < 0xFF ? 8 : 16;
+                if(constants[n].length >= 0xFFFF)
+                {
+                    kinds[n] = REFERENCE;
+                }
+            }
+            else
+            {
+                widths[n] = widthOf(kinds[n]);
+            }
+            if(kinds[n] == REFERENCE)
+            {
+                positions[n] = count++;
+            }
+        }
+        references = count;
+        bit = 0;
+        for(int width : WIDTHS)
+        {
+            for(int n = 0; n < types.length; n++)
+            {
+                if(kinds[n] != REFERENCE && widths[n] == width)
+                {
+                    positions[n] = bit;
+                    masks[n] = width == 64 ? -1L : (1L << width) - 1L;
+                    bit += width;
+                }
+            }
+        }
+        words = (bit + 63) >>> 6;
+    }
+
+    /**
+     * The kind of a property type.
+     * @param type The type
+     * @return The kind
+     */
+    private static int kindOf(Class<?> type)
+    {
+        if(type == boolean.class)
+        {
+            return BOOLEAN;
+        }
+        if(type == byte.class)
+        {
+            return BYTE;
+        }
+        if(type == short.class)
+        {
+            return SHORT;
+        }
+        if(type == char.class)
+        {
+            return CHAR;
+        }
+        if(type == int.class)
+        {
+            return INT;
+        }
+        if(type == float.class)
+        {
+            return FLOAT;
+        }
+        if(type == long.class)
+        {
+            return LONG;
+        }
+        if(type == double.class)
+        {
+            return DOUBLE;
+        }
+        return type.isEnum() ? ENUM : REFERENCE;
+    }
+
+    /**
+     * The width of the primitive kinds.
+     * @param kind The kind
+     * @return The width in bits
+     */
+    private static int widthOf(int kind)
+    {
+        switch(kind)
+        {
+            case BOOLEAN:
+                return 1;
+            case BYTE:
+                return 8;
+            case SHORT:
+            case CHAR:
+                return 16;
+            case INT:
+            case FLOAT:
+                return 32;
+            case LONG:
+            case DOUBLE:
+                return 64;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * The number of words of the storage.
+     * @return The number of words
+     */
+    int words()
+    {
+        return words;
+    }
+
+    /**
+     * The number of references of the storage.
+     * @return The number of references
+     */
+    int references()
+    {
+        return references;
+    }
+
+    /**
+     * Reads a value.
+     * @param words The words
+     * @param refs The references
+     * @param slot The slot
+     * @return The value, boxed
+     */
+    Object read(long[] words, Object[] refs, int slot)
+    {
+        long bits;
+        int position;
+
+        position = positions[slot];
+        if(kinds[slot] == REFERENCE)
+        {
+            return refs[position];
+        }
+        bits = (words[position >>> 6] >>> position) & masks[slot];
+        switch(kinds[slot])
+        {
+            case BOOLEAN:
+                return Boolean.valueOf(bits != 0L);
+            case BYTE:
+                return Byte.valueOf((byte) bits);
+            case SHORT:
+                return Short.valueOf((short) bits);
+            case CHAR:
+                return Character.valueOf((char) bits);
+            case INT:
+                return Integer.valueOf((int) bits);
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat((int) bits));
+            case LONG:
+                return Long.valueOf(bits);
+            case DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(bits));
+            default:
+                return bits == 0L ? null : constants[slot][(int) bits - 1];
+        }
+    }
+
+    /**
+     * Writes a value. The words of the primitive fields are read, modified and written,
+     * so the concurrent writes must be serialized.
+     * @param words The words
+     * @param refs The references
+     * @param slot The slot
+     * @param value The value, not null for the primitive properties
+     */
+    void write(long[] words, Object[] refs, int slot, Object value)
+    {
+        long bits, mask;
+        int position, index;
+
+        position = positions[slot];
+        switch(kinds[slot])
+        {
+            case REFERENCE:
+                refs[position] = value;
+                return;
+            case BOOLEAN:
+                bits = ((Boolean) value).booleanValue() ? 1L : 0L;
+                break;
+            case CHAR:
+                bits = ((Character) value).charValue();
+                break;
+            case FLOAT:
+                bits = Float.floatToRawIntBits(((Float) value).floatValue());
+                break;
+            case DOUBLE:
+                bits = Double.doubleToRawLongBits(((Double) value).doubleValue());
+                break;
+            case ENUM:
+                bits = value == null ? 0L : ((Enum<?>) value).ordinal() + 1L;
+                break;
+            default:
+                bits = ((Number) value).longValue();
+                break;
+        }
+        mask = masks[slot] << position;
+        index = position >>> 6;
+        words[index] = (words[index] & ~mask) | ((bits << position) & mask);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * The implementation of the beans with the {@link cat.fornes.imodel.annotations.PackedStorage packed storage}.
+ *
+ * The primitive and enum values are held as bit fields of an array of words, by the
+ * {@link PackedLayout layout} of the descriptor, and the other values in an array of references.
+ * The getters box the read fields: the small values come from the caches of the wrappers.
+ *
+ * A field shares its word with others, so the writes are serialized on the bean; the readers of
+ * a single property read a whole word without locking. The readers of the whole bean of a
+ * {@link #setVersioned(boolean) versioned} bean also lock the bean, to see the words and the
+ * references of the same version.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class PackedProxyBeanImpl<T> extends ProxyBeanImpl<T>
+{
+    private static final long serialVersionUID = 0L;
+
+    /** The bit fields of the primitive and enum values */
+    private transient volatile long[] words;
+
+    /** The other values */
+    private transient volatile Object[] references;
+
+    /**
+     * Constructor of a bean with the default values.
+     * @param descriptor The descriptor of the interface type to implement
+     */
+    PackedProxyBeanImpl(BeanDescriptor<T> descriptor)
+    {
+        super(descriptor, null, false);
+        references = new Object[descriptor.getPackedLayout().references()];
+        words = new long[descriptor.getPackedLayout().words()];
+    }
+
+    /**
+     * Constructor with the values.
+     * @param descriptor The descriptor of the interface type to implement
+     * @param values The values, by slot, with the default values for primitives instead of null
+     * @param frozen If the bean is frozen
+     */
+    PackedProxyBeanImpl(BeanDescriptor<T> descriptor, Object[] values, boolean frozen)
+    {
+        super(descriptor, null, frozen);
+        writeValues(values);
+    }
+
+    @Override
+    public Object getSlot(int slot)
+    {
+        return getDescriptor().getPackedLayout().read(words, references, slot);
+    }
+
+    @Override
+    protected Object doGetter(int slot)
+    {
+        return getDescriptor().getPackedLayout().read(words, references, slot);
+    }
+
+    @Override
+    void write(int slot, Object value)
+    {
+        PackedLayout layout;
+        Object previous, written;
+
+        written = value == null ? getDescriptor().getDefaultValue(slot) : value;
+        layout = getDescriptor().getPackedLayout();
+        if(hasListeners() == false)
+        {
+            synchronized(this)
+            {
+                layout.write(words, references, slot, written);
+            }
+            return;
+        }
+        synchronized(this)
+        {
+            previous = layout.read(words, references, slot);
+            layout.write(words, references, slot, written);
+        }
+        notifyListeners(slot, previous, written);
+    }
+
+    @Override
+    Object[] readValues()
+    {
+        if(isVersioned())
+        {
+            synchronized(this)
+            {
+                return expand();
+            }
+        }
+        return expand();
+    }
+
+    /**
+     * Expands the storage to the values array.
+     * @return The values, by slot
+     */
+    private Object[] expand()
+    {
+        PackedLayout layout;
+        Object[] values, refs;
+        long[] current;
+
+        layout = getDescriptor().getPackedLayout();
+        refs = references;
+        current = words;
+        values = new Object[getDescriptor().size()];
+        for(int n = 0; n < values.length; n++)
+        {
+            values[n] = layout.read(current, refs, n);
+        }
+        return values;
+    }
+
+    @Override
+    void writeValues(Object[] replaced)
+    {
+        PackedLayout layout;
+        Object[] refs;
+        long[] packed;
+
+        layout = getDescriptor().getPackedLayout();
+        refs = new Object[layout.references()];
+        packed = new long[layout.words()];
+        for(int n = 0; n < replaced.length; n++)
+        {
+            layout.write(packed, refs, n, replaced[n] == null ? getDescriptor().getDefaultValue(n) : replaced[n]);
+        }
+        synchronized(this)
+        {
+            references = refs;
+            words = packed;
+        }
+    }
+
+    @Override
+    void republish()
+    {
+        words = words;
+    }
+
+    @Override
+    public long estimateFootprint()
+    {
+        // Proxy, handler, words and references
+        return 16L + 48L + align(16L + 8L * words.length) + align(16L + 4L * references.length);
+    }
+}
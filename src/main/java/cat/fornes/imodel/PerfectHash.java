@@ -0,0 +1,198 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import cat.fornes.imodel.utils.HashStrategy;
+
+/**
+ * A minimal perfect hash of a fixed set of names to its positions, by hash and displace.
+ *
+ * The names are split in buckets by its {@link String#hashCode() hash code}; each bucket gets
+ * a displacement that sends all its names to free positions of a table of exactly as many
+ * positions as names, by a second hash seeded with the displacement: of the (cached) hash code,
+ * or of the chars when two names have the same hash code. The buckets are placed
+ * from the largest. A look up computes both hashes and compares the name at the position, so an
+ * unknown name is rejected by a single comparison, without allocating.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class PerfectHash
+{
+    /** The golden ratio gamma, for the displacement seeds */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** The maximum displacement tried for a bucket */
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+
+    /** The names, by position of the table */
+    private final String[] table;
+
+    /** The indexes of the names, by position of the table */
+    private final int[] indexes;
+
+    /** The displacements, by bucket */
+    private final int[] displacements;
+
+    /** If the second hash is of the chars */
+    private final boolean byChars;
+
+    /**
+     * Constructor.
+     * @param names The distinct names, by index
+     * @throws IllegalArgumentException If a perfect hash is not found, as for repeated names
+     */
+    PerfectHash(String[] names)
+    {
+        List<List<Integer>> buckets;
+        List<Integer> bucket;
+        Set<Integer> hashes;
+        boolean[] taken;
+        int[] positions;
+        boolean placed;
+        int d;
+
+        hashes = new HashSet<Integer>();
+        for(String name : names)
+        {
+            hashes.add(name.hashCode());
+        }
+        byChars = hashes.size() < names.length;
+        table = new String[names.length];
+        indexes = new int[names.length];
+        displacements = new int[Math.max(1, (names.length + 1) / 2)];
+        buckets = new ArrayList<List<Integer>>();
+        for(int b = 0; b < displacements.length; b++)
+        {
+            buckets.add(new ArrayList<Integer>());
+        }
+        for(int n = 0; n < names.length; n++)
+        {
+            buckets.get(bucketOf(names[n])).add(n);
+        }
+        for(int b = 0; b < displacements.length; b++)
+        {
+            // The bucket number, to find its displacement after the sort
+            buckets.get(b).add(0, b);
+        }
+        buckets.sort(new Comparator<List<Integer>>()
+        {
+            @Override
+            public int compare(List<Integer> o1, List<Integer> o2)
+            {
+                return o2.size() - o1.size();
+            }
+        });
+        taken = new boolean[names.length];
+        for(int b = 0; b < buckets.size() && buckets.get(b).size() > 1; b++)
+        {
+            bucket = buckets.get(b);
+            positions = new int[bucket.size() - 1];
+            placed = false;
+            for(d = 1; placed == false && d < MAX_DISPLACEMENT; d++)
+            {
+                placed = true;
+                for(int k = 0; k < positions.length && placed; k++)
+                {
+                    positions[k] = positionOf(names[bucket.get(k + 1)], d);
+                    placed = taken[positions[k]] == false;
+                    for(int j = 0; j < k && placed; j++)
+                    {
+                        placed = positions[j] != positions[k];
+                    }
+                }
+            }
+            if(placed == false)
+            {
+                throw new IllegalArgumentException("No perfect hash for the names " + Arrays.toString(names));
+            }
+            displacements[bucket.get(0)] = d - 1;
+            for(int k = 0; k < positions.length; k++)
+            {
+                taken[positions[k]] = true;
+                table[positions[k]] = names[bucket.get(k + 1)];
+                indexes[positions[k]] = bucket.get(k + 1);
+            }
+        }
+    }
+
+    /**
+     * The bucket of a name.
+     * @param name The name
+     * @return The bucket
+     */
+    private int bucketOf(String name)
+    {
+        int h;
+
+        h = name.hashCode() * 0x9E3779B9;
+        return (int) (((h & 0xFFFFFFFFL) * displacements.length) >>> 32);
+    }
+
+    /**
+     * The position of a name for a displacement.
+     * @param name The name
+     * @param displacement The displacement
+     * @return The position
+     */
+    private int positionOf(String name, int displacement)
+    {
+        long h;
+
+        h = displacement * GAMMA;
+        if(byChars)
+        {
+            for(int n = 0; n < name.length(); n++)
+            {
+                h = (h ^ name.charAt(n)) * 0x100000001B3L;
+            }
+            h = HashStrategy.Mixed64.mix(h);
+        }
+        else
+        {
+            // A single multiply spreads the hash code to the high bits
+            h = (h ^ name.hashCode()) * 0xC2B2AE3D27D4EB4FL;
+        }
+        return (int) (((h >>> 32) * table.length) >>> 32);
+    }
+
+    /**
+     * The index of a name.
+     * @param name The name
+     * @return The index, or -1 if the name is not in the set
+     */
+    int indexOf(String name)
+    {
+        int position;
+
+        if(table.length == 0 || name == null)
+        {
+            return -1;
+        }
+        position = positionOf(name, displacements[bucketOf(name)]);
+        return name.equals(table[position]) ? indexes[position] : -1;
+    }
+}
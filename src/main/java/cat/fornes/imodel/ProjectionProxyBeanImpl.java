@@ -0,0 +1,260 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.function.Consumer;
+
+/**
+ * The implementation of a projection: a view of a bean as another interface, that shares the
+ * values of the source bean by a remapping of the slots, without copying them.
+ *
+ * The reads and writes of the view are the ones of the source, with its storage, interceptors,
+ * constraints and frozen state; so the view always reflects the source. The listeners of the view
+ * are notified of the writes through the view; the ones of the source, of all the writes.
+ * The derived methods of the view are not memoized, as the source writes do not invalidate them.
+ * A view is serialized as a copy.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class ProjectionProxyBeanImpl<T> extends ProxyBeanImpl<T>
+{
+    private static final long serialVersionUID = 0L;
+
+    /** The source bean */
+    private final transient ProxyBeanImpl<?> source;
+
+    /** The slots of the source, by slot of the view */
+    private final transient int[] slots;
+
+    /**
+     * Constructor.
+     * @param descriptor The descriptor of the view interface
+     * @param source The source bean, not a projection
+     * @param slots The slots of the source, by slot of the view
+     */
+    ProjectionProxyBeanImpl(BeanDescriptor<T> descriptor, ProxyBeanImpl<?> source, int[] slots)
+    {
+        // The frozen state is the one of the source
+        super(descriptor, null, false);
+        this.source = source;
+        this.slots = slots;
+    }
+
+    /**
+     * The source bean.
+     * @return The source
+     */
+    ProxyBeanImpl<?> getSource()
+    {
+        return source;
+    }
+
+    /**
+     * The slot of the source of a slot of the view.
+     * @param slot The slot of the view
+     * @return The slot of the source
+     */
+    int getSourceSlot(int slot)
+    {
+        return slots[slot];
+    }
+
+    @Override
+    public Object getSlot(int slot)
+    {
+        return source.getSlot(slots[slot]);
+    }
+
+    @Override
+    protected Object doGetter(int slot)
+    {
+        return source.doGetter(slots[slot]);
+    }
+
+    @Override
+    protected void doSetter(int slot, Object... arguments)
+    {
+        Object previous;
+
+        if(hasListeners() == false)
+        {
+            source.doSetter(slots[slot], arguments);
+            return;
+        }
+        previous = source.getSlot(slots[slot]);
+        source.doSetter(slots[slot], arguments);
+        notifyListeners(slot, previous, source.getSlot(slots[slot]));
+    }
+
+    @Override
+    void write(int slot, Object value)
+    {
+        Object previous;
+
+        previous = hasListeners() ? source.getSlot(slots[slot]) : null;
+        source.setSlot(slots[slot], value);
+        if(hasListeners())
+        {
+            notifyListeners(slot, previous, source.getSlot(slots[slot]));
+        }
+    }
+
+    @Override
+    Object[] readValues()
+    {
+        Object[] current, values;
+
+        current = source.readValues();
+        values = new Object[slots.length];
+        for(int n = 0; n < values.length; n++)
+        {
+            values[n] = current[slots[n]];
+        }
+        return values;
+    }
+
+    /**
+     * Writes the values in the source at once, with the other values of the source.
+     */
+    @Override
+    void writeValues(Object[] replaced)
+    {
+        Object[] values;
+
+        source.checkNotFrozen();
+        synchronized(source)
+        {
+            values = source.readValues().clone();
+            for(int n = 0; n < replaced.length; n++)
+            {
+                values[slots[n]] = replaced[n];
+            }
+            source.writeValues(values);
+        }
+        for(int n = 0; n < replaced.length; n++)
+        {
+            source.invalidateDerived(slots[n]);
+        }
+    }
+
+    /**
+     * Updates the source, holding its lock from the read of the values to the publication of the
+     * changed ones: only the slots changed by the update are written, so the concurrent writes of
+     * the other slots of the source are not lost, and the update is serialized with the updates
+     * and the versioned writes of the source.
+     */
+    @Override
+    public void update(Consumer<? super T> update)
+    {
+        ProxyBeanImpl<T> draft;
+        Object[] previous, version, values;
+
+        checkNotFrozen();
+        synchronized(source)
+        {
+            previous = readValues();
+            draft = getDescriptor().newHandler(previous.clone(), false);
+            update.accept(getDescriptor().newProxy(draft));
+            version = draft.readValues();
+            values = source.readValues().clone();
+            for(int n = 0; n < version.length; n++)
+            {
+                if(version[n] != previous[n])
+                {
+                    values[slots[n]] = version[n];
+                }
+            }
+            source.writeValues(values);
+        }
+        for(int n = 0; n < version.length; n++)
+        {
+            if(version[n] != previous[n])
+            {
+                source.invalidateDerived(slots[n]);
+                source.notifyListeners(slots[n], previous[n], version[n]);
+                notifyListeners(n, previous[n], version[n]);
+            }
+        }
+    }
+
+    @Override
+    void republish()
+    {
+        source.republish();
+    }
+
+    @Override
+    Object invokeDefault(Object proxy, int index, Object[] args) throws Throwable
+    {
+        return getDescriptor().getDefaultHandle(index).invokeExact(proxy, args);
+    }
+
+    /**
+     * Freezes the source, as the view shares its values.
+     */
+    @Override
+    public void freeze()
+    {
+        source.freeze();
+    }
+
+    @Override
+    public boolean isFrozen()
+    {
+        return source.isFrozen();
+    }
+
+    @Override
+    void checkNotFrozen()
+    {
+        source.checkNotFrozen();
+    }
+
+    /**
+     * Sets the versioned mode of the source, as the view shares its values.
+     */
+    @Override
+    public void setVersioned(boolean versioned)
+    {
+        source.setVersioned(versioned);
+    }
+
+    @Override
+    public boolean isVersioned()
+    {
+        return source.isVersioned();
+    }
+
+    @Override
+    public long estimateFootprint()
+    {
+        // Proxy and handler, the slots are shared
+        return 16L + 48L;
+    }
+
+    /**
+     * Serializes a copy, as the source is not serialized with the view.
+     * @return The copy
+     */
+    private Object writeReplace()
+    {
+        return new ProxyBeanImpl<T>(getDescriptor(), readValues(), isFrozen());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import cat.fornes.imodel.annotations.MaxLength;
+import cat.fornes.imodel.annotations.NotNull;
+import cat.fornes.imodel.annotations.Pattern;
+import cat.fornes.imodel.annotations.Range;
+
+/**
+ * The compiled constraints of a property, from the annotations of its accessors.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class PropertyConstraint
+{
+    /** If null is not valid */
+    private final boolean notNull;
+
+    /** The minimum, for numbers */
+    private final double min;
+
+    /** The maximum, for numbers */
+    private final double max;
+
+    /** The exact minimum, for big numbers and longs; null if not bounded */
+    private final BigDecimal exactMin;
+
+    /** The exact maximum, for big numbers and longs; null if not bounded */
+    private final BigDecimal exactMax;
+
+    /** If the range is checked */
+    private final boolean ranged;
+
+    /** The maximum length, for texts; -1 if not checked */
+    private final int maxLength;
+
+    /** The pattern, for texts; null if not checked */
+    private final java.util.regex.Pattern pattern;
+
+    /**
+     * Compiles the constraints of a property.
+     * @param type The property type
+     * @param getter The getter, can be null
+     * @param setter The setter, can be null
+     * @return The constraints, null if the property has not any
+     * @throws IllegalArgumentException If a constraint does not apply to the property type
+     */
+    static PropertyConstraint compile(Class<?> type, Method getter, Method setter)
+    {
+        NotNull notNull;
+        Range range;
+        MaxLength maxLength;
+        Pattern pattern;
+
+        notNull = annotation(getter, setter, NotNull.class);
+        range = annotation(getter, setter, Range.class);
+        maxLength = annotation(getter, setter, MaxLength.class);
+        pattern = annotation(getter, setter, Pattern.class);
+        if(notNull == null && range == null && maxLength == null && pattern == null)
+        {
+            return null;
+        }
+        if(range != null && Number.class.isAssignableFrom(type) == false
+            && (type.isPrimitive() == false || type == boolean.class || type == char.class))
+        {
+            throw new IllegalArgumentException("@Range on not numeric property of type " + type.getName());
+        }
+        if((maxLength != null || pattern != null) && CharSequence.class.isAssignableFrom(type) == false)
+        {
+            throw new IllegalArgumentException("Text constraint on property of type " + type.getName());
+        }
+        return new PropertyConstraint(notNull != null, range, maxLength == null ? -1 : maxLength.value(),
+            pattern == null ? null : java.util.regex.Pattern.compile(pattern.value()));
+    }
+
+    /**
+     * An annotation of the getter or the setter.
+     */
+    private static <A extends java.lang.annotation.Annotation> A annotation(Method getter, Method setter, Class<A> type)
+    {
+        A annotation;
+
+        annotation = getter == null ? null : getter.getAnnotation(type);
+        return annotation != null || setter == null ? annotation : setter.getAnnotation(type);
+    }
+
+    /**
+     * Constructor.
+     */
+    private PropertyConstraint(boolean notNull, Range range, int maxLength, java.util.regex.Pattern pattern)
+    {
+        this.notNull = notNull;
+        this.ranged = range != null;
+        this.min = range == null ? 0D : range.min();
+        this.max = range == null ? 0D : range.max();
+        this.exactMin = Double.isInfinite(min) || Double.isNaN(min) ? null : new BigDecimal(min);
+        this.exactMax = Double.isInfinite(max) || Double.isNaN(max) ? null : new BigDecimal(max);
+        this.maxLength = maxLength;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Checks a value.
+     * @param value The value
+     * @return The violation description, as "must not be null", or null if the value is valid
+     */
+    String check(Object value)
+    {
+        double number;
+        long integral;
+        boolean outside;
+
+        if(value == null)
+        {
+            return notNull ? "must not be null" : null;
+        }
+        if(ranged)
+        {
+            if(value instanceof BigDecimal)
+            {
+                outside = outside((BigDecimal) value);
+            }
+            else if(value instanceof BigInteger)
+            {
+                outside = outside(new BigDecimal((BigInteger) value));
+            }
+            else if(value instanceof Long && ((integral = ((Long) value).longValue()) > 1L << 53 || integral < -(1L << 53)))
+            {
+                // Not exact as double
+                outside = outside(BigDecimal.valueOf(integral));
+            }
+            else
+            {
+                number = ((Number) value).doubleValue();
+                outside = Double.isNaN(number) || number < min || number > max;
+            }
+            if(outside)
+            {
+                return "must be between " + min + " and " + max;
+            }
+        }
+        if(maxLength >= 0 && ((CharSequence) value).length() > maxLength)
+        {
+            return "must not be longer than " + maxLength;
+        }
+        if(pattern != null && pattern.matcher((CharSequence) value).matches() == false)
+        {
+            return "must match " + pattern.pattern();
+        }
+        return null;
+    }
+
+    /**
+     * Checks if an exact number is out of the range.
+     * @param number The number
+     * @return true if the number is out of the range
+     */
+    private boolean outside(BigDecimal number)
+    {
+        return exactMin != null && number.compareTo(exactMin) < 0 || exactMax != null && number.compareTo(exactMax) > 0;
+    }
+}
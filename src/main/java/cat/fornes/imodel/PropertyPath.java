@@ -0,0 +1,441 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A compiled accessor of a nested property, as <code>owner.address.city</code>.
+ *
+ * <b>Use</b>
+ * <pre>
+ * PropertyPath&lt;IOwner&gt; city;
+ *
+ * city = PropertyPath.compile(IOwner.class, "address.city");
+ * ...
+ * value = city.get(owner);
+ * </pre>
+ *
+ * The path is resolved once against the {@link BeanDescriptor descriptors} of the declared
+ * property types: on proxy beans each segment is accessed by slot, through the getter and
+ * setter paths of the bean, and on other implementations with a method handle, so there is
+ * no string parsing nor {@link Method#invoke(Object, Object...)} on each access. A null value along the path ends the access.
+ *
+ * The compiled paths are cached, by root type and path, and can be used by many threads.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class PropertyPath<R>
+{
+    /** The compiled paths cache, by root type and path */
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<String, PropertyPath<?>>> PATHS = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, PropertyPath<?>>>();
+
+    /** The type of the getters */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /** The type of the setters */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /** The root type */
+    private final Class<R> rootType;
+
+    /** The path */
+    private final String path;
+
+    /** The resolved segments */
+    private final Segment[] segments;
+
+    /**
+     * Gets the compiled accessor of a path.
+     * @param rootType The type of the root beans
+     * @param path The path: property names separated by dots
+     * @return The (cached) accessor
+     * @throws IllegalArgumentException If a property of the path is not found
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> PropertyPath<R> compile(Class<R> rootType, String path)
+    {
+        ConcurrentMap<String, PropertyPath<?>> paths, previousPaths;
+        PropertyPath<R> compiled, previous;
+
+        if((paths = PATHS.get(rootType)) == null)
+        {
+            paths = new ConcurrentHashMap<String, PropertyPath<?>>();
+            if((previousPaths = PATHS.putIfAbsent(rootType, paths)) != null)
+            {
+                paths = previousPaths;
+            }
+        }
+        if((compiled = (PropertyPath<R>) paths.get(path)) == null)
+        {
+            compiled = new PropertyPath<R>(rootType, path);
+            if((previous = (PropertyPath<R>) paths.putIfAbsent(path, compiled)) != null)
+            {
+                compiled = previous;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Constructor, that resolves the path.
+     * @param rootType The type of the root beans
+     * @param path The path
+     * @throws IllegalArgumentException If a property of the path is not found
+     */
+    private PropertyPath(Class<R> rootType, String path)
+    {
+        String[] names;
+        Class<?> owner;
+
+        if(path == null || path.isEmpty())
+        {
+            throw new IllegalArgumentException("Empty property path");
+        }
+        this.rootType = rootType;
+        this.path = path;
+        names = path.split("\\.", -1);
+        segments = new Segment[names.length];
+        owner = rootType;
+        for(int n = 0; n < names.length; n++)
+        {
+            segments[n] = new Segment(owner, names[n]);
+            owner = segments[n].type;
+        }
+    }
+
+    /**
+     * The root type.
+     * @return The type of the root beans
+     */
+    public Class<R> getRootType()
+    {
+        return rootType;
+    }
+
+    /**
+     * The path.
+     * @return The property names separated by dots
+     */
+    public String getPath()
+    {
+        return path;
+    }
+
+    /**
+     * The declared type of the last property of the path.
+     * @return The type
+     */
+    public Class<?> getType()
+    {
+        return segments[segments.length - 1].type;
+    }
+
+    /**
+     * Reads the last property of the path.
+     * @param root The root bean
+     * @return The value, or null if the root or a value along the path is null
+     * @throws IllegalStateException If a property of the path is write only
+     */
+    public Object get(R root)
+    {
+        Object value;
+
+        value = root;
+        for(int n = 0; n < segments.length && value != null; n++)
+        {
+            value = segments[n].get(value);
+        }
+        return value;
+    }
+
+    /**
+     * Writes the last property of the path.
+     * @param root The root bean
+     * @param value The value
+     * @return <b>true</b> if the value is written, <b>false</b> if the root or a value along the path is null
+     * @throws IllegalArgumentException If the value is not of the property type
+     * @throws IllegalStateException If a property of the path is read only, or the bean is frozen
+     */
+    public boolean set(R root, Object value)
+    {
+        Object owner;
+
+        owner = root;
+        for(int n = 0; n < segments.length - 1 && owner != null; n++)
+        {
+            owner = segments[n].get(owner);
+        }
+        if(owner == null)
+        {
+            return false;
+        }
+        segments[segments.length - 1].set(owner, value);
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return rootType.getSimpleName() + "." + path;
+    }
+
+    /**
+     * A segment of the path: a property of the owner type.
+     */
+    private static final class Segment
+    {
+        /** The property name */
+        final String name;
+
+        /** The property type */
+        final Class<?> type;
+
+        /** The descriptor of the owner type, if it is an interface */
+        final BeanDescriptor<?> descriptor;
+
+        /** The slot on the owner descriptor */
+        final int slot;
+
+        /** The getter, as (Object)Object; null if write only */
+        final MethodHandle getter;
+
+        /** The setter, as (Object,Object)void; null if read only */
+        final MethodHandle setter;
+
+        /** The last resolved slot for a proxy bean of a derived type */
+        Resolved derived;
+
+        /**
+         * Constructor, that resolves the property.
+         * @param owner The owner type
+         * @param name The property name
+         * @throws IllegalArgumentException If the property is not found
+         */
+        Segment(Class<?> owner, String name)
+        {
+            Method getterMethod, setterMethod;
+            String suffix;
+
+            this.name = name;
+            if(owner.isInterface())
+            {
+                descriptor = BeanDescriptor.forType(owner);
+                if((slot = descriptor.slotOf(name)) < 0)
+                {
+                    throw new IllegalArgumentException("No property '" + name + "' on " + owner.getName());
+                }
+                type = descriptor.getType(slot);
+                getterMethod = descriptor.getGetter(slot);
+                setterMethod = descriptor.getSetter(slot);
+            }
+            else
+            {
+                descriptor = null;
+                slot = -1;
+                suffix = name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                if((getterMethod = publicMethod(owner, "get" + suffix)) == null)
+                {
+                    getterMethod = publicMethod(owner, "is" + suffix);
+                }
+                if(getterMethod == null)
+                {
+                    throw new IllegalArgumentException("No property '" + name + "' on " + owner.getName());
+                }
+                type = getterMethod.getReturnType();
+                setterMethod = publicMethod(owner, "set" + suffix, type);
+            }
+            getter = getterMethod == null ? null : handle(getterMethod).asType(GETTER_TYPE);
+            setter = setterMethod == null ? null : handle(setterMethod).asType(SETTER_TYPE);
+        }
+
+        /**
+         * Reads the property. On proxy beans, as its getter does: with the interceptors of the
+         * property.
+         * @param owner The owner, not null
+         * @return The value
+         */
+        Object get(Object owner)
+        {
+            ProxyBeanImpl<?> proxy;
+
+            if(descriptor != null && (proxy = ProxyBeanUtils.proxyBeanOf(owner)) != null)
+            {
+                return proxy.doGetter(slotOf(proxy.getDescriptor()));
+            }
+            if(getter == null)
+            {
+                throw new IllegalStateException("The property '" + name + "' is write only");
+            }
+            try
+            {
+                return getter.invokeExact(owner);
+            }
+            catch(RuntimeException e)
+            {
+                throw e;
+            }
+            catch(Throwable e)
+            {
+                throw new RuntimeException("On read of '" + name + "'", e);
+            }
+        }
+
+        /**
+         * Writes the property. On proxy beans, as its setter does: with the constraints, the
+         * deduplication and the interceptors of the property.
+         * @param owner The owner, not null
+         * @param value The value
+         */
+        void set(Object owner, Object value)
+        {
+            ProxyBeanImpl<?> proxy;
+            int target;
+
+            if(descriptor != null && (proxy = ProxyBeanUtils.proxyBeanOf(owner)) != null)
+            {
+                target = slotOf(proxy.getDescriptor());
+                if(proxy.getDescriptor().accepts(target, value) == false)
+                {
+                    throw new IllegalArgumentException("Not valid value for '" + name + "': " + value.getClass().getName());
+                }
+                proxy.doSetter(target, value);
+                return;
+            }
+            if(setter == null)
+            {
+                throw new IllegalStateException("The property '" + name + "' is read only");
+            }
+            if(value == null && type.isPrimitive())
+            {
+                if(descriptor == null)
+                {
+                    throw new IllegalArgumentException("Not valid null value for '" + name + "'");
+                }
+                value = descriptor.getDefaultValue(slot);
+            }
+            try
+            {
+                setter.invokeExact(owner, value);
+            }
+            catch(ClassCastException e)
+            {
+                throw new IllegalArgumentException("Not valid value for '" + name + "': " + value.getClass().getName(), e);
+            }
+            catch(RuntimeException e)
+            {
+                throw e;
+            }
+            catch(Throwable e)
+            {
+                throw new RuntimeException("On write of '" + name + "'", e);
+            }
+        }
+
+        /**
+         * The slot of the property on the descriptor of a proxy bean, that can be of a derived type.
+         * @param actual The descriptor of the proxy bean
+         * @return The slot
+         */
+        private int slotOf(BeanDescriptor<?> actual)
+        {
+            Resolved resolved;
+
+            if(actual == descriptor)
+            {
+                return slot;
+            }
+            if((resolved = derived) == null || resolved.descriptor != actual)
+            {
+                // Immutable, so it can be shared without synchronization
+                derived = resolved = new Resolved(actual, actual.slotOf(name));
+            }
+            return resolved.slot;
+        }
+
+        /**
+         * A public method, if any.
+         * @param owner The owner type
+         * @param name The method name
+         * @param parameterTypes The parameter types
+         * @return The method, or null if not found
+         */
+        private static Method publicMethod(Class<?> owner, String name, Class<?>... parameterTypes)
+        {
+            try
+            {
+                return owner.getMethod(name, parameterTypes);
+            }
+            catch(NoSuchMethodException e)
+            {
+                return null;
+            }
+        }
+
+        /**
+         * The method handle of a method.
+         * @param method The method
+         * @return The method handle
+         * @throws IllegalArgumentException If the method is not accessible
+         */
+        private static MethodHandle handle(Method method)
+        {
+            try
+            {
+                return MethodHandles.publicLookup().unreflect(method);
+            }
+            catch(IllegalAccessException e)
+            {
+                // Not public type, as a package private interface
+            }
+            try
+            {
+                method.setAccessible(true);
+                return MethodHandles.lookup().unreflect(method);
+            }
+            catch(Exception e)
+            {
+                /* Includes: IllegalAccessException, SecurityException */
+                throw new IllegalArgumentException("Not accessible method " + method, e);
+            }
+        }
+    }
+
+    /**
+     * A slot resolved on the descriptor of a derived type.
+     */
+    private static final class Resolved
+    {
+        final BeanDescriptor<?> descriptor;
+
+        final int slot;
+
+        Resolved(BeanDescriptor<?> descriptor, int slot)
+        {
+            this.descriptor = descriptor;
+            this.slot = slot;
+        }
+    }
+}
@@ -18,7 +18,7 @@
  */
 package cat.fornes.imodel;
 
-import java.lang.reflect.Proxy;
+import java.util.function.Consumer;
 
 /**
  * The proxy bean factory creator.
@@ -46,23 +46,189 @@ public abstract class ProxyBeanFactory
      * @throws IllegalArgumentException If the type is not an interface
      * @throws IllegalArgumentException If null is passed
      */
-    @SuppressWarnings("unchecked")
     public static final  <T> T newProxy(Class<T> typeToImplement)
     {
         if(typeToImplement == null)
         {
             throw new IllegalArgumentException("typeToImplement can not to be null");
         }
-        return (T)Proxy.newProxyInstance(typeToImplement.getClassLoader(), new Class[] {typeToImplement}, new ProxyBeanImpl<T>(typeToImplement));
+        return ProxyBeanImpl.newProxy(typeToImplement);
     }
     /**
      * Proxyfies the proxy implementation.
      * @param proxy The proxy
      * @return The proxy
      */
-    @SuppressWarnings("unchecked")
     public static final <T> T newProxy(ProxyBeanImpl<T> proxy)
     {
-        return (T)Proxy.newProxyInstance(proxy.getImplementedType().getClassLoader(), new Class[] {proxy.getImplementedType()},proxy);
+        return proxy.getDescriptor().newProxy(proxy);
+    }
+
+    /**
+     * Creates a builder of proxy beans of the type.
+     * @param typeToImplement The interface type to implement
+     * @return A new builder, with the default values
+     * @throws IllegalArgumentException If the type is not an interface
+     * @throws IllegalArgumentException If null is passed
+     * @since 1.1.0
+     */
+    public static final <T> BeanBuilder<T> builder(Class<T> typeToImplement)
+    {
+        if(typeToImplement == null)
+        {
+            throw new IllegalArgumentException("typeToImplement can not to be null");
+        }
+        return new BeanBuilder<T>(BeanDescriptor.forType(typeToImplement));
+    }
+    /**
+     * Freezes a proxy bean. After freezing, the setters throw an {@link IllegalStateException}.
+     * @param bean The bean
+     * @return The same bean, frozen
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @since 1.1.0
+     */
+    public static final <T> T freeze(T bean)
+    {
+        proxyBeanOf(bean).freeze();
+        return bean;
+    }
+    /**
+     * Gets an immutable copy of a proxy bean: a frozen bean with the same values.
+     * @param bean The bean
+     * @return The bean itself if it is frozen, otherwise a frozen clone
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @since 1.1.0
+     */
+    public static final <T> T immutableCopy(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        T copy;
+
+        proxy = proxyBeanOf(bean);
+        if(proxy.isFrozen())
+        {
+            return bean;
+        }
+        copy = proxy.clone();
+        proxyBeanOf(copy).freeze();
+        return copy;
+    }
+    /**
+     * Gets a mutable copy of a proxy bean: a not frozen bean with the same values,
+     * as to modify a frozen bean shared by a cache.
+     * @param bean The bean, frozen or not
+     * @return The copy
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @see ProxyBeanImpl#mutableCopy()
+     * @since 1.1.0
+     */
+    public static final <T> T mutableCopy(T bean)
+    {
+        return proxyBeanOf(bean).mutableCopy();
+    }
+    /**
+     * Creates a {@link ProxyBeanImpl#setVersioned(boolean) versioned} proxy for the type,
+     * for beans shared by many readers and updated with {@link #update(Object, Consumer)}.
+     * @param typeToImplement The interface type to implement
+     * @return The proxy, as typeToImplement type.
+     * @throws IllegalArgumentException If the type is not an interface
+     * @throws IllegalArgumentException If null is passed
+     * @since 1.1.0
+     */
+    public static final <T> T newVersionedProxy(Class<T> typeToImplement)
+    {
+        T bean;
+
+        bean = newProxy(typeToImplement);
+        proxyBeanOf(bean).setVersioned(true);
+        return bean;
+    }
+    /**
+     * Updates many properties of a proxy bean at once.
+     * @param bean The bean
+     * @param update The update, that receives a draft of the bean
+     * @return The same bean
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @throws IllegalStateException If the bean is frozen
+     * @see ProxyBeanImpl#update(Consumer)
+     * @since 1.1.0
+     */
+    public static final <T> T update(T bean, Consumer<? super T> update)
+    {
+        proxyBeanOf(bean).update(update);
+        return bean;
+    }
+    /**
+     * Gets a frozen snapshot of a proxy bean, without copying the values of versioned beans.
+     * @param bean The bean
+     * @return The snapshot
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @see ProxyBeanImpl#snapshot()
+     * @since 1.1.0
+     */
+    public static final <T> T snapshot(T bean)
+    {
+        return proxyBeanOf(bean).snapshot();
+    }
+    /**
+     * Validates all the values of a proxy bean against the constraints of its properties.
+     * @param bean The bean
+     * @return The same bean
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @throws ConstraintViolationException If some value violates a constraint, with all the violations
+     * @see ProxyBeanImpl#validate()
+     * @since 1.1.0
+     */
+    public static final <T> T validate(T bean)
+    {
+        proxyBeanOf(bean).validate();
+        return bean;
+    }
+    /**
+     * Gets a projection of a proxy bean to another interface: a view that shares the values of the bean,
+     * without copying them, so it always reflects the bean and its writes are the bean ones. The view
+     * interface can be a super-interface, a sub-interface or any interface whose properties are properties
+     * of the bean type.
+     * @param bean The bean
+     * @param view The view interface
+     * @return The view
+     * @throws IllegalArgumentException If the bean is not a proxy bean or the view is not compatible
+     * @see BeanDescriptor#newProjection(ProxyBeanImpl)
+     * @since 1.1.0
+     */
+    public static final <V> V project(Object bean, Class<V> view)
+    {
+        BeanDescriptor<V> descriptor;
+
+        descriptor = BeanDescriptor.forType(view);
+        return descriptor.newProxy(descriptor.newProjection(proxyBeanOf(bean)));
+    }
+    /**
+     * Checks if a proxy bean is frozen.
+     * @param bean The bean
+     * @return true if the bean is frozen
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     * @since 1.1.0
+     */
+    public static final boolean isFrozen(Object bean)
+    {
+        return proxyBeanOf(bean).isFrozen();
+    }
+    /**
+     * The proxy implementation of a bean.
+     * @param bean The bean
+     * @return The proxy implementation
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     */
+    private static <T> ProxyBeanImpl<T> proxyBeanOf(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        if(proxy == null)
+        {
+            throw new IllegalArgumentException("Not a proxy bean: " + (bean == null ? null : bean.getClass().getName()));
+        }
+        return proxy;
     }
 }
@@ -24,17 +24,16 @@ import static cat.fornes.imodel.ProxyBeanUtils.propertyName;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.Proxy;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.function.Consumer;
 
+import cat.fornes.imodel.utils.HashStrategy;
 import cat.fornes.imodel.utils.ObjectUtils;
 
 /**
@@ -52,6 +51,14 @@ import cat.fornes.imodel.utils.ObjectUtils;
  * 
  * The proxy is a JDK Proxy framework instance.
  * 
+ * The property values are held in an array, by {@link BeanDescriptor descriptor} slot, and the
+ * invoked methods are resolved with the descriptor without locking.
+ * A {@link #freeze() frozen} bean can not be modified: it can be shared between threads without
+ * synchronization, its hash code is computed once and it is not copied on clone.
+ * The setters check the {@link cat.fornes.imodel.annotations.NotNull constraints} of the properties.
+ * A {@link #setVersioned(boolean) versioned} bean never modifies its values array: each write
+ * publishes a new version, so the readers see consistent values without locking.
+ * 
  * @author octavi@fornes.cat
  * @since 1.0.0
  */
@@ -59,17 +66,41 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
 {
     private static final long serialVersionUID = 0L;
 
+    /** The end of a truncated {@link #writeTo(Appendable, int) text representation} */
+    public static final String TRUNCATION_MARK = "...]";
+
+    /** The memoized null result of a derived method */
+    private static final Object NULL_RESULT = new Object();
+
     /** Implemented type */
     private Class<T> implementedType;
 
-    /** Property list */
-    private Map<String, PropertyBean> properties;
+    /** The descriptor of implemented type */
+    private transient BeanDescriptor<T> descriptor;
+
+    /**
+     * Property values, by descriptor slot.
+     * Is written again on {@link #freeze()}, so the readers of the array see the frozen values.
+     */
+    private transient volatile Object[] values;
+
+    /** If the bean is frozen, its properties can not be modified */
+    private volatile boolean frozen;
+
+    /** If the writes publish a new values array instead of modifying it */
+    private volatile boolean versioned;
 
-    /** Property names in appearance order */
-    private List<String> names;
+    /** The hash code of a frozen bean, 0 if not computed yet */
+    private transient int hash;
 
-    /** Values for calculate hash code */
-    private Object[] hashCodeValues;
+    /** The listeners of the property changes, null if none */
+    private transient volatile BeanListener[] listeners;
+
+    /** The memoized results of the derived methods, by default method index; null until the first */
+    private transient volatile Object[] derivedResults;
+
+    /** The invalidations of each derived method, to not memoize a result computed before one; guarded by this */
+    private transient int[] derivedStamps;
 
     /**
      * Creates a proxy for the type.
@@ -77,13 +108,12 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
      * @return The proxy, as typeToImplement type.
      * @throws IllegalArgumentException If the type is not an interface
      */
-    @SuppressWarnings("unchecked")
     public static final <T> T newProxy(Class<T> typeToImplement)
     {
-        return (T) Proxy.newProxyInstance(typeToImplement.getClassLoader(), new Class[]
-        {
-            typeToImplement
-        }, new ProxyBeanImpl<T>(typeToImplement));
+        BeanDescriptor<T> descriptor;
+
+        descriptor = BeanDescriptor.forType(typeToImplement);
+        return descriptor.newProxy(descriptor.newHandler());
     }
 
     /**
@@ -93,72 +123,486 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
      */
     protected ProxyBeanImpl(Class<T> typeToImplement)
     {
-        PropertyBean pb;
+        this(BeanDescriptor.forType(typeToImplement));
+    }
+
+    /**
+     * Constructor with the descriptor of the type to implement.
+     * @param descriptor The descriptor of the interface type to implement
+     * @see ProxyBeanFactory#newProxy(ProxyBeanImpl)
+     */
+    public ProxyBeanImpl(BeanDescriptor<T> descriptor)
+    {
+        // Prepare the values, in slot order, with default values
+        this(descriptor, descriptor.getDefaultValues().clone(), false);
+    }
 
-        if(typeToImplement.isInterface() == false)
+    /**
+     * Constructor with the values already set.
+     * The values are not checked nor copied: for creators that build the values of the type, as decoders.
+     * @param descriptor The descriptor of the interface type to implement
+     * @param values The values, by slot, with the default values for primitives instead of null; not copied
+     * @param frozen If the bean is {@link #freeze() frozen}
+     * @see BeanBuilder
+     */
+    public ProxyBeanImpl(BeanDescriptor<T> descriptor, Object[] values, boolean frozen)
+    {
+        this.descriptor = descriptor;
+        this.implementedType = descriptor.getImplementedType();
+        this.values = values;
+        this.frozen = frozen;
+    }
+
+    /**
+     * On serialize, writes the properties as name and value pairs, so the stream does not
+     * depend on the slot order.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        Object[] current;
+
+        current = readValues();
+        out.defaultWriteObject();
+        out.writeInt(current.length);
+        for(int n = 0; n < current.length; n++)
         {
-            // Only interfaces
-            throw new IllegalArgumentException("ProxyBeanImpl can only implement interfaces. '" + typeToImplement.getName() + "' is not an interface");
+            out.writeUTF(descriptor.getName(n));
+            out.writeObject(current[n]);
         }
+    }
 
-        this.implementedType = typeToImplement;
-        properties = Collections.synchronizedMap(new TreeMap<String, PropertyBean>());
-        names = Collections.synchronizedList(new ArrayList<String>());
-        // Prepare the properties list
-        for(Method method : typeToImplement.getMethods())
+    /**
+     * On deserialize, reconstruct the implemented type information and the values by slot.
+     * The properties not found on the implemented type are ignored. The streams of the 1.0.0
+     * serialized form, with the properties map, are also read.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream.GetField fields;
+        Object[] read;
+        int count;
+
+        fields = in.readFields();
+        implementedType = (Class<T>) fields.get("implementedType", null);
+        frozen = fields.get("frozen", false);
+        versioned = fields.get("versioned", false);
+        descriptor = BeanDescriptor.forType(implementedType);
+        read = descriptor.getDefaultValues().clone();
+        if(fields.getObjectStreamClass().getField("properties") != null)
         {
-            if(Modifier.isPublic(method.getModifiers()) && isProperty(method.getName()))
+            for(PropertyBean property : ((Map<String, PropertyBean>) fields.get("properties", null)).values())
             {
-                if((pb = properties.get(propertyName(method.getName()))) == null)
+                readProperty(read, property.name, property.value);
+            }
+        }
+        else
+        {
+            count = in.readInt();
+            for(int n = 0; n < count; n++)
+            {
+                readProperty(read, in.readUTF(), in.readObject());
+            }
+        }
+        writeValues(read);
+    }
+
+    /**
+     * Sets a deserialized property value on its slot, if the implemented type has the property.
+     * @param read The values, by slot
+     * @param name The property name
+     * @param value The value; null means the default value
+     */
+    private void readProperty(Object[] read, String name, Object value)
+    {
+        int slot;
+
+        slot = descriptor.slotOf(name);
+        if(slot >= 0 && value != null)
+        {
+            read[slot] = descriptor.deduplicate(slot, value);
+        }
+    }
+
+    /**
+     * The descriptor of the implemented interface.
+     * @return The descriptor
+     */
+    public BeanDescriptor<T> getDescriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * Gets the value of a property by its descriptor slot, without the proxy invocation path:
+     * a raw read, without the interceptors of the getter.
+     * @param slot The slot
+     * @return The property value
+     * @see #get(String)
+     */
+    public Object getSlot(int slot)
+    {
+        return values[slot];
+    }
+
+    /**
+     * Gets the value of a property by its name, as its getter does.
+     * @param property The property name
+     * @return The property value
+     * @throws IllegalArgumentException If the type has not the property
+     * @see BeanDescriptor#property(String)
+     */
+    public Object get(String property)
+    {
+        return doGetter(slotOfProperty(property));
+    }
+
+    /**
+     * Sets the value of a property by its name, as its setter does.
+     * @param property The property name
+     * @param value The value; null for primitive properties means the default value
+     * @throws IllegalArgumentException If the type has not the property or the value is not of the property type
+     * @throws IllegalStateException If the bean is {@link #freeze() frozen}
+     * @throws ConstraintViolationException If the value violates a constraint of the property
+     * @see BeanDescriptor#property(String)
+     */
+    public void set(String property, Object value)
+    {
+        int slot;
+
+        slot = slotOfProperty(property);
+        if(descriptor.accepts(slot, value) == false)
+        {
+            throw new IllegalArgumentException("Not valid value for '" + property + "': " + value.getClass().getName());
+        }
+        doSetter(slot, value);
+    }
+
+    /**
+     * The slot of a property.
+     * @param property The property name
+     * @return The slot
+     * @throws IllegalArgumentException If the type has not the property
+     */
+    private int slotOfProperty(String property)
+    {
+        int slot;
+
+        if((slot = descriptor.slotOf(property)) < 0)
+        {
+            throw new IllegalArgumentException("Unknown property " + property + " on " + implementedType.getName());
+        }
+        return slot;
+    }
+
+    /**
+     * Sets the value of a property by its descriptor slot, without the proxy invocation path:
+     * a raw write, without the constraints, the deduplication nor the interceptors of the setter.
+     * @param slot The slot
+     * @param value The value; null for primitive properties means the default value
+     * @throws IllegalStateException If the bean is {@link #freeze() frozen}
+     * @see #set(String, Object)
+     */
+    public void setSlot(int slot, Object value)
+    {
+        checkNotFrozen();
+        write(slot, value);
+        invalidateDerived(slot);
+    }
+
+    /**
+     * Writes the value of a slot and notifies the listeners, if any.
+     * @param slot The slot
+     * @param value The value; null for primitive properties means the default value
+     */
+    void write(int slot, Object value)
+    {
+        BeanListener[] current;
+        Object[] version;
+        Object previous, written;
+
+        written = value == null ? descriptor.getDefaultValue(slot) : value;
+        if(versioned)
+        {
+            synchronized(this)
+            {
+                version = values.clone();
+                previous = version[slot];
+                version[slot] = written;
+                values = version;
+            }
+            notifyListeners(slot, previous, written);
+            return;
+        }
+        if((current = listeners) == null)
+        {
+            values[slot] = written;
+            return;
+        }
+        previous = values[slot];
+        values[slot] = written;
+        for(BeanListener listener : current)
+        {
+            listener.propertyChanged(this, slot, previous, written);
+        }
+    }
+
+    /**
+     * The current values, by slot, as an array not to be modified.
+     * The storage of other representations, as the sparse one, is expanded to a new array.
+     * @return The values
+     */
+    Object[] readValues()
+    {
+        return values;
+    }
+
+    /**
+     * Replaces all the values.
+     * @param replaced The values, by slot; owned by the bean from now on
+     */
+    void writeValues(Object[] replaced)
+    {
+        values = replaced;
+    }
+
+    /**
+     * Writes again the values storage, to publish the values written before.
+     */
+    void republish()
+    {
+        values = values;
+    }
+
+    /**
+     * Checks if the bean has listeners.
+     * @return true if it has
+     */
+    boolean hasListeners()
+    {
+        return listeners != null;
+    }
+
+    /**
+     * Notifies a property change to the listeners, if any.
+     * @param slot The slot
+     * @param previous The previous value
+     * @param written The new value
+     */
+    void notifyListeners(int slot, Object previous, Object written)
+    {
+        BeanListener[] current;
+
+        if((current = listeners) != null)
+        {
+            for(BeanListener listener : current)
+            {
+                listener.propertyChanged(this, slot, previous, written);
+            }
+        }
+    }
+
+    /**
+     * Sets the versioned mode. The writes of a versioned bean copy the values array and publish
+     * the new version, never modifying a published one: the readers of the whole bean
+     * ({@link #equals(Object)}, {@link #hashCode()}, {@link #clone()}, {@link #snapshot()}...)
+     * see a consistent version without locking, and the writers are serialized on this bean.
+     * The old versions are reclaimed when no reader holds them.
+     * 
+     * Each write allocates a values array: for beans mostly read and updated together
+     * with {@link #update(Consumer)}.
+     * @param versioned <b>true</b> for the versioned mode
+     */
+    public synchronized void setVersioned(boolean versioned)
+    {
+        if(this.versioned && versioned == false)
+        {
+            // The published versions can be shared by snapshots
+            writeValues(readValues().clone());
+        }
+        this.versioned = versioned;
+    }
+
+    /**
+     * Checks if the bean is {@link #setVersioned(boolean) versioned}.
+     * @return true if the bean is versioned
+     */
+    public boolean isVersioned()
+    {
+        return versioned;
+    }
+
+    /**
+     * Updates many properties at once. The update modifies a draft of the bean, a mutable copy,
+     * that is published when the update returns, in a single write of the values array.
+     * On a {@link #setVersioned(boolean) versioned} bean, the readers see all the changes of
+     * the update or none, and the updates and writes are serialized. Otherwise, a concurrent
+     * write can be lost.
+     * 
+     * The listeners are notified of the changed properties after the publication.
+     * An exception of the update discards the draft.
+     * @param update The update, that receives the draft
+     * @throws IllegalStateException If the bean is {@link #freeze() frozen}
+     */
+    public void update(Consumer<? super T> update)
+    {
+        ProxyBeanImpl<T> draft;
+        Object[] previous, version;
+
+        checkNotFrozen();
+        synchronized(this)
+        {
+            previous = readValues();
+            draft = descriptor.newHandler(previous.clone(), false);
+            update.accept(descriptor.newProxy(draft));
+            version = draft.readValues();
+            writeValues(version);
+        }
+        invalidateDerived();
+        if(listeners != null)
+        {
+            for(int n = 0; n < version.length; n++)
+            {
+                if(version[n] != previous[n])
                 {
-                    // Put them!
-                    pb = new PropertyBean();
-                    pb.name = propertyName(method.getName());
-                    pb.primitive = method.getReturnType().isPrimitive();
-                    properties.put(pb.name, pb);
-                    names.add(pb.name);
+                    notifyListeners(n, previous[n], version[n]);
                 }
             }
         }
-        resolveGettersSettersMethods();
-        // Assign default values
-        for(PropertyBean pbv : properties.values())
+    }
+
+    /**
+     * A frozen snapshot of the bean: a bean with the current values that does not change.
+     * A {@link #setVersioned(boolean) versioned} bean shares its current version with the snapshot,
+     * without copying it; a frozen bean is its own snapshot.
+     * @return The snapshot
+     */
+    public T snapshot()
+    {
+        Object[] current;
+
+        if(isFrozen())
         {
-            pbv.value = nullSafeValue(null, pbv);
+            return descriptor.newProxy(this);
         }
+        current = readValues();
+        return descriptor.newProxy(descriptor.newHandler(versioned ? current : current.clone(), true));
     }
 
     /**
-     * On deserialize, reconstruct the implemented type information.
+     * Adds a listener of the property changes.
+     * The listeners are not serialized nor copied on clone.
+     * @param listener The listener
      */
-    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    public synchronized void addListener(BeanListener listener)
     {
-        in.defaultReadObject();
-        resolveGettersSettersMethods();
+        BeanListener[] current, added;
+
+        current = listeners;
+        if(current == null)
+        {
+            added = new BeanListener[] { listener };
+        }
+        else
+        {
+            added = Arrays.copyOf(current, current.length + 1);
+            added[current.length] = listener;
+        }
+        listeners = added;
     }
 
     /**
-     * Resolve the 'getter method' for all properties.
+     * Removes a listener of the property changes.
+     * @param listener The listener
+     * @return <b>true</b> if the listener was found
      */
-    private void resolveGettersSettersMethods()
+    public synchronized boolean removeListener(BeanListener listener)
     {
-        PropertyBean pb;
-        // Prepare the properties list
-        for(Method method : implementedType.getMethods())
+        BeanListener[] current, removed;
+
+        if((current = listeners) == null)
+        {
+            return false;
+        }
+        for(int n = 0; n < current.length; n++)
         {
-            if(Modifier.isPublic(method.getModifiers()) && isProperty(method.getName()))
+            if(current[n] == listener)
             {
-                pb = properties.get(propertyName(method.getName()));
-                if(isGetter(method.getName()))
+                if(current.length == 1)
                 {
-                    pb.getterMethod = method;
+                    removed = null;
                 }
                 else
                 {
-                    pb.setterMethod = method;
+                    removed = new BeanListener[current.length - 1];
+                    System.arraycopy(current, 0, removed, 0, n);
+                    System.arraycopy(current, n + 1, removed, n, current.length - n - 1);
                 }
+                listeners = removed;
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Freezes the bean. After freezing, the properties can not be modified.
+     * Freezing a frozen bean has no effect.
+     * 
+     * The bean should be frozen by the thread that set its values, before sharing it;
+     * then it is safely published to the threads that read it.
+     */
+    public void freeze()
+    {
+        if(frozen == false)
+        {
+            frozen = true;
+            // Publishes the values written before freezing
+            republish();
+        }
+    }
+
+    /**
+     * Checks if the bean is {@link #freeze() frozen}.
+     * @return true if the bean is frozen
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Checks that the bean is not {@link #freeze() frozen}.
+     * @throws IllegalStateException If the bean is frozen
+     */
+    void checkNotFrozen()
+    {
+        if(frozen)
+        {
+            throw new IllegalStateException("The " + implementedType.getSimpleName() + " bean is frozen");
+        }
+    }
+
+    /**
+     * An estimation of the memory retained by the bean structure (the proxy, this handler and
+     * the values array), in bytes, for a 64 bits JVM with compressed references.
+     * The property values are not included, as they can be shared.
+     * @return The estimated size
+     */
+    public long estimateFootprint()
+    {
+        // Proxy, handler and values array
+        return 16L + 32L + align(16L + 4L * values.length);
+    }
+
+    /**
+     * Aligns a size to the 8 bytes of the object alignment.
+     * @param size The size
+     * @return The aligned size
+     */
+    static long align(long size)
+    {
+        return (size + 7L) & ~7L;
     }
 
     /**
@@ -176,6 +620,18 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
     {
+        int code;
+
+        if(isFrozen() && "clone".equals(method.getName()) && descriptor.codeOf(method) == BeanDescriptor.CODE_CLONE)
+        {
+            // Nothing to copy
+            return proxy;
+        }
+        code = descriptor.codeOf(method);
+        if(code >= 2 * descriptor.size())
+        {
+            return invokeDefault(proxy, code - 2 * descriptor.size(), args);
+        }
         return doInvoke(method, args);
     }
 
@@ -187,40 +643,52 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
      */
     protected Object doInvoke(Method method, Object... args)
     {
-        PropertyBean pb;
         String name;
+        int code, size;
 
-        name = method.getName();
-        // Check if is a get/set method
-        if(isProperty(name))
-        {
-            if((pb = properties.get(propertyName(name))) != null)
-            {
-                if(isGetter(name))
-                {
-                    return doGetter(pb);
-                }
-                // is a setter
-                doSetter(pb, args);
-                return null;
-            }
-        }
-        // Can be hashCode, toString or equals
-        if("hashCode".equals(name))
+        code = descriptor.codeOf(method);
+        size = descriptor.size();
+        if(code >= 2 * size)
         {
-            return hashCode();
+            return invokeDefault(code - 2 * size, args);
         }
-        if("toString".equals(name))
+        if(code >= 0)
         {
-            return toString();
+            // Check if is a get/set method
+            if(code < size)
+            {
+                return doGetter(code);
+            }
+            doSetter(code - size, args);
+            return null;
         }
-        if("equals".equals(name))
+        switch(code)
         {
-            return equals(args[0]);
+            case BeanDescriptor.CODE_HASH_CODE:
+                return hashCode();
+            case BeanDescriptor.CODE_TO_STRING:
+                return toString();
+            case BeanDescriptor.CODE_EQUALS:
+                return equals(args[0]);
+            case BeanDescriptor.CODE_CLONE:
+                return clone();
+            case BeanDescriptor.CODE_FREEZE:
+                freeze();
+                return null;
+            default:
+                break;
         }
-        if("clone".equals(name))
+        // A method not resolved by the descriptor, as redeclared on more than one interface
+        name = method.getName();
+        if(isProperty(name) && (code = descriptor.slotOf(propertyName(name))) >= 0)
         {
-            return clone();
+            if(isGetter(name))
+            {
+                return doGetter(code);
+            }
+            // is a setter
+            doSetter(code, args);
+            return null;
         }
         // Not support any other method call
         throw new UnsupportedOperationException("Call to '" + method.getName() + "'");
@@ -228,22 +696,166 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
 
     /**
      * Do the getter call.
-     * @param pb The propertybean descriptor
+     * @param slot The property slot
      * @return the property value
      */
-    protected Object doGetter(PropertyBean pb)
+    protected Object doGetter(int slot)
     {
-        return pb.value;
+        return values[slot];
     }
 
     /**
      * Do the setter call.
-     * @param pb The propertybean descriptor
+     * @param slot The property slot
      * @param arguments The arguments
+     * @throws IllegalStateException If the bean is {@link #freeze() frozen}
+     * @throws ConstraintViolationException If the value violates a constraint of the property
+     */
+    protected void doSetter(int slot, Object... arguments)
+    {
+        checkNotFrozen();
+        if(descriptor.hasConstraints())
+        {
+            descriptor.checkConstraints(slot, arguments[0] == null ? descriptor.getDefaultValue(slot) : arguments[0]);
+        }
+        write(slot, descriptor.deduplicate(slot, arguments[0]));
+        invalidateDerived(slot);
+    }
+
+    /**
+     * Invokes a default method of the interface, memoizing the result of the
+     * {@link cat.fornes.imodel.annotations.Derived derived} ones.
+     * @param proxy The proxy
+     * @param index The index of the default method
+     * @param args The arguments, if any
+     * @return The result
+     * @throws Throwable The exception of the method
+     */
+    Object invokeDefault(Object proxy, int index, Object[] args) throws Throwable
+    {
+        Object[] results;
+        Object result;
+        int stamp;
+
+        if(descriptor.isDerived(index) == false)
+        {
+            return descriptor.getDefaultHandle(index).invokeExact(proxy, args);
+        }
+        if((results = derivedResults) != null && (result = results[index]) != null)
+        {
+            return result == NULL_RESULT ? null : result;
+        }
+        synchronized(this)
+        {
+            if(derivedResults == null)
+            {
+                derivedStamps = new int[descriptor.getDefaultMethodCount()];
+                derivedResults = new Object[descriptor.getDefaultMethodCount()];
+            }
+            stamp = derivedStamps[index];
+        }
+        result = descriptor.getDefaultHandle(index).invokeExact(proxy, args);
+        synchronized(this)
+        {
+            // Not memoized if a dependency changed meanwhile
+            if(derivedStamps[index] == stamp)
+            {
+                derivedResults[index] = result == null ? NULL_RESULT : result;
+                // Publishes the result
+                derivedResults = derivedResults;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invokes a default method on a new proxy of this bean, out of a proxy invocation.
+     * @param index The index of the default method
+     * @param args The arguments, if any
+     * @return The result
      */
-    protected void doSetter(PropertyBean pb, Object... arguments)
+    private Object invokeDefault(int index, Object[] args)
     {
-        pb.value = nullSafeValue(arguments[0], pb);
+        try
+        {
+            return invokeDefault(descriptor.newProxy(this), index, args);
+        }
+        catch(RuntimeException e)
+        {
+            throw e;
+        }
+        catch(Error e)
+        {
+            throw e;
+        }
+        catch(Throwable e)
+        {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * Invalidates the memoized results of the derived methods that depend on a slot.
+     * @param slot The written slot
+     */
+    void invalidateDerived(int slot)
+    {
+        Object[] results;
+        int[] dependents;
+
+        if((results = derivedResults) == null || (dependents = descriptor.getDependents(slot)) == null)
+        {
+            return;
+        }
+        synchronized(this)
+        {
+            for(int index : dependents)
+            {
+                derivedStamps[index]++;
+                results[index] = null;
+            }
+        }
+    }
+
+    /**
+     * Invalidates the memoized results of all the derived methods.
+     */
+    private void invalidateDerived()
+    {
+        Object[] results;
+
+        if((results = derivedResults) == null)
+        {
+            return;
+        }
+        synchronized(this)
+        {
+            for(int index = 0; index < results.length; index++)
+            {
+                derivedStamps[index]++;
+                results[index] = null;
+            }
+        }
+    }
+
+    /**
+     * The decoder of a {@link BeanDescriptor#newLazyHandler(SlotDecoder) lazy bean} that was not written
+     * since its creation, whose encoding is still the bean one.
+     * @return The decoder; null if the bean is not lazy or it was written
+     */
+    public SlotDecoder getUnmodifiedDecoder()
+    {
+        return null;
+    }
+
+    /**
+     * Checks all the values against the constraints of the properties, for the beans whose values
+     * were not set by the setters, as deserialized, decoded or set with {@link #setSlot(int, Object)}.
+     * @throws ConstraintViolationException If some value violates a constraint, with all the violations
+     */
+    public void validate()
+    {
+        descriptor.checkConstraints(readValues());
     }
 
     /**
@@ -253,6 +865,7 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
      * SimpleNameOfImplementedType [ propertyName=value, ...]
      * </pre>
      * For the {@link #getImplementedType() implemented type}
+     * @see #writeTo(Appendable)
      * @see java.lang.Object#toString()
      */
     @Override
@@ -260,216 +873,451 @@ public class ProxyBeanImpl<T> implements InvocationHandler, Serializable
     {
         StringBuilder stb;
 
-        stb = new StringBuilder(implementedType.getSimpleName());
-        stb.append(" [");
-        for(PropertyBean pb : properties.values())
+        stb = new StringBuilder(descriptor.getTextLengthHint());
+        writeTo(stb, Integer.MAX_VALUE);
+        descriptor.setTextLengthHint(stb.length());
+        return stb.toString();
+    }
+
+    /**
+     * Writes the {@link #toString() text representation} of the bean.
+     * @param out The destination
+     * @throws IOException From the destination
+     */
+    public void writeTo(Appendable out) throws IOException
+    {
+        writeTo(out, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Writes the {@link #toString() text representation} of the bean, up to a length.
+     * If the representation is longer than the maximum length, it is truncated and
+     * ended with {@value #TRUNCATION_MARK}.
+     * Writing on a {@link StringBuilder} the primitive values are appended without temporary Strings.
+     * @param out The destination
+     * @param maxLength The maximum length, without the truncation mark
+     * @throws IOException From the destination
+     */
+    public void writeTo(Appendable out, int maxLength) throws IOException
+    {
+        Object[] current;
+        int[] order;
+        String[] labels;
+        int remaining;
+
+        if(out instanceof StringBuilder)
         {
-            stb.append(pb.name).append("=").append("" + pb.value).append(", ");
+            writeTo((StringBuilder) out, maxLength);
+            return;
+        }
+        current = readValues();
+        order = descriptor.getTextOrder();
+        labels = descriptor.getTextLabels();
+        remaining = append(out, descriptor.getTextPrefix(), maxLength);
+        for(int n = 0; n < order.length && remaining >= 0; n++)
+        {
+            remaining = append(out, labels[n], remaining);
+            if(remaining >= 0)
+            {
+                remaining = append(out, valueAsText(current[order[n]]), remaining);
+            }
+        }
+        out.append(remaining < 0 ? TRUNCATION_MARK : "]");
+    }
+
+    /**
+     * Writes the {@link #toString() text representation} of the bean, up to a length, on a StringBuilder.
+     * @param out The destination
+     * @param maxLength The maximum length, without the truncation mark
+     */
+    private void writeTo(StringBuilder out, int maxLength)
+    {
+        Object[] current;
+        int[] order;
+        String[] labels;
+        int limit;
+
+        current = readValues();
+        order = descriptor.getTextOrder();
+        labels = descriptor.getTextLabels();
+        limit = (int) Math.min(Integer.MAX_VALUE, (long) out.length() + maxLength);
+        out.append(descriptor.getTextPrefix());
+        for(int n = 0; n < order.length && out.length() <= limit; n++)
+        {
+            out.append(labels[n]);
+            appendValue(out, current[order[n]], limit);
+        }
+        if(out.length() > limit)
+        {
+            out.setLength(limit);
+            out.append(TRUNCATION_MARK);
+        }
+        else
+        {
+            out.append(']');
+        }
+    }
+
+    /**
+     * Appends a value, without temporary Strings for primitive wrappers.
+     * Long char sequences are only appended up to the limit.
+     * @param out The destination
+     * @param value The value
+     * @param limit The length limit of the destination
+     */
+    private static void appendValue(StringBuilder out, Object value, int limit)
+    {
+        CharSequence text;
+
+        if(value instanceof Integer || value instanceof Short || value instanceof Byte)
+        {
+            out.append(((Number) value).intValue());
+        }
+        else if(value instanceof Long)
+        {
+            out.append(((Long) value).longValue());
+        }
+        else if(value instanceof Double)
+        {
+            out.append(((Double) value).doubleValue());
+        }
+        else if(value instanceof Float)
+        {
+            out.append(((Float) value).floatValue());
+        }
+        else if(value instanceof Boolean)
+        {
+            out.append(((Boolean) value).booleanValue());
+        }
+        else if(value instanceof Character)
+        {
+            out.append(((Character) value).charValue());
+        }
+        else
+        {
+            text = valueAsText(value);
+            out.append(text, 0, (int) Math.min(text.length(), Math.max(0L, (long) limit - out.length() + 1)));
         }
-        // Change the last element (",") by "]"
-        stb.replace(stb.length() - 2, stb.length(), "]");
-        return stb.toString();
+    }
+
+    /**
+     * The text of a value.
+     * @param value The value
+     * @return The value itself if is a char sequence, or its String representation
+     */
+    private static CharSequence valueAsText(Object value)
+    {
+        return value instanceof CharSequence ? (CharSequence) value : String.valueOf(value);
+    }
+
+    /**
+     * Appends a text, up to the remaining length.
+     * @param out The destination
+     * @param text The text
+     * @param remaining The remaining length
+     * @return The new remaining length, negative if the text was truncated
+     * @throws IOException From the destination
+     */
+    private static int append(Appendable out, CharSequence text, int remaining) throws IOException
+    {
+        if(text.length() > remaining)
+        {
+            out.append(text, 0, remaining);
+            return -1;
+        }
+        out.append(text);
+        return remaining - text.length();
     }
 
     /**
      * Dynamically implemented {@link Object#equals(Object)} method.
+     * The beans of a type with {@link cat.fornes.imodel.annotations.Identity identity} properties
+     * are equal by its identity values, else by {@link #valueEquals(Object) all the values}.
      * @param o The 'other' object
      * @return as equals specification
      * @see java.lang.Object#equals(java.lang.Object)
      */
     @Override
-    @SuppressWarnings(
-    {
-            "rawtypes", "unchecked"
-    })
     public boolean equals(Object o)
     {
-        T theOther;
-        ProxyBeanImpl pbo = null;
+        ProxyBeanImpl<?> pbo;
+        Object[] current, others;
+        Object value;
+        Method getter;
+        int[] identity;
+        int slot;
 
-        // Check if 'other' is a null
+        if((identity = descriptor.getIdentitySlots()) == null)
+        {
+            return valueEquals(o);
+        }
         if(o == null)
         {
             return false;
         }
-        // Check for self-equals...
         if(o == this)
         {
             return true;
         }
-        // Check if 'the other' is a 'implementedType' type...
-        if(implementedType.isAssignableFrom(o.getClass()) == false)
+        if((pbo = ProxyBeanUtils.proxyBeanOf(o)) == null && o instanceof ProxyBeanImpl)
+        {
+            pbo = (ProxyBeanImpl<?>) o;
+        }
+        if(pbo != null)
         {
-            // ...if not, can be a ProxyBeanImpl?...
-            if(ProxyBeanImpl.class.isAssignableFrom(o.getClass()))
+            if(pbo == this)
             {
-                pbo = (ProxyBeanImpl) o;
-
-                // Yes, check if the implementedType is the same or derived
-                if(implementedType.isAssignableFrom(pbo.implementedType) == false)
-                {
-                    return false;
-                }
+                return true;
             }
-            else
+            if(implementedType.isAssignableFrom(pbo.implementedType) == false)
             {
-                // Is not implemented type nor ProxyBeanImpl...
                 return false;
             }
-        }
-        theOther = (T) o;
-        for(PropertyBean pb : properties.values())
-        {
-            try
+            // The identity hash codes of frozen beans of the same type
+            if(hash != 0 && pbo.hash != 0 && hash != pbo.hash && pbo.descriptor == descriptor)
             {
-                Object value;
-                if(pbo != null)
-                {
-                    PropertyBean pbv;
-
-                    pbv = (PropertyBean) pbo.properties.get(pb.name);
-                    value = pbv.value;
-                }
-                else
-                {
-                    value = pb.getterMethod.invoke(theOther);
-                }
-                if(ObjectUtils.nullSafeEquals(pb.value, value) == false)
+                return false;
+            }
+            current = isVersioned() ? readValues() : null;
+            others = pbo.isVersioned() ? pbo.readValues() : null;
+            for(int n = 0; n < identity.length; n++)
+            {
+                slot = pbo.descriptor == descriptor ? identity[n] : pbo.descriptor.slotOf(descriptor.getName(identity[n]));
+                if(ObjectUtils.nullSafeEquals(current == null ? getSlot(identity[n]) : current[identity[n]],
+                    others == null ? pbo.getSlot(slot) : others[slot]) == false)
                 {
                     return false;
                 }
             }
+            return true;
+        }
+        if(implementedType.isAssignableFrom(o.getClass()) == false)
+        {
+            return false;
+        }
+        current = isVersioned() ? readValues() : null;
+        for(int n = 0; n < identity.length; n++)
+        {
+            if((getter = descriptor.getGetter(identity[n])) == null)
+            {
+                // Write only property
+                continue;
+            }
+            try
+            {
+                value = getter.invoke(o);
+            }
             catch(Exception e)
             {
                 /* Includes: SecurityException, IllegalArgumentException, IllegalAccessException, InvocationTargetException */
                 throw new RuntimeException("On equals call!", e);
             }
+            if(ObjectUtils.nullSafeEquals(current == null ? getSlot(identity[n]) : current[identity[n]], value) == false)
+            {
+                return false;
+            }
         }
         return true;
     }
 
     /**
-     * Test if the value is for a primitive type and return an object representation with default (0) value.
-     * If value is null and the type is primitive, return a representation of default value for the primitive corresponding type.
-     * @param value the value, can be null
-     * @param pb The property bean descriptor
-     * @return The value or the default value representation for the primitive type (0)
+     * Compares all the values, also for the beans of a type with
+     * {@link cat.fornes.imodel.annotations.Identity identity} properties.
+     * The values of other proxy beans are compared by slot, without reflection.
+     * @param o The 'other' object
+     * @return true if the other object is of the implemented type with the same values
+     * @since 1.1.0
      */
-    private Object nullSafeValue(Object value, PropertyBean pb)
+    public boolean valueEquals(Object o)
     {
-        if(!pb.primitive)
-        {
-            return value;
-        }
-        if(pb.getterMethod.getReturnType().getName().equals("byte"))
-        {
-            return (value == null ? Byte.valueOf((byte) 0) : (Byte) value);
-        }
-        if(pb.getterMethod.getReturnType().getName().equals("short"))
-        {
-            return (value == null ? Short.valueOf((short) 0) : (Short) value);
-        }
-        if(pb.getterMethod.getReturnType().getName().equals("int"))
-        {
-            return (value == null ? Integer.valueOf(0) : (Integer) value);
-        }
-        if(pb.getterMethod.getReturnType().getName().equals("long"))
+        ProxyBeanImpl<?> pbo;
+        Object[] current, others;
+        Object value;
+        Method getter;
+        int slot;
+
+        // Check if 'other' is a null
+        if(o == null)
         {
-            return (value == null ? Long.valueOf(0L) : (Long) value);
+            return false;
         }
-        if(pb.getterMethod.getReturnType().getName().equals("float"))
+        // Check for self-equals...
+        if(o == this)
         {
-            return (value == null ? Float.valueOf(0F) : (Float) value);
+            return true;
         }
-        if(pb.getterMethod.getReturnType().getName().equals("double"))
+        // Check if 'other' is a proxy bean or a ProxyBeanImpl...
+        if((pbo = ProxyBeanUtils.proxyBeanOf(o)) == null && o instanceof ProxyBeanImpl)
         {
-            return (value == null ? Double.valueOf(0D) : (Double) value);
+            pbo = (ProxyBeanImpl<?>) o;
         }
-        if(pb.getterMethod.getReturnType().getName().equals("char"))
+        if(pbo != null)
         {
-            return (value == null ? Character.valueOf('\u0000') : (Character) value);
+            // Yes, check if the implementedType is the same or derived
+            if(pbo == this)
+            {
+                return true;
+            }
+            if(implementedType.isAssignableFrom(pbo.implementedType) == false)
+            {
+                return false;
+            }
+            // Frozen beans of the same type with different hash codes can not be equal, unless they are identity ones
+            if(hash != 0 && pbo.hash != 0 && hash != pbo.hash && pbo.descriptor == descriptor && descriptor.hasIdentity() == false)
+            {
+                return false;
+            }
+            current = readValues();
+            others = pbo.readValues();
+            for(int n = 0; n < current.length; n++)
+            {
+                slot = pbo.descriptor == descriptor ? n : pbo.descriptor.slotOf(descriptor.getName(n));
+                if(ObjectUtils.nullSafeEquals(current[n], others[slot]) == false)
+                {
+                    return false;
+                }
+            }
+            return true;
         }
-        if(pb.getterMethod.getReturnType().getName().equals("boolean"))
+        // Check if 'the other' is a 'implementedType' type...
+        if(implementedType.isAssignableFrom(o.getClass()) == false)
         {
-            return (value == null ? Boolean.FALSE : (Boolean) value);
+            // Is not implemented type nor ProxyBeanImpl...
+            return false;
         }
-        if(pb.getterMethod.getReturnType().getSimpleName().equals("String"))
+        current = readValues();
+        for(int n = 0; n < current.length; n++)
         {
-            return value;
+            if((getter = descriptor.getGetter(n)) == null)
+            {
+                // Write only property
+                continue;
+            }
+            try
+            {
+                value = getter.invoke(o);
+            }
+            catch(Exception e)
+            {
+                /* Includes: SecurityException, IllegalArgumentException, IllegalAccessException, InvocationTargetException */
+                throw new RuntimeException("On equals call!", e);
+            }
+            if(ObjectUtils.nullSafeEquals(current[n], value) == false)
+            {
+                return false;
+            }
         }
-        // Unknown??
-        throw new IllegalArgumentException("No handler found for type '" + pb.getterMethod.getReturnType().getSimpleName() + "'.");
+        return true;
     }
 
     /**
      * Dynamically implemented {@link Object#hashCode()} method.
-     * Includes all properties. The properties are processed in the same order that
-     * they appear on interface (see {@link #names}).
+     * The hash of the {@link cat.fornes.imodel.annotations.Identity identity} values, in slot order,
+     * for the types with identity properties, else the {@link #valueHashCode() hash of all the values},
+     * with the {@link BeanDescriptor#getHashStrategy() hash strategy} of the type.
+     * The hash code of a {@link #freeze() frozen} bean is computed once.
      * 
      * @return The calculated hashCode
      * 
-     * @see ObjectUtils#nullSafeHashCode(Object[])
+     * @see HashStrategy
      * @see java.lang.Object#hashCode()
      */
     @Override
     public int hashCode()
     {
-        int n;
-        PropertyBean pb;
+        HashStrategy strategy;
+        Object[] current;
+        boolean cacheable;
+        int[] identity;
+        long sum;
+        int h;
 
-        if(hashCodeValues == null)
+        if((h = hash) != 0)
+        {
+            return h;
+        }
+        cacheable = isFrozen();
+        if((identity = descriptor.getIdentitySlots()) == null)
+        {
+            h = valueHashCode();
+        }
+        else
         {
-            hashCodeValues = new Object[properties.size()];
+            current = isVersioned() ? readValues() : null;
+            strategy = descriptor.getHashStrategy();
+            sum = strategy.seed(identity.length);
+            for(int n = 0; n < identity.length; n++)
+            {
+                sum += strategy.term(n, identity.length, current == null ? getSlot(identity[n]) : current[identity[n]]);
+            }
+            h = strategy.finish(sum);
         }
-        n = 0;
-        for(String name : names)
+        if(cacheable)
         {
-            pb = properties.get(name);
-            hashCodeValues[n] = pb.value;
-            n++;
+            hash = h;
         }
-        return ObjectUtils.nullSafeHashCode(hashCodeValues);
+        return h;
     }
 
     /**
-     * Clone the implemented bean with the same values
+     * The hash code of all the values, consistent with {@link #valueEquals(Object)}.
+     * Includes all properties. The properties are processed in the same order that
+     * they appear on interface (the descriptor slots), with the
+     * {@link BeanDescriptor#getHashStrategy() hash strategy} of the type.
+     * @return The hash code
+     * @since 1.1.0
      */
-    public T clone()
+    public int valueHashCode()
     {
-        T other;
-
-        other = newProxy(implementedType);
+        HashStrategy strategy;
+        Object[] current;
+        long sum;
 
-        for(PropertyBean pb : properties.values())
+        current = readValues();
+        strategy = descriptor.getHashStrategy();
+        sum = strategy.seed(current.length);
+        for(int n = 0; n < current.length; n++)
         {
-            try
-            {
-                pb.setterMethod.invoke(other, pb.value);
-            }
-            catch(Exception e)
-            {
-                throw new RuntimeException("On clone (" + pb.setterMethod.getName() + "!", e);
-            }
+            sum += strategy.term(n, current.length, current[n]);
         }
-        return other;
+        return strategy.finish(sum);
     }
 
     /**
-     * A structure for hold the properties information of bean.
+     * Clone the implemented bean with the same values.
+     * A {@link #freeze() frozen} bean is not copied: the clone shares this implementation.
      */
-    protected class PropertyBean implements Serializable
+    public T clone()
     {
-        private static final long serialVersionUID = 0L;
-
-        public String name;
+        if(isFrozen())
+        {
+            return descriptor.newProxy(this);
+        }
+        return mutableCopy();
+    }
 
-        public transient Method getterMethod;
+    /**
+     * A modifiable copy of the bean with the same values, also of a {@link #freeze() frozen} bean.
+     * The listeners are not copied.
+     * @return The copy
+     * @since 1.1.0
+     */
+    public T mutableCopy()
+    {
+        return descriptor.newProxy(descriptor.newHandler(readValues().clone(), false));
+    }
 
-        public transient Method setterMethod;
+    /**
+     * A property of the 1.0.0 serialized form, only to read its streams.
+     */
+    private static final class PropertyBean implements Serializable
+    {
+        private static final long serialVersionUID = 0L;
 
-        public Object value;
+        /** Property name */
+        private String name;
 
-        public boolean primitive;
+        /** Property value */
+        private Object value;
     }
-
 }
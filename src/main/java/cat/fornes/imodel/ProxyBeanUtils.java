@@ -18,6 +18,8 @@
  */
 package cat.fornes.imodel;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
 
 /**
  * Some utilities for {@link ProxyBeanFactory} and {@link ProxyBeanImpl} operations.
@@ -95,4 +97,22 @@ public abstract class ProxyBeanUtils
 	    stb.append(name.substring(1));
 	    return stb.toString();
 	}
+
+	/**
+	 * Gets the {@link ProxyBeanImpl} behind a proxy bean.
+	 * @param bean The bean
+	 * @return The proxy bean implementation, or null if the bean is not a proxy bean
+	 */
+	@SuppressWarnings("unchecked")
+	public static final <T> ProxyBeanImpl<T> proxyBeanOf(Object bean)
+	{
+	    InvocationHandler handler;
+
+	    if(bean == null || Proxy.isProxyClass(bean.getClass()) == false)
+	    {
+	        return null;
+	    }
+	    handler = Proxy.getInvocationHandler(bean);
+	    return handler instanceof ProxyBeanImpl ? (ProxyBeanImpl<T>) handler : null;
+	}
 }
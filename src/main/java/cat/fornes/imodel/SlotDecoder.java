@@ -0,0 +1,38 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+/**
+ * The source of the values of a {@link BeanDescriptor#newLazyHandler(SlotDecoder) lazy bean},
+ * that decodes each value on its first access, as an encoded bean.
+ *
+ * The decoders must be thread safe and decode the same value each time.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public interface SlotDecoder
+{
+    /**
+     * Decodes the value of a slot.
+     * @param slot The slot
+     * @return The value; the default value for null primitives
+     */
+    Object decode(int slot);
+}
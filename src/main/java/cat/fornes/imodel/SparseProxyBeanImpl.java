@@ -0,0 +1,327 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Arrays;
+
+import cat.fornes.imodel.utils.HashStrategy;
+import cat.fornes.imodel.utils.ObjectUtils;
+
+/**
+ * The implementation of the beans with the {@link cat.fornes.imodel.annotations.SparseStorage sparse storage}.
+ *
+ * Only the values that are not the default ones are held: a bitmap of the set slots and an
+ * array with its values, in slot order. The default values are read from the descriptor.
+ * Writing the default value of a slot removes it, so the storage of equal beans is equal and
+ * {@link #equals(Object)} and {@link #hashCode()} only visit the set slots.
+ *
+ * The storage is replaced on each write, never modified, so the readers see a consistent
+ * storage without locking; the writers are serialized on the bean.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class SparseProxyBeanImpl<T> extends ProxyBeanImpl<T>
+{
+    private static final long serialVersionUID = 0L;
+
+    /** The storage */
+    private transient volatile Storage storage;
+
+    /**
+     * Constructor of a bean with the default values.
+     * @param descriptor The descriptor of the interface type to implement
+     */
+    SparseProxyBeanImpl(BeanDescriptor<T> descriptor)
+    {
+        super(descriptor, null, false);
+        storage = new Storage(new long[(descriptor.size() + 63) >>> 6], new Object[0]);
+    }
+
+    /**
+     * Constructor with the values.
+     * @param descriptor The descriptor of the interface type to implement
+     * @param values The values, by slot, with the default values for primitives instead of null
+     * @param frozen If the bean is frozen
+     */
+    SparseProxyBeanImpl(BeanDescriptor<T> descriptor, Object[] values, boolean frozen)
+    {
+        super(descriptor, null, frozen);
+        storage = pack(values);
+    }
+
+    /**
+     * Packs the values that are not the default ones.
+     * @param values The values, by slot
+     * @return The storage
+     */
+    private Storage pack(Object[] values)
+    {
+        BeanDescriptor<T> descriptor;
+        Object[] packed;
+        long[] bits;
+        int count;
+
+        descriptor = getDescriptor();
+        bits = new long[(values.length + 63) >>> 6];
+        packed = new Object[values.length];
+        count = 0;
+        for(int n = 0; n < values.length; n++)
+        {
+            if(ObjectUtils.nullSafeEquals(values[n], descriptor.getDefaultValue(n)) == false)
+            {
+                bits[n >>> 6] |= 1L << n;
+                packed[count++] = values[n];
+            }
+        }
+        return new Storage(bits, Arrays.copyOf(packed, count));
+    }
+
+    @Override
+    public Object getSlot(int slot)
+    {
+        Storage current;
+        long word, mask;
+
+        current = storage;
+        word = current.bits[slot >>> 6];
+        mask = 1L << slot;
+        if((word & mask) == 0L)
+        {
+            return getDescriptor().getDefaultValue(slot);
+        }
+        return current.packed[current.ranks[slot >>> 6] + Long.bitCount(word & (mask - 1L))];
+    }
+
+    @Override
+    protected Object doGetter(int slot)
+    {
+        return getSlot(slot);
+    }
+
+    @Override
+    void write(int slot, Object value)
+    {
+        Storage current;
+        Object[] packed;
+        long[] bits;
+        Object previous, written;
+        long mask;
+        int index;
+        boolean present, stored;
+
+        written = value == null ? getDescriptor().getDefaultValue(slot) : value;
+        stored = ObjectUtils.nullSafeEquals(written, getDescriptor().getDefaultValue(slot)) == false;
+        mask = 1L << slot;
+        synchronized(this)
+        {
+            current = storage;
+            present = (current.bits[slot >>> 6] & mask) != 0L;
+            index = current.ranks[slot >>> 6] + Long.bitCount(current.bits[slot >>> 6] & (mask - 1L));
+            previous = present ? current.packed[index] : getDescriptor().getDefaultValue(slot);
+            if(present && stored)
+            {
+                packed = current.packed.clone();
+                packed[index] = written;
+                storage = new Storage(current.bits, packed);
+            }
+            else if(present)
+            {
+                bits = current.bits.clone();
+                bits[slot >>> 6] &= ~mask;
+                packed = new Object[current.packed.length - 1];
+                System.arraycopy(current.packed, 0, packed, 0, index);
+                System.arraycopy(current.packed, index + 1, packed, index, packed.length - index);
+                storage = new Storage(bits, packed);
+            }
+            else if(stored)
+            {
+                bits = current.bits.clone();
+                bits[slot >>> 6] |= mask;
+                packed = new Object[current.packed.length + 1];
+                System.arraycopy(current.packed, 0, packed, 0, index);
+                packed[index] = written;
+                System.arraycopy(current.packed, index, packed, index + 1, current.packed.length - index);
+                storage = new Storage(bits, packed);
+            }
+        }
+        notifyListeners(slot, previous, written);
+    }
+
+    @Override
+    Object[] readValues()
+    {
+        Storage current;
+        Object[] values;
+        long word;
+        int count;
+
+        current = storage;
+        values = getDescriptor().getDefaultValues().clone();
+        count = 0;
+        for(int w = 0; w < current.bits.length; w++)
+        {
+            for(word = current.bits[w]; word != 0L; word &= word - 1L)
+            {
+                values[(w << 6) + Long.numberOfTrailingZeros(word)] = current.packed[count++];
+            }
+        }
+        return values;
+    }
+
+    @Override
+    void writeValues(Object[] replaced)
+    {
+        storage = pack(replaced);
+    }
+
+    @Override
+    void republish()
+    {
+        storage = storage;
+    }
+
+    /**
+     * The number of set slots: the slots with a value that is not the default one.
+     * @return The number of set slots
+     */
+    int setSlots()
+    {
+        return storage.packed.length;
+    }
+
+    @Override
+    public long estimateFootprint()
+    {
+        Storage current;
+
+        current = storage;
+        // Proxy, handler, storage, bits, ranks and packed values
+        return 16L + 40L + 24L + align(16L + 8L * current.bits.length) + align(16L + 4L * current.ranks.length)
+            + align(16L + 4L * current.packed.length);
+    }
+
+    /**
+     * The hash of the default values, corrected by the terms of the set slots.
+     * Equal to the hash of the dense storage, as the hash is a sum of terms.
+     */
+    @Override
+    public int valueHashCode()
+    {
+        BeanDescriptor<T> descriptor;
+        HashStrategy strategy;
+        Storage current;
+        long word, sum;
+        int count, slot, size;
+
+        current = storage;
+        descriptor = getDescriptor();
+        strategy = descriptor.getHashStrategy();
+        size = descriptor.size();
+        sum = descriptor.getDefaultHashSum();
+        count = 0;
+        for(int w = 0; w < current.bits.length; w++)
+        {
+            for(word = current.bits[w]; word != 0L; word &= word - 1L)
+            {
+                slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                sum += strategy.term(slot, size, current.packed[count++]) - descriptor.getDefaultTerm(slot);
+            }
+        }
+        return strategy.finish(sum);
+    }
+
+    /**
+     * Compares the set slots of sparse beans of the same type, else as {@link ProxyBeanImpl#valueEquals(Object)}.
+     */
+    @Override
+    public boolean valueEquals(Object o)
+    {
+        SparseProxyBeanImpl<?> other;
+        ProxyBeanImpl<?> proxy;
+        Storage current, others;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(o);
+        if(proxy == null && o instanceof ProxyBeanImpl)
+        {
+            proxy = (ProxyBeanImpl<?>) o;
+        }
+        if(proxy instanceof SparseProxyBeanImpl == false || proxy.getDescriptor() != getDescriptor())
+        {
+            return super.valueEquals(o);
+        }
+        other = (SparseProxyBeanImpl<?>) proxy;
+        current = storage;
+        others = other.storage;
+        if(Arrays.equals(current.bits, others.bits) == false)
+        {
+            return false;
+        }
+        for(int n = 0; n < current.packed.length; n++)
+        {
+            if(ObjectUtils.nullSafeEquals(current.packed[n], others.packed[n]) == false)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T mutableCopy()
+    {
+        SparseProxyBeanImpl<T> copy;
+
+        copy = new SparseProxyBeanImpl<T>(getDescriptor());
+        // The storage is not modified, so it can be shared
+        copy.storage = storage;
+        return getDescriptor().newProxy(copy);
+    }
+
+    /**
+     * An immutable storage: the set slots bitmap, the ranks of its words and the values.
+     */
+    private static final class Storage
+    {
+        /** The set slots, by words of 64 slots */
+        final long[] bits;
+
+        /** The number of set slots before each word */
+        final int[] ranks;
+
+        /** The values of the set slots, in slot order */
+        final Object[] packed;
+
+        /**
+         * Constructor.
+         * @param bits The set slots
+         * @param packed The values of the set slots
+         */
+        Storage(long[] bits, Object[] packed)
+        {
+            this.bits = bits;
+            this.packed = packed;
+            ranks = new int[bits.length];
+            for(int w = 1; w < bits.length; w++)
+            {
+                ranks[w] = ranks[w - 1] + Long.bitCount(bits[w - 1]);
+            }
+        }
+    }
+}
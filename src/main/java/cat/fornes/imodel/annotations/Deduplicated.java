@@ -0,0 +1,44 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The values of a text property are deduplicated by the {@link cat.fornes.imodel.utils.StringPool#shared() shared pool},
+ * on the setter, the builder and the deserialization. On the getter or the setter of the property.
+ * <pre>
+ * &#64;Deduplicated
+ * public String getCity();
+ * </pre>
+ * The pool of a property can be changed with {@link cat.fornes.imodel.BeanDescriptor#setStringPool(String, cat.fornes.imodel.utils.StringPool)}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Deduplicated
+{
+}
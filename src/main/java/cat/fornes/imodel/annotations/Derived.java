@@ -0,0 +1,52 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A derived property: a default method without parameters whose result is memoized by bean,
+ * and computed again only after a change of the properties it depends on.
+ * <pre>
+ * &#64;Derived({ "name", "lastName" })
+ * public default String getFullName()
+ * {
+ *     return getName() + " " + getLastName();
+ * }
+ * </pre>
+ * Without dependencies, the result is computed again after a change of any property.
+ * The default methods without this annotation are called on each invocation.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Derived
+{
+    /**
+     * The names of the properties the result depends on; empty for all.
+     */
+    String[] value() default {};
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import cat.fornes.imodel.utils.HashStrategy;
+
+/**
+ * The {@link HashStrategy} for the hash code of the beans of an interface.
+ * Without it, the beans use {@link HashStrategy#POLYNOMIAL}.
+ * <pre>
+ * &#64;HashedBy(HashStrategy.Mixed64.class)
+ * public interface IModel
+ * </pre>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface HashedBy
+{
+    /**
+     * The strategy class. The built-in strategies are shared, the rest are created with their public no-arguments constructor.
+     */
+    Class<? extends HashStrategy> value();
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * An identity property: when some properties of an interface are identity properties, the
+ * {@link Object#equals(Object) equality} and the {@link Object#hashCode() hash code} of its beans
+ * are the ones of its identity values only, as for entities keyed by an id. On the getter or the
+ * setter of the property.
+ * <pre>
+ * &#64;Identity
+ * public long getId();
+ * </pre>
+ * The equality of all the values is still available with {@link cat.fornes.imodel.ProxyBeanImpl#valueEquals(Object)}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Identity
+{
+}
@@ -0,0 +1,46 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The packed storage of the property values of the beans of an interface.
+ * The primitive properties are held by its bits in an array of words, without boxing: the booleans
+ * as single bits and the other primitives by its natural width; the enums as its ordinals, in
+ * 8 or 16 bits. The rest of the properties are held in an array of references.
+ * <pre>
+ * &#64;PackedStorage
+ * public interface IFlags
+ * </pre>
+ * Not compatible with the {@link SparseStorage sparse storage}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PackedStorage
+{
+}
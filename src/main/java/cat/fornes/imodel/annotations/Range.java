@@ -0,0 +1,54 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The inclusive range of a numeric property. On the getter or the setter of the property.
+ * The values are compared exactly with the bounds, also the longs and the big numbers not exact
+ * as doubles. NaN is out of any range, and a null value is in range.
+ * <pre>
+ * &#64;Range(min = 0, max = 150)
+ * public int getAge();
+ * </pre>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ * @see cat.fornes.imodel.ConstraintViolationException
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Range
+{
+    /**
+     * The minimum value.
+     */
+    double min() default Double.NEGATIVE_INFINITY;
+
+    /**
+     * The maximum value.
+     */
+    double max() default Double.POSITIVE_INFINITY;
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The storage of the property values of the beans of an interface.
+ * The sparse storage holds only the values that are not the default ones, for wide interfaces
+ * whose beans set few properties. Without it, the interfaces with
+ * {@link cat.fornes.imodel.BeanDescriptor#SPARSE_WIDTH} or more properties are sparse.
+ * <pre>
+ * &#64;SparseStorage
+ * public interface IWideModel
+ * </pre>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SparseStorage
+{
+    /**
+     * <b>true</b> for the sparse storage, <b>false</b> for the dense (an array with all the values).
+     */
+    boolean value() default true;
+}
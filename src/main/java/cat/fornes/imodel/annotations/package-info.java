@@ -0,0 +1,26 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+/**
+ * Annotations for the bean interfaces, that tune the proxy bean implementation
+ * and constrain the property values.
+ *
+ * They are read once, when the {@link cat.fornes.imodel.BeanDescriptor descriptor} of an interface is created.
+ * @since 1.1.0
+ */
+package cat.fornes.imodel.annotations;
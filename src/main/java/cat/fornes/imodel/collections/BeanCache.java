@@ -0,0 +1,808 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.collections;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+
+/**
+ * A bounded cache of proxy beans by its id: an identity map that hands out the same frozen
+ * bean for an id, instead of creating a new bean on each load.
+ *
+ * <b>Use</b>
+ * <pre>
+ * BeanCache&lt;Long, IAccount&gt; cache;
+ *
+ * cache = new BeanCache&lt;Long, IAccount&gt;(IAccount.class);
+ * cache.setMaximumSize(10000);
+ * cache.setExpireAfterWrite(5, TimeUnit.MINUTES);
+ * ...
+ * account = cache.get(id, loader);
+ * </pre>
+ *
+ * The key is the value of a property of the beans: the {@link cat.fornes.imodel.annotations.Identity identity}
+ * property of the type, or the given one. The keys are compared as the property values, so the key
+ * of a <code>long</code> property is a {@link Long}.
+ *
+ * The cached beans are {@link ProxyBeanImpl#freeze() frozen}, so they can be shared by all the
+ * threads. They are handed out as they are, or as {@link ProxyBeanFactory#mutableCopy(Object) mutable copies}
+ * if {@link #setCopyOnCheckout(boolean) copy on checkout} is set.
+ *
+ * A key is loaded once, also by concurrent calls of {@link #get(Object, BeanLoader)}: the calls
+ * that find a load in progress wait for it. The beans are evicted by least recent use when there
+ * are more beans than the {@link #setMaximumSize(long) maximum size} or they weigh more than the
+ * {@link #setMaximumWeight(long) maximum weight}, and they expire a time after written if
+ * {@link #setExpireAfterWrite(long, TimeUnit) set}. The table is split in stripes, each one with
+ * its own lock. The limits are for the whole cache: after caching a bean, the least recently used
+ * beans of its stripe are evicted first, then the ones of the other stripes, so the eviction
+ * order is approximately the least recent use. Concurrent stores can exceed the limits until
+ * its evictions end.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanCache<K, T>
+{
+    /** Default number of stripes */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** The descriptor of the beans */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The slot of the key property */
+    private final int keySlot;
+
+    /** The stripes */
+    private final Stripe[] stripes;
+
+    /** Bits to shift a hash to get its stripe */
+    private final int stripeShift;
+
+    /** The number of cached beans */
+    private final AtomicLong size;
+
+    /** The weight of the cached beans */
+    private final AtomicLong weight;
+
+    /** The maximum number of beans */
+    private volatile long maximumSize = Long.MAX_VALUE;
+
+    /** The maximum weight of the beans */
+    private volatile long maximumWeight = Long.MAX_VALUE;
+
+    /** The time a bean is kept after written, in nanoseconds; 0 to keep it until evicted */
+    private volatile long expireAfterWrite;
+
+    /** If the beans are handed out as mutable copies */
+    private volatile boolean copyOnCheckout;
+
+    /** Number of look ups that found the bean */
+    private final LongAdder hits;
+
+    /** Number of look ups that did not find the bean */
+    private final LongAdder misses;
+
+    /** Number of loads */
+    private final LongAdder loads;
+
+    /** Number of failed loads */
+    private final LongAdder loadFailures;
+
+    /** Number of beans evicted by the size or the weight limits */
+    private final LongAdder evictions;
+
+    /** Number of expired beans */
+    private final LongAdder expirations;
+
+    /**
+     * Constructor of a cache keyed by the {@link cat.fornes.imodel.annotations.Identity identity} property of a type.
+     * @param type The bean interface type
+     * @throws IllegalArgumentException If the type has not a single identity property
+     */
+    public BeanCache(Class<T> type)
+    {
+        this(type, identityProperty(BeanDescriptor.forType(type)), DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Constructor.
+     * @param type The bean interface type
+     * @param keyProperty The name of the key property
+     * @param concurrencyLevel The estimated number of concurrent threads; the number of stripes
+     * @throws IllegalArgumentException If the type has not the key property or the concurrency level is not positive
+     */
+    public BeanCache(Class<T> type, String keyProperty, int concurrencyLevel)
+    {
+        int count, bits;
+
+        if(concurrencyLevel <= 0)
+        {
+            throw new IllegalArgumentException("Not valid concurrency level: " + concurrencyLevel);
+        }
+        descriptor = BeanDescriptor.forType(type);
+        if((keySlot = descriptor.slotOf(keyProperty)) < 0)
+        {
+            throw new IllegalArgumentException("Type " + type.getName() + " has not the key property '" + keyProperty + "'");
+        }
+        bits = 0;
+        for(count = 1; count < concurrencyLevel && count < (1 << 16); count <<= 1)
+        {
+            bits++;
+        }
+        stripes = new Stripe[count];
+        for(int n = 0; n < count; n++)
+        {
+            stripes[n] = new Stripe();
+        }
+        stripeShift = 32 - bits;
+        size = new AtomicLong();
+        weight = new AtomicLong();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        loads = new LongAdder();
+        loadFailures = new LongAdder();
+        evictions = new LongAdder();
+        expirations = new LongAdder();
+    }
+
+    /**
+     * The identity property of a type.
+     * @param descriptor The type descriptor
+     * @return The property name
+     * @throws IllegalArgumentException If the type has not a single identity property
+     */
+    private static String identityProperty(BeanDescriptor<?> descriptor)
+    {
+        String name;
+
+        name = null;
+        for(int n = 0; n < descriptor.size(); n++)
+        {
+            if(descriptor.isIdentity(n))
+            {
+                if(name != null)
+                {
+                    throw new IllegalArgumentException("Type " + descriptor.getImplementedType().getName() + " has many identity properties");
+                }
+                name = descriptor.getName(n);
+            }
+        }
+        if(name == null)
+        {
+            throw new IllegalArgumentException("Type " + descriptor.getImplementedType().getName() + " has not an identity property");
+        }
+        return name;
+    }
+
+    /**
+     * Gets the cached bean of a key.
+     * @param key The key
+     * @return The bean, or null if it is not cached
+     * @throws IllegalArgumentException If the key is null
+     */
+    public T get(K key)
+    {
+        Stripe stripe;
+        Node node;
+
+        stripe = stripeOf(key);
+        synchronized(stripe)
+        {
+            node = present(stripe, key);
+        }
+        if(node == null)
+        {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return checkout(node.bean);
+    }
+
+    /**
+     * Gets the cached bean of a key, loading and caching it if it is not cached.
+     * A key is not loaded by many threads at once: the threads that find a load of the key in
+     * progress wait for its result.
+     * @param key The key
+     * @param loader The loader of the bean
+     * @return The bean, or null if the loader has not a bean for the key
+     * @throws IllegalArgumentException If the key is null or the loaded bean is not a proxy bean
+     * @throws IllegalStateException If the loader throws a checked exception, as its cause
+     */
+    public T get(final K key, final BeanLoader<? super K, ? extends T> loader)
+    {
+        final Stripe stripe;
+        FutureTask<Object> loading;
+        Object bean;
+        Node node;
+        boolean owner;
+
+        stripe = stripeOf(key);
+        owner = false;
+        synchronized(stripe)
+        {
+            if((node = present(stripe, key)) != null)
+            {
+                hits.increment();
+                return checkout(node.bean);
+            }
+            misses.increment();
+            if((loading = stripe.loading.get(key)) == null)
+            {
+                loading = new FutureTask<Object>(new Callable<Object>()
+                {
+                    @Override
+                    public Object call() throws Exception
+                    {
+                        return load(stripe, key, loader);
+                    }
+                });
+                stripe.loading.put(key, loading);
+                owner = true;
+            }
+        }
+        if(owner)
+        {
+            try
+            {
+                loading.run();
+            }
+            finally
+            {
+                synchronized(stripe)
+                {
+                    stripe.loading.remove(key);
+                }
+            }
+        }
+        bean = await(key, loading);
+        return bean == null ? null : checkout(bean);
+    }
+
+    /**
+     * Loads and caches the bean of a key.
+     * @return The cached bean, or null if there is no bean for the key
+     */
+    private Object load(Stripe stripe, Object key, BeanLoader<? super K, ? extends T> loader) throws Exception
+    {
+        T loaded;
+        Object bean;
+        Node node;
+
+        try
+        {
+            loaded = loader.load(cast(key));
+        }
+        catch(Exception e)
+        {
+            loadFailures.increment();
+            throw e;
+        }
+        loads.increment();
+        if(loaded == null)
+        {
+            return null;
+        }
+        bean = ProxyBeanFactory.immutableCopy(loaded);
+        synchronized(stripe)
+        {
+            node = store(stripe, key, bean);
+        }
+        evict(stripe, node);
+        return bean;
+    }
+
+    /**
+     * Waits for a load, without being interrupted.
+     * @return The loaded bean
+     */
+    private static Object await(Object key, FutureTask<Object> loading)
+    {
+        Throwable cause;
+        boolean interrupted;
+
+        interrupted = false;
+        try
+        {
+            while(true)
+            {
+                try
+                {
+                    return loading.get();
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        catch(ExecutionException e)
+        {
+            cause = e.getCause();
+            if(cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("On loading the bean of " + key, cause);
+        }
+        finally
+        {
+            if(interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Caches a bean, by the value of its key property. A not frozen bean is copied,
+     * so the bean can still be modified by the caller.
+     * @param bean The bean
+     * @throws IllegalArgumentException If the bean is not a proxy bean or its key is null
+     */
+    public void put(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        Object key, cached;
+        Stripe stripe;
+        Node node;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) == null)
+        {
+            throw new IllegalArgumentException("Not a proxy bean: " + (bean == null ? null : bean.getClass().getName()));
+        }
+        key = proxy.getSlot(keySlot);
+        stripe = stripeOf(key);
+        cached = ProxyBeanFactory.immutableCopy(bean);
+        synchronized(stripe)
+        {
+            node = store(stripe, key, cached);
+        }
+        evict(stripe, node);
+    }
+
+    /**
+     * Removes the bean of a key. A load of the key in progress is not cancelled.
+     * @param key The key
+     * @return true if the bean was cached
+     */
+    public boolean invalidate(K key)
+    {
+        Stripe stripe;
+        Node node;
+
+        stripe = stripeOf(key);
+        synchronized(stripe)
+        {
+            if((node = stripe.entries.remove(key)) == null)
+            {
+                return false;
+            }
+            removed(stripe, node);
+            return true;
+        }
+    }
+
+    /**
+     * Removes all the beans. The statistics are kept.
+     */
+    public void clear()
+    {
+        for(Stripe stripe : stripes)
+        {
+            synchronized(stripe)
+            {
+                size.addAndGet(-stripe.entries.size());
+                weight.addAndGet(-stripe.weight);
+                stripe.entries.clear();
+                stripe.weight = 0L;
+            }
+        }
+    }
+
+    /**
+     * The number of cached beans. Includes the expired ones not yet removed.
+     * @return The number of beans
+     */
+    public int size()
+    {
+        return (int) size.get();
+    }
+
+    /**
+     * The weight of the cached beans: its estimated {@link ProxyBeanImpl#estimateFootprint() footprint}, in bytes.
+     * @return The weight
+     */
+    public long getWeight()
+    {
+        return weight.get();
+    }
+
+    /**
+     * The maximum number of beans.
+     * @return The maximum, {@link Long#MAX_VALUE} if not bounded
+     */
+    public long getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of beans, enforced from the next bean cached.
+     * @param maximumSize The maximum
+     * @throws IllegalArgumentException If the maximum is not positive
+     */
+    public void setMaximumSize(long maximumSize)
+    {
+        if(maximumSize <= 0L)
+        {
+            throw new IllegalArgumentException("Not valid maximum size: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * The maximum weight of the beans.
+     * @return The maximum, {@link Long#MAX_VALUE} if not bounded
+     * @see #getWeight()
+     */
+    public long getMaximumWeight()
+    {
+        return maximumWeight;
+    }
+
+    /**
+     * Sets the maximum weight of the beans, enforced from the next bean cached.
+     * The weight of a bean is its estimated {@link ProxyBeanImpl#estimateFootprint() footprint}.
+     * @param maximumWeight The maximum, in bytes
+     * @throws IllegalArgumentException If the maximum is not positive
+     */
+    public void setMaximumWeight(long maximumWeight)
+    {
+        if(maximumWeight <= 0L)
+        {
+            throw new IllegalArgumentException("Not valid maximum weight: " + maximumWeight);
+        }
+        this.maximumWeight = maximumWeight;
+    }
+
+    /**
+     * Sets the time a bean is kept after cached. The expired beans are removed when found.
+     * @param duration The time; 0 to keep the beans until evicted
+     * @param unit The time unit
+     * @throws IllegalArgumentException If the time is negative
+     */
+    public void setExpireAfterWrite(long duration, TimeUnit unit)
+    {
+        if(duration < 0L)
+        {
+            throw new IllegalArgumentException("Not valid expiry time: " + duration);
+        }
+        expireAfterWrite = unit.toNanos(duration);
+    }
+
+    /**
+     * Checks if the beans are handed out as mutable copies.
+     * @return true if the beans are handed out as mutable copies, false if as the frozen cached beans
+     */
+    public boolean isCopyOnCheckout()
+    {
+        return copyOnCheckout;
+    }
+
+    /**
+     * Sets if the beans are handed out as {@link ProxyBeanFactory#mutableCopy(Object) mutable copies},
+     * that do not change the cached beans, instead of the frozen cached beans.
+     * @param copyOnCheckout true to hand out mutable copies
+     */
+    public void setCopyOnCheckout(boolean copyOnCheckout)
+    {
+        this.copyOnCheckout = copyOnCheckout;
+    }
+
+    /**
+     * The number of look ups that found the bean.
+     * @return The number of hits
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * The number of look ups that did not find the bean.
+     * @return The number of misses
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * The ratio of hits on the look ups.
+     * @return The ratio, between 0 and 1
+     */
+    public double getHitRate()
+    {
+        long h, total;
+
+        h = hits.sum();
+        total = h + misses.sum();
+        return total == 0L ? 0D : (double) h / total;
+    }
+
+    /**
+     * The number of successful loads, including the ones without bean.
+     * @return The number of loads
+     */
+    public long getLoads()
+    {
+        return loads.sum();
+    }
+
+    /**
+     * The number of loads that failed.
+     * @return The number of failures
+     */
+    public long getLoadFailures()
+    {
+        return loadFailures.sum();
+    }
+
+    /**
+     * The number of beans evicted by the size or the weight limits.
+     * @return The number of evictions
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * The number of expired beans removed.
+     * @return The number of expirations
+     */
+    public long getExpirations()
+    {
+        return expirations.sum();
+    }
+
+    /**
+     * The cached entry of a key, if not expired. Removes the expired entry.
+     * Called with the stripe lock.
+     * @return The entry, or null if the key is not cached
+     */
+    private Node present(Stripe stripe, Object key)
+    {
+        Node node;
+
+        if((node = stripe.entries.get(key)) != null && isExpired(node, System.nanoTime()))
+        {
+            stripe.entries.remove(key);
+            removed(stripe, node);
+            expirations.increment();
+            return null;
+        }
+        return node;
+    }
+
+    /**
+     * Caches a frozen bean and removes the expired least recently used beans of the stripe.
+     * Called with the stripe lock.
+     * @return The entry of the bean
+     */
+    private Node store(Stripe stripe, Object key, Object bean)
+    {
+        Iterator<Node> iterator;
+        Node node, previous, eldest;
+        long now;
+
+        now = System.nanoTime();
+        node = new Node(bean, ProxyBeanUtils.proxyBeanOf(bean).estimateFootprint(), now);
+        if((previous = stripe.entries.put(key, node)) != null)
+        {
+            removed(stripe, previous);
+        }
+        stripe.weight += node.weight;
+        size.incrementAndGet();
+        weight.addAndGet(node.weight);
+        iterator = stripe.entries.values().iterator();
+        while(iterator.hasNext() && (eldest = iterator.next()) != node && isExpired(eldest, now))
+        {
+            iterator.remove();
+            removed(stripe, eldest);
+            expirations.increment();
+        }
+        return node;
+    }
+
+    /**
+     * Evicts the least recently used beans while the cache is over its limits: the ones of the
+     * stripe of a stored bean first, then the ones of the other stripes. The stored bean is
+     * evicted only if the limits are still exceeded without the others.
+     * Called without any stripe lock.
+     * @param first The stripe of the stored bean
+     * @param stored The entry of the stored bean
+     */
+    private void evict(Stripe first, Node stored)
+    {
+        Iterator<Node> iterator;
+        Stripe stripe;
+        Node node;
+
+        for(int n = -1; n < stripes.length && isOverLimits(); n++)
+        {
+            stripe = n < 0 ? first : stripes[n];
+            if(n >= 0 && stripe == first)
+            {
+                continue;
+            }
+            synchronized(stripe)
+            {
+                iterator = stripe.entries.values().iterator();
+                while(isOverLimits() && iterator.hasNext())
+                {
+                    if((node = iterator.next()) != stored)
+                    {
+                        iterator.remove();
+                        removed(stripe, node);
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+        if(isOverLimits())
+        {
+            synchronized(first)
+            {
+                iterator = first.entries.values().iterator();
+                while(iterator.hasNext())
+                {
+                    if(iterator.next() == stored)
+                    {
+                        iterator.remove();
+                        removed(first, stored);
+                        evictions.increment();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the cached beans exceed the size or the weight limits.
+     */
+    private boolean isOverLimits()
+    {
+        return size.get() > maximumSize || weight.get() > maximumWeight;
+    }
+
+    /**
+     * Accounts a removed entry. Called with the stripe lock.
+     */
+    private void removed(Stripe stripe, Node node)
+    {
+        stripe.weight -= node.weight;
+        size.decrementAndGet();
+        weight.addAndGet(-node.weight);
+    }
+
+    /**
+     * Checks if an entry is expired.
+     */
+    private boolean isExpired(Node node, long now)
+    {
+        long expiry;
+
+        expiry = expireAfterWrite;
+        return expiry != 0L && now - node.written >= expiry;
+    }
+
+    /**
+     * A cached bean, handed out as is or copied.
+     */
+    @SuppressWarnings("unchecked")
+    private T checkout(Object bean)
+    {
+        return copyOnCheckout ? ProxyBeanFactory.mutableCopy((T) bean) : (T) bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K cast(Object key)
+    {
+        return (K) key;
+    }
+
+    /**
+     * The stripe of a key, by the high bits of its spread hash.
+     * @param key The key
+     * @return The stripe
+     * @throws IllegalArgumentException If the key is null
+     */
+    private Stripe stripeOf(Object key)
+    {
+        int h;
+
+        if(key == null)
+        {
+            throw new IllegalArgumentException("Null key on the " + descriptor.getImplementedType().getSimpleName() + " cache");
+        }
+        if(stripes.length == 1)
+        {
+            return stripes[0];
+        }
+        h = key.hashCode() * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) >>> stripeShift];
+    }
+
+    /**
+     * A cached bean.
+     */
+    private static final class Node
+    {
+        /** The frozen bean */
+        final Object bean;
+
+        /** The weight of the bean */
+        final long weight;
+
+        /** When the bean was cached, by {@link System#nanoTime()} */
+        final long written;
+
+        Node(Object bean, long weight, long written)
+        {
+            this.bean = bean;
+            this.weight = weight;
+            this.written = written;
+        }
+    }
+
+    /**
+     * A stripe of the cache, with its own lock.
+     */
+    private static final class Stripe
+    {
+        /** The cached beans, by key, in access order */
+        final Map<Object, Node> entries = new LinkedHashMap<Object, Node>(16, 0.75F, true);
+
+        /** The loads in progress, by key */
+        final Map<Object, FutureTask<Object>> loading = new HashMap<Object, FutureTask<Object>>();
+
+        /** The weight of the cached beans */
+        long weight;
+    }
+}
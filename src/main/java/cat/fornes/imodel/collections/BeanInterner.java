@@ -0,0 +1,477 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.collections;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+
+/**
+ * An interner of proxy beans: returns a canonical instance for equal beans.
+ *
+ * <b>Use</b>
+ * <pre>
+ * BeanInterner&lt;IModel&gt; interner;
+ *
+ * interner = new BeanInterner&lt;IModel&gt;();
+ * ...
+ * model = interner.intern(ProxyBeanFactory.freeze(model));
+ * </pre>
+ *
+ * Only {@link ProxyBeanImpl#freeze() frozen} beans can be interned, so a canonical instance
+ * can not be modified by any of its holders. The beans are compared with its property values
+ * equality and hash, and must be of the same interface.
+ *
+ * The canonical instances are held by weak (or soft) references, so they are collected when
+ * not used. The table is split in stripes, each one with its own lock.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanInterner<T>
+{
+    /** Default number of stripes */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** Initial capacity of each stripe */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The stripes */
+    private final Stripe[] stripes;
+
+    /** Bits to shift a hash to get its stripe */
+    private final int stripeShift;
+
+    /** Queue of the collected canonical instances */
+    private final ReferenceQueue<Object> queue;
+
+    /** Number of intern calls */
+    private final LongAdder requests;
+
+    /** Number of intern calls that returned an existing canonical instance */
+    private final LongAdder hits;
+
+    /** Estimated memory of the not retained duplicates */
+    private final LongAdder savedBytes;
+
+    /**
+     * Constructor of an interner with weak references.
+     */
+    public BeanInterner()
+    {
+        this(DEFAULT_CONCURRENCY_LEVEL, false);
+    }
+
+    /**
+     * Constructor.
+     * @param concurrencyLevel The estimated number of concurrent threads; the number of stripes
+     * @param soft true to hold the canonical instances by soft references, that are kept while
+     *        there is enough memory; false for weak references
+     * @throws IllegalArgumentException If the concurrency level is not positive
+     */
+    public BeanInterner(int concurrencyLevel, boolean soft)
+    {
+        int count, bits;
+
+        if(concurrencyLevel <= 0)
+        {
+            throw new IllegalArgumentException("Not valid concurrency level: " + concurrencyLevel);
+        }
+        bits = 0;
+        for(count = 1; count < concurrencyLevel && count < (1 << 16); count <<= 1)
+        {
+            bits++;
+        }
+        queue = new ReferenceQueue<Object>();
+        stripes = new Stripe[count];
+        for(int n = 0; n < count; n++)
+        {
+            stripes[n] = new Stripe(soft, queue);
+        }
+        stripeShift = 32 - bits;
+        requests = new LongAdder();
+        hits = new LongAdder();
+        savedBytes = new LongAdder();
+    }
+
+    /**
+     * Gets the canonical instance of a bean.
+     * If there is no canonical instance equal to the bean, the bean becomes the canonical instance.
+     * @param bean The bean, frozen
+     * @return The canonical instance, equal to the bean
+     * @throws IllegalArgumentException If the bean is not a frozen proxy bean
+     */
+    public T intern(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        T canonical;
+        int hash;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        if(proxy == null)
+        {
+            throw new IllegalArgumentException("Not a proxy bean: " + (bean == null ? null : bean.getClass().getName()));
+        }
+        if(proxy.isFrozen() == false)
+        {
+            throw new IllegalArgumentException("Only frozen beans can be interned");
+        }
+        expungeCollected();
+        // The cached hash code, unless it is the one of the identity values only
+        hash = spread(proxy.getDescriptor().hasIdentity() ? proxy.valueHashCode() : proxy.hashCode());
+        canonical = stripeOf(hash).intern(bean, proxy, hash);
+        requests.increment();
+        if(canonical != bean)
+        {
+            hits.increment();
+            savedBytes.add(proxy.estimateFootprint());
+        }
+        return canonical;
+    }
+
+    /**
+     * The number of canonical instances. Includes the collected ones not yet removed.
+     * @return The number of canonical instances
+     */
+    public int size()
+    {
+        int size;
+
+        expungeCollected();
+        size = 0;
+        for(Stripe stripe : stripes)
+        {
+            synchronized(stripe)
+            {
+                size += stripe.count;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all the canonical instances. The statistics are kept.
+     */
+    public void clear()
+    {
+        for(Stripe stripe : stripes)
+        {
+            synchronized(stripe)
+            {
+                stripe.table = new Entry[INITIAL_CAPACITY];
+                stripe.count = 0;
+            }
+        }
+    }
+
+    /**
+     * The number of {@link #intern(Object) intern} calls.
+     * @return The number of calls
+     */
+    public long getRequests()
+    {
+        return requests.sum();
+    }
+
+    /**
+     * The number of {@link #intern(Object) intern} calls that returned an existing canonical instance,
+     * so the interned bean was a duplicate.
+     * @return The number of duplicates
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * The ratio of duplicates on the {@link #intern(Object) intern} calls.
+     * @return The ratio, between 0 and 1
+     */
+    public double getDedupRatio()
+    {
+        long total;
+
+        total = requests.sum();
+        return total == 0L ? 0D : (double) hits.sum() / total;
+    }
+
+    /**
+     * The estimated memory saved by not retaining the duplicates, in bytes.
+     * Only the {@link ProxyBeanImpl#estimateFootprint() bean structure} is counted.
+     * @return The estimated saved memory
+     */
+    public long getSavedBytes()
+    {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Spreads the hash, as the bean hashes can have low entropy on its high bits.
+     * @param hash The hash
+     * @return The spread hash
+     */
+    private static int spread(int hash)
+    {
+        int h;
+
+        h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The stripe of a hash, by its high bits.
+     * @param hash The spread hash
+     * @return The stripe
+     */
+    private Stripe stripeOf(int hash)
+    {
+        return stripes.length == 1 ? stripes[0] : stripes[hash >>> stripeShift];
+    }
+
+    /**
+     * Removes the entries of the collected canonical instances.
+     */
+    private void expungeCollected()
+    {
+        Reference<?> reference;
+        Entry entry;
+
+        while((reference = queue.poll()) != null)
+        {
+            entry = (Entry) reference;
+            stripeOf(entry.hash()).remove(entry);
+        }
+    }
+
+    /**
+     * An entry of the table, a reference to a canonical instance.
+     */
+    private interface Entry
+    {
+        /**
+         * The referenced canonical instance.
+         * @return The canonical instance, or null if collected
+         */
+        Object get();
+
+        /**
+         * The spread hash of the canonical instance.
+         * @return The hash
+         */
+        int hash();
+
+        /**
+         * The next entry of the bucket.
+         * @return The next entry, or null
+         */
+        Entry next();
+
+        /**
+         * Sets the next entry of the bucket.
+         * @param next The next entry
+         */
+        void setNext(Entry next);
+    }
+
+    /**
+     * An entry with a weak reference.
+     */
+    private static final class WeakEntry extends WeakReference<Object> implements Entry
+    {
+        private final int hash;
+
+        private Entry next;
+
+        WeakEntry(Object bean, int hash, Entry next, ReferenceQueue<Object> queue)
+        {
+            super(bean, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+
+        @Override
+        public int hash()
+        {
+            return hash;
+        }
+
+        @Override
+        public Entry next()
+        {
+            return next;
+        }
+
+        @Override
+        public void setNext(Entry next)
+        {
+            this.next = next;
+        }
+    }
+
+    /**
+     * An entry with a soft reference.
+     */
+    private static final class SoftEntry extends SoftReference<Object> implements Entry
+    {
+        private final int hash;
+
+        private Entry next;
+
+        SoftEntry(Object bean, int hash, Entry next, ReferenceQueue<Object> queue)
+        {
+            super(bean, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+
+        @Override
+        public int hash()
+        {
+            return hash;
+        }
+
+        @Override
+        public Entry next()
+        {
+            return next;
+        }
+
+        @Override
+        public void setNext(Entry next)
+        {
+            this.next = next;
+        }
+    }
+
+    /**
+     * A stripe of the table: a hash table of entries, guarded by its own monitor.
+     */
+    private static final class Stripe
+    {
+        /** If the canonical instances are held by soft references */
+        private final boolean soft;
+
+        /** Queue of the collected canonical instances */
+        private final ReferenceQueue<Object> queue;
+
+        /** The buckets */
+        Entry[] table = new Entry[INITIAL_CAPACITY];
+
+        /** The number of entries */
+        int count;
+
+        Stripe(boolean soft, ReferenceQueue<Object> queue)
+        {
+            this.soft = soft;
+            this.queue = queue;
+        }
+
+        /**
+         * Gets or sets the canonical instance of a bean.
+         * @param bean The bean
+         * @param proxy The proxy implementation of the bean
+         * @param hash The spread hash of the bean
+         * @return The canonical instance
+         */
+        @SuppressWarnings("unchecked")
+        synchronized <T> T intern(T bean, ProxyBeanImpl<T> proxy, int hash)
+        {
+            ProxyBeanImpl<?> other;
+            Object candidate;
+            int index;
+
+            index = hash & (table.length - 1);
+            for(Entry entry = table[index]; entry != null; entry = entry.next())
+            {
+                if(entry.hash() == hash && (candidate = entry.get()) != null)
+                {
+                    other = ProxyBeanUtils.proxyBeanOf(candidate);
+                    if(other.getImplementedType() == proxy.getImplementedType() && proxy.valueEquals(other))
+                    {
+                        return (T) candidate;
+                    }
+                }
+            }
+            table[index] = soft ? new SoftEntry(bean, hash, table[index], queue) : new WeakEntry(bean, hash, table[index], queue);
+            if(++count > table.length - (table.length >> 2))
+            {
+                resize();
+            }
+            return bean;
+        }
+
+        /**
+         * Removes an entry.
+         * @param removed The entry
+         */
+        synchronized void remove(Entry removed)
+        {
+            Entry previous;
+            int index;
+
+            index = removed.hash() & (table.length - 1);
+            previous = null;
+            for(Entry entry = table[index]; entry != null; entry = entry.next())
+            {
+                if(entry == removed)
+                {
+                    if(previous == null)
+                    {
+                        table[index] = entry.next();
+                    }
+                    else
+                    {
+                        previous.setNext(entry.next());
+                    }
+                    count--;
+                    return;
+                }
+                previous = entry;
+            }
+        }
+
+        /**
+         * Doubles the buckets.
+         */
+        private void resize()
+        {
+            Entry[] resized;
+            Entry next;
+            int index;
+
+            resized = new Entry[table.length << 1];
+            for(Entry entry : table)
+            {
+                for(; entry != null; entry = next)
+                {
+                    next = entry.next();
+                    index = entry.hash() & (resized.length - 1);
+                    entry.setNext(resized[index]);
+                    resized[index] = entry;
+                }
+            }
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,615 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.collections;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.BeanListener;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+
+/**
+ * A collection of proxy beans with secondary indexes on its properties.
+ *
+ * <b>Use</b>
+ * <pre>
+ * IndexedBeanCollection&lt;IModel&gt; models;
+ *
+ * models = new IndexedBeanCollection&lt;IModel&gt;(IModel.class);
+ * models.addHashIndex("gender");
+ * models.addSortedIndex("id");
+ * models.addAll(...);
+ * ...
+ * females = models.findEqual("gender", EGender.Female);
+ * range = models.findRange("id", 100L, true, 200L, false);
+ * </pre>
+ *
+ * A hash index answers the equality queries, and a sorted index the equality and the range queries,
+ * of comparable values. The members are held by identity, and the indexes are updated when a
+ * member property is set, as the collection {@link ProxyBeanImpl#addListener(BeanListener) listens} its members.
+ *
+ * The collection can be read by many threads, while the members are changed by one writer thread
+ * at a time. A query returns the members as of the last completed change.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class IndexedBeanCollection<T> extends AbstractCollection<T>
+{
+    /** The descriptor of the members type */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The lock of the members and the indexes */
+    private final ReentrantReadWriteLock lock;
+
+    /** The members, by its implementation */
+    private final Map<ProxyBeanImpl<?>, T> members;
+
+    /** The indexes, by property */
+    private final Map<String, Index<T>> indexes;
+
+    /** The indexes, by slot of the members type; a copy on write array */
+    private volatile Index<?>[] indexesBySlot;
+
+    /** The listener of the members */
+    private final BeanListener listener;
+
+    /**
+     * Constructor.
+     * @param type The members type
+     * @throws IllegalArgumentException If the type is not an interface
+     */
+    public IndexedBeanCollection(Class<T> type)
+    {
+        descriptor = BeanDescriptor.forType(type);
+        lock = new ReentrantReadWriteLock();
+        members = new IdentityHashMap<ProxyBeanImpl<?>, T>();
+        indexes = new HashMap<String, Index<T>>();
+        indexesBySlot = new Index<?>[descriptor.size()];
+        listener = new BeanListener()
+        {
+            @Override
+            public void propertyChanged(ProxyBeanImpl<?> bean, int slot, Object oldValue, Object newValue)
+            {
+                onPropertyChanged(bean, slot, oldValue, newValue);
+            }
+        };
+    }
+
+    /**
+     * Adds a hash index, for equality queries.
+     * @param property The property
+     * @throws IllegalArgumentException If the type has not the property or it is indexed yet
+     */
+    public void addHashIndex(String property)
+    {
+        addIndex(property, false);
+    }
+
+    /**
+     * Adds a sorted index, for equality and range queries. The not null values must be comparable.
+     * @param property The property
+     * @throws IllegalArgumentException If the type has not the property or it is indexed yet
+     */
+    public void addSortedIndex(String property)
+    {
+        addIndex(property, true);
+    }
+
+    /**
+     * Adds an index, of the current members.
+     * @param property The property
+     * @param sorted If the index is sorted
+     */
+    private void addIndex(String property, boolean sorted)
+    {
+        Index<?>[] bySlot;
+        Index<T> index;
+        int slot;
+
+        if((slot = descriptor.slotOf(property)) < 0)
+        {
+            throw new IllegalArgumentException("No property '" + property + "' on " + descriptor.getImplementedType().getName());
+        }
+        lock.writeLock().lock();
+        try
+        {
+            if(indexes.containsKey(property))
+            {
+                throw new IllegalArgumentException("The property '" + property + "' is indexed yet");
+            }
+            index = new Index<T>(property, slot, sorted);
+            for(Map.Entry<ProxyBeanImpl<?>, T> member : members.entrySet())
+            {
+                index.add(valueOf(member.getKey(), index), member.getValue());
+            }
+            indexes.put(property, index);
+            bySlot = indexesBySlot.clone();
+            bySlot[slot] = index;
+            indexesBySlot = bySlot;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a bean.
+     * @param bean The bean, a proxy bean
+     * @return <b>true</b> if the bean was not a member yet
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     */
+    @Override
+    public boolean add(T bean)
+    {
+        ProxyBeanImpl<?> proxy;
+
+        proxy = proxyOf(bean);
+        lock.writeLock().lock();
+        try
+        {
+            if(members.containsKey(proxy))
+            {
+                return false;
+            }
+            members.put(proxy, bean);
+            // Listen before reading the values, so no change is lost
+            proxy.addListener(listener);
+            for(Index<T> index : indexes.values())
+            {
+                index.add(valueOf(proxy, index), bean);
+            }
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a bean.
+     * @param bean The bean
+     * @return <b>true</b> if the bean was a member
+     */
+    @Override
+    public boolean remove(Object bean)
+    {
+        ProxyBeanImpl<?> proxy;
+        T member;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) == null)
+        {
+            return false;
+        }
+        lock.writeLock().lock();
+        try
+        {
+            if((member = members.remove(proxy)) == null)
+            {
+                return false;
+            }
+            proxy.removeListener(listener);
+            for(Index<T> index : indexes.values())
+            {
+                index.remove(valueOf(proxy, index), member);
+            }
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object bean)
+    {
+        ProxyBeanImpl<?> proxy;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) == null)
+        {
+            return false;
+        }
+        lock.readLock().lock();
+        try
+        {
+            return members.containsKey(proxy);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return members.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for(ProxyBeanImpl<?> proxy : members.keySet())
+            {
+                proxy.removeListener(listener);
+            }
+            members.clear();
+            for(Index<T> index : indexes.values())
+            {
+                index.clear();
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * An iterator over a snapshot of the members. Its removals are applied to the collection.
+     * @return The iterator
+     */
+    @Override
+    public Iterator<T> iterator()
+    {
+        final List<T> snapshot;
+
+        lock.readLock().lock();
+        try
+        {
+            snapshot = new ArrayList<T>(members.values());
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return new Iterator<T>()
+        {
+            private int next;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next < snapshot.size();
+            }
+
+            @Override
+            public T next()
+            {
+                if(next >= snapshot.size())
+                {
+                    throw new NoSuchElementException();
+                }
+                return snapshot.get(next++);
+            }
+
+            @Override
+            public void remove()
+            {
+                if(next == 0)
+                {
+                    throw new IllegalStateException();
+                }
+                IndexedBeanCollection.this.remove(snapshot.get(next - 1));
+            }
+        };
+    }
+
+    /**
+     * Finds the members with a property value.
+     * @param property The indexed property
+     * @param value The value
+     * @return The members, in no particular order
+     * @throws IllegalArgumentException If the property is not indexed
+     */
+    public List<T> findEqual(String property, Object value)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return copyOf(indexOf(property).get(value));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the members with a property value on a range. The members with null value are not included.
+     * @param property The property, with a sorted index
+     * @param from The lower bound, or null for no lower bound
+     * @param fromInclusive If the lower bound is included
+     * @param to The upper bound, or null for no upper bound
+     * @param toInclusive If the upper bound is included
+     * @return The members, sorted by the property value
+     * @throws IllegalArgumentException If the property has not a sorted index
+     */
+    public List<T> findRange(String property, Object from, boolean fromInclusive, Object to, boolean toInclusive)
+    {
+        NavigableMap<Object, Set<T>> range;
+        List<T> result;
+        Index<T> index;
+
+        lock.readLock().lock();
+        try
+        {
+            index = indexOf(property);
+            if(index.sorted == false)
+            {
+                throw new IllegalArgumentException("The property '" + property + "' has not a sorted index");
+            }
+            range = (NavigableMap<Object, Set<T>>) index.values;
+            if(from != null && to != null)
+            {
+                range = range.subMap(from, fromInclusive, to, toInclusive);
+            }
+            else if(from != null)
+            {
+                range = range.tailMap(from, fromInclusive);
+            }
+            else if(to != null)
+            {
+                range = range.headMap(to, toInclusive);
+            }
+            result = new ArrayList<T>();
+            for(Set<T> beans : range.values())
+            {
+                result.addAll(beans);
+            }
+            return result;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the indexes of a changed member.
+     * @param bean The implementation of the changed bean
+     * @param slot The changed slot, on the bean descriptor
+     * @param oldValue The previous value
+     * @param newValue The new value
+     */
+    @SuppressWarnings("unchecked")
+    private void onPropertyChanged(ProxyBeanImpl<?> bean, int slot, Object oldValue, Object newValue)
+    {
+        Index<T> index;
+        T member;
+
+        if(bean.getDescriptor() == descriptor && indexesBySlot[slot] == null)
+        {
+            // Not indexed property
+            return;
+        }
+        lock.writeLock().lock();
+        try
+        {
+            if(bean.getDescriptor() == descriptor)
+            {
+                index = (Index<T>) indexesBySlot[slot];
+            }
+            else
+            {
+                index = indexes.get(bean.getDescriptor().getName(slot));
+            }
+            if(index != null && (member = members.get(bean)) != null)
+            {
+                index.remove(oldValue, member);
+                index.add(newValue, member);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The index of a property.
+     * @param property The property
+     * @return The index
+     * @throws IllegalArgumentException If the property is not indexed
+     */
+    private Index<T> indexOf(String property)
+    {
+        Index<T> index;
+
+        if((index = indexes.get(property)) == null)
+        {
+            throw new IllegalArgumentException("The property '" + property + "' is not indexed");
+        }
+        return index;
+    }
+
+    /**
+     * The indexed value of a member.
+     * @param proxy The member implementation
+     * @param index The index
+     * @return The value
+     */
+    private Object valueOf(ProxyBeanImpl<?> proxy, Index<T> index)
+    {
+        if(proxy.getDescriptor() == descriptor)
+        {
+            return proxy.getSlot(index.slot);
+        }
+        return proxy.getSlot(proxy.getDescriptor().slotOf(index.property));
+    }
+
+    /**
+     * The implementation of a bean to add.
+     * @param bean The bean
+     * @return The implementation
+     * @throws IllegalArgumentException If the bean is not a proxy bean of the members type
+     */
+    private ProxyBeanImpl<?> proxyOf(T bean)
+    {
+        ProxyBeanImpl<?> proxy;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        if(proxy == null || descriptor.getImplementedType().isAssignableFrom(proxy.getImplementedType()) == false)
+        {
+            throw new IllegalArgumentException("Not a proxy bean of " + descriptor.getImplementedType().getName() + ": " + bean);
+        }
+        return proxy;
+    }
+
+    /**
+     * A copy of a set of members.
+     * @param beans The members, can be null
+     * @return The copy
+     */
+    private static <T> List<T> copyOf(Collection<T> beans)
+    {
+        return beans == null ? new ArrayList<T>() : new ArrayList<T>(beans);
+    }
+
+    /**
+     * An index of the members by a property value.
+     */
+    private static final class Index<T>
+    {
+        /** The property */
+        final String property;
+
+        /** The property slot, on the members type */
+        final int slot;
+
+        /** If the index is sorted */
+        final boolean sorted;
+
+        /** The members, by value */
+        final Map<Object, Set<T>> values;
+
+        /** The members with null value, for the sorted indexes */
+        final Set<T> nulls;
+
+        Index(String property, int slot, boolean sorted)
+        {
+            this.property = property;
+            this.slot = slot;
+            this.sorted = sorted;
+            values = sorted ? new TreeMap<Object, Set<T>>() : new HashMap<Object, Set<T>>();
+            nulls = identitySet();
+        }
+
+        /**
+         * The members with a value.
+         * @param value The value
+         * @return The members, or null if none
+         */
+        Set<T> get(Object value)
+        {
+            if(value == null && sorted)
+            {
+                return nulls;
+            }
+            return values.get(value);
+        }
+
+        /**
+         * Adds a member.
+         * @param value The member value
+         * @param bean The member
+         */
+        void add(Object value, T bean)
+        {
+            Set<T> beans;
+
+            if(value == null && sorted)
+            {
+                nulls.add(bean);
+                return;
+            }
+            if((beans = values.get(value)) == null)
+            {
+                beans = identitySet();
+                values.put(value, beans);
+            }
+            beans.add(bean);
+        }
+
+        /**
+         * Removes a member.
+         * @param value The member value
+         * @param bean The member
+         */
+        void remove(Object value, T bean)
+        {
+            Set<T> beans;
+
+            if(value == null && sorted)
+            {
+                nulls.remove(bean);
+                return;
+            }
+            if((beans = values.get(value)) != null && beans.remove(bean) && beans.isEmpty())
+            {
+                values.remove(value);
+            }
+        }
+
+        /**
+         * Removes all the members.
+         */
+        void clear()
+        {
+            values.clear();
+            nulls.clear();
+        }
+
+        /**
+         * A new set of members by identity.
+         */
+        private static <T> Set<T> identitySet()
+        {
+            return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.diff;
+
+/**
+ * A change between two keyed collections of beans.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ * @see BeanDiff#diff(java.util.Map, java.util.Map)
+ */
+public final class BeanChange<K, T>
+{
+    /**
+     * The kinds of change.
+     */
+    public enum Kind
+    {
+        /** The key is only on the new collection */
+        ADDED,
+        /** The key is only on the previous collection */
+        REMOVED,
+        /** The key is on both collections, with different beans */
+        CHANGED
+    }
+
+    private final Kind kind;
+
+    private final K key;
+
+    private final T oldBean;
+
+    private final T newBean;
+
+    private final BeanPatch<T> patch;
+
+    /**
+     * Constructor.
+     * @param kind The kind of change
+     * @param key The key
+     * @param oldBean The previous bean, null if added
+     * @param newBean The new bean, null if removed
+     * @param patch The differences, null if not changed
+     */
+    BeanChange(Kind kind, K key, T oldBean, T newBean, BeanPatch<T> patch)
+    {
+        this.kind = kind;
+        this.key = key;
+        this.oldBean = oldBean;
+        this.newBean = newBean;
+        this.patch = patch;
+    }
+
+    /**
+     * The kind of change.
+     * @return The kind
+     */
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * The key of the changed bean.
+     * @return The key
+     */
+    public K getKey()
+    {
+        return key;
+    }
+
+    /**
+     * The previous bean.
+     * @return The bean, null if added
+     */
+    public T getOldBean()
+    {
+        return oldBean;
+    }
+
+    /**
+     * The new bean.
+     * @return The bean, null if removed
+     */
+    public T getNewBean()
+    {
+        return newBean;
+    }
+
+    /**
+     * The differences between the previous and the new beans.
+     * @return The patch, null if added or removed
+     */
+    public BeanPatch<T> getPatch()
+    {
+        return patch;
+    }
+
+    @Override
+    public String toString()
+    {
+        return kind + " " + key + (patch == null ? "" : ": " + patch);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.diff;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.PropertyPath;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.utils.ObjectUtils;
+
+/**
+ * Differences between proxy beans.
+ *
+ * <b>Use</b>
+ * <pre>
+ * BeanPatch&lt;IModel&gt; patch;
+ *
+ * patch = BeanDiff.diff(before, after);
+ * patch.apply(replica);
+ * ...
+ * BeanDiff.diff(previousById, currentById).forEach(change -&gt; audit(change));
+ * </pre>
+ *
+ * The beans are compared slot by slot, with {@link ObjectUtils#nullSafeEquals(Object, Object)}:
+ * the arrays are compared by content.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public abstract class BeanDiff
+{
+    /**
+     * The differences between two proxy beans.
+     * @param from The previous bean
+     * @param to The new bean, of the type of the previous bean or a derived type
+     * @return The patch that changes the previous bean to the new one, on the properties of the previous bean type
+     * @throws IllegalArgumentException If the beans are not proxy beans of the same type
+     */
+    public static <T> BeanPatch<T> diff(T from, T to)
+    {
+        ProxyBeanImpl<T> source, target;
+        BeanDescriptor<T> descriptor;
+        Object[] oldValues, newValues;
+        Object oldValue, newValue;
+        int[] slots;
+        int count;
+
+        source = proxyOf(from);
+        target = proxyOf(to);
+        descriptor = source.getDescriptor();
+        if(descriptor.getImplementedType().isAssignableFrom(target.getImplementedType()) == false)
+        {
+            throw new IllegalArgumentException("Not a bean of " + descriptor.getImplementedType().getName() + ": " + to);
+        }
+        slots = new int[descriptor.size()];
+        oldValues = new Object[slots.length];
+        newValues = new Object[slots.length];
+        count = 0;
+        for(int n = 0; n < slots.length; n++)
+        {
+            oldValue = source.getSlot(n);
+            newValue = target.getSlot(target.getDescriptor() == descriptor ? n : target.getDescriptor().slotOf(descriptor.getName(n)));
+            if(ObjectUtils.nullSafeEquals(oldValue, newValue) == false)
+            {
+                slots[count] = n;
+                oldValues[count] = BeanPatch.copyOf(oldValue);
+                newValues[count] = BeanPatch.copyOf(newValue);
+                count++;
+            }
+        }
+        return new BeanPatch<T>(descriptor, Arrays.copyOf(slots, count), Arrays.copyOf(oldValues, count), Arrays.copyOf(newValues, count));
+    }
+
+    /**
+     * The differences between two keyed collections of proxy beans, computed in parallel.
+     * @param from The previous beans, by key
+     * @param to The new beans, by key
+     * @return A parallel stream of the changes: the removed and changed keys, then the added ones.
+     *         The maps must not be modified while the stream is consumed
+     * @throws IllegalArgumentException On the stream consumption, if the beans of a key are not proxy beans of the same type
+     */
+    public static <K, T> Stream<BeanChange<K, T>> diff(final Map<K, T> from, final Map<K, T> to)
+    {
+        Stream<BeanChange<K, T>> removedOrChanged, added;
+
+        removedOrChanged = from.entrySet().parallelStream().map(new Function<Map.Entry<K, T>, BeanChange<K, T>>()
+        {
+            @Override
+            public BeanChange<K, T> apply(Map.Entry<K, T> entry)
+            {
+                BeanPatch<T> patch;
+                T other;
+
+                if((other = to.get(entry.getKey())) == null)
+                {
+                    return new BeanChange<K, T>(BeanChange.Kind.REMOVED, entry.getKey(), entry.getValue(), null, null);
+                }
+                if((patch = diff(entry.getValue(), other)).isEmpty())
+                {
+                    return null;
+                }
+                return new BeanChange<K, T>(BeanChange.Kind.CHANGED, entry.getKey(), entry.getValue(), other, patch);
+            }
+        }).filter(new Predicate<BeanChange<K, T>>()
+        {
+            @Override
+            public boolean test(BeanChange<K, T> change)
+            {
+                // Not changed
+                return change != null;
+            }
+        });
+        added = to.entrySet().parallelStream().filter(new Predicate<Map.Entry<K, T>>()
+        {
+            @Override
+            public boolean test(Map.Entry<K, T> entry)
+            {
+                return from.containsKey(entry.getKey()) == false;
+            }
+        }).map(new Function<Map.Entry<K, T>, BeanChange<K, T>>()
+        {
+            @Override
+            public BeanChange<K, T> apply(Map.Entry<K, T> entry)
+            {
+                return new BeanChange<K, T>(BeanChange.Kind.ADDED, entry.getKey(), null, entry.getValue(), null);
+            }
+        });
+        return Stream.concat(removedOrChanged, added);
+    }
+
+    /**
+     * The differences between two collections of proxy beans, keyed by a property, computed in parallel.
+     * @param type The beans type
+     * @param keyProperty The key property path, unique on each collection
+     * @param from The previous beans
+     * @param to The new beans
+     * @return A parallel stream of the changes, keyed by the key property value
+     * @throws IllegalArgumentException If the key property is not found or is not unique
+     * @see #diff(Map, Map)
+     */
+    public static <T> Stream<BeanChange<Object, T>> diff(Class<T> type, String keyProperty, Collection<T> from, Collection<T> to)
+    {
+        PropertyPath<T> key;
+
+        key = PropertyPath.compile(type, keyProperty);
+        return diff(byKey(key, from), byKey(key, to));
+    }
+
+    /**
+     * The beans of a collection, by key.
+     * @param key The key property
+     * @param beans The beans
+     * @return The beans, by key
+     * @throws IllegalArgumentException If the key is not unique
+     */
+    private static <T> Map<Object, T> byKey(PropertyPath<T> key, Collection<T> beans)
+    {
+        Map<Object, T> result;
+        Object value;
+
+        result = new HashMap<Object, T>(beans.size() * 4 / 3 + 1);
+        for(T bean : beans)
+        {
+            value = key.get(bean);
+            if(result.put(value, bean) != null)
+            {
+                throw new IllegalArgumentException("Duplicated key " + key + ": " + value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The implementation of a proxy bean.
+     * @param bean The bean
+     * @return The implementation
+     * @throws IllegalArgumentException If the bean is not a proxy bean
+     */
+    private static <T> ProxyBeanImpl<T> proxyOf(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) == null)
+        {
+            throw new IllegalArgumentException("Not a proxy bean: " + bean);
+        }
+        return proxy;
+    }
+}
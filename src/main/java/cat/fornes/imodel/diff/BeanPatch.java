@@ -0,0 +1,215 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.diff;
+
+import java.lang.reflect.Array;
+import java.util.function.Consumer;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.ConstraintViolationException;
+import cat.fornes.imodel.PropertyPath;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+
+/**
+ * The differences between two beans of a type: the changed properties with its previous and new values.
+ *
+ * A patch is created by {@link BeanDiff#diff(Object, Object)} and is immutable: the array values are copied.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class BeanPatch<T>
+{
+    /** The descriptor of the patched type */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The changed slots, in slot order */
+    private final int[] slots;
+
+    /** The previous values, by change */
+    private final Object[] oldValues;
+
+    /** The new values, by change */
+    private final Object[] newValues;
+
+    /**
+     * Constructor.
+     * @param descriptor The descriptor of the patched type
+     * @param slots The changed slots
+     * @param oldValues The previous values, by change
+     * @param newValues The new values, by change
+     */
+    BeanPatch(BeanDescriptor<T> descriptor, int[] slots, Object[] oldValues, Object[] newValues)
+    {
+        this.descriptor = descriptor;
+        this.slots = slots;
+        this.oldValues = oldValues;
+        this.newValues = newValues;
+    }
+
+    /**
+     * The descriptor of the patched type.
+     * @return The descriptor
+     */
+    public BeanDescriptor<T> getDescriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * The number of changed properties.
+     * @return The number of changes
+     */
+    public int size()
+    {
+        return slots.length;
+    }
+
+    /**
+     * Check if there are no changes: the beans are equal.
+     * @return <b>true</b> if there are no changes
+     */
+    public boolean isEmpty()
+    {
+        return slots.length == 0;
+    }
+
+    /**
+     * The slot of a change.
+     * @param change The change index
+     * @return The slot of the changed property
+     */
+    public int getSlot(int change)
+    {
+        return slots[change];
+    }
+
+    /**
+     * The property of a change.
+     * @param change The change index
+     * @return The changed property name
+     */
+    public String getProperty(int change)
+    {
+        return descriptor.getName(slots[change]);
+    }
+
+    /**
+     * The previous value of a change.
+     * @param change The change index
+     * @return The previous value
+     */
+    public Object getOldValue(int change)
+    {
+        return copyOf(oldValues[change]);
+    }
+
+    /**
+     * The new value of a change.
+     * @param change The change index
+     * @return The new value
+     */
+    public Object getNewValue(int change)
+    {
+        return copyOf(newValues[change]);
+    }
+
+    /**
+     * The patch that reverts this one: from the new values to the previous ones.
+     * @return The inverse patch
+     */
+    public BeanPatch<T> inverse()
+    {
+        return new BeanPatch<T>(descriptor, slots, newValues, oldValues);
+    }
+
+    /**
+     * Applies the changes to a bean: sets the new values of the changed properties, as its setters do.
+     * On a proxy bean the changes are applied in one {@link ProxyBeanImpl#update(Consumer) update}:
+     * a violated constraint discards the whole patch.
+     * @param bean The bean, a proxy bean or other implementation of the type
+     * @throws IllegalStateException If the bean is frozen
+     * @throws ConstraintViolationException If a new value violates a constraint of its property
+     */
+    public void apply(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+
+        if((proxy = ProxyBeanUtils.proxyBeanOf(bean)) != null)
+        {
+            proxy.update(new Consumer<T>()
+            {
+                @Override
+                public void accept(T draft)
+                {
+                    ProxyBeanImpl<T> changed;
+
+                    changed = ProxyBeanUtils.proxyBeanOf(draft);
+                    for(int n = 0; n < slots.length; n++)
+                    {
+                        changed.set(descriptor.getName(slots[n]), copyOf(newValues[n]));
+                    }
+                }
+            });
+            return;
+        }
+        for(int n = 0; n < slots.length; n++)
+        {
+            PropertyPath.compile(descriptor.getImplementedType(), descriptor.getName(slots[n])).set(bean, copyOf(newValues[n]));
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder stb;
+
+        stb = new StringBuilder(descriptor.getImplementedType().getSimpleName()).append(" patch [");
+        for(int n = 0; n < slots.length; n++)
+        {
+            if(n > 0)
+            {
+                stb.append(", ");
+            }
+            stb.append(descriptor.getName(slots[n])).append(": ").append(oldValues[n]).append(" -> ").append(newValues[n]);
+        }
+        return stb.append(']').toString();
+    }
+
+    /**
+     * A copy of a value: the arrays are copied, the other values are immutable or shared.
+     * @param value The value
+     * @return The copy
+     */
+    static Object copyOf(Object value)
+    {
+        Object copy;
+        int length;
+
+        if(value == null || value.getClass().isArray() == false)
+        {
+            return value;
+        }
+        length = Array.getLength(value);
+        copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+/**
+ * Differences between proxy beans.
+ *
+ * Features:
+ * <ul>
+ * <li>Slot by slot difference of two beans, as a compact patch that can be applied to other beans</li>
+ * <li>Parallel difference of large keyed collections of beans, as a stream of changes</li>
+ * </ul>
+ * @since 1.1.0
+ */
+package cat.fornes.imodel.diff;
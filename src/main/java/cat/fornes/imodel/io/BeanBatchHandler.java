@@ -0,0 +1,38 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the beans produced by an import, batch by batch.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public interface BeanBatchHandler<T>
+{
+    /**
+     * Handles a batch of beans.
+     * @param beans The beans, owned by the handler from now on
+     * @throws IOException On handling errors; aborts the import
+     */
+    void onBatch(List<T> beans) throws IOException;
+}
@@ -0,0 +1,639 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.PropertyPath;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.SlotDecoder;
+import cat.fornes.imodel.utils.StringPool;
+
+/**
+ * A compact binary encoding of beans, by property slot.
+ *
+ * The encoded bean is an offset table followed by the values:
+ * <pre>
+ * int count             the number of slots
+ * int offset[count]     the offset of each value from the encoding start, -1 for null
+ * values                big endian; the strings as int length and UTF-8 bytes
+ * </pre>
+ * So a single property can be {@link #decodeSlot(byte[], int, int) decoded} without decoding the others,
+ * and a bean can {@link #wrap(byte[], int, int) wrap} its encoding and decode each property on its first access.
+ *
+ * The primitives and its wrappers, strings, dates, enums (by name), big numbers and byte arrays
+ * have a built-in encoding. Other values are encoded with the Java serialization.
+ *
+ * The decoded strings are deduplicated by the {@link BeanDescriptor#getStringPool(int) pools} of its properties.
+ *
+ * The codecs are thread safe.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class BeanCodec<T>
+{
+    private static final int LONG = 0;
+
+    private static final int INT = 1;
+
+    private static final int SHORT = 2;
+
+    private static final int BYTE = 3;
+
+    private static final int CHAR = 4;
+
+    private static final int BOOLEAN = 5;
+
+    private static final int FLOAT = 6;
+
+    private static final int DOUBLE = 7;
+
+    private static final int STRING = 8;
+
+    private static final int DATE = 9;
+
+    private static final int ENUM = 10;
+
+    private static final int BIG_DECIMAL = 11;
+
+    private static final int BIG_INTEGER = 12;
+
+    private static final int BYTES = 13;
+
+    private static final int SERIALIZED = 14;
+
+    /** The descriptor of the encoded type */
+    private final BeanDescriptor<T> descriptor;
+
+    /** The encoding kind, by slot */
+    private final int[] kinds;
+
+    /** The accessors for the beans that are not proxy beans of the type, by slot */
+    private final PropertyPath<?>[] paths;
+
+    /** The schema: the property names and types, by slot */
+    private final String schema;
+
+    /**
+     * Constructor.
+     * @param type The encoded type
+     * @throws IllegalArgumentException If the type is not an interface
+     */
+    @SuppressWarnings("unchecked")
+    public BeanCodec(Class<T> type)
+    {
+        StringBuilder stb;
+        Class<?> slotType;
+
+        descriptor = BeanDescriptor.forType(type);
+        kinds = new int[descriptor.size()];
+        paths = new PropertyPath<?>[descriptor.size()];
+        stb = new StringBuilder();
+        for(int n = 0; n < kinds.length; n++)
+        {
+            slotType = descriptor.getType(n);
+            kinds[n] = kindOf(slotType);
+            if(descriptor.getGetter(n) != null)
+            {
+                paths[n] = PropertyPath.compile(type, descriptor.getName(n));
+            }
+            stb.append(n == 0 ? "" : ";").append(descriptor.getName(n)).append(':').append(slotType.getName());
+        }
+        schema = stb.toString();
+    }
+
+    /**
+     * The encoding kind of a property type.
+     * @param type The property type
+     * @return The kind
+     */
+    private static int kindOf(Class<?> type)
+    {
+        if(type == long.class || type == Long.class)
+        {
+            return LONG;
+        }
+        if(type == int.class || type == Integer.class)
+        {
+            return INT;
+        }
+        if(type == short.class || type == Short.class)
+        {
+            return SHORT;
+        }
+        if(type == byte.class || type == Byte.class)
+        {
+            return BYTE;
+        }
+        if(type == char.class || type == Character.class)
+        {
+            return CHAR;
+        }
+        if(type == boolean.class || type == Boolean.class)
+        {
+            return BOOLEAN;
+        }
+        if(type == float.class || type == Float.class)
+        {
+            return FLOAT;
+        }
+        if(type == double.class || type == Double.class)
+        {
+            return DOUBLE;
+        }
+        if(type == String.class)
+        {
+            return STRING;
+        }
+        if(type == Date.class)
+        {
+            return DATE;
+        }
+        if(type.isEnum())
+        {
+            return ENUM;
+        }
+        if(type == BigDecimal.class)
+        {
+            return BIG_DECIMAL;
+        }
+        if(type == BigInteger.class)
+        {
+            return BIG_INTEGER;
+        }
+        if(type == byte[].class)
+        {
+            return BYTES;
+        }
+        return SERIALIZED;
+    }
+
+    /**
+     * The descriptor of the encoded type.
+     * @return The descriptor
+     */
+    public BeanDescriptor<T> getDescriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * The schema of the encoding: the property names and types, by slot.
+     * Two codecs with the same schema encode and decode the same way.
+     * @return The schema
+     */
+    public String getSchema()
+    {
+        return schema;
+    }
+
+    /**
+     * Encodes a bean. The encoding of a {@link #wrap(byte[], int, int) wrapped} bean that was not
+     * written is copied, without encoding its values.
+     * @param bean The bean, a proxy bean or other implementation of the type
+     * @return The encoded bean
+     * @throws IllegalArgumentException If a value can not be encoded
+     */
+    public byte[] encode(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        SlotDecoder decoder;
+        Output out;
+        Object value;
+        int table;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        if(proxy != null && proxy.getDescriptor() != descriptor)
+        {
+            proxy = null;
+        }
+        if(proxy != null && (decoder = proxy.getUnmodifiedDecoder()) instanceof EncodedBean && ((EncodedBean) decoder).isEncodingOf(this))
+        {
+            return ((EncodedBean) decoder).toByteArray();
+        }
+        out = new Output(16 + kinds.length * 12);
+        out.writeInt(kinds.length);
+        table = out.length;
+        out.ensure(kinds.length * 4);
+        out.length += kinds.length * 4;
+        for(int n = 0; n < kinds.length; n++)
+        {
+            if(proxy != null)
+            {
+                value = proxy.getSlot(n);
+            }
+            else
+            {
+                value = paths[n] == null ? null : pathOf(n).get(bean);
+            }
+            if(value == null)
+            {
+                out.putInt(table + n * 4, -1);
+            }
+            else
+            {
+                out.putInt(table + n * 4, out.length);
+                write(out, n, value);
+            }
+        }
+        return Arrays.copyOf(out.data, out.length);
+    }
+
+    /**
+     * Writes a value.
+     * @param out The destination
+     * @param slot The slot
+     * @param value The value, not null
+     */
+    private void write(Output out, int slot, Object value)
+    {
+        byte[] bytes;
+
+        switch(kinds[slot])
+        {
+            case LONG:
+                out.writeLong(((Long) value).longValue());
+                break;
+            case INT:
+                out.writeInt(((Integer) value).intValue());
+                break;
+            case SHORT:
+                out.writeShort(((Short) value).shortValue());
+                break;
+            case BYTE:
+                out.writeByte(((Byte) value).byteValue());
+                break;
+            case CHAR:
+                out.writeShort(((Character) value).charValue());
+                break;
+            case BOOLEAN:
+                out.writeByte(((Boolean) value).booleanValue() ? 1 : 0);
+                break;
+            case FLOAT:
+                out.writeInt(Float.floatToRawIntBits(((Float) value).floatValue()));
+                break;
+            case DOUBLE:
+                out.writeLong(Double.doubleToRawLongBits(((Double) value).doubleValue()));
+                break;
+            case DATE:
+                out.writeLong(((Date) value).getTime());
+                break;
+            case STRING:
+                out.writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+                break;
+            case ENUM:
+                out.writeBytes(((Enum<?>) value).name().getBytes(StandardCharsets.UTF_8));
+                break;
+            case BIG_DECIMAL:
+            case BIG_INTEGER:
+                out.writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+                break;
+            case BYTES:
+                out.writeBytes((byte[]) value);
+                break;
+            default:
+                bytes = serialize(slot, value);
+                out.writeBytes(bytes);
+                break;
+        }
+    }
+
+    /**
+     * Decodes a bean.
+     * @param data The encoded data
+     * @param offset The encoding start
+     * @param length The encoding length
+     * @return A new mutable bean
+     * @throws IllegalArgumentException If the data is not a valid encoding of the type
+     */
+    public T decode(byte[] data, int offset, int length)
+    {
+        Object[] values;
+        int count, position;
+
+        count = readInt(data, offset);
+        if(count != kinds.length || length < 4 + count * 4)
+        {
+            throw new IllegalArgumentException("Not valid encoded " + descriptor.getImplementedType().getSimpleName());
+        }
+        values = new Object[count];
+        for(int n = 0; n < count; n++)
+        {
+            position = readInt(data, offset + 4 + n * 4);
+            values[n] = position < 0 ? descriptor.getDefaultValue(n) : read(data, offset + position, n);
+        }
+        return descriptor.newProxy(descriptor.newHandler(values, false));
+    }
+
+    /**
+     * Wraps an encoded bean in a lazy bean, that decodes each value on its first access.
+     * The data is not copied and must not be modified while the bean is used.
+     * @param data The encoded data
+     * @param offset The encoding start
+     * @param length The encoding length
+     * @return A new mutable bean
+     * @throws IllegalArgumentException If the data is not a valid encoding of the type
+     */
+    public T wrap(byte[] data, int offset, int length)
+    {
+        if(length < 4 || readInt(data, offset) != kinds.length || length < 4 + kinds.length * 4)
+        {
+            throw new IllegalArgumentException("Not valid encoded " + descriptor.getImplementedType().getSimpleName());
+        }
+        return descriptor.newProxy(descriptor.newLazyHandler(new EncodedBean(this, data, offset, length)));
+    }
+
+    /**
+     * Wraps an encoded bean in a lazy bean, from the position to the limit of a buffer, without
+     * changing its position. The content of a buffer without accessible array, as a direct buffer,
+     * is copied.
+     * @param buffer The buffer
+     * @return A new mutable bean
+     * @throws IllegalArgumentException If the data is not a valid encoding of the type
+     * @see #wrap(byte[], int, int)
+     */
+    public T wrap(ByteBuffer buffer)
+    {
+        byte[] data;
+
+        if(buffer.hasArray())
+        {
+            return wrap(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * Decodes the value of a slot, without decoding the others.
+     * @param data The encoded data
+     * @param offset The encoding start
+     * @param slot The slot
+     * @return The value; the default value for null primitives
+     */
+    public Object decodeSlot(byte[] data, int offset, int slot)
+    {
+        int position;
+
+        position = readInt(data, offset + 4 + slot * 4);
+        return position < 0 ? descriptor.getDefaultValue(slot) : read(data, offset + position, slot);
+    }
+
+    /**
+     * Reads a value.
+     * @param data The encoded data
+     * @param position The value position
+     * @param slot The slot
+     * @return The value
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object read(byte[] data, int position, int slot)
+    {
+        switch(kinds[slot])
+        {
+            case LONG:
+                return Long.valueOf(readLong(data, position));
+            case INT:
+                return Integer.valueOf(readInt(data, position));
+            case SHORT:
+                return Short.valueOf((short) readShort(data, position));
+            case BYTE:
+                return Byte.valueOf(data[position]);
+            case CHAR:
+                return Character.valueOf((char) readShort(data, position));
+            case BOOLEAN:
+                return Boolean.valueOf(data[position] != 0);
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat(readInt(data, position)));
+            case DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(readLong(data, position)));
+            case DATE:
+                return new Date(readLong(data, position));
+            case STRING:
+                return readString(data, position, slot);
+            case ENUM:
+                return Enum.valueOf((Class) descriptor.getType(slot), new String(data, position + 4, readInt(data, position), StandardCharsets.UTF_8));
+            case BIG_DECIMAL:
+                return new BigDecimal(new String(data, position + 4, readInt(data, position), StandardCharsets.US_ASCII));
+            case BIG_INTEGER:
+                return new BigInteger(new String(data, position + 4, readInt(data, position), StandardCharsets.US_ASCII));
+            case BYTES:
+                return Arrays.copyOfRange(data, position + 4, position + 4 + readInt(data, position));
+            default:
+                return deserialize(slot, data, position + 4, readInt(data, position));
+        }
+    }
+
+    /**
+     * Reads a string, deduplicated by the {@link BeanDescriptor#getStringPool(int) pool} of its property, if any.
+     * @param data The encoded data
+     * @param position The value position
+     * @param slot The slot
+     * @return The string
+     */
+    private String readString(byte[] data, int position, int slot)
+    {
+        StringPool pool;
+        String value;
+
+        value = new String(data, position + 4, readInt(data, position), StandardCharsets.UTF_8);
+        return (pool = descriptor.getStringPool(slot)) == null ? value : pool.deduplicate(value);
+    }
+
+    /**
+     * The accessor of a slot, compiled for the bean type.
+     * @param slot The slot
+     * @return The accessor
+     */
+    @SuppressWarnings("unchecked")
+    private PropertyPath<T> pathOf(int slot)
+    {
+        return (PropertyPath<T>) paths[slot];
+    }
+
+    /**
+     * Serializes a value.
+     * @param slot The slot
+     * @param value The value
+     * @return The serialized value
+     * @throws IllegalArgumentException If the value is not serializable
+     */
+    private byte[] serialize(int slot, Object value)
+    {
+        ByteArrayOutputStream bytes;
+        ObjectOutputStream out;
+
+        try
+        {
+            bytes = new ByteArrayOutputStream();
+            out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return bytes.toByteArray();
+        }
+        catch(IOException e)
+        {
+            throw new IllegalArgumentException("Can not encode '" + descriptor.getName(slot) + "'", e);
+        }
+    }
+
+    /**
+     * Deserializes a value.
+     * @param slot The slot
+     * @param data The data
+     * @param offset The serialized value start
+     * @param length The serialized value length
+     * @return The value
+     * @throws IllegalArgumentException If the value can not be deserialized
+     */
+    private Object deserialize(int slot, byte[] data, int offset, int length)
+    {
+        ObjectInputStream in;
+
+        try
+        {
+            in = new ObjectInputStream(new ByteArrayInputStream(data, offset, length));
+            try
+            {
+                return in.readObject();
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch(Exception e)
+        {
+            /* Includes: IOException, ClassNotFoundException */
+            throw new IllegalArgumentException("Can not decode '" + descriptor.getName(slot) + "'", e);
+        }
+    }
+
+    /**
+     * Reads a big endian long.
+     * @param data The data
+     * @param position The position
+     * @return The value
+     */
+    static long readLong(byte[] data, int position)
+    {
+        return ((long) readInt(data, position) << 32) | (readInt(data, position + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads a big endian int.
+     * @param data The data
+     * @param position The position
+     * @return The value
+     */
+    static int readInt(byte[] data, int position)
+    {
+        return (data[position] << 24) | ((data[position + 1] & 0xFF) << 16) | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+    }
+
+    /**
+     * Reads a big endian short, as an unsigned value.
+     * @param data The data
+     * @param position The position
+     * @return The value
+     */
+    private static int readShort(byte[] data, int position)
+    {
+        return ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+    }
+
+    /**
+     * A growing encoding buffer.
+     */
+    private static final class Output
+    {
+        byte[] data;
+
+        int length;
+
+        Output(int capacity)
+        {
+            data = new byte[capacity];
+        }
+
+        void ensure(int more)
+        {
+            if(length + more > data.length)
+            {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + more));
+            }
+        }
+
+        void writeByte(int value)
+        {
+            ensure(1);
+            data[length++] = (byte) value;
+        }
+
+        void writeShort(int value)
+        {
+            ensure(2);
+            data[length++] = (byte) (value >>> 8);
+            data[length++] = (byte) value;
+        }
+
+        void writeInt(int value)
+        {
+            ensure(4);
+            putInt(length, value);
+            length += 4;
+        }
+
+        void putInt(int position, int value)
+        {
+            data[position] = (byte) (value >>> 24);
+            data[position + 1] = (byte) (value >>> 16);
+            data[position + 2] = (byte) (value >>> 8);
+            data[position + 3] = (byte) value;
+        }
+
+        void writeLong(long value)
+        {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeBytes(byte[] bytes)
+        {
+            writeInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+    }
+}
@@ -0,0 +1,1011 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.PropertyPath;
+
+/**
+ * An embedded, append only store of beans, keyed by an integral id property.
+ *
+ * The beans are {@link BeanCodec encoded} and appended to segment files. A memory mapped
+ * index keeps the location of the last record of each id, for point reads. Overwritten and
+ * deleted records are reclaimed by {@link #compact() compaction}.
+ *
+ * Files of the store directory:
+ * <pre>
+ * segment-000001.dat    int magic, int version, int schema length, schema, records
+ * index.dat             the {@link OffsetIndex offset index}
+ * </pre>
+ * A record is a 17 bytes header and the encoded bean:
+ * <pre>
+ * byte type (1 put, 2 delete), long id, int length, int CRC-32 of the header and the bean
+ * </pre>
+ * On open, the records written after the index checkpoint are indexed again and a not valid tail
+ * of the last segment, as left by a crash on a write, is truncated. Missing or stale indexes are
+ * rebuilt from the segments, as the indexes not marked clean by {@link #sync()} or {@link #close()}:
+ * after a crash, the index pages can be on the device without the records they locate.
+ * The writes are durable after {@link #sync()} or {@link #close()}.
+ *
+ * The store is thread safe: the reads are concurrent, the writes exclusive.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ * @param <T> The bean type
+ */
+public final class BeanStore<T> implements Closeable
+{
+    /** Segment magic: "IMSG" */
+    private static final int MAGIC = 0x494D5347;
+
+    /** Segment format version */
+    private static final int VERSION = 1;
+
+    /** Record header size */
+    private static final int RECORD_HEADER = 17;
+
+    /** Put record type */
+    private static final byte PUT = 1;
+
+    /** Delete record type */
+    private static final byte DELETE = 2;
+
+    /** Bits of the segment offset on a location */
+    private static final int OFFSET_BITS = 40;
+
+    /** Segment file names */
+    private static final String SEGMENT_FORMAT = "segment-%06d.dat";
+
+    /** Initial index capacity */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Default maximum segment size, 64 MB */
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L << 20;
+
+    /** The store directory */
+    private final File directory;
+
+    /** The bean codec */
+    private final BeanCodec<T> codec;
+
+    /** The id property */
+    private final PropertyPath<T> idPath;
+
+    /** The encoded schema, on the segment headers */
+    private final byte[] schema;
+
+    /** The segments, by id */
+    private final TreeMap<Integer, Segment> segments;
+
+    /** The read and write lock */
+    private final ReentrantReadWriteLock lock;
+
+    /** The offset index */
+    private OffsetIndex index;
+
+    /** The segment where the records are appended */
+    private Segment active;
+
+    /** The size that rolls the active segment */
+    private long maxSegmentSize;
+
+    /** If the store is closed */
+    private boolean closed;
+
+    /**
+     * Opens a store, creating it if the directory has not a store, and recovering it if needed.
+     * @param directory The store directory
+     * @param type The bean type
+     * @param idProperty The id property, of an integral type
+     * @throws IllegalArgumentException If the type has not the id property or it is not integral
+     * @throws IOException On file errors or if the store is corrupt or of other schema
+     */
+    public BeanStore(File directory, Class<T> type, String idProperty) throws IOException
+    {
+        BeanDescriptor<T> descriptor;
+        Class<?> idType;
+        int slot;
+
+        codec = new BeanCodec<T>(type);
+        descriptor = codec.getDescriptor();
+        slot = descriptor.slotOf(idProperty);
+        if(slot < 0 || descriptor.getGetter(slot) == null)
+        {
+            throw new IllegalArgumentException("Not readable property " + idProperty + " on " + type.getName());
+        }
+        idType = descriptor.getType(slot);
+        if(idType != long.class && idType != int.class && idType != short.class && idType != byte.class
+            && idType != Long.class && idType != Integer.class && idType != Short.class && idType != Byte.class)
+        {
+            throw new IllegalArgumentException("Not integral id property " + idProperty + " on " + type.getName());
+        }
+        this.directory = directory;
+        idPath = PropertyPath.compile(type, idProperty);
+        schema = codec.getSchema().getBytes(StandardCharsets.UTF_8);
+        segments = new TreeMap<Integer, Segment>();
+        lock = new ReentrantReadWriteLock();
+        maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+        if(directory.isDirectory() == false && directory.mkdirs() == false)
+        {
+            throw new IOException("Can not create the directory " + directory);
+        }
+        try
+        {
+            open();
+        }
+        catch(IOException e)
+        {
+            closeFiles();
+            throw e;
+        }
+    }
+
+    /**
+     * The size that rolls the active segment, {@link #DEFAULT_MAX_SEGMENT_SIZE} by default.
+     * @param maxSegmentSize The size, in bytes
+     */
+    public void setMaxSegmentSize(long maxSegmentSize)
+    {
+        if(maxSegmentSize <= 0L || maxSegmentSize >= 1L << OFFSET_BITS)
+        {
+            throw new IllegalArgumentException("Not valid segment size " + maxSegmentSize);
+        }
+        lock.writeLock().lock();
+        try
+        {
+            this.maxSegmentSize = maxSegmentSize;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The bean codec of the store.
+     * @return The codec
+     */
+    public BeanCodec<T> getCodec()
+    {
+        return codec;
+    }
+
+    /**
+     * Stores a bean, replacing the bean with the same id.
+     * @param bean The bean
+     * @throws IllegalArgumentException If the bean id is null or a value can not be encoded
+     * @throws IOException On write errors
+     */
+    public void put(T bean) throws IOException
+    {
+        putAll(Arrays.asList(bean));
+    }
+
+    /**
+     * Stores many beans, with a single write for each segment.
+     * @param beans The beans
+     * @throws IllegalArgumentException If a bean id is null or a value can not be encoded
+     * @throws IOException On write errors
+     */
+    public void putAll(Collection<? extends T> beans) throws IOException
+    {
+        byte[][] records;
+        int n;
+
+        records = new byte[beans.size()][];
+        n = 0;
+        for(T bean : beans)
+        {
+            records[n++] = record(PUT, idOf(bean), codec.encode(bean));
+        }
+        lock.writeLock().lock();
+        try
+        {
+            checkOpen();
+            append(records);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a bean.
+     * @param id The bean id, an integral number
+     * @return A new mutable bean, or null if the store has not the id
+     * @throws IOException On read errors or if the record is corrupt
+     */
+    public T get(Object id) throws IOException
+    {
+        long key, location;
+        byte[] payload;
+
+        key = toKey(id);
+        lock.readLock().lock();
+        try
+        {
+            checkOpen();
+            location = index.get(key);
+            if(location == 0L)
+            {
+                return null;
+            }
+            payload = readPayload(location);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return codec.decode(payload, 0, payload.length);
+    }
+
+    /**
+     * If the store has a bean.
+     * @param id The bean id, an integral number
+     * @return true if the store has the id
+     */
+    public boolean contains(Object id)
+    {
+        long key;
+
+        key = toKey(id);
+        lock.readLock().lock();
+        try
+        {
+            checkOpen();
+            return index.get(key) != 0L;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes a bean, appending a delete record.
+     * @param id The bean id, an integral number
+     * @return true if the store had the id
+     * @throws IOException On write errors
+     */
+    public boolean delete(Object id) throws IOException
+    {
+        long key;
+
+        key = toKey(id);
+        lock.writeLock().lock();
+        try
+        {
+            checkOpen();
+            if(index.get(key) == 0L)
+            {
+                return false;
+            }
+            append(new byte[][] { record(DELETE, key, new byte[0]) });
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The number of stored beans.
+     * @return The number of beans
+     */
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            checkOpen();
+            return index.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the stored beans, in segment order. The action can not write on the store.
+     * @param action The action for each bean, a new mutable bean
+     * @throws IOException On read errors or if a record is corrupt
+     */
+    public void forEach(final Consumer<? super T> action) throws IOException
+    {
+        lock.readLock().lock();
+        try
+        {
+            checkOpen();
+            for(Segment segment : segments.values())
+            {
+                scan(segment, segment.start, new RecordVisitor()
+                {
+                    @Override
+                    public void visit(byte type, long id, long location, byte[] payload, int length)
+                    {
+                        if(type == PUT && index.get(id) == location)
+                        {
+                            action.accept(codec.decode(payload, 0, length));
+                        }
+                    }
+                }, false);
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the sealed segments with less than half of live data: the live records are
+     * copied to the active segment and the old segment deleted.
+     * @return The number of deleted segments
+     * @throws IOException On file errors
+     */
+    public int compact() throws IOException
+    {
+        List<Segment> sealed;
+        int deleted;
+
+        lock.writeLock().lock();
+        try
+        {
+            checkOpen();
+            sealed = new ArrayList<Segment>(segments.headMap(active.id).values());
+            deleted = 0;
+            for(Segment segment : sealed)
+            {
+                if(compact(segment, segment == segments.firstEntry().getValue()))
+                {
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts a sealed segment if it has less than half of live data.
+     * @param segment The segment
+     * @param oldest If it is the oldest segment, so its delete records are not needed
+     * @return true if the segment was compacted and deleted
+     * @throws IOException On file errors
+     */
+    private boolean compact(Segment segment, final boolean oldest) throws IOException
+    {
+        final List<byte[]> live;
+        final long[] bytes;
+
+        live = new ArrayList<byte[]>();
+        bytes = new long[1];
+        scan(segment, segment.start, new RecordVisitor()
+        {
+            @Override
+            public void visit(byte type, long id, long location, byte[] payload, int length)
+            {
+                // A delete record is kept while an older segment can have a put of the id
+                if(type == PUT ? index.get(id) == location : oldest == false && index.get(id) == 0L)
+                {
+                    live.add(record(type, id, Arrays.copyOf(payload, length)));
+                    bytes[0] += RECORD_HEADER + length;
+                }
+            }
+        }, false);
+        if(bytes[0] * 2 >= segment.length - segment.start)
+        {
+            return false;
+        }
+        append(live.toArray(new byte[live.size()][]));
+        // The copies are durable before the segment is deleted
+        active.channel.force(false);
+        index.force();
+        segments.remove(segment.id);
+        segment.channel.close();
+        if(segment.file.delete() == false)
+        {
+            throw new IOException("Can not delete the segment " + segment.file);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the changes to the storage device.
+     * @throws IOException On write errors
+     */
+    public void sync() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            checkOpen();
+            active.channel.force(false);
+            index.markClean();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Syncs and closes the store.
+     * @throws IOException On write errors
+     */
+    @Override
+    public void close() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if(closed == false)
+            {
+                closed = true;
+                active.channel.force(false);
+                index.markClean();
+                closeFiles();
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the segments and the index, recovering them if needed.
+     * @throws IOException On file errors or if the store is corrupt
+     */
+    private void open() throws IOException
+    {
+        File[] files;
+        File indexFile;
+        Segment segment;
+        long checkpoint, offset;
+
+        files = directory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.matches("segment-\\d{6}\\.dat");
+            }
+        });
+        Arrays.sort(files);
+        for(File file : files)
+        {
+            segment = new Segment(Integer.parseInt(file.getName().substring(8, 14)), file);
+            segments.put(segment.id, segment);
+            if(file == files[files.length - 1] && segment.length < 12 + schema.length)
+            {
+                // Crash on a segment roll
+                segment.writeHeader();
+            }
+            else
+            {
+                segment.readHeader();
+            }
+        }
+        if(segments.isEmpty())
+        {
+            active = new Segment(1, new File(directory, String.format(SEGMENT_FORMAT, 1)));
+            active.writeHeader();
+            segments.put(active.id, active);
+        }
+        active = segments.lastEntry().getValue();
+        indexFile = new File(directory, "index.dat");
+        index = OffsetIndex.open(indexFile, INITIAL_CAPACITY);
+        checkpoint = index == null ? 0L : index.getCheckpoint();
+        segment = segments.get((int) (checkpoint >>> OFFSET_BITS));
+        offset = checkpoint & ((1L << OFFSET_BITS) - 1);
+        if(index == null || index.isClean() == false || segment == null || offset < segment.start || offset > segment.length
+            || replayFrom(segment, offset) == false)
+        {
+            // Missing, not synced, stale or not consistent with the segments
+            if(index != null)
+            {
+                index.close();
+            }
+            index = OffsetIndex.create(indexFile, INITIAL_CAPACITY);
+            replay(segments.firstEntry().getValue(), segments.firstEntry().getValue().start);
+        }
+    }
+
+    /**
+     * Indexes the records from the checkpoint to the end of the store.
+     * @param segment The checkpoint segment
+     * @param offset The checkpoint offset
+     * @return false if the index must be rebuilt
+     */
+    private boolean replayFrom(Segment segment, long offset)
+    {
+        try
+        {
+            index.markDirty();
+            return replay(segment, offset);
+        }
+        catch(IOException e)
+        {
+            // As a checkpoint not at a record start; the rebuild finds the real corruption
+            return false;
+        }
+    }
+
+    /**
+     * Indexes the records from a location to the end of the store.
+     * A not valid tail of the last segment is truncated.
+     * @param first The first segment
+     * @param offset The offset on the first segment
+     * @return false if a tail was truncated, so the index can have entries of the truncated records
+     * @throws IOException On file errors or if a not last segment is corrupt
+     */
+    private boolean replay(Segment first, long offset) throws IOException
+    {
+        RecordVisitor visitor;
+        long end;
+        boolean complete;
+
+        visitor = new RecordVisitor()
+        {
+            @Override
+            public void visit(byte type, long id, long location, byte[] payload, int length) throws IOException
+            {
+                if(type == PUT)
+                {
+                    index.put(id, location);
+                }
+                else
+                {
+                    index.remove(id);
+                }
+            }
+        };
+        complete = true;
+        for(Segment segment : segments.tailMap(first.id).values())
+        {
+            end = scan(segment, segment == first ? offset : segment.start, visitor, true);
+            if(end < segment.length && segment != active)
+            {
+                throw new IOException("Corrupt record at " + end + " of " + segment.file);
+            }
+            if(end < segment.length)
+            {
+                segment.truncate(end);
+                complete = false;
+            }
+        }
+        index.setCheckpoint(location(active.id, active.length));
+        return complete;
+    }
+
+    /**
+     * Reads the records of a segment.
+     * @param segment The segment
+     * @param offset The offset of the first record
+     * @param visitor The record visitor
+     * @param tolerant If a not valid record ends the scan, else it is an error
+     * @return The offset after the last valid record
+     * @throws IOException On file errors, or if a record is not valid and not tolerant
+     */
+    private long scan(Segment segment, long offset, RecordVisitor visitor, boolean tolerant) throws IOException
+    {
+        ByteBuffer buffer;
+        CRC32 crc;
+        byte[] payload;
+        long position;
+        int length;
+        byte type;
+
+        buffer = ByteBuffer.allocate(RECORD_HEADER);
+        payload = new byte[256];
+        crc = new CRC32();
+        position = offset;
+        while(position < segment.length)
+        {
+            buffer.clear();
+            if(position + RECORD_HEADER > segment.length || segment.read(buffer, position) == false)
+            {
+                break;
+            }
+            type = buffer.get(0);
+            length = buffer.getInt(9);
+            if((type != PUT && type != DELETE) || length < 0 || position + RECORD_HEADER + length > segment.length)
+            {
+                break;
+            }
+            if(payload.length < length)
+            {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            if(segment.read(ByteBuffer.wrap(payload, 0, length), position + RECORD_HEADER) == false)
+            {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), 0, 13);
+            crc.update(payload, 0, length);
+            if((int) crc.getValue() != buffer.getInt(13))
+            {
+                break;
+            }
+            visitor.visit(type, buffer.getLong(1), location(segment.id, position), payload, length);
+            position += RECORD_HEADER + length;
+        }
+        if(position < segment.length && tolerant == false)
+        {
+            throw new IOException("Corrupt record at " + position + " of " + segment.file);
+        }
+        return position;
+    }
+
+    /**
+     * Appends records to the active segment and indexes them, rolling the segment when full.
+     * @param records The records
+     * @throws IOException On write errors
+     */
+    private void append(byte[][] records) throws IOException
+    {
+        ByteBuffer buffer;
+        long position;
+        int first, end, size;
+
+        index.markDirty();
+        first = 0;
+        while(first < records.length)
+        {
+            if(active.length > active.start && active.length + records[first].length > maxSegmentSize)
+            {
+                roll();
+            }
+            size = records[first].length;
+            for(end = first + 1; end < records.length && active.length + size + records[end].length <= maxSegmentSize; end++)
+            {
+                size += records[end].length;
+            }
+            buffer = ByteBuffer.allocate(size);
+            for(int n = first; n < end; n++)
+            {
+                buffer.put(records[n]);
+            }
+            buffer.flip();
+            position = active.length;
+            while(buffer.hasRemaining())
+            {
+                position += active.channel.write(buffer, position);
+            }
+            position = active.length;
+            active.length += size;
+            for(int n = first; n < end; n++)
+            {
+                if(records[n][0] == PUT)
+                {
+                    index.put(BeanCodec.readLong(records[n], 1), location(active.id, position));
+                }
+                else
+                {
+                    index.remove(BeanCodec.readLong(records[n], 1));
+                }
+                position += records[n].length;
+            }
+            index.setCheckpoint(location(active.id, active.length));
+            first = end;
+        }
+    }
+
+    /**
+     * Seals the active segment and starts a new one.
+     * @throws IOException On file errors
+     */
+    private void roll() throws IOException
+    {
+        Segment segment;
+        int id;
+
+        active.channel.force(false);
+        id = active.id + 1;
+        segment = new Segment(id, new File(directory, String.format(SEGMENT_FORMAT, id)));
+        segment.writeHeader();
+        segments.put(id, segment);
+        active = segment;
+    }
+
+    /**
+     * Reads the bean of a record.
+     * @param location The record location
+     * @return The encoded bean
+     * @throws IOException On read errors or if the record is corrupt
+     */
+    private byte[] readPayload(long location) throws IOException
+    {
+        ByteBuffer buffer;
+        Segment segment;
+        CRC32 crc;
+        byte[] payload;
+        long offset;
+
+        segment = segments.get((int) (location >>> OFFSET_BITS));
+        offset = location & ((1L << OFFSET_BITS) - 1);
+        buffer = ByteBuffer.allocate(RECORD_HEADER);
+        if(segment == null || segment.read(buffer, offset) == false)
+        {
+            throw new IOException("Not valid location " + Long.toHexString(location));
+        }
+        payload = new byte[buffer.getInt(9)];
+        crc = new CRC32();
+        crc.update(buffer.array(), 0, 13);
+        if(segment.read(ByteBuffer.wrap(payload), offset + RECORD_HEADER) == false)
+        {
+            throw new IOException("Truncated record at " + offset + " of " + segment.file);
+        }
+        crc.update(payload, 0, payload.length);
+        if((int) crc.getValue() != buffer.getInt(13))
+        {
+            throw new IOException("Corrupt record at " + offset + " of " + segment.file);
+        }
+        return payload;
+    }
+
+    /**
+     * The id of a bean, as index key.
+     * @param bean The bean
+     * @return The key
+     * @throws IllegalArgumentException If the id is null
+     */
+    private long idOf(T bean)
+    {
+        Object id;
+
+        id = idPath.get(bean);
+        if(id == null)
+        {
+            throw new IllegalArgumentException("Null id " + idPath.getPath());
+        }
+        return ((Number) id).longValue();
+    }
+
+    /**
+     * An id as index key.
+     * @param id The id
+     * @return The key
+     * @throws IllegalArgumentException If the id is not an integral number
+     */
+    private static long toKey(Object id)
+    {
+        if(id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte)
+        {
+            return ((Number) id).longValue();
+        }
+        throw new IllegalArgumentException("Not valid id " + id);
+    }
+
+    /**
+     * Creates a record.
+     * @param type The record type
+     * @param id The id
+     * @param payload The encoded bean
+     * @return The record
+     */
+    private static byte[] record(byte type, long id, byte[] payload)
+    {
+        ByteBuffer buffer;
+        CRC32 crc;
+
+        buffer = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        buffer.put(type).putLong(id).putInt(payload.length);
+        buffer.position(RECORD_HEADER);
+        buffer.put(payload);
+        crc = new CRC32();
+        crc.update(buffer.array(), 0, 13);
+        crc.update(payload, 0, payload.length);
+        buffer.putInt(13, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * The location of a record.
+     * @param segment The segment id
+     * @param offset The record offset
+     * @return The location
+     */
+    private static long location(int segment, long offset)
+    {
+        return ((long) segment << OFFSET_BITS) | offset;
+    }
+
+    /**
+     * Checks that the store is open.
+     */
+    private void checkOpen()
+    {
+        if(closed)
+        {
+            throw new IllegalStateException("Closed store " + directory);
+        }
+    }
+
+    /**
+     * Closes the index and the segment channels.
+     * @throws IOException On close errors
+     */
+    private void closeFiles() throws IOException
+    {
+        if(index != null)
+        {
+            index.close();
+        }
+        for(Segment segment : segments.values())
+        {
+            segment.channel.close();
+        }
+    }
+
+    /**
+     * A visitor of the records of a segment.
+     */
+    private interface RecordVisitor
+    {
+        /**
+         * Visits a record.
+         * @param type The record type
+         * @param id The id
+         * @param location The record location
+         * @param payload The encoded bean, on a reused buffer
+         * @param length The encoded bean length
+         * @throws IOException On index errors
+         */
+        void visit(byte type, long id, long location, byte[] payload, int length) throws IOException;
+    }
+
+    /**
+     * A segment file.
+     */
+    private final class Segment
+    {
+        /** The segment id */
+        final int id;
+
+        /** The file */
+        final File file;
+
+        /** The channel, for positional reads and writes */
+        final FileChannel channel;
+
+        /** The offset of the first record */
+        long start;
+
+        /** The length */
+        long length;
+
+        /**
+         * Constructor, opening the file.
+         * @param id The segment id
+         * @param file The file
+         * @throws IOException On open errors
+         */
+        @SuppressWarnings("resource")
+        Segment(int id, File file) throws IOException
+        {
+            this.id = id;
+            this.file = file;
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            length = channel.size();
+        }
+
+        /**
+         * Writes the header of a new segment.
+         * @throws IOException On write errors
+         */
+        void writeHeader() throws IOException
+        {
+            ByteBuffer buffer;
+
+            buffer = ByteBuffer.allocate(12 + schema.length);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(schema.length).put(schema);
+            buffer.flip();
+            while(buffer.hasRemaining())
+            {
+                channel.write(buffer, buffer.position());
+            }
+            channel.force(false);
+            start = 12 + schema.length;
+            length = start;
+        }
+
+        /**
+         * Reads and checks the header of an existing segment.
+         * @throws IOException On read errors, or if the header is not valid or of other schema
+         */
+        void readHeader() throws IOException
+        {
+            ByteBuffer buffer;
+
+            buffer = ByteBuffer.allocate(12 + schema.length);
+            if(read(buffer, 0L) == false || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            {
+                throw new IOException("Not valid segment " + file);
+            }
+            if(buffer.getInt(8) != schema.length || Arrays.equals(Arrays.copyOfRange(buffer.array(), 12, buffer.capacity()), schema) == false)
+            {
+                throw new IOException("The segment " + file + " is of other schema");
+            }
+            start = buffer.capacity();
+        }
+
+        /**
+         * Reads bytes until the buffer is full.
+         * @param buffer The buffer
+         * @param position The file position
+         * @return false if the file ends before
+         * @throws IOException On read errors
+         */
+        boolean read(ByteBuffer buffer, long position) throws IOException
+        {
+            long at;
+            int read;
+
+            at = position;
+            while(buffer.hasRemaining())
+            {
+                read = channel.read(buffer, at);
+                if(read < 0)
+                {
+                    return false;
+                }
+                at += read;
+            }
+            return true;
+        }
+
+        /**
+         * Truncates a not valid tail.
+         * @param end The new length
+         * @throws IOException On write errors
+         */
+        void truncate(long end) throws IOException
+        {
+            channel.truncate(end);
+            channel.force(false);
+            length = end;
+        }
+    }
+}
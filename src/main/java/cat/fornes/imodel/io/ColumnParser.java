@@ -0,0 +1,41 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+/**
+ * Parses the raw bytes of a delimited field into a property value.
+ *
+ * The implementations are shared by all the parsing threads, so they must be thread safe.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ * @see ColumnParsers
+ */
+public interface ColumnParser
+{
+    /**
+     * Parses a field value.
+     * @param data The buffer with the field bytes, already unquoted
+     * @param offset The offset of the first byte of the field
+     * @param length The number of bytes of the field
+     * @return The property value
+     * @throws IllegalArgumentException If the field is not valid for the property
+     */
+    Object parse(byte[] data, int offset, int length);
+}
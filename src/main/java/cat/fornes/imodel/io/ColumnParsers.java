@@ -0,0 +1,712 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * The built-in {@link ColumnParser column parsers}, and the primitive parse methods
+ * they are based on.
+ *
+ * The numeric values are parsed directly from the field bytes, without an intermediate
+ * {@link String}. The floating point parsers use an exact fast path when the decimal
+ * mantissa and exponent are small enough, and fall back to the JDK parsers otherwise.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public abstract class ColumnParsers
+{
+    /** Exact powers of ten in a double */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    /** The greater mantissa that a double represents exactly (2^53) */
+    private static final long DOUBLE_MANTISSA_LIMIT = 1L << 53;
+
+    /** The greater mantissa that a float represents exactly (2^24) */
+    private static final long FLOAT_MANTISSA_LIMIT = 1L << 24;
+
+    static
+    {
+        POWERS_OF_TEN[0] = 1D;
+        for(int n = 1; n < POWERS_OF_TEN.length; n++)
+        {
+            POWERS_OF_TEN[n] = POWERS_OF_TEN[n - 1] * 10D;
+        }
+    }
+
+    /**
+     * Gets the built-in parser for a property type.
+     * @param type The property type
+     * @param charset The charset of the text fields
+     * @return The parser, or null if there is no built-in parser for the type
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static ColumnParser forType(Class<?> type, Charset charset)
+    {
+        if(type == long.class || type == Long.class)
+        {
+            return new LongParser();
+        }
+        if(type == int.class || type == Integer.class)
+        {
+            return new IntParser();
+        }
+        if(type == short.class || type == Short.class)
+        {
+            return new ShortParser();
+        }
+        if(type == byte.class || type == Byte.class)
+        {
+            return new ByteParser();
+        }
+        if(type == double.class || type == Double.class)
+        {
+            return new DoubleParser();
+        }
+        if(type == float.class || type == Float.class)
+        {
+            return new FloatParser();
+        }
+        if(type == boolean.class || type == Boolean.class)
+        {
+            return new BooleanParser();
+        }
+        if(type == char.class || type == Character.class)
+        {
+            return new CharParser(charset);
+        }
+        if(type == String.class)
+        {
+            return new StringParser(charset);
+        }
+        if(type.isEnum())
+        {
+            return new EnumParser(type, charset);
+        }
+        if(type == Date.class)
+        {
+            return new DateParser();
+        }
+        if(type == BigDecimal.class)
+        {
+            return new BigDecimalParser();
+        }
+        if(type == BigInteger.class)
+        {
+            return new BigIntegerParser();
+        }
+        return null;
+    }
+
+    /**
+     * Parses a decimal long value, with optional sign and surrounding spaces.
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @return The value
+     * @throws NumberFormatException If the bytes are not a valid long
+     */
+    public static long parseLong(byte[] data, int offset, int length)
+    {
+        int i, end, digit;
+        boolean negative;
+        long result, limit, multiplyLimit;
+
+        i = offset;
+        end = offset + length;
+        while(i < end && data[i] == ' ')
+        {
+            i++;
+        }
+        while(end > i && data[end - 1] == ' ')
+        {
+            end--;
+        }
+        negative = false;
+        limit = -Long.MAX_VALUE;
+        if(i < end && (data[i] == '-' || data[i] == '+'))
+        {
+            if(data[i] == '-')
+            {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            }
+            i++;
+        }
+        if(i == end)
+        {
+            throw numberFormatException(data, offset, length);
+        }
+        // Accumulates negatively, as Long.parseLong, to reach Long.MIN_VALUE
+        multiplyLimit = limit / 10;
+        result = 0L;
+        for(; i < end; i++)
+        {
+            digit = data[i] - '0';
+            if(digit < 0 || digit > 9 || result < multiplyLimit)
+            {
+                throw numberFormatException(data, offset, length);
+            }
+            result *= 10;
+            if(result < limit + digit)
+            {
+                throw numberFormatException(data, offset, length);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a decimal int value, with optional sign and surrounding spaces.
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @return The value
+     * @throws NumberFormatException If the bytes are not a valid int
+     */
+    public static int parseInt(byte[] data, int offset, int length)
+    {
+        long value;
+
+        value = parseLong(data, offset, length);
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+        {
+            throw numberFormatException(data, offset, length);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a double value.
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @return The value
+     * @throws NumberFormatException If the bytes are not a valid double
+     */
+    public static double parseDouble(byte[] data, int offset, int length)
+    {
+        return parseDecimal(data, offset, length, false);
+    }
+
+    /**
+     * Parses a float value.
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @return The value
+     * @throws NumberFormatException If the bytes are not a valid float
+     */
+    public static float parseFloat(byte[] data, int offset, int length)
+    {
+        return (float) parseDecimal(data, offset, length, true);
+    }
+
+    /**
+     * Parses a decimal number.
+     *
+     * Plain decimal notation with an exactly representable mantissa and a small exponent
+     * are computed with a single correctly rounded operation. The rest of the cases
+     * (long mantissas, big exponents, NaN, Infinity, hexadecimal...) are delegated to the JDK.
+     * For floats the operation is done on doubles, the double rounding is innocuous
+     * as the double precision is more than twice the float precision.
+     *
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @param single <b>true</b> if the expected value is a float
+     * @return The value
+     */
+    private static double parseDecimal(byte[] data, int offset, int length, boolean single)
+    {
+        int i, end, digit, exponent, explicitExponent, digits, maxExponent;
+        boolean negative, negativeExponent, anyDigit;
+        long mantissa, mantissaLimit;
+        double value;
+
+        i = offset;
+        end = offset + length;
+        while(i < end && data[i] == ' ')
+        {
+            i++;
+        }
+        while(end > i && data[end - 1] == ' ')
+        {
+            end--;
+        }
+        negative = false;
+        if(i < end && (data[i] == '-' || data[i] == '+'))
+        {
+            negative = data[i] == '-';
+            i++;
+        }
+        mantissa = 0L;
+        digits = 0;
+        exponent = 0;
+        anyDigit = false;
+        // Integer part
+        for(; i < end && (digit = data[i] - '0') >= 0 && digit <= 9; i++)
+        {
+            anyDigit = true;
+            if(digits < 18)
+            {
+                mantissa = mantissa * 10 + digit;
+                if(mantissa != 0)
+                {
+                    digits++;
+                }
+            }
+            else
+            {
+                return parseDecimalSlow(data, offset, length, single);
+            }
+        }
+        // Fraction part
+        if(i < end && data[i] == '.')
+        {
+            for(i++; i < end && (digit = data[i] - '0') >= 0 && digit <= 9; i++)
+            {
+                anyDigit = true;
+                if(digits < 18)
+                {
+                    mantissa = mantissa * 10 + digit;
+                    if(mantissa != 0)
+                    {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                else
+                {
+                    return parseDecimalSlow(data, offset, length, single);
+                }
+            }
+        }
+        if(anyDigit == false)
+        {
+            return parseDecimalSlow(data, offset, length, single);
+        }
+        // Exponent part
+        if(i < end && (data[i] == 'e' || data[i] == 'E'))
+        {
+            i++;
+            negativeExponent = false;
+            if(i < end && (data[i] == '-' || data[i] == '+'))
+            {
+                negativeExponent = data[i] == '-';
+                i++;
+            }
+            if(i == end)
+            {
+                throw numberFormatException(data, offset, length);
+            }
+            explicitExponent = 0;
+            for(; i < end && (digit = data[i] - '0') >= 0 && digit <= 9; i++)
+            {
+                if(explicitExponent > 10000)
+                {
+                    return parseDecimalSlow(data, offset, length, single);
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if(i != end)
+        {
+            // Suffixes, hexadecimal, ... or garbage
+            return parseDecimalSlow(data, offset, length, single);
+        }
+        if(mantissa == 0L)
+        {
+            return negative ? -0D : 0D;
+        }
+        mantissaLimit = single ? FLOAT_MANTISSA_LIMIT : DOUBLE_MANTISSA_LIMIT;
+        maxExponent = single ? 10 : 22;
+        if(mantissa >= mantissaLimit || exponent < -maxExponent || exponent > maxExponent)
+        {
+            return parseDecimalSlow(data, offset, length, single);
+        }
+        value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal number with the JDK parsers.
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @param single <b>true</b> if the expected value is a float
+     * @return The value
+     */
+    private static double parseDecimalSlow(byte[] data, int offset, int length, boolean single)
+    {
+        String text;
+
+        text = new String(data, offset, length, StandardCharsets.ISO_8859_1);
+        return single ? Float.parseFloat(text) : Double.parseDouble(text);
+    }
+
+    /**
+     * Creates the exception for a not valid number.
+     * @param data The buffer
+     * @param offset The offset of the first byte
+     * @param length The number of bytes
+     * @return The exception
+     */
+    private static NumberFormatException numberFormatException(byte[] data, int offset, int length)
+    {
+        return new NumberFormatException("For input '" + new String(data, offset, length, StandardCharsets.ISO_8859_1) + "'");
+    }
+
+    /**
+     * Parser of long values.
+     */
+    private static class LongParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return length == 0 ? null : Long.valueOf(parseLong(data, offset, length));
+        }
+    }
+
+    /**
+     * Parser of int values.
+     */
+    private static class IntParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return length == 0 ? null : Integer.valueOf(parseInt(data, offset, length));
+        }
+    }
+
+    /**
+     * Parser of short values.
+     */
+    private static class ShortParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            long value;
+
+            if(length == 0)
+            {
+                return null;
+            }
+            value = parseLong(data, offset, length);
+            if(value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+            {
+                throw numberFormatException(data, offset, length);
+            }
+            return Short.valueOf((short) value);
+        }
+    }
+
+    /**
+     * Parser of byte values.
+     */
+    private static class ByteParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            long value;
+
+            if(length == 0)
+            {
+                return null;
+            }
+            value = parseLong(data, offset, length);
+            if(value < Byte.MIN_VALUE || value > Byte.MAX_VALUE)
+            {
+                throw numberFormatException(data, offset, length);
+            }
+            return Byte.valueOf((byte) value);
+        }
+    }
+
+    /**
+     * Parser of double values.
+     */
+    private static class DoubleParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return length == 0 ? null : Double.valueOf(parseDouble(data, offset, length));
+        }
+    }
+
+    /**
+     * Parser of float values.
+     */
+    private static class FloatParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return length == 0 ? null : Float.valueOf(parseFloat(data, offset, length));
+        }
+    }
+
+    /**
+     * Parser of boolean values: "true", "false" (case insensitive), "1" and "0".
+     */
+    private static class BooleanParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            if(length == 0)
+            {
+                return null;
+            }
+            if(length == 1 && (data[offset] == '1' || data[offset] == '0'))
+            {
+                return Boolean.valueOf(data[offset] == '1');
+            }
+            if(matchesIgnoreCase(data, offset, length, "true"))
+            {
+                return Boolean.TRUE;
+            }
+            if(matchesIgnoreCase(data, offset, length, "false"))
+            {
+                return Boolean.FALSE;
+            }
+            throw new IllegalArgumentException("Not a boolean value '" + new String(data, offset, length, StandardCharsets.ISO_8859_1) + "'");
+        }
+
+        /**
+         * Compares the bytes with an ASCII text, ignoring case.
+         */
+        private static boolean matchesIgnoreCase(byte[] data, int offset, int length, String text)
+        {
+            if(length != text.length())
+            {
+                return false;
+            }
+            for(int n = 0; n < length; n++)
+            {
+                if(Character.toLowerCase((char) data[offset + n]) != text.charAt(n))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Parser of char values.
+     */
+    private static class CharParser implements ColumnParser
+    {
+        private final Charset charset;
+
+        CharParser(Charset charset)
+        {
+            this.charset = charset;
+        }
+
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            String text;
+
+            if(length == 0)
+            {
+                return null;
+            }
+            if(length == 1 && data[offset] >= 0)
+            {
+                return Character.valueOf((char) data[offset]);
+            }
+            text = new String(data, offset, length, charset);
+            if(text.length() != 1)
+            {
+                throw new IllegalArgumentException("Not a char value '" + text + "'");
+            }
+            return Character.valueOf(text.charAt(0));
+        }
+    }
+
+    /**
+     * Parser of String values.
+     */
+    private static class StringParser implements ColumnParser
+    {
+        private final Charset charset;
+
+        StringParser(Charset charset)
+        {
+            this.charset = charset;
+        }
+
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return new String(data, offset, length, charset);
+        }
+    }
+
+    /**
+     * Parser of enum values, by constant name.
+     * The names are compared as bytes, so no String is created for known constants.
+     */
+    private static class EnumParser<E extends Enum<E>> implements ColumnParser
+    {
+        private final Class<E> type;
+
+        private final Charset charset;
+
+        private final E[] constants;
+
+        private final byte[][] names;
+
+        EnumParser(Class<E> type, Charset charset)
+        {
+            this.type = type;
+            this.charset = charset;
+            constants = type.getEnumConstants();
+            names = new byte[constants.length][];
+            for(int n = 0; n < constants.length; n++)
+            {
+                names[n] = constants[n].name().getBytes(charset);
+            }
+        }
+
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            byte[] name;
+            int i;
+
+            if(length == 0)
+            {
+                return null;
+            }
+            for(int n = 0; n < names.length; n++)
+            {
+                name = names[n];
+                if(name.length == length)
+                {
+                    for(i = 0; i < length && name[i] == data[offset + i]; i++)
+                    {
+                        // Compare
+                    }
+                    if(i == length)
+                    {
+                        return constants[n];
+                    }
+                }
+            }
+            return Enum.valueOf(type, new String(data, offset, length, charset).trim());
+        }
+    }
+
+    /**
+     * Parser of Date values, as milliseconds from the epoch or as ISO local date or date-time
+     * on the default time zone.
+     */
+    private static class DateParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            String text;
+
+            if(length == 0)
+            {
+                return null;
+            }
+            if(isInteger(data, offset, length))
+            {
+                return new Date(parseLong(data, offset, length));
+            }
+            text = new String(data, offset, length, StandardCharsets.ISO_8859_1).trim();
+            try
+            {
+                if(text.indexOf('T') < 0)
+                {
+                    return Date.from(LocalDate.parse(text).atStartOfDay(ZoneId.systemDefault()).toInstant());
+                }
+                return Date.from(LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant());
+            }
+            catch(DateTimeParseException e)
+            {
+                throw new IllegalArgumentException("Not a date value '" + text + "'", e);
+            }
+        }
+
+        /**
+         * Check if the bytes are an integer number.
+         */
+        private static boolean isInteger(byte[] data, int offset, int length)
+        {
+            int i;
+
+            i = data[offset] == '-' ? offset + 1 : offset;
+            for(; i < offset + length; i++)
+            {
+                if(data[i] < '0' || data[i] > '9')
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Parser of BigDecimal values.
+     */
+    private static class BigDecimalParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return length == 0 ? null : new BigDecimal(new String(data, offset, length, StandardCharsets.ISO_8859_1).trim());
+        }
+    }
+
+    /**
+     * Parser of BigInteger values.
+     */
+    private static class BigIntegerParser implements ColumnParser
+    {
+        @Override
+        public Object parse(byte[] data, int offset, int length)
+        {
+            return length == 0 ? null : new BigInteger(new String(data, offset, length, StandardCharsets.ISO_8859_1).trim());
+        }
+    }
+}
@@ -0,0 +1,950 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import cat.fornes.imodel.BeanBuilder;
+import cat.fornes.imodel.BeanDescriptor;
+
+/**
+ * Imports delimited (CSV like) text into proxy beans, in parallel.
+ *
+ * The input is split in chunks of complete lines (read by position from the channel when importing a file),
+ * and the chunks are parsed on a {@link ForkJoinPool} into batches of beans. The
+ * columns are mapped once to the property slots of the {@link BeanDescriptor}, by the
+ * header names or by the {@link #setColumns(String...) configured} ones, and the numeric
+ * fields are parsed straight from the bytes (see {@link ColumnParsers}).<br/>
+ * <b>Use</b>
+ * <pre>
+ * DelimitedBeanImporter&lt;IModel&gt; importer;
+ *
+ * importer = new DelimitedBeanImporter&lt;IModel&gt;(IModel.class);
+ * importer.setDelimiter(';');
+ * importer.importFile(file, batchHandler);
+ * </pre>
+ *
+ * The batches are handed to the {@link BeanBatchHandler} on the calling thread, in input order
+ * or as they are parsed (see {@link #setOrdered(boolean)}). At most {@link #setMaxPendingChunks(int)}
+ * chunks are read but not yet handled, so the memory stays bounded while the handler is slower than the parsing.
+ *
+ * The fields can be quoted, with the quote doubled for escape it, but they can not contain line breaks:
+ * a line break always ends a row.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class DelimitedBeanImporter<T>
+{
+    /** Default chunk size, 4 MB */
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /** Guess of the bytes for each row, for sizing the batches */
+    private static final int ROW_SIZE_GUESS = 64;
+
+    /** The descriptor of imported type */
+    private final BeanDescriptor<T> descriptor;
+
+    /** Parsers by property name, explicitly set */
+    private final Map<String, ColumnParser> parsers;
+
+    private byte delimiter = ',';
+
+    private byte quote = '"';
+
+    private Charset charset = StandardCharsets.UTF_8;
+
+    private boolean header = true;
+
+    private String[] columns;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private int maxPendingChunks;
+
+    private boolean ordered = true;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Constructor with the type to import.
+     * @param type The bean interface
+     * @throws IllegalArgumentException If the type is not an interface
+     */
+    public DelimitedBeanImporter(Class<T> type)
+    {
+        descriptor = BeanDescriptor.forType(type);
+        parsers = new HashMap<String, ColumnParser>();
+    }
+
+    /**
+     * The field delimiter, ',' by default.
+     * @param delimiter The delimiter, an ASCII char
+     */
+    public void setDelimiter(char delimiter)
+    {
+        this.delimiter = asciiByte(delimiter);
+    }
+
+    /**
+     * The quote char, '"' by default.
+     * @param quote The quote, an ASCII char; the NUL char (0) for no quoting
+     */
+    public void setQuote(char quote)
+    {
+        this.quote = asciiByte(quote);
+    }
+
+    /**
+     * The charset of the input, UTF-8 by default.
+     * @param charset The charset; must be ASCII compatible
+     * @throws IllegalArgumentException If the charset is not ASCII compatible
+     */
+    public void setCharset(Charset charset)
+    {
+        if(Arrays.equals("\n\"azAZ09,;".getBytes(charset), "\n\"azAZ09,;".getBytes(StandardCharsets.US_ASCII)) == false)
+        {
+            throw new IllegalArgumentException("The charset '" + charset + "' is not ASCII compatible");
+        }
+        this.charset = charset;
+    }
+
+    /**
+     * Whether the first line is a header with the property names, <b>true</b> by default.
+     * @param header <b>true</b> if the first line is a header
+     */
+    public void setHeader(boolean header)
+    {
+        this.header = header;
+    }
+
+    /**
+     * The property names for each column, in column order.
+     * If set, the header line (if any) is skipped but not used for the mapping.
+     * Null or unknown names are ignored columns.
+     * @param columns The property names
+     */
+    public void setColumns(String... columns)
+    {
+        this.columns = columns == null ? null : columns.clone();
+    }
+
+    /**
+     * The size of the chunks, {@link #DEFAULT_CHUNK_SIZE} by default.
+     * The chunks are enlarged as needed for lines longer than this.
+     * @param chunkSize The size in bytes
+     */
+    public void setChunkSize(int chunkSize)
+    {
+        if(chunkSize <= 0)
+        {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * The maximum number of chunks read but not yet handled. By default, twice the pool parallelism.
+     * @param maxPendingChunks The maximum number of pending chunks
+     */
+    public void setMaxPendingChunks(int maxPendingChunks)
+    {
+        if(maxPendingChunks <= 0)
+        {
+            throw new IllegalArgumentException("The maximum of pending chunks must be positive");
+        }
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    /**
+     * Whether the batches are handled in input order, <b>true</b> by default.
+     * Unordered handling avoids to hold the parsed batches behind a slow chunk.
+     * @param ordered <b>true</b> for input order
+     */
+    public void setOrdered(boolean ordered)
+    {
+        this.ordered = ordered;
+    }
+
+    /**
+     * The pool for the parsing tasks, the {@link ForkJoinPool#commonPool() common pool} by default.
+     * @param pool The pool
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the parser of a property, for types without built-in parser or for special formats.
+     * @param propertyName The property name
+     * @param parser The parser
+     * @throws IllegalArgumentException If the property is unknown
+     */
+    public void setColumnParser(String propertyName, ColumnParser parser)
+    {
+        if(descriptor.slotOf(propertyName) < 0)
+        {
+            throw new IllegalArgumentException("Unknown property '" + propertyName + "' for " + descriptor.getImplementedType().getSimpleName());
+        }
+        parsers.put(propertyName, parser);
+    }
+
+    /**
+     * Imports a file. The file is read chunk by chunk, each one straight into its buffer.
+     * @param file The file
+     * @param handler The handler of the bean batches
+     * @return The number of imported beans
+     * @throws IOException On read or handling errors
+     * @throws IllegalArgumentException On not valid field values
+     */
+    public long importFile(File file, BeanBatchHandler<? super T> handler) throws IOException
+    {
+        FileInputStream in;
+
+        in = new FileInputStream(file);
+        try
+        {
+            return doImport(new FileChunkSource(in.getChannel()), handler);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Imports a stream. The stream is not closed.
+     * @param in The input stream
+     * @param handler The handler of the bean batches
+     * @return The number of imported beans
+     * @throws IOException On read or handling errors
+     * @throws IllegalArgumentException On not valid field values
+     */
+    public long importStream(InputStream in, BeanBatchHandler<? super T> handler) throws IOException
+    {
+        return doImport(new StreamChunkSource(in), handler);
+    }
+
+    /**
+     * Reads the chunks, submits the parsing tasks and delivers the batches.
+     * @param source The chunks source
+     * @param handler The batches handler
+     * @return The number of imported beans
+     * @throws IOException On read or handling errors
+     */
+    private long doImport(ChunkSource source, BeanBatchHandler<? super T> handler) throws IOException
+    {
+        ForkJoinPool executor;
+        CompletionService<ChunkResult<T>> completion;
+        Map<Long, Future<ChunkResult<T>>> running;
+        Map<Long, List<T>> parsed;
+        Queue<byte[]> buffers;
+        ChunkResult<T> result;
+        Layout layout;
+        Chunk chunk;
+        byte[] buffer;
+        long submitted, delivered, rows;
+        int maxPending;
+
+        executor = pool != null ? pool : ForkJoinPool.commonPool();
+        maxPending = maxPendingChunks > 0 ? maxPendingChunks : 2 * executor.getParallelism();
+        completion = new ExecutorCompletionService<ChunkResult<T>>(executor);
+        running = new HashMap<Long, Future<ChunkResult<T>>>();
+        parsed = new HashMap<Long, List<T>>();
+        buffers = new ConcurrentLinkedQueue<byte[]>();
+        layout = null;
+        submitted = 0L;
+        delivered = 0L;
+        rows = 0L;
+        try
+        {
+            for(;;)
+            {
+                // Back-pressure: wait for the pending chunks to be handled
+                while(submitted - delivered >= maxPending)
+                {
+                    result = completion.take().get();
+                    running.remove(result.sequence);
+                    parsed.put(result.sequence, result.beans);
+                    rows += result.beans.size();
+                    delivered = deliver(parsed, delivered, handler);
+                }
+                if((buffer = buffers.poll()) == null)
+                {
+                    buffer = new byte[chunkSize];
+                }
+                if((chunk = source.next(buffer)) == null)
+                {
+                    break;
+                }
+                if(layout == null)
+                {
+                    layout = resolveLayout(chunk);
+                }
+                running.put(submitted, completion.submit(new ChunkTask(layout, chunk, submitted, buffers)));
+                submitted++;
+            }
+            while(delivered < submitted)
+            {
+                result = completion.take().get();
+                running.remove(result.sequence);
+                parsed.put(result.sequence, result.beans);
+                rows += result.beans.size();
+                delivered = deliver(parsed, delivered, handler);
+            }
+            return rows;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        }
+        catch(ExecutionException e)
+        {
+            if(e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if(e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw new IOException("On chunk parsing", e.getCause());
+        }
+        finally
+        {
+            for(Future<ChunkResult<T>> future : running.values())
+            {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Delivers the parsed batches to the handler; in sequence order if the import is ordered.
+     * @param parsed The parsed batches, by sequence
+     * @param delivered The number of delivered batches
+     * @param handler The handler
+     * @return The new number of delivered batches
+     * @throws IOException From the handler
+     */
+    private long deliver(Map<Long, List<T>> parsed, long delivered, BeanBatchHandler<? super T> handler) throws IOException
+    {
+        List<T> beans;
+
+        if(ordered)
+        {
+            while((beans = parsed.remove(delivered)) != null)
+            {
+                handleBatch(beans, handler);
+                delivered++;
+            }
+        }
+        else
+        {
+            for(List<T> batch : parsed.values())
+            {
+                handleBatch(batch, handler);
+                delivered++;
+            }
+            parsed.clear();
+        }
+        return delivered;
+    }
+
+    /**
+     * Hands a batch to the handler, if not empty.
+     * @param beans The batch
+     * @param handler The handler
+     * @throws IOException From the handler
+     */
+    @SuppressWarnings("unchecked")
+    private void handleBatch(List<T> beans, BeanBatchHandler<? super T> handler) throws IOException
+    {
+        if(beans.isEmpty() == false)
+        {
+            ((BeanBatchHandler<T>) handler).onBatch(beans);
+        }
+    }
+
+    /**
+     * Resolves the mapping between columns and slots, from the first chunk.
+     * If there is header, it is consumed from the chunk.
+     * @param chunk The first chunk
+     * @return The layout
+     */
+    private Layout resolveLayout(Chunk chunk)
+    {
+        RowScanner scanner;
+        List<String> names;
+        String[] mapping;
+        Layout layout;
+        Class<?> type;
+        int slot;
+
+        mapping = columns;
+        if(header)
+        {
+            scanner = new RowScanner();
+            scanner.reset(chunk.data, chunk.start, chunk.end);
+            names = new ArrayList<String>();
+            if(scanner.skipBlankLines())
+            {
+                while(scanner.nextField())
+                {
+                    names.add(scanner.fieldAsString().trim());
+                }
+                names.add(scanner.fieldAsString().trim());
+            }
+            chunk.start = scanner.position;
+            if(mapping == null)
+            {
+                mapping = names.toArray(new String[names.size()]);
+            }
+        }
+        if(mapping == null)
+        {
+            throw new IllegalStateException("Without header, the columns must be set");
+        }
+        layout = new Layout();
+        layout.slots = new int[mapping.length];
+        layout.parsers = new ColumnParser[mapping.length];
+        for(int n = 0; n < mapping.length; n++)
+        {
+            slot = mapping[n] == null ? -1 : slotOf(mapping[n]);
+            layout.slots[n] = slot;
+            if(slot >= 0)
+            {
+                layout.parsers[n] = parsers.get(descriptor.getName(slot));
+                if(layout.parsers[n] == null)
+                {
+                    type = descriptor.getType(slot);
+                    if((layout.parsers[n] = ColumnParsers.forType(type, charset)) == null)
+                    {
+                        throw new IllegalArgumentException("No parser for property '" + descriptor.getName(slot) + "' of type " + type.getName());
+                    }
+                }
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * The slot for a column name, matching first the exact property name and then ignoring case.
+     * @param name The column name
+     * @return The slot, -1 if not found
+     */
+    private int slotOf(String name)
+    {
+        int slot;
+
+        if((slot = descriptor.slotOf(name)) < 0)
+        {
+            for(int n = 0; n < descriptor.size(); n++)
+            {
+                if(descriptor.getName(n).equalsIgnoreCase(name))
+                {
+                    return n;
+                }
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Converts an ASCII char to a byte.
+     * @param c The char
+     * @return The byte
+     * @throws IllegalArgumentException If the char is not ASCII
+     */
+    private static byte asciiByte(char c)
+    {
+        if(c > 127 || c == '\n' || c == '\r')
+        {
+            throw new IllegalArgumentException("Not valid char for delimiter or quote: " + (int) c);
+        }
+        return (byte) c;
+    }
+
+    /**
+     * The mapping from columns to slots and parsers.
+     */
+    private static class Layout
+    {
+        /** Slot by column, -1 for ignored columns */
+        int[] slots;
+
+        /** Parser by column */
+        ColumnParser[] parsers;
+    }
+
+    /**
+     * A chunk of complete lines.
+     */
+    private static class Chunk
+    {
+        /** The buffer */
+        byte[] data;
+
+        /** The start of lines on the buffer */
+        int start;
+
+        /** The end (exclusive) of lines on the buffer */
+        int end;
+
+        /** The input offset of the first byte of the buffer */
+        long offset;
+    }
+
+    /**
+     * The beans parsed from a chunk.
+     */
+    private static class ChunkResult<T>
+    {
+        long sequence;
+
+        List<T> beans;
+    }
+
+    /**
+     * The parsing task for a chunk.
+     */
+    private class ChunkTask implements Callable<ChunkResult<T>>
+    {
+        private final Layout layout;
+
+        private final Chunk chunk;
+
+        private final long sequence;
+
+        private final Queue<byte[]> buffers;
+
+        ChunkTask(Layout layout, Chunk chunk, long sequence, Queue<byte[]> buffers)
+        {
+            this.layout = layout;
+            this.chunk = chunk;
+            this.sequence = sequence;
+            this.buffers = buffers;
+        }
+
+        @Override
+        public ChunkResult<T> call()
+        {
+            ChunkResult<T> result;
+            RowScanner scanner;
+            BeanBuilder<T> builder;
+            List<T> beans;
+            boolean more;
+            int column, rowStart;
+
+            scanner = new RowScanner();
+            scanner.reset(chunk.data, chunk.start, chunk.end);
+            beans = new ArrayList<T>((chunk.end - chunk.start) / ROW_SIZE_GUESS + 1);
+            builder = new BeanBuilder<T>(descriptor);
+            while(scanner.skipBlankLines())
+            {
+                rowStart = scanner.position;
+                builder.reset();
+                column = 0;
+                do
+                {
+                    more = scanner.nextField();
+                    if(column < layout.slots.length && layout.slots[column] >= 0)
+                    {
+                        store(builder, column, scanner, rowStart);
+                    }
+                    column++;
+                }
+                while(more);
+                beans.add(builder.build());
+            }
+            // The buffer is no more needed, the values are copied
+            buffers.offer(chunk.data);
+            result = new ChunkResult<T>();
+            result.sequence = sequence;
+            result.beans = beans;
+            return result;
+        }
+
+        /**
+         * Parses the current field and stores it on the builder slot.
+         */
+        private void store(BeanBuilder<T> builder, int column, RowScanner scanner, int rowStart)
+        {
+            Object value;
+            int slot;
+
+            slot = layout.slots[column];
+            try
+            {
+                if(scanner.fieldLength == 0 && scanner.quoted == false)
+                {
+                    value = null;
+                }
+                else
+                {
+                    value = layout.parsers[column].parse(scanner.fieldData, scanner.fieldOffset, scanner.fieldLength);
+                }
+                builder.set(slot, value);
+            }
+            catch(IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Not valid value for '" + descriptor.getName(slot) + "' on the row at offset " + (chunk.offset + rowStart), e);
+            }
+        }
+    }
+
+    /**
+     * Splits the rows of a chunk in fields.
+     */
+    private class RowScanner
+    {
+        byte[] data;
+
+        int position;
+
+        int end;
+
+        /** Buffer for the unquoted fields */
+        byte[] scratch = new byte[64];
+
+        /** The current field */
+        byte[] fieldData;
+
+        int fieldOffset;
+
+        int fieldLength;
+
+        boolean quoted;
+
+        void reset(byte[] data, int start, int end)
+        {
+            this.data = data;
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Skips empty lines.
+         * @return <b>true</b> if there is a row to read
+         */
+        boolean skipBlankLines()
+        {
+            while(position < end && (data[position] == '\n' || (data[position] == '\r' && position + 1 < end && data[position + 1] == '\n')))
+            {
+                position++;
+            }
+            return position < end;
+        }
+
+        /**
+         * Reads the next field of the row.
+         * @return <b>true</b> if the row has more fields
+         */
+        boolean nextField()
+        {
+            int start, fieldEnd, n;
+            byte b;
+
+            quoted = false;
+            if(quote != 0 && position < end && data[position] == quote)
+            {
+                quoted = true;
+                n = 0;
+                position++;
+                for(;;)
+                {
+                    if(position >= end)
+                    {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    b = data[position++];
+                    if(b == quote)
+                    {
+                        if(position < end && data[position] == quote)
+                        {
+                            position++;
+                        }
+                        else
+                        {
+                            break;
+                        }
+                    }
+                    if(n == scratch.length)
+                    {
+                        scratch = Arrays.copyOf(scratch, n * 2);
+                    }
+                    scratch[n++] = b;
+                }
+                fieldData = scratch;
+                fieldOffset = 0;
+                fieldLength = n;
+            }
+            else
+            {
+                start = position;
+                while(position < end && data[position] != delimiter && data[position] != '\n')
+                {
+                    position++;
+                }
+                fieldEnd = position;
+                if(fieldEnd > start && data[fieldEnd - 1] == '\r' && (position == end || data[position] == '\n'))
+                {
+                    fieldEnd--;
+                }
+                fieldData = data;
+                fieldOffset = start;
+                fieldLength = fieldEnd - start;
+            }
+            if(position < end && data[position] == delimiter)
+            {
+                position++;
+                return true;
+            }
+            if(position < end && data[position] == '\r')
+            {
+                position++;
+            }
+            if(position < end && data[position] == '\n')
+            {
+                position++;
+                return false;
+            }
+            if(position >= end)
+            {
+                return false;
+            }
+            throw new IllegalArgumentException("Unexpected character after a quoted field");
+        }
+
+        /**
+         * The current field as String.
+         */
+        String fieldAsString()
+        {
+            return new String(fieldData, fieldOffset, fieldLength, charset);
+        }
+    }
+
+    /**
+     * A source of chunks of complete lines.
+     */
+    private abstract static class ChunkSource
+    {
+        /**
+         * Reads the next chunk.
+         * @param buffer A buffer for the chunk; if it is too small for a line a greater one is allocated
+         * @return The chunk, null at the end of input
+         * @throws IOException On read errors
+         */
+        abstract Chunk next(byte[] buffer) throws IOException;
+
+        /**
+         * The position of the last line feed in the buffer.
+         * @return The position, -1 if not found
+         */
+        static int lastLineFeed(byte[] buffer, int length)
+        {
+            for(int n = length - 1; n >= 0; n--)
+            {
+                if(buffer[n] == '\n')
+                {
+                    return n;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The chunks of a file, read by position from its channel into the chunk buffer.
+     */
+    private static class FileChunkSource extends ChunkSource
+    {
+        private final FileChannel channel;
+
+        private final long size;
+
+        private long position;
+
+        FileChunkSource(FileChannel channel) throws IOException
+        {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        @Override
+        Chunk next(byte[] buffer) throws IOException
+        {
+            Chunk chunk;
+            int length, read, lineFeed;
+
+            if(position >= size)
+            {
+                return null;
+            }
+            read = 0;
+            for(;;)
+            {
+                length = (int) Math.min(buffer.length, size - position);
+                readFully(buffer, read, length);
+                read = length;
+                if(position + length == size)
+                {
+                    // Last chunk, maybe without line feed
+                    break;
+                }
+                if((lineFeed = lastLineFeed(buffer, length)) >= 0)
+                {
+                    length = lineFeed + 1;
+                    break;
+                }
+                // A line longer than the buffer, keeping the read bytes
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            chunk = new Chunk();
+            chunk.data = buffer;
+            chunk.start = 0;
+            chunk.end = length;
+            chunk.offset = position;
+            position += length;
+            return chunk;
+        }
+
+        /**
+         * Reads the bytes of the current chunk between two buffer positions.
+         * @throws EOFException If the file is truncated while importing
+         */
+        private void readFully(byte[] buffer, int from, int to) throws IOException
+        {
+            ByteBuffer target;
+
+            target = ByteBuffer.wrap(buffer, from, to - from);
+            while(target.hasRemaining())
+            {
+                if(channel.read(target, position + target.position()) < 0)
+                {
+                    throw new EOFException("File truncated while importing at " + (position + target.position()));
+                }
+            }
+        }
+    }
+
+    /**
+     * The chunks of an input stream.
+     */
+    private static class StreamChunkSource extends ChunkSource
+    {
+        private final InputStream in;
+
+        /** Bytes read after the last complete line */
+        private byte[] carry = new byte[0];
+
+        private int carryLength;
+
+        private long position;
+
+        private boolean eof;
+
+        StreamChunkSource(InputStream in)
+        {
+            this.in = in;
+        }
+
+        @Override
+        Chunk next(byte[] buffer) throws IOException
+        {
+            Chunk chunk;
+            int length, read, lineFeed, end;
+
+            if(buffer.length < carryLength * 2)
+            {
+                buffer = new byte[carryLength * 2];
+            }
+            System.arraycopy(carry, 0, buffer, 0, carryLength);
+            length = carryLength;
+            for(;;)
+            {
+                while(eof == false && length < buffer.length)
+                {
+                    if((read = in.read(buffer, length, buffer.length - length)) < 0)
+                    {
+                        eof = true;
+                    }
+                    else
+                    {
+                        length += read;
+                    }
+                }
+                if(eof)
+                {
+                    end = length;
+                    break;
+                }
+                if((lineFeed = lastLineFeed(buffer, length)) >= 0)
+                {
+                    end = lineFeed + 1;
+                    break;
+                }
+                // A line longer than the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            if(end == 0)
+            {
+                return null;
+            }
+            carryLength = length - end;
+            if(carry.length < carryLength)
+            {
+                carry = new byte[carryLength];
+            }
+            System.arraycopy(buffer, end, carry, 0, carryLength);
+            chunk = new Chunk();
+            chunk.data = buffer;
+            chunk.start = 0;
+            chunk.end = end;
+            chunk.offset = position;
+            position += end;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.util.Arrays;
+
+import cat.fornes.imodel.SlotDecoder;
+
+/**
+ * The decoder of a {@link BeanCodec#wrap(byte[], int, int) lazy bean}: an encoding, decoded by slot.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class EncodedBean implements SlotDecoder
+{
+    /** The codec */
+    private final BeanCodec<?> codec;
+
+    /** The encoded data */
+    private final byte[] data;
+
+    /** The encoding start */
+    private final int offset;
+
+    /** The encoding length */
+    private final int length;
+
+    /**
+     * Constructor.
+     * @param codec The codec
+     * @param data The encoded data, not copied
+     * @param offset The encoding start
+     * @param length The encoding length
+     */
+    EncodedBean(BeanCodec<?> codec, byte[] data, int offset, int length)
+    {
+        this.codec = codec;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public Object decode(int slot)
+    {
+        return codec.decodeSlot(data, offset, slot);
+    }
+
+    /**
+     * Checks if the encoding is of a codec of the same schema.
+     * @param other The codec
+     * @return true if the encoding can be decoded by the codec
+     */
+    boolean isEncodingOf(BeanCodec<?> other)
+    {
+        return codec == other || codec.getSchema().equals(other.getSchema());
+    }
+
+    /**
+     * A copy of the encoding.
+     * @return The encoded bean
+     */
+    byte[] toByteArray()
+    {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import cat.fornes.imodel.utils.HashStrategy;
+
+/**
+ * A memory mapped hash table from long keys to record locations, for {@link BeanStore}.
+ *
+ * The file is a header and an open addressing table with linear probing:
+ * <pre>
+ * int magic, int version, int capacity, int count, long checkpoint, int clean, ... (64 bytes)
+ * {long key, long location}[capacity]
+ * </pre>
+ * A location 0 marks an empty entry. The checkpoint is the store location up to which the records
+ * are indexed, to recover the records written after it.
+ *
+ * The mapped pages can reach the device before the records they index, so the index is only
+ * trusted if it is {@link #isClean() clean}: the mark is set by {@link #markClean()}, once the
+ * records are durable, and cleared on the device by {@link #markDirty()} before any change.
+ *
+ * Not thread safe: the store guards it.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+final class OffsetIndex implements Closeable
+{
+    /** File magic: "IMIX" */
+    private static final int MAGIC = 0x494D4958;
+
+    /** File format version */
+    private static final int VERSION = 1;
+
+    /** Header size */
+    private static final int HEADER = 64;
+
+    /** Entry size */
+    private static final int ENTRY = 16;
+
+    /** Maximum load, in percent */
+    private static final int MAX_LOAD = 70;
+
+    /** Maximum capacity, for a single mapping */
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /** The index file */
+    private final File file;
+
+    /** The mapped file */
+    private MappedByteBuffer buffer;
+
+    /** The table capacity, a power of two */
+    private int capacity;
+
+    /** The number of keys */
+    private int count;
+
+    /**
+     * Opens an index file.
+     * @param file The file
+     * @param initialCapacity The capacity if the file is created, a power of two
+     * @return The index, or null if the file exists but is not a valid index
+     * @throws IOException On file errors
+     */
+    static OffsetIndex open(File file, int initialCapacity) throws IOException
+    {
+        OffsetIndex index;
+        boolean exists;
+
+        exists = file.isFile() && file.length() >= HEADER;
+        index = new OffsetIndex(file);
+        if(exists == false)
+        {
+            index.create(initialCapacity);
+            return index;
+        }
+        index.map(file.length());
+        if(index.buffer.getInt(0) != MAGIC || index.buffer.getInt(4) != VERSION
+            || file.length() != HEADER + (long) index.buffer.getInt(8) * ENTRY)
+        {
+            return null;
+        }
+        index.capacity = index.buffer.getInt(8);
+        index.count = index.buffer.getInt(12);
+        return index;
+    }
+
+    /**
+     * Creates an empty index, replacing the file.
+     * @param file The file
+     * @param initialCapacity The capacity, a power of two
+     * @return The index
+     * @throws IOException On file errors
+     */
+    static OffsetIndex create(File file, int initialCapacity) throws IOException
+    {
+        OffsetIndex index;
+
+        index = new OffsetIndex(file);
+        index.create(initialCapacity);
+        return index;
+    }
+
+    /**
+     * Constructor.
+     * @param file The index file
+     */
+    private OffsetIndex(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Creates the file with an empty table.
+     * @param newCapacity The capacity
+     * @throws IOException On file errors
+     */
+    private void create(int newCapacity) throws IOException
+    {
+        RandomAccessFile raf;
+
+        raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.setLength(0L);
+            raf.setLength(HEADER + (long) newCapacity * ENTRY);
+        }
+        finally
+        {
+            raf.close();
+        }
+        map(HEADER + (long) newCapacity * ENTRY);
+        capacity = newCapacity;
+        count = 0;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, 0);
+        buffer.putLong(16, 0L);
+        buffer.putInt(24, 0);
+    }
+
+    /**
+     * Maps the file.
+     * @param length The file length
+     * @throws IOException On file errors
+     */
+    private void map(long length) throws IOException
+    {
+        RandomAccessFile raf;
+        FileChannel channel;
+
+        raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            channel = raf.getChannel();
+            buffer = channel.map(MapMode.READ_WRITE, 0L, length);
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * The number of keys.
+     * @return The number of keys
+     */
+    int size()
+    {
+        return count;
+    }
+
+    /**
+     * The checkpoint: the store location up to which the records are indexed.
+     * @return The checkpoint, 0 if none
+     */
+    long getCheckpoint()
+    {
+        return buffer.getLong(16);
+    }
+
+    /**
+     * Sets the checkpoint.
+     * @param location The store location up to which the records are indexed
+     */
+    void setCheckpoint(long location)
+    {
+        buffer.putLong(16, location);
+    }
+
+    /**
+     * Checks if the index is clean: consistent with the records up to the checkpoint, as written
+     * by a {@link #markClean()} not followed by changes.
+     * @return true if the index is clean
+     */
+    boolean isClean()
+    {
+        return buffer.getInt(24) != 0;
+    }
+
+    /**
+     * Writes the changes and then the clean mark to the storage device.
+     * The indexed records must be durable.
+     */
+    void markClean()
+    {
+        buffer.force();
+        buffer.putInt(24, 1);
+        buffer.force();
+    }
+
+    /**
+     * Clears the clean mark on the storage device, if set, before a change.
+     */
+    void markDirty()
+    {
+        if(buffer.getInt(24) != 0)
+        {
+            buffer.putInt(24, 0);
+            buffer.force();
+        }
+    }
+
+    /**
+     * The location of a key.
+     * @param key The key
+     * @return The location, 0 if the key is not found
+     */
+    long get(long key)
+    {
+        long location;
+        int entry;
+
+        for(entry = slotOf(key); (location = locationAt(entry)) != 0L; entry = (entry + 1) & (capacity - 1))
+        {
+            if(keyAt(entry) == key)
+            {
+                return location;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Sets the location of a key.
+     * @param key The key
+     * @param location The location, not 0
+     * @return The previous location, 0 if the key was not found
+     * @throws IOException On resize errors
+     */
+    long put(long key, long location) throws IOException
+    {
+        long previous;
+        int entry;
+
+        for(entry = slotOf(key); (previous = locationAt(entry)) != 0L; entry = (entry + 1) & (capacity - 1))
+        {
+            if(keyAt(entry) == key)
+            {
+                buffer.putLong(HEADER + entry * ENTRY + 8, location);
+                return previous;
+            }
+        }
+        buffer.putLong(HEADER + entry * ENTRY, key);
+        buffer.putLong(HEADER + entry * ENTRY + 8, location);
+        buffer.putInt(12, ++count);
+        if(count * 100L > capacity * (long) MAX_LOAD)
+        {
+            resize();
+        }
+        return 0L;
+    }
+
+    /**
+     * Removes a key, with backward shift deletion.
+     * @param key The key
+     * @return The previous location, 0 if the key was not found
+     */
+    long remove(long key)
+    {
+        long previous, location;
+        int entry, next, home;
+
+        for(entry = slotOf(key); (previous = locationAt(entry)) != 0L; entry = (entry + 1) & (capacity - 1))
+        {
+            if(keyAt(entry) == key)
+            {
+                // Shift back the next entries of the cluster that can be nearer its home
+                next = entry;
+                while(true)
+                {
+                    next = (next + 1) & (capacity - 1);
+                    if((location = locationAt(next)) == 0L)
+                    {
+                        break;
+                    }
+                    home = slotOf(keyAt(next));
+                    if(((next - home) & (capacity - 1)) >= ((next - entry) & (capacity - 1)))
+                    {
+                        buffer.putLong(HEADER + entry * ENTRY, keyAt(next));
+                        buffer.putLong(HEADER + entry * ENTRY + 8, location);
+                        entry = next;
+                    }
+                }
+                buffer.putLong(HEADER + entry * ENTRY, 0L);
+                buffer.putLong(HEADER + entry * ENTRY + 8, 0L);
+                buffer.putInt(12, --count);
+                return previous;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Removes all the keys.
+     */
+    void clear()
+    {
+        for(int n = 0; n < capacity; n++)
+        {
+            buffer.putLong(HEADER + n * ENTRY, 0L);
+            buffer.putLong(HEADER + n * ENTRY + 8, 0L);
+        }
+        count = 0;
+        buffer.putInt(12, 0);
+        buffer.putLong(16, 0L);
+    }
+
+    /**
+     * Writes the changes to the storage device.
+     */
+    void force()
+    {
+        buffer.force();
+    }
+
+    @Override
+    public void close()
+    {
+        force();
+        buffer = null;
+    }
+
+    /**
+     * Doubles the capacity, rehashing on a new file that replaces the current one.
+     * @throws IOException On file errors
+     */
+    private void resize() throws IOException
+    {
+        OffsetIndex resized;
+        File temporary;
+        long location;
+
+        if(capacity >= MAX_CAPACITY)
+        {
+            throw new IOException("The index of " + file + " is full");
+        }
+        temporary = new File(file.getPath() + ".tmp");
+        resized = create(temporary, capacity * 2);
+        for(int n = 0; n < capacity; n++)
+        {
+            if((location = locationAt(n)) != 0L)
+            {
+                resized.put(keyAt(n), location);
+            }
+        }
+        resized.setCheckpoint(getCheckpoint());
+        resized.force();
+        if(temporary.renameTo(file) == false && (file.delete() == false || temporary.renameTo(file) == false))
+        {
+            throw new IOException("Can not replace the index " + file);
+        }
+        buffer = resized.buffer;
+        capacity = resized.capacity;
+        count = resized.count;
+    }
+
+    /**
+     * The home entry of a key.
+     * @param key The key
+     * @return The entry
+     */
+    private int slotOf(long key)
+    {
+        return (int) HashStrategy.Mixed64.mix(key) & (capacity - 1);
+    }
+
+    /**
+     * The key of an entry.
+     */
+    private long keyAt(int entry)
+    {
+        return buffer.getLong(HEADER + entry * ENTRY);
+    }
+
+    /**
+     * The location of an entry.
+     */
+    private long locationAt(int entry)
+    {
+        return buffer.getLong(HEADER + entry * ENTRY + 8);
+    }
+}
@@ -0,0 +1,754 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cat.fornes.imodel.BeanListener;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+
+/**
+ * Asynchronous write-behind of the modified beans.
+ *
+ * The {@link #register(Object) registered} proxy beans are listened: a bean set by a setter is
+ * queued, and a background thread hands it to the sink when it has been queued for the
+ * {@link #setWindow(long, TimeUnit) window}. The writes of a queued bean are coalesced, so
+ * the sink receives the bean once. The sink receives {@link ProxyBeanFactory#immutableCopy(Object)
+ * immutable copies}, in batches of up to {@link #setBatchSize(int)} beans.
+ *
+ * The queue is bounded by {@link #setMaxPending(int)}: when full, the setters block until the
+ * sink catches up. A failed batch is queued again and retried after the window.
+ * {@link #flush()} writes the beans queued before it, without waiting for the window.
+ * {@link #close()} flushes the queue before stopping.
+ * <pre>
+ * WriteBehind&lt;IModel&gt; writer = new WriteBehind&lt;IModel&gt;(new BeanBatchHandler&lt;IModel&gt;()
+ * {
+ *     public void onBatch(List&lt;IModel&gt; beans) throws IOException
+ *     {
+ *         store.putAll(beans);
+ *     }
+ * });
+ * writer.register(model);
+ * model.setName("Changed");   // returns without waiting for the store
+ * </pre>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ * @param <T> The bean type
+ */
+public final class WriteBehind<T> implements Closeable
+{
+    /** Default window, in milliseconds */
+    public static final long DEFAULT_WINDOW_MILLIS = 100L;
+
+    /** Default maximum of queued beans */
+    public static final int DEFAULT_MAX_PENDING = 10000;
+
+    /** Default batch size */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** The sink of the modified beans */
+    private final BeanBatchHandler<T> sink;
+
+    /** The executor of the flusher, shut down on close */
+    private final ExecutorService executor;
+
+    /** Guards the queue, the registrations and the metrics */
+    private final ReentrantLock lock;
+
+    /** Signals a queued bean, a flush request or the stop */
+    private final Condition queued;
+
+    /** Signals room on the queue */
+    private final Condition notFull;
+
+    /** Signals the end of a batch */
+    private final Condition flushed;
+
+    /** The modified beans, in modification order */
+    private final ArrayDeque<Entry> queue;
+
+    /** The registered beans */
+    private final IdentityHashMap<ProxyBeanImpl<?>, Entry> entries;
+
+    /** The window, in nanoseconds */
+    private long window;
+
+    /** The maximum of queued beans */
+    private int maxPending;
+
+    /** The batch size */
+    private int batchSize;
+
+    /** If the flusher is running */
+    private boolean started;
+
+    /** If the flusher must stop */
+    private boolean stopped;
+
+    /** The pending flush requests */
+    private int flushRequests;
+
+    /** The time of the last flush request: the beans queued before are due */
+    private long flushMark;
+
+    /** The beans of the batch on the sink */
+    private int inFlight;
+
+    /** Metric: the flushed batches */
+    private long flushes;
+
+    /** Metric: the flushed beans */
+    private long flushedBeans;
+
+    /** Metric: the writes coalesced on a queued bean */
+    private long coalesced;
+
+    /** Metric: the failed batches */
+    private long failures;
+
+    /** Metric: the total flush time, in nanoseconds */
+    private long flushNanos;
+
+    /** Metric: the longest flush time, in nanoseconds */
+    private long maxFlushNanos;
+
+    /** The last sink error */
+    private Exception lastError;
+
+    /**
+     * Constructor.
+     * @param sink The sink of the modified beans, called on a background thread
+     */
+    public WriteBehind(BeanBatchHandler<T> sink)
+    {
+        this.sink = sink;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread;
+
+                thread = new Thread(runnable, "imodel-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        lock = new ReentrantLock();
+        queued = lock.newCondition();
+        notFull = lock.newCondition();
+        flushed = lock.newCondition();
+        queue = new ArrayDeque<Entry>();
+        entries = new IdentityHashMap<ProxyBeanImpl<?>, Entry>();
+        window = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+        maxPending = DEFAULT_MAX_PENDING;
+        batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * The time a modified bean waits for more writes before its flush,
+     * {@link #DEFAULT_WINDOW_MILLIS} milliseconds by default.
+     * @param window The window, 0 to flush as soon as possible
+     * @param unit The window unit
+     */
+    public void setWindow(long window, TimeUnit unit)
+    {
+        if(window < 0L)
+        {
+            throw new IllegalArgumentException("The window can not be negative");
+        }
+        lock.lock();
+        try
+        {
+            this.window = unit.toNanos(window);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The maximum of queued beans, {@link #DEFAULT_MAX_PENDING} by default.
+     * The setters block while the queue is full.
+     * @param maxPending The maximum of queued beans
+     */
+    public void setMaxPending(int maxPending)
+    {
+        if(maxPending <= 0)
+        {
+            throw new IllegalArgumentException("The maximum of pending beans must be positive");
+        }
+        lock.lock();
+        try
+        {
+            this.maxPending = maxPending;
+            notFull.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The maximum of beans handed to the sink at once, {@link #DEFAULT_BATCH_SIZE} by default.
+     * @param batchSize The batch size
+     */
+    public void setBatchSize(int batchSize)
+    {
+        if(batchSize <= 0)
+        {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        lock.lock();
+        try
+        {
+            this.batchSize = batchSize;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers a bean: its modifications are written behind from now on.
+     * @param bean The bean, a mutable proxy bean
+     * @return false if the bean was already registered
+     * @throws IllegalArgumentException If the bean is not a proxy bean or it is frozen
+     * @throws IllegalStateException If the write-behind is closed
+     */
+    public boolean register(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        Entry entry;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        if(proxy == null || proxy.isFrozen())
+        {
+            throw new IllegalArgumentException("Not a mutable proxy bean");
+        }
+        lock.lock();
+        try
+        {
+            if(stopped)
+            {
+                throw new IllegalStateException("Closed write-behind");
+            }
+            if(entries.containsKey(proxy))
+            {
+                return false;
+            }
+            entry = new Entry(bean, proxy);
+            entries.put(proxy, entry);
+            proxy.addListener(entry);
+            if(started == false)
+            {
+                started = true;
+                executor.execute(new Flusher());
+            }
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters a bean. A queued modification is still written.
+     * @param bean The bean
+     * @return false if the bean was not registered
+     */
+    public boolean unregister(T bean)
+    {
+        ProxyBeanImpl<T> proxy;
+        Entry entry;
+
+        proxy = ProxyBeanUtils.proxyBeanOf(bean);
+        lock.lock();
+        try
+        {
+            if(proxy == null || (entry = entries.remove(proxy)) == null)
+            {
+                return false;
+            }
+            proxy.removeListener(entry);
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the queued beans now, waiting for the sink.
+     * @throws IOException If a batch failed during the flush, with the sink error as cause
+     */
+    public void flush() throws IOException
+    {
+        long failed;
+
+        lock.lock();
+        try
+        {
+            failed = failures;
+            flushRequests++;
+            flushMark = System.nanoTime();
+            queued.signal();
+            try
+            {
+                while((flushDue(queue.peekFirst()) || inFlight > 0) && failures == failed && stopped == false)
+                {
+                    flushed.await();
+                }
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Flush interrupted");
+            }
+            finally
+            {
+                flushRequests--;
+            }
+            if(failures != failed)
+            {
+                throw new IOException("Write-behind flush failed", lastError);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the queued beans, unregisters all the beans and stops the background thread.
+     * @throws IOException If the final flush failed; the failed beans are not written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException error;
+
+        error = null;
+        try
+        {
+            flush();
+        }
+        catch(IOException e)
+        {
+            error = e;
+        }
+        lock.lock();
+        try
+        {
+            stopped = true;
+            for(Entry entry : entries.values())
+            {
+                entry.proxy.removeListener(entry);
+            }
+            entries.clear();
+            queue.clear();
+            queued.signalAll();
+            notFull.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        executor.shutdown();
+        try
+        {
+            executor.awaitTermination(1L, TimeUnit.MINUTES);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if(error != null)
+        {
+            throw error;
+        }
+    }
+
+    /**
+     * The number of queued beans.
+     * @return The queue depth
+     */
+    public int getQueueDepth()
+    {
+        lock.lock();
+        try
+        {
+            return queue.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of batches handed to the sink without error.
+     * @return The number of flushes
+     */
+    public long getFlushCount()
+    {
+        lock.lock();
+        try
+        {
+            return flushes;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of beans written by the sink.
+     * @return The number of beans
+     */
+    public long getFlushedBeans()
+    {
+        lock.lock();
+        try
+        {
+            return flushedBeans;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of writes on already queued beans, that did not cost a sink write.
+     * @return The number of coalesced writes
+     */
+    public long getCoalescedWrites()
+    {
+        lock.lock();
+        try
+        {
+            return coalesced;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of failed batches.
+     * @return The number of failures
+     */
+    public long getFailureCount()
+    {
+        lock.lock();
+        try
+        {
+            return failures;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The mean time of the sink on a batch, failed or not.
+     * @param unit The time unit
+     * @return The mean flush latency, 0 if nothing was flushed
+     */
+    public long getMeanFlushLatency(TimeUnit unit)
+    {
+        lock.lock();
+        try
+        {
+            return flushes + failures == 0L ? 0L : unit.convert(flushNanos / (flushes + failures), TimeUnit.NANOSECONDS);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The longest time of the sink on a batch.
+     * @param unit The time unit
+     * @return The maximum flush latency
+     */
+    public long getMaxFlushLatency(TimeUnit unit)
+    {
+        lock.lock();
+        try
+        {
+            return unit.convert(maxFlushNanos, TimeUnit.NANOSECONDS);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a modified bean, blocking while the queue is full.
+     * @param entry The bean entry
+     */
+    private void enqueue(Entry entry)
+    {
+        lock.lock();
+        try
+        {
+            if(entry.queued)
+            {
+                coalesced++;
+                return;
+            }
+            while(queue.size() >= maxPending && stopped == false)
+            {
+                try
+                {
+                    notFull.await();
+                }
+                catch(InterruptedException e)
+                {
+                    // The write is queued over the bound, not lost
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if(stopped)
+            {
+                return;
+            }
+            entry.queued = true;
+            entry.since = System.nanoTime();
+            queue.addLast(entry);
+            queued.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next batch: the beans out of its window, or all if a flush is requested.
+     * @return The batch, null if stopped
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private List<Entry> take() throws InterruptedException
+    {
+        List<Entry> batch;
+        Entry entry;
+        long wait;
+
+        lock.lock();
+        try
+        {
+            while(true)
+            {
+                if(stopped)
+                {
+                    return null;
+                }
+                if(queue.isEmpty())
+                {
+                    queued.await();
+                    continue;
+                }
+                wait = queue.peekFirst().since + window - System.nanoTime();
+                if(wait <= 0L || flushDue(queue.peekFirst()))
+                {
+                    break;
+                }
+                queued.awaitNanos(wait);
+            }
+            batch = new ArrayList<Entry>(Math.min(batchSize, queue.size()));
+            while(batch.size() < batchSize && (entry = queue.peekFirst()) != null
+                && (flushDue(entry) || entry.since + window - System.nanoTime() <= 0L))
+            {
+                queue.pollFirst();
+                // A write from now on queues the bean again
+                entry.queued = false;
+                batch.add(entry);
+            }
+            inFlight = batch.size();
+            notFull.signalAll();
+            return batch;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * If a bean is due by a flush request. The beans queued again after a failure are not.
+     * @param entry The queued bean, can be null
+     * @return true if a flush request waits for the bean
+     */
+    private boolean flushDue(Entry entry)
+    {
+        return entry != null && flushRequests > 0 && entry.since - flushMark <= 0L;
+    }
+
+    /**
+     * Hands a batch to the sink and records the result.
+     * @param batch The batch
+     */
+    private void write(List<Entry> batch)
+    {
+        List<T> beans;
+        Exception error;
+        long start, elapsed;
+
+        beans = new ArrayList<T>(batch.size());
+        for(Entry entry : batch)
+        {
+            beans.add(ProxyBeanFactory.immutableCopy(entry.bean));
+        }
+        error = null;
+        start = System.nanoTime();
+        try
+        {
+            sink.onBatch(beans);
+        }
+        catch(IOException e)
+        {
+            error = e;
+        }
+        catch(RuntimeException e)
+        {
+            error = e;
+        }
+        elapsed = System.nanoTime() - start;
+        lock.lock();
+        try
+        {
+            flushNanos += elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            if(error == null)
+            {
+                flushes++;
+                flushedBeans += batch.size();
+            }
+            else
+            {
+                failures++;
+                lastError = error;
+                for(Entry entry : batch)
+                {
+                    if(entry.queued == false)
+                    {
+                        entry.queued = true;
+                        entry.since = System.nanoTime();
+                        queue.addLast(entry);
+                    }
+                }
+            }
+            inFlight = 0;
+            flushed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A registered bean, that listens its modifications.
+     */
+    private final class Entry implements BeanListener
+    {
+        /** The bean */
+        final T bean;
+
+        /** Its implementation */
+        final ProxyBeanImpl<T> proxy;
+
+        /** If the bean is queued */
+        boolean queued;
+
+        /** When the bean was queued, in nanoseconds */
+        long since;
+
+        /**
+         * Constructor.
+         * @param bean The bean
+         * @param proxy Its implementation
+         */
+        Entry(T bean, ProxyBeanImpl<T> proxy)
+        {
+            this.bean = bean;
+            this.proxy = proxy;
+        }
+
+        @Override
+        public void propertyChanged(ProxyBeanImpl<?> changed, int slot, Object oldValue, Object newValue)
+        {
+            enqueue(this);
+        }
+    }
+
+    /**
+     * The background task that flushes the batches.
+     */
+    private final class Flusher implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            List<Entry> batch;
+
+            try
+            {
+                while((batch = take()) != null)
+                {
+                    write(batch);
+                }
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+/**
+ * Input and output of proxy beans.
+ *
+ * Features:
+ * <ul>
+ * <li>Parallel import of delimited (CSV like) files into proxy beans</li>
+ * <li>Compact binary encoding of beans, readable by property</li>
+ * <li>Embedded append only store of beans, with a memory mapped index</li>
+ * <li>Asynchronous write-behind of the modified beans</li>
+ * </ul>
+ * @since 1.1.0
+ */
+package cat.fornes.imodel.io;
@@ -0,0 +1,253 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.utils;
+
+import java.util.Date;
+
+/**
+ * A strategy for the hash code of a sequence of values, as the properties of a bean.
+ *
+ * The hash of a sequence is defined as a sum of independent <i>terms</i>, one for each
+ * position of the sequence, plus a <i>seed</i> that depends on the sequence length, and a
+ * final {@link #finish(long) mixing}:
+ * <pre>
+ * hash(v[0..n-1]) = finish(seed(n) + term(0, n, v[0]) + ... + term(n-1, n, v[n-1]))
+ * </pre>
+ * So the hash can be computed by parts, as updating only the changed positions.
+ *
+ * Two strategies are provided:
+ * <ul>
+ * <li>{@link #POLYNOMIAL}: the 7/31 polynomial of {@link ObjectUtils#nullSafeHashCode(Object[])}</li>
+ * <li>{@link #MIXED_64}: a well mixed 64 bit hash, folded to 32 bits. Values that are correlated
+ * (sequential ids, similar names) spread uniformly</li>
+ * </ul>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public abstract class HashStrategy
+{
+    /** The 7/31 polynomial hash, the default */
+    public static final HashStrategy POLYNOMIAL = new Polynomial();
+
+    /** The mixed 64 bit hash */
+    public static final HashStrategy MIXED_64 = new Mixed64();
+
+    /**
+     * The hash of a single value. Arrays are hashed by content.
+     * @param value The value, can be null
+     * @return The hash
+     */
+    public abstract int hash(Object value);
+
+    /**
+     * The seed of a sequence hash.
+     * @param length The sequence length
+     * @return The seed
+     */
+    public abstract long seed(int length);
+
+    /**
+     * The term of a sequence hash for a position.
+     * @param index The position
+     * @param length The sequence length
+     * @param value The value at the position, can be null
+     * @return The term
+     */
+    public abstract long term(int index, int length, Object value);
+
+    /**
+     * The final hash from the sum of the seed and the terms.
+     * @param sum The sum
+     * @return The hash
+     */
+    public abstract int finish(long sum);
+
+    /**
+     * The hash of a sequence of values.
+     * @param values The values, can be null
+     * @return The hash, 0 for null
+     */
+    public int hash(Object[] values)
+    {
+        long sum;
+
+        if(values == null)
+        {
+            return 0;
+        }
+        sum = seed(values.length);
+        for(int n = 0; n < values.length; n++)
+        {
+            sum += term(n, values.length, values[n]);
+        }
+        return finish(sum);
+    }
+
+    /**
+     * The 7/31 polynomial hash.
+     * The terms are the value hashes multiplied by the power of 31 of its position from the end.
+     */
+    public static final class Polynomial extends HashStrategy
+    {
+        /** Cached powers of 31 */
+        private static final int[] POWERS = new int[64];
+
+        static
+        {
+            POWERS[0] = 1;
+            for(int n = 1; n < POWERS.length; n++)
+            {
+                POWERS[n] = POWERS[n - 1] * 31;
+            }
+        }
+
+        /**
+         * The power of 31, modulo 2^32.
+         * @param exponent The exponent
+         * @return The power
+         */
+        private static int power(int exponent)
+        {
+            int result, base;
+
+            if(exponent < POWERS.length)
+            {
+                return POWERS[exponent];
+            }
+            result = 1;
+            base = 31;
+            for(int e = exponent; e > 0; e >>= 1)
+            {
+                if((e & 1) != 0)
+                {
+                    result *= base;
+                }
+                base *= base;
+            }
+            return result;
+        }
+
+        @Override
+        public int hash(Object value)
+        {
+            return ObjectUtils.nullSafeHashCode(value);
+        }
+
+        @Override
+        public long seed(int length)
+        {
+            return 7 * power(length);
+        }
+
+        @Override
+        public long term(int index, int length, Object value)
+        {
+            return ObjectUtils.nullSafeHashCode(value) * power(length - 1 - index);
+        }
+
+        @Override
+        public int finish(long sum)
+        {
+            return (int) sum;
+        }
+
+        @Override
+        public int hash(Object[] values)
+        {
+            return ObjectUtils.nullSafeHashCode(values);
+        }
+    }
+
+    /**
+     * The mixed 64 bit hash.
+     * Each term is the 64 bit hash of the value combined with its position and fully mixed,
+     * so the terms are independent; the sum is mixed again and folded to 32 bits.
+     */
+    public static final class Mixed64 extends HashStrategy
+    {
+        /** The golden ratio gamma, for position seeds */
+        private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+        @Override
+        public int hash(Object value)
+        {
+            return fold(mix(hash64(value)));
+        }
+
+        @Override
+        public long seed(int length)
+        {
+            return mix(length * GAMMA);
+        }
+
+        @Override
+        public long term(int index, int length, Object value)
+        {
+            return mix(hash64(value) + (index + 1) * GAMMA);
+        }
+
+        @Override
+        public int finish(long sum)
+        {
+            return fold(mix(sum));
+        }
+
+        /**
+         * The 64 bit hash of a value: the value bits for the integral and floating point
+         * wrappers and dates, the {@link ObjectUtils#nullSafeHash64(Object) 64 bit content hash} for arrays
+         * and the {@link Object#hashCode()} for other objects.
+         * @param value The value
+         * @return The 64 bit hash
+         */
+        private static long hash64(Object value)
+        {
+            if(value instanceof Date)
+            {
+                return ((Date) value).getTime();
+            }
+            return ObjectUtils.nullSafeHash64(value);
+        }
+
+        /**
+         * The 64 bit finalizer of the Murmur3 hash.
+         * @param h The value
+         * @return The mixed value
+         */
+        public static long mix(long h)
+        {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        /**
+         * Folds a 64 bit hash to 32 bits.
+         * @param h The 64 bit hash
+         * @return The 32 bit hash
+         */
+        public static int fold(long h)
+        {
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -32,6 +32,23 @@ public abstract class ObjectUtils
 
     private static final int MULTIPLIER = 31;
 
+    private static final int MULTIPLIER_2 = MULTIPLIER * MULTIPLIER;
+
+    private static final int MULTIPLIER_3 = MULTIPLIER_2 * MULTIPLIER;
+
+    private static final int MULTIPLIER_4 = MULTIPLIER_3 * MULTIPLIER;
+
+    /** 64 bit hash primes, as xxHash64 */
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
     /**
      * Determine if the given objects are equal, returning <code>true</code>
      * if both are <code>null</code> or <code>false</code> if only one is
@@ -59,44 +76,229 @@ public abstract class ObjectUtils
         }
         if(o1.getClass().isArray() && o2.getClass().isArray())
         {
-            if(o1 instanceof Object[] && o2 instanceof Object[])
+            return arrayEquals(o1, o2);
+        }
+        return false;
+    }
+
+    /**
+     * Compares two arrays by content, dispatching by the array class.
+     * @param o1 first array
+     * @param o2 second array
+     * @return whether the arrays are of the same type and content
+     */
+    private static boolean arrayEquals(Object o1, Object o2)
+    {
+        Class<?> type;
+
+        type = o1.getClass();
+        if(type != o2.getClass())
+        {
+            // Different primitive arrays are never equal; reference arrays compare by elements
+            return o1 instanceof Object[] && o2 instanceof Object[] && Arrays.equals((Object[]) o1, (Object[]) o2);
+        }
+        if(type == byte[].class)
+        {
+            return Arrays.equals((byte[]) o1, (byte[]) o2);
+        }
+        if(type == int[].class)
+        {
+            return Arrays.equals((int[]) o1, (int[]) o2);
+        }
+        if(type == long[].class)
+        {
+            return Arrays.equals((long[]) o1, (long[]) o2);
+        }
+        if(type == char[].class)
+        {
+            return Arrays.equals((char[]) o1, (char[]) o2);
+        }
+        if(type == double[].class)
+        {
+            return Arrays.equals((double[]) o1, (double[]) o2);
+        }
+        if(type == float[].class)
+        {
+            return Arrays.equals((float[]) o1, (float[]) o2);
+        }
+        if(type == short[].class)
+        {
+            return Arrays.equals((short[]) o1, (short[]) o2);
+        }
+        if(type == boolean[].class)
+        {
+            return Arrays.equals((boolean[]) o1, (boolean[]) o2);
+        }
+        return Arrays.equals((Object[]) o1, (Object[]) o2);
+    }
+
+    /**
+     * Finds the first index where two arrays differ, as <code>Arrays.mismatch</code> of Java 9.
+     * The loop is unrolled and compares four elements for each bounds check.
+     * @param a first array
+     * @param b second array
+     * @return The first different index, the length of the shorter array if it is a prefix of the other,
+     * or -1 if the arrays are equal
+     */
+    public static int mismatch(long[] a, long[] b)
+    {
+        int length, i;
+
+        length = Math.min(a.length, b.length);
+        i = 0;
+        for(; i + 3 < length; i += 4)
+        {
+            if(a[i] != b[i] || a[i + 1] != b[i + 1] || a[i + 2] != b[i + 2] || a[i + 3] != b[i + 3])
             {
-                return Arrays.equals((Object[]) o1, (Object[]) o2);
+                break;
             }
-            if(o1 instanceof boolean[] && o2 instanceof boolean[])
+        }
+        for(; i < length; i++)
+        {
+            if(a[i] != b[i])
+            {
+                return i;
+            }
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    /**
+     * Finds the first index where two arrays differ, as <code>Arrays.mismatch</code> of Java 9.
+     * Eight bytes are compared at once, as a long.
+     * @param a first array
+     * @param b second array
+     * @return The first different index, the length of the shorter array if it is a prefix of the other,
+     * or -1 if the arrays are equal
+     */
+    public static int mismatch(byte[] a, byte[] b)
+    {
+        int length, i;
+
+        length = Math.min(a.length, b.length);
+        i = 0;
+        for(; i + 7 < length; i += 8)
+        {
+            if(word(a, i) != word(b, i))
             {
-                return Arrays.equals((boolean[]) o1, (boolean[]) o2);
+                break;
             }
-            if(o1 instanceof byte[] && o2 instanceof byte[])
+        }
+        for(; i < length; i++)
+        {
+            if(a[i] != b[i])
             {
-                return Arrays.equals((byte[]) o1, (byte[]) o2);
+                return i;
             }
-            if(o1 instanceof char[] && o2 instanceof char[])
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    /**
+     * Finds the first index where two arrays differ, as <code>Arrays.mismatch</code> of Java 9.
+     * The loop is unrolled and compares four elements for each bounds check.
+     * @param a first array
+     * @param b second array
+     * @return The first different index, the length of the shorter array if it is a prefix of the other,
+     * or -1 if the arrays are equal
+     */
+    public static int mismatch(int[] a, int[] b)
+    {
+        int length, i;
+
+        length = Math.min(a.length, b.length);
+        i = 0;
+        for(; i + 3 < length; i += 4)
+        {
+            if(a[i] != b[i] || a[i + 1] != b[i + 1] || a[i + 2] != b[i + 2] || a[i + 3] != b[i + 3])
             {
-                return Arrays.equals((char[]) o1, (char[]) o2);
+                break;
             }
-            if(o1 instanceof double[] && o2 instanceof double[])
+        }
+        for(; i < length; i++)
+        {
+            if(a[i] != b[i])
             {
-                return Arrays.equals((double[]) o1, (double[]) o2);
+                return i;
             }
-            if(o1 instanceof float[] && o2 instanceof float[])
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    /**
+     * Finds the first index where two arrays differ, as <code>Arrays.mismatch</code> of Java 9.
+     * The loop is unrolled and compares four elements for each bounds check.
+     * @param a first array
+     * @param b second array
+     * @return The first different index, the length of the shorter array if it is a prefix of the other,
+     * or -1 if the arrays are equal
+     */
+    public static int mismatch(char[] a, char[] b)
+    {
+        int length, i;
+
+        length = Math.min(a.length, b.length);
+        i = 0;
+        for(; i + 3 < length; i += 4)
+        {
+            if(a[i] != b[i] || a[i + 1] != b[i + 1] || a[i + 2] != b[i + 2] || a[i + 3] != b[i + 3])
             {
-                return Arrays.equals((float[]) o1, (float[]) o2);
+                break;
             }
-            if(o1 instanceof int[] && o2 instanceof int[])
+        }
+        for(; i < length; i++)
+        {
+            if(a[i] != b[i])
             {
-                return Arrays.equals((int[]) o1, (int[]) o2);
+                return i;
             }
-            if(o1 instanceof long[] && o2 instanceof long[])
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    /**
+     * Finds the first index where two arrays differ, as <code>Arrays.mismatch</code> of Java 9.
+     * The elements are compared as {@link Arrays#equals(double[], double[])} does, by their bits.
+     * @param a first array
+     * @param b second array
+     * @return The first different index, the length of the shorter array if it is a prefix of the other,
+     * or -1 if the arrays are equal
+     */
+    public static int mismatch(double[] a, double[] b)
+    {
+        int length;
+
+        length = Math.min(a.length, b.length);
+        for(int i = 0; i < length; i++)
+        {
+            if(Double.doubleToLongBits(a[i]) != Double.doubleToLongBits(b[i]))
             {
-                return Arrays.equals((long[]) o1, (long[]) o2);
+                return i;
             }
-            if(o1 instanceof short[] && o2 instanceof short[])
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    /**
+     * Finds the first index where two arrays differ, as <code>Arrays.mismatch</code> of Java 9.
+     * @param a first array
+     * @param b second array
+     * @return The first different index, the length of the shorter array if it is a prefix of the other,
+     * or -1 if the arrays are equal
+     */
+    public static int mismatch(Object[] a, Object[] b)
+    {
+        int length;
+
+        length = Math.min(a.length, b.length);
+        for(int i = 0; i < length; i++)
+        {
+            if(nullSafeEquals(a[i], b[i]) == false)
             {
-                return Arrays.equals((short[]) o1, (short[]) o2);
+                return i;
             }
         }
-        return false;
+        return a.length == b.length ? -1 : length;
     }
 
     /**
@@ -175,7 +377,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * nullSafeHashCode(array[i]) + MULTIPLIER_2 * nullSafeHashCode(array[i + 1])
+                    + MULTIPLIER * nullSafeHashCode(array[i + 2]) + nullSafeHashCode(array[i + 3]);
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + nullSafeHashCode(array[i]);
         }
@@ -194,7 +403,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * hashCode(array[i]) + MULTIPLIER_2 * hashCode(array[i + 1])
+                    + MULTIPLIER * hashCode(array[i + 2]) + hashCode(array[i + 3]);
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + hashCode(array[i]);
         }
@@ -213,7 +429,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * array[i] + MULTIPLIER_2 * array[i + 1]
+                    + MULTIPLIER * array[i + 2] + array[i + 3];
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + array[i];
         }
@@ -232,7 +455,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * array[i] + MULTIPLIER_2 * array[i + 1]
+                    + MULTIPLIER * array[i + 2] + array[i + 3];
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + array[i];
         }
@@ -251,7 +481,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * hashCode(array[i]) + MULTIPLIER_2 * hashCode(array[i + 1])
+                    + MULTIPLIER * hashCode(array[i + 2]) + hashCode(array[i + 3]);
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + hashCode(array[i]);
         }
@@ -270,7 +507,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * hashCode(array[i]) + MULTIPLIER_2 * hashCode(array[i + 1])
+                    + MULTIPLIER * hashCode(array[i + 2]) + hashCode(array[i + 3]);
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + hashCode(array[i]);
         }
@@ -289,7 +533,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * array[i] + MULTIPLIER_2 * array[i + 1]
+                    + MULTIPLIER * array[i + 2] + array[i + 3];
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + array[i];
         }
@@ -308,7 +559,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * hashCode(array[i]) + MULTIPLIER_2 * hashCode(array[i + 1])
+                    + MULTIPLIER * hashCode(array[i + 2]) + hashCode(array[i + 3]);
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + hashCode(array[i]);
         }
@@ -327,7 +585,14 @@ public abstract class ObjectUtils
         }
         int hash = INITIAL_HASH;
         int arraySize = array.length;
-        for(int i = 0; i < arraySize; i++)
+        int i = 0;
+        // Unrolled by four, to break the multiply chain; same value as the plain loop
+        for(; i + 3 < arraySize; i += 4)
+        {
+            hash = MULTIPLIER_4 * hash + MULTIPLIER_3 * array[i] + MULTIPLIER_2 * array[i + 1]
+                    + MULTIPLIER * array[i + 2] + array[i + 3];
+        }
+        for(; i < arraySize; i++)
         {
             hash = MULTIPLIER * hash + array[i];
         }
@@ -370,4 +635,355 @@ public abstract class ObjectUtils
     {
         return (int) (lng ^ (lng >>> 32));
     }
+
+    /**
+     * Return a hash code for the given values with a hash strategy.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     * @param array The values
+     * @param strategy The hash strategy
+     * @see HashStrategy
+     */
+    public static int nullSafeHashCode(Object[] array, HashStrategy strategy)
+    {
+        return strategy.hash(array);
+    }
+
+    /**
+     * Return a 64 bit hash code for the given object. Arrays are hashed by content
+     * with the <code>nullSafeHash64</code> methods for arrays in this class, the integral and
+     * floating point wrappers by its value bits and the rest of objects by <code>{@link Object#hashCode()}</code>.
+     * If the object is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(Object obj)
+    {
+        Class<?> type;
+
+        if(obj == null)
+        {
+            return 0L;
+        }
+        type = obj.getClass();
+        if(type == Long.class)
+        {
+            return ((Long) obj).longValue();
+        }
+        if(type == Integer.class || type == Short.class || type == Byte.class)
+        {
+            return ((Number) obj).longValue();
+        }
+        if(type == Double.class)
+        {
+            return Double.doubleToLongBits(((Double) obj).doubleValue());
+        }
+        if(type.isArray())
+        {
+            if(type == byte[].class)
+            {
+                return nullSafeHash64((byte[]) obj);
+            }
+            if(type == int[].class)
+            {
+                return nullSafeHash64((int[]) obj);
+            }
+            if(type == long[].class)
+            {
+                return nullSafeHash64((long[]) obj);
+            }
+            if(type == char[].class)
+            {
+                return nullSafeHash64((char[]) obj);
+            }
+            if(type == double[].class)
+            {
+                return nullSafeHash64((double[]) obj);
+            }
+            if(obj instanceof Object[])
+            {
+                return nullSafeHash64((Object[]) obj);
+            }
+            // boolean[], float[] and short[]
+            return nullSafeHashCode(obj);
+        }
+        return obj.hashCode();
+    }
+
+    /**
+     * Return a 64 bit hash code based on the contents of the specified array.
+     * Four independent lanes of eight bytes are mixed at once, as xxHash64.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(long[] array)
+    {
+        long h1, h2, h3, h4, hash;
+        int i, arraySize;
+
+        if(array == null)
+        {
+            return 0L;
+        }
+        arraySize = array.length;
+        i = 0;
+        if(arraySize >= 4)
+        {
+            h1 = PRIME_1 + PRIME_2;
+            h2 = PRIME_2;
+            h3 = 0L;
+            h4 = -PRIME_1;
+            for(; i + 3 < arraySize; i += 4)
+            {
+                h1 = round(h1, array[i]);
+                h2 = round(h2, array[i + 1]);
+                h3 = round(h3, array[i + 2]);
+                h4 = round(h4, array[i + 3]);
+            }
+            hash = Long.rotateLeft(h1, 1) + Long.rotateLeft(h2, 7) + Long.rotateLeft(h3, 12) + Long.rotateLeft(h4, 18);
+        }
+        else
+        {
+            hash = PRIME_5;
+        }
+        hash += arraySize;
+        for(; i < arraySize; i++)
+        {
+            hash = Long.rotateLeft(hash ^ round(0L, array[i]), 27) * PRIME_1 + PRIME_4;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Return a 64 bit hash code based on the contents of the specified array.
+     * The elements are hashed by their bits, as <code>{@link #nullSafeHash64(long[])}</code>.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(double[] array)
+    {
+        long h1, h2, h3, h4, hash;
+        int i, arraySize;
+
+        if(array == null)
+        {
+            return 0L;
+        }
+        arraySize = array.length;
+        i = 0;
+        if(arraySize >= 4)
+        {
+            h1 = PRIME_1 + PRIME_2;
+            h2 = PRIME_2;
+            h3 = 0L;
+            h4 = -PRIME_1;
+            for(; i + 3 < arraySize; i += 4)
+            {
+                h1 = round(h1, Double.doubleToLongBits(array[i]));
+                h2 = round(h2, Double.doubleToLongBits(array[i + 1]));
+                h3 = round(h3, Double.doubleToLongBits(array[i + 2]));
+                h4 = round(h4, Double.doubleToLongBits(array[i + 3]));
+            }
+            hash = Long.rotateLeft(h1, 1) + Long.rotateLeft(h2, 7) + Long.rotateLeft(h3, 12) + Long.rotateLeft(h4, 18);
+        }
+        else
+        {
+            hash = PRIME_5;
+        }
+        hash += arraySize;
+        for(; i < arraySize; i++)
+        {
+            hash = Long.rotateLeft(hash ^ round(0L, Double.doubleToLongBits(array[i])), 27) * PRIME_1 + PRIME_4;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Return a 64 bit hash code based on the contents of the specified array.
+     * The elements are taken in pairs, as eight bytes words.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(int[] array)
+    {
+        long h1, h2, h3, h4, hash;
+        int i, arraySize;
+
+        if(array == null)
+        {
+            return 0L;
+        }
+        arraySize = array.length;
+        i = 0;
+        if(arraySize >= 8)
+        {
+            h1 = PRIME_1 + PRIME_2;
+            h2 = PRIME_2;
+            h3 = 0L;
+            h4 = -PRIME_1;
+            for(; i + 7 < arraySize; i += 8)
+            {
+                h1 = round(h1, (array[i] & 0xFFFFFFFFL) | ((long) array[i + 1] << 32));
+                h2 = round(h2, (array[i + 2] & 0xFFFFFFFFL) | ((long) array[i + 3] << 32));
+                h3 = round(h3, (array[i + 4] & 0xFFFFFFFFL) | ((long) array[i + 5] << 32));
+                h4 = round(h4, (array[i + 6] & 0xFFFFFFFFL) | ((long) array[i + 7] << 32));
+            }
+            hash = Long.rotateLeft(h1, 1) + Long.rotateLeft(h2, 7) + Long.rotateLeft(h3, 12) + Long.rotateLeft(h4, 18);
+        }
+        else
+        {
+            hash = PRIME_5;
+        }
+        hash += arraySize * 4L;
+        for(; i < arraySize; i++)
+        {
+            hash = Long.rotateLeft(hash ^ ((array[i] & 0xFFFFFFFFL) * PRIME_1), 23) * PRIME_2 + PRIME_3;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Return a 64 bit hash code based on the contents of the specified array.
+     * The elements are taken in groups of four, as eight bytes words.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(char[] array)
+    {
+        long h1, h2, h3, h4, hash;
+        int i, arraySize;
+
+        if(array == null)
+        {
+            return 0L;
+        }
+        arraySize = array.length;
+        i = 0;
+        if(arraySize >= 16)
+        {
+            h1 = PRIME_1 + PRIME_2;
+            h2 = PRIME_2;
+            h3 = 0L;
+            h4 = -PRIME_1;
+            for(; i + 15 < arraySize; i += 16)
+            {
+                h1 = round(h1, word(array, i));
+                h2 = round(h2, word(array, i + 4));
+                h3 = round(h3, word(array, i + 8));
+                h4 = round(h4, word(array, i + 12));
+            }
+            hash = Long.rotateLeft(h1, 1) + Long.rotateLeft(h2, 7) + Long.rotateLeft(h3, 12) + Long.rotateLeft(h4, 18);
+        }
+        else
+        {
+            hash = PRIME_5;
+        }
+        hash += arraySize * 2L;
+        for(; i < arraySize; i++)
+        {
+            hash = Long.rotateLeft(hash ^ (array[i] * PRIME_5), 11) * PRIME_1;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Return a 64 bit hash code based on the contents of the specified array.
+     * The elements are taken in groups of eight, as eight bytes words.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(byte[] array)
+    {
+        long h1, h2, h3, h4, hash;
+        int i, arraySize;
+
+        if(array == null)
+        {
+            return 0L;
+        }
+        arraySize = array.length;
+        i = 0;
+        if(arraySize >= 32)
+        {
+            h1 = PRIME_1 + PRIME_2;
+            h2 = PRIME_2;
+            h3 = 0L;
+            h4 = -PRIME_1;
+            for(; i + 31 < arraySize; i += 32)
+            {
+                h1 = round(h1, word(array, i));
+                h2 = round(h2, word(array, i + 8));
+                h3 = round(h3, word(array, i + 16));
+                h4 = round(h4, word(array, i + 24));
+            }
+            hash = Long.rotateLeft(h1, 1) + Long.rotateLeft(h2, 7) + Long.rotateLeft(h3, 12) + Long.rotateLeft(h4, 18);
+        }
+        else
+        {
+            hash = PRIME_5;
+        }
+        hash += arraySize;
+        for(; i + 7 < arraySize; i += 8)
+        {
+            hash = Long.rotateLeft(hash ^ round(0L, word(array, i)), 27) * PRIME_1 + PRIME_4;
+        }
+        for(; i < arraySize; i++)
+        {
+            hash = Long.rotateLeft(hash ^ ((array[i] & 0xFFL) * PRIME_5), 11) * PRIME_1;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * Return a 64 bit hash code based on the contents of the specified array,
+     * with the 64 bit hash of each element.
+     * If <code>array</code> is <code>null</code>, this method returns 0.
+     */
+    public static long nullSafeHash64(Object[] array)
+    {
+        long hash;
+
+        if(array == null)
+        {
+            return 0L;
+        }
+        hash = PRIME_5 + array.length;
+        for(int i = 0; i < array.length; i++)
+        {
+            hash = Long.rotateLeft(hash ^ round(0L, nullSafeHash64(array[i])), 27) * PRIME_1 + PRIME_4;
+        }
+        return avalanche(hash);
+    }
+
+    /**
+     * A lane round of the 64 bit array hash.
+     */
+    private static long round(long acc, long input)
+    {
+        acc += input * PRIME_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME_1;
+    }
+
+    /**
+     * The final mixing of the 64 bit array hash.
+     */
+    private static long avalanche(long hash)
+    {
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Eight bytes of an array as a little endian long.
+     */
+    private static long word(byte[] array, int i)
+    {
+        return (array[i] & 0xFFL) | ((array[i + 1] & 0xFFL) << 8) | ((array[i + 2] & 0xFFL) << 16) | ((array[i + 3] & 0xFFL) << 24)
+                | ((array[i + 4] & 0xFFL) << 32) | ((array[i + 5] & 0xFFL) << 40) | ((array[i + 6] & 0xFFL) << 48) | ((array[i + 7] & 0xFFL) << 56);
+    }
+
+    /**
+     * Four chars of an array as a long.
+     */
+    private static long word(char[] array, int i)
+    {
+        return array[i] | ((long) array[i + 1] << 16) | ((long) array[i + 2] << 32) | ((long) array[i + 3] << 48);
+    }
 }
@@ -0,0 +1,269 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded pool of strings, to share a single instance of the repeated values.
+ *
+ * The pool is a table of a fixed capacity, where each string has two candidate entries by its
+ * hash: a string found in them is a <i>hit</i> and the pooled instance is returned; else the
+ * string takes an empty entry or evicts one of them. A hit marks its entry as referenced, and the
+ * eviction gives a second chance to the referenced entries: they are spared, and unmarked, while
+ * the other entry is not referenced. So the retained memory is bounded and the less repeated
+ * values are evicted by the more repeated ones, without the unbounded growth of
+ * {@link String#intern()}.
+ *
+ * The entries are read and written without locking: the strings are immutable and safely
+ * published, so a race loses at most the pooling of a value, never its content.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public final class StringPool
+{
+    /** The default capacity */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** The shared pool, for the properties without a pool of its own */
+    private static final StringPool SHARED = new StringPool(DEFAULT_CAPACITY);
+
+    /** The entries */
+    private final String[] entries;
+
+    /** The referenced marks of the entries, set on hit and cleared on a spared eviction */
+    private final boolean[] referenced;
+
+    /** The entries mask */
+    private final int mask;
+
+    /** Hit count */
+    private final LongAdder hits = new LongAdder();
+
+    /** Miss count */
+    private final LongAdder misses = new LongAdder();
+
+    /** The estimated bytes of the duplicated instances replaced by pooled ones */
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param capacity The maximum number of pooled strings, rounded up to a power of two
+     * @throws IllegalArgumentException If the capacity is not positive
+     */
+    public StringPool(int capacity)
+    {
+        if(capacity <= 0 || capacity > 1 << 30)
+        {
+            throw new IllegalArgumentException("Not valid capacity " + capacity);
+        }
+        entries = new String[Math.max(2, Integer.highestOneBit(capacity - 1) << 1)];
+        referenced = new boolean[entries.length];
+        mask = entries.length - 1;
+    }
+
+    /**
+     * The shared pool, of {@link #DEFAULT_CAPACITY} strings.
+     * @return The shared pool
+     */
+    public static StringPool shared()
+    {
+        return SHARED;
+    }
+
+    /**
+     * Deduplicates a string.
+     * @param value The string, can be null
+     * @return The pooled instance equal to the string, or the string itself if it was not pooled
+     */
+    public String deduplicate(String value)
+    {
+        String pooled;
+        int h, first, second, index;
+
+        if(value == null)
+        {
+            return null;
+        }
+        h = value.hashCode();
+        h ^= h >>> 16;
+        first = h & mask;
+        second = first ^ 1;
+        index = first;
+        if((pooled = entries[first]) == null || pooled.equals(value) == false)
+        {
+            index = second;
+            pooled = entries[second];
+        }
+        if(pooled != null && pooled.equals(value))
+        {
+            hits.increment();
+            if(referenced[index] == false)
+            {
+                referenced[index] = true;
+            }
+            if(pooled != value)
+            {
+                savedBytes.add(footprint(value));
+            }
+            return pooled;
+        }
+        misses.increment();
+        if(entries[first] == null)
+        {
+            index = first;
+        }
+        else if(entries[second] == null)
+        {
+            index = second;
+        }
+        else
+        {
+            // Evicts by a hash bit not used for the position, giving a second chance to the referenced entries
+            index = (h & (mask + 1)) == 0 ? first : second;
+            if(referenced[index])
+            {
+                referenced[index] = false;
+                index ^= 1;
+                if(referenced[index])
+                {
+                    // Both are spared: the string is not pooled
+                    referenced[index] = false;
+                    return value;
+                }
+            }
+        }
+        entries[index] = value;
+        return value;
+    }
+
+    /**
+     * The estimated footprint of a string: the instance and its Latin-1 bytes array, as the
+     * compact strings of Java 9 and later.
+     * @param value The string
+     * @return The size, in bytes
+     */
+    static long footprint(String value)
+    {
+        return 24L + ((16L + value.length() + 7L) & ~7L);
+    }
+
+    /**
+     * The capacity of the pool.
+     * @return The maximum number of pooled strings
+     */
+    public int getCapacity()
+    {
+        return entries.length;
+    }
+
+    /**
+     * The number of pooled strings.
+     * @return The number of strings
+     */
+    public int size()
+    {
+        int count;
+
+        count = 0;
+        for(String entry : entries)
+        {
+            if(entry != null)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The number of strings found in the pool.
+     * @return The hit count
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * The number of strings not found in the pool.
+     * @return The miss count
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * The ratio of the strings found in the pool.
+     * @return The hit rate, from 0 to 1; 0 if no string was deduplicated
+     */
+    public double getHitRate()
+    {
+        long found, total;
+
+        found = hits.sum();
+        total = found + misses.sum();
+        return total == 0L ? 0D : (double) found / total;
+    }
+
+    /**
+     * The estimated bytes of the duplicated strings replaced by pooled ones, that can be reclaimed.
+     * @return The saved bytes
+     */
+    public long getSavedBytes()
+    {
+        return savedBytes.sum();
+    }
+
+    /**
+     * The estimated bytes retained by the pool: its table and the pooled strings.
+     * @return The retained bytes
+     */
+    public long getRetainedBytes()
+    {
+        long bytes;
+
+        bytes = ((16L + 4L * entries.length + 7L) & ~7L) + ((16L + entries.length + 7L) & ~7L);
+        for(String entry : entries)
+        {
+            if(entry != null)
+            {
+                bytes += footprint(entry);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Removes all the pooled strings and resets the statistics.
+     */
+    public void clear()
+    {
+        for(int n = 0; n < entries.length; n++)
+        {
+            entries[n] = null;
+            referenced[n] = false;
+        }
+        hits.reset();
+        misses.reset();
+        savedBytes.reset();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Test of {@link BeanBuilder}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanBuilderTest
+{
+    /**
+     * Test the mutable and frozen builds, and the reuse of the builder.
+     */
+    @Test public void testBuild()
+    {
+        BeanBuilder<IModel> builder;
+        IModel m1, m2, m3;
+
+        builder = ProxyBeanFactory.builder(IModel.class);
+        builder.set("id", 1L).set("name", "NAME").set("birthDate", new Date(0L)).set("gender", EGender.Male);
+        m1 = builder.build();
+        m2 = builder.set("numberOfChildren", 2).buildFrozen();
+        Assert.assertEquals(1L, m1.getId());
+        Assert.assertEquals("NAME", m1.getName());
+        Assert.assertEquals(0, m1.getNumberOfChildren());
+        Assert.assertEquals(2, m2.getNumberOfChildren());
+        Assert.assertFalse(ProxyBeanFactory.isFrozen(m1));
+        Assert.assertTrue(ProxyBeanFactory.isFrozen(m2));
+        // The built beans do not share the values with the builder
+        m1.setNumberOfChildren(2);
+        Assert.assertEquals(m1, m2);
+        builder.set("id", 5L);
+        Assert.assertEquals(1L, m2.getId());
+        // Reset and copy
+        m3 = builder.reset().build();
+        Assert.assertEquals(0L, m3.getId());
+        Assert.assertNull(m3.getName());
+        Assert.assertEquals(m2, builder.from(m2).build());
+        Assert.assertEquals(m2, builder.reset().from(m2.clone()).build());
+    }
+
+    /**
+     * Test the not valid properties and values.
+     */
+    @Test public void testNotValid()
+    {
+        BeanBuilder<IModel> builder;
+
+        builder = ProxyBeanFactory.builder(IModel.class);
+        try
+        {
+            builder.set("unknown", 1);
+            Assert.fail("Unknown property accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        try
+        {
+            builder.set("numberOfChildren", 1L);
+            Assert.fail("Long accepted for an int property");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        Assert.assertEquals(0, builder.set("numberOfChildren", null).build().getNumberOfChildren());
+    }
+}
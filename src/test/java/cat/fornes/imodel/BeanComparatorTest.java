@@ -0,0 +1,148 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.ModelImpl;
+
+/**
+ * Test of {@link BeanComparator}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanComparatorTest
+{
+    /**
+     * Test the multi key ordering, against a getters comparator.
+     */
+    @Test public void testSort()
+    {
+        BeanComparator<IModel> order;
+        Comparator<IModel> expected;
+        IModel[] beans, sorted, parallel;
+        List<IModel> list;
+
+        order = BeanComparator.of(IModel.class).by("lasName", false, true).by("birthDate", true, false).by("incomingYear");
+        expected = new Comparator<IModel>()
+        {
+            @Override
+            public int compare(IModel o1, IModel o2)
+            {
+                int result;
+
+                if((result = compareNullsFirst(o1.getLasName(), o2.getLasName())) != 0)
+                {
+                    return result;
+                }
+                if(o1.getBirthDate() == null || o2.getBirthDate() == null)
+                {
+                    // Nulls last, also on descending order
+                    result = o1.getBirthDate() == o2.getBirthDate() ? 0 : o1.getBirthDate() == null ? 1 : -1;
+                }
+                else
+                {
+                    result = o2.getBirthDate().compareTo(o1.getBirthDate());
+                }
+                return result != 0 ? result : Double.compare(o1.getIncomingYear(), o2.getIncomingYear());
+            }
+        };
+        beans = randomBeans(5000);
+        sorted = beans.clone();
+        Arrays.sort(sorted, expected);
+        parallel = beans.clone();
+        order.parallelSort(parallel);
+        Assert.assertArrayEquals(sorted, parallel);
+        parallel = beans.clone();
+        order.sort(parallel);
+        Assert.assertArrayEquals(sorted, parallel);
+        list = new ArrayList<IModel>(Arrays.asList(beans));
+        order.sort(list);
+        Assert.assertArrayEquals(sorted, list.toArray());
+        // As a plain comparator, also with other implementations
+        list = new ArrayList<IModel>(Arrays.asList(beans));
+        list.set(0, new ModelImpl(list.get(0)));
+        Collections.sort(list, order);
+        for(int n = 1; n < list.size(); n++)
+        {
+            Assert.assertTrue(expected.compare(list.get(n - 1), list.get(n)) <= 0);
+        }
+    }
+
+    /**
+     * Test the not valid keys.
+     */
+    @Test public void testNotValidKey()
+    {
+        try
+        {
+            BeanComparator.of(IModel.class).by("unknown");
+            Assert.fail("Unknown property accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Compares with the nulls first.
+     */
+    private static int compareNullsFirst(String s1, String s2)
+    {
+        if(s1 == null || s2 == null)
+        {
+            return s1 == s2 ? 0 : s1 == null ? -1 : 1;
+        }
+        return s1.compareTo(s2);
+    }
+
+    /**
+     * Beans with random, repeated and null values.
+     */
+    private static IModel[] randomBeans(int size)
+    {
+        IModel[] beans;
+        Random random;
+
+        random = new Random(3L);
+        beans = new IModel[size];
+        for(int n = 0; n < size; n++)
+        {
+            beans[n] = ProxyBeanFactory.builder(IModel.class)
+                .set("id", (long) n)
+                .set("lasName", random.nextInt(10) == 0 ? null : "Name" + random.nextInt(20))
+                .set("birthDate", random.nextInt(10) == 0 ? null : new Date(random.nextInt(30) * 1000L))
+                .set("incomingYear", random.nextInt(50) * 1.5D)
+                .build();
+        }
+        return beans;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.models.IAddress;
+
+/**
+ * Test of the {@link BeanInterceptor interceptors}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanInterceptorTest
+{
+    /**
+     * Test the interceptors of all the properties and of a single property, and its removal.
+     */
+    @Test public void testInterceptors()
+    {
+        final AtomicInteger calls;
+        BeanDescriptor<IAddress> descriptor;
+        BeanInterceptor audit, upperCase, positive;
+        IAddress plain, intercepted;
+
+        descriptor = BeanDescriptor.forType(IAddress.class);
+        calls = new AtomicInteger();
+        audit = new BeanInterceptor()
+        {
+            @Override
+            public Object onGet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                calls.incrementAndGet();
+                return value;
+            }
+
+            @Override
+            public Object onSet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                calls.incrementAndGet();
+                return value;
+            }
+        };
+        upperCase = new BeanInterceptor()
+        {
+            @Override
+            public Object onGet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value == null ? null : value.toString().toUpperCase();
+            }
+
+            @Override
+            public Object onSet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value;
+            }
+        };
+        positive = new BeanInterceptor()
+        {
+            @Override
+            public Object onGet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value;
+            }
+
+            @Override
+            public Object onSet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                if(((Integer) value).intValue() < 0)
+                {
+                    throw new IllegalArgumentException("Negative zip");
+                }
+                return value;
+            }
+        };
+        plain = ProxyBeanFactory.newProxy(IAddress.class);
+        Assert.assertSame(ProxyBeanImpl.class, ProxyBeanUtils.proxyBeanOf(plain).getClass());
+        descriptor.addInterceptor(audit);
+        descriptor.addInterceptor("city", upperCase);
+        descriptor.addInterceptor("zip", positive);
+        try
+        {
+            intercepted = ProxyBeanFactory.newProxy(IAddress.class);
+            intercepted.setCity("Girona");
+            Assert.assertEquals("GIRONA", intercepted.getCity());
+            Assert.assertEquals("Girona", ProxyBeanUtils.proxyBeanOf(intercepted).getSlot(descriptor.slotOf("city")));
+            Assert.assertEquals(2, calls.get());
+            try
+            {
+                intercepted.setZip(-1);
+                Assert.fail("Vetoed set accepted");
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Expected
+            }
+            Assert.assertEquals(0, intercepted.getZip());
+            // The clones keep the interceptors, the beans created before have not
+            Assert.assertEquals("GIRONA", ProxyBeanFactory.snapshot(intercepted).getCity());
+            plain.setCity("Girona");
+            Assert.assertEquals("Girona", plain.getCity());
+        }
+        finally
+        {
+            Assert.assertTrue(descriptor.removeInterceptor(audit));
+            Assert.assertTrue(descriptor.removeInterceptor(upperCase));
+            Assert.assertTrue(descriptor.removeInterceptor(positive));
+        }
+        Assert.assertFalse(descriptor.removeInterceptor(audit));
+        Assert.assertSame(ProxyBeanImpl.class, ProxyBeanUtils.proxyBeanOf(ProxyBeanFactory.newProxy(IAddress.class)).getClass());
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.io.BeanCodec;
+import cat.fornes.imodel.models.IPackedStatus;
+import cat.fornes.imodel.models.IPoint;
+import cat.fornes.imodel.models.IStatus;
+import cat.fornes.imodel.models.IWide;
+
+/**
+ * Stress test of the proxy beans under contention, for each concurrency mode: torn reads,
+ * lost updates and hash code races. Each case runs its actors at once, many times, and checks
+ * the states that the mode forbids.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class ConcurrencyStressTest
+{
+    /** The rounds of each case */
+    private static final int ROUNDS = 200;
+
+    /** The operations of each actor, by round */
+    private static final int OPERATIONS = 200;
+
+    /**
+     * The versioned beans are read as whole versions: a pair written together is never seen
+     * half written by the snapshots, copies and equality.
+     */
+    @Test public void testVersionedNoTornReads() throws Exception
+    {
+        final IPoint point;
+        final IPoint expected;
+
+        point = ProxyBeanFactory.newVersionedProxy(IPoint.class);
+        expected = ProxyBeanFactory.newProxy(IPoint.class);
+        runRounds(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    final int value;
+
+                    value = n;
+                    ProxyBeanFactory.update(point, new Consumer<IPoint>()
+                    {
+                        @Override
+                        public void accept(IPoint draft)
+                        {
+                            draft.setX(value);
+                            draft.setY(value);
+                        }
+                    });
+                }
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                IPoint snapshot, copy;
+
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    snapshot = ProxyBeanFactory.snapshot(point);
+                    Assert.assertEquals(snapshot.getX(), snapshot.getY());
+                    copy = ProxyBeanUtils.<IPoint>proxyBeanOf(point).clone();
+                    Assert.assertEquals(copy.getX(), copy.getY());
+                    synchronized(expected)
+                    {
+                        expected.setX(snapshot.getX());
+                        expected.setY(snapshot.getX());
+                        Assert.assertEquals(expected, snapshot);
+                        Assert.assertEquals(expected.hashCode(), snapshot.hashCode());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * The versioned updates are serialized: no increment is lost.
+     */
+    @Test public void testVersionedNoLostUpdates() throws Exception
+    {
+        final IPoint point;
+        Runnable increment;
+
+        point = ProxyBeanFactory.newVersionedProxy(IPoint.class);
+        increment = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    ProxyBeanFactory.update(point, new Consumer<IPoint>()
+                    {
+                        @Override
+                        public void accept(IPoint draft)
+                        {
+                            draft.setX(draft.getX() + 1);
+                        }
+                    });
+                }
+            }
+        };
+        runRounds(increment, increment, increment);
+        Assert.assertEquals(ROUNDS * OPERATIONS * 3, point.getX());
+    }
+
+    /**
+     * The packed fields share words: the concurrent writes of neighbour fields are not lost,
+     * and the 64 bits fields are never read half written.
+     */
+    @Test public void testPackedNoLostUpdatesNorTornReads() throws Exception
+    {
+        final IPackedStatus status;
+
+        status = ProxyBeanFactory.newProxy(IPackedStatus.class);
+        runRounds(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    status.setEnabled(n % 2 == 0);
+                    status.setTimestamp(n % 2 == 0 ? -1L : 0L);
+                }
+                status.setEnabled(true);
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    status.setVisible(n % 2 == 0);
+                    status.setPriority((byte) n);
+                }
+                status.setVisible(true);
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long timestamp;
+
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    status.setLocked(n % 2 == 0);
+                    timestamp = status.getTimestamp();
+                    Assert.assertTrue("Torn " + timestamp, timestamp == 0L || timestamp == -1L);
+                }
+                status.setLocked(true);
+            }
+        });
+        Assert.assertTrue(status.isEnabled());
+        Assert.assertTrue(status.isVisible());
+        Assert.assertTrue(status.isLocked());
+    }
+
+    /**
+     * The sparse storage is replaced on each write: the concurrent writes of other slots are not lost.
+     */
+    @Test public void testSparseNoLostUpdates() throws Exception
+    {
+        final IWide wide;
+
+        wide = ProxyBeanFactory.newProxy(IWide.class);
+        runRounds(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    wide.setP00(n);
+                }
+                wide.setP00(-1);
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    wide.setP01(n % 2 == 0 ? "even" : null);
+                }
+                wide.setP01("one");
+            }
+        }, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < OPERATIONS; n++)
+                {
+                    wide.setP68(n);
+                }
+                wide.setP68(-68);
+            }
+        });
+        Assert.assertEquals(-1, wide.getP00());
+        Assert.assertEquals("one", wide.getP01());
+        Assert.assertEquals(-68, wide.getP68());
+    }
+
+    /**
+     * The hash code of a frozen bean, cached on the first call, is the same for all the threads.
+     */
+    @Test public void testFrozenHashCodeRace() throws Exception
+    {
+        final List<Object> beans;
+        final int[] expected;
+        Runnable hash;
+
+        beans = new ArrayList<Object>();
+        for(int n = 0; n < ROUNDS; n++)
+        {
+            beans.add(frozenStatus(n, IStatus.class));
+            beans.add(frozenStatus(n, IPackedStatus.class));
+        }
+        expected = new int[beans.size()];
+        for(int n = 0; n < expected.length; n++)
+        {
+            expected[n] = ProxyBeanUtils.proxyBeanOf(beans.get(n)).clone().hashCode();
+        }
+        hash = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < expected.length; n++)
+                {
+                    Assert.assertEquals(expected[n], beans.get(n).hashCode());
+                }
+            }
+        };
+        runConcurrently(hash, hash, hash);
+    }
+
+    /**
+     * The lazy beans decode each value once, without losing a concurrent write.
+     */
+    @Test public void testLazyNoLostUpdates() throws Exception
+    {
+        final BeanCodec<IStatus> codec;
+        final byte[] data;
+        IStatus status;
+
+        codec = new BeanCodec<IStatus>(IStatus.class);
+        status = ProxyBeanFactory.newProxy(IStatus.class);
+        status.setRetries(1);
+        status.setLabel("encoded");
+        data = codec.encode(status);
+        for(int round = 0; round < ROUNDS; round++)
+        {
+            final IStatus lazy;
+
+            lazy = codec.wrap(data, 0, data.length);
+            runConcurrently(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    lazy.setRetries(2);
+                }
+            }, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    int retries;
+
+                    retries = lazy.getRetries();
+                    Assert.assertTrue(retries == 1 || retries == 2);
+                    Assert.assertEquals("encoded", lazy.getLabel());
+                }
+            });
+            Assert.assertEquals(2, lazy.getRetries());
+        }
+    }
+
+    /**
+     * A frozen status.
+     */
+    private static <T extends IStatus> T frozenStatus(int n, Class<T> type)
+    {
+        T status;
+
+        status = ProxyBeanFactory.newProxy(type);
+        status.setRetries(n);
+        status.setTimestamp(n * 1000003L);
+        status.setLabel("Status " + n);
+        status.setEnabled(n % 2 == 0);
+        return ProxyBeanFactory.freeze(status);
+    }
+
+    /**
+     * Runs the actors at once, for all the rounds.
+     */
+    private static void runRounds(Runnable... actors) throws Exception
+    {
+        for(int round = 0; round < ROUNDS; round++)
+        {
+            runConcurrently(actors);
+        }
+    }
+
+    /**
+     * Runs the actors at once, each in a thread, and rethrows the first failure.
+     */
+    private static void runConcurrently(Runnable... actors) throws Exception
+    {
+        final CountDownLatch start;
+        final List<Throwable> failures;
+        final AtomicBoolean failed;
+        Thread[] threads;
+
+        start = new CountDownLatch(1);
+        failures = new ArrayList<Throwable>();
+        failed = new AtomicBoolean();
+        threads = new Thread[actors.length];
+        for(int n = 0; n < actors.length; n++)
+        {
+            final Runnable actor;
+
+            actor = actors[n];
+            threads[n] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        actor.run();
+                    }
+                    catch(Throwable e)
+                    {
+                        synchronized(failures)
+                        {
+                            failures.add(e);
+                        }
+                        failed.set(true);
+                    }
+                }
+            });
+            threads[n].start();
+        }
+        start.countDown();
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+        if(failed.get())
+        {
+            throw new AssertionError(failures.get(0));
+        }
+    }
+}
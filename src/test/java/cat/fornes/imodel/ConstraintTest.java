@@ -0,0 +1,195 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.annotations.Range;
+import cat.fornes.imodel.models.IContact;
+
+/**
+ * Test of the property constraints.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class ConstraintTest
+{
+    /**
+     * A type with a not applicable constraint.
+     */
+    public interface INotValid
+    {
+        @Range(min = 0)
+        public String getName();
+    }
+
+    /**
+     * A type with ranges on numbers not exact as doubles.
+     */
+    public interface IMeasure
+    {
+        @Range(min = 0, max = 10)
+        public double getRatio();
+        public void setRatio(double ratio);
+        @Range(max = 9007199254740992D)
+        public long getCount();
+        public void setCount(long count);
+        @Range(min = 0, max = 1)
+        public BigDecimal getFraction();
+        public void setFraction(BigDecimal fraction);
+        @Range(max = 9007199254740992D)
+        public BigInteger getTotal();
+        public void setTotal(BigInteger total);
+    }
+
+    /**
+     * Test the constraints checked by the setters.
+     */
+    @Test public void testSetters()
+    {
+        IContact contact;
+
+        contact = ProxyBeanFactory.newProxy(IContact.class);
+        contact.setName("Octavi");
+        contact.setAge(150);
+        contact.setMail("octavi@fornes.cat");
+        contact.setMail(null);
+        assertViolation(contact, "name", null);
+        assertViolation(contact, "name", "A very long name");
+        assertViolation(contact, "age", -1);
+        assertViolation(contact, "mail", "octavi");
+        Assert.assertEquals("Octavi", contact.getName());
+        Assert.assertEquals(150, contact.getAge());
+        try
+        {
+            ProxyBeanFactory.builder(IContact.class).set("age", 151);
+            Assert.fail("Not valid value built");
+        }
+        catch(ConstraintViolationException e)
+        {
+            Assert.assertEquals(Arrays.asList("age"), e.getProperties());
+        }
+        try
+        {
+            ProxyBeanFactory.newProxy(INotValid.class);
+            Assert.fail("Not applicable constraint accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test the ranges of NaN, longs and big numbers, compared exactly.
+     */
+    @Test public void testExactRanges()
+    {
+        ProxyBeanImpl<IMeasure> measure;
+
+        measure = ProxyBeanUtils.proxyBeanOf(ProxyBeanFactory.newProxy(IMeasure.class));
+        measure.set("ratio", 10D);
+        measure.set("count", 1L << 53);
+        measure.set("fraction", BigDecimal.ONE);
+        measure.set("total", BigInteger.ONE.shiftLeft(53));
+        assertViolation(measure, "ratio", Double.NaN);
+        assertViolation(measure, "count", (1L << 53) + 1L);
+        assertViolation(measure, "fraction", new BigDecimal("1.00000000000000000001"));
+        assertViolation(measure, "total", BigInteger.ONE.shiftLeft(53).add(BigInteger.ONE));
+        Assert.assertEquals(10D, measure.get("ratio"));
+        Assert.assertEquals(BigDecimal.ONE, measure.get("fraction"));
+    }
+
+    /**
+     * Test the bulk validation of beans not populated by the setters.
+     */
+    @Test public void testValidate()
+    {
+        BeanDescriptor<IContact> descriptor;
+        ProxyBeanImpl<IContact> proxy;
+        IContact contact;
+
+        contact = ProxyBeanFactory.newProxy(IContact.class);
+        proxy = ProxyBeanUtils.proxyBeanOf(contact);
+        descriptor = proxy.getDescriptor();
+        proxy.setSlot(descriptor.slotOf("age"), 200);
+        proxy.setSlot(descriptor.slotOf("mail"), "none");
+        try
+        {
+            ProxyBeanFactory.validate(contact);
+            Assert.fail("Not valid bean validated");
+        }
+        catch(ConstraintViolationException e)
+        {
+            Assert.assertEquals(3, e.getProperties().size());
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("IContact.age"));
+        }
+        contact.setName("Name");
+        contact.setAge(20);
+        contact.setMail("a@b");
+        ProxyBeanFactory.validate(contact);
+    }
+
+    /**
+     * Asserts that a set by name is rejected.
+     */
+    private static void assertViolation(ProxyBeanImpl<?> bean, String property, Object value)
+    {
+        try
+        {
+            bean.set(property, value);
+            Assert.fail("Not valid " + property + " accepted: " + value);
+        }
+        catch(ConstraintViolationException e)
+        {
+            Assert.assertEquals(Arrays.asList(property), e.getProperties());
+        }
+    }
+
+    /**
+     * Asserts that a set is rejected.
+     */
+    private static void assertViolation(IContact contact, String property, Object value)
+    {
+        BeanDescriptor<IContact> descriptor;
+
+        descriptor = BeanDescriptor.forType(IContact.class);
+        try
+        {
+            descriptor.getSetter(descriptor.slotOf(property)).invoke(contact, value);
+            Assert.fail("Not valid " + property + " accepted: " + value);
+        }
+        catch(InvocationTargetException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof ConstraintViolationException);
+            Assert.assertEquals(Arrays.asList(property), ((ConstraintViolationException) e.getCause()).getProperties());
+        }
+        catch(IllegalAccessException e)
+        {
+            throw new AssertionError(e);
+        }
+    }
+}
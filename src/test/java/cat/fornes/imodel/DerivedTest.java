@@ -0,0 +1,193 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.annotations.Derived;
+
+/**
+ * Test of the default methods and the {@link Derived derived} properties.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class DerivedTest
+{
+    /** The computations of the full name */
+    static final AtomicInteger FULL_NAMES = new AtomicInteger();
+
+    /** The computations of the initials */
+    static final AtomicInteger INITIALS = new AtomicInteger();
+
+    /**
+     * A type with derived properties.
+     */
+    public interface IPerson
+    {
+        public String getName();
+        public void setName(String name);
+        public String getLasName();
+        public void setLasName(String lasName);
+        public int getAge();
+        public void setAge(int age);
+
+        @Derived({ "name", "lasName" })
+        public default String getFullName()
+        {
+            FULL_NAMES.incrementAndGet();
+            return getName() == null ? null : getName() + " " + getLasName();
+        }
+
+        @Derived
+        public default String getInitials()
+        {
+            INITIALS.incrementAndGet();
+            return getName().substring(0, 1) + getLasName().substring(0, 1) + getAge();
+        }
+
+        public default String greet(String greeting)
+        {
+            return greeting + ", " + getName();
+        }
+
+        public default void check() throws Exception
+        {
+            throw new Exception("Checked");
+        }
+    }
+
+    /**
+     * A type with a derived method with parameters.
+     */
+    public interface IFormatted
+    {
+        public String getName();
+        public void setName(String name);
+
+        @Derived
+        public default String format(String pattern)
+        {
+            return String.format(pattern, getName());
+        }
+    }
+
+    /**
+     * A type with a derived method without result.
+     */
+    public interface IChecked
+    {
+        public String getName();
+        public void setName(String name);
+
+        @Derived
+        public default void check()
+        {
+            // Nothing
+        }
+    }
+
+    /**
+     * Test the memoized results and the invalidation by dependency.
+     */
+    @Test public void testMemoized()
+    {
+        IPerson person;
+        int computed;
+
+        Assert.assertEquals(3, BeanDescriptor.forType(IPerson.class).size());
+        person = ProxyBeanFactory.newProxy(IPerson.class);
+        computed = FULL_NAMES.get();
+        Assert.assertNull(person.getFullName());
+        Assert.assertNull(person.getFullName());
+        Assert.assertEquals(computed + 1, FULL_NAMES.get());
+        person.setName("Octavi");
+        person.setLasName("Fornés");
+        Assert.assertEquals("Octavi Fornés", person.getFullName());
+        Assert.assertEquals("Octavi Fornés", person.getFullName());
+        Assert.assertEquals(computed + 2, FULL_NAMES.get());
+        // Not a dependency
+        person.setAge(40);
+        Assert.assertEquals("Octavi Fornés", person.getFullName());
+        Assert.assertEquals(computed + 2, FULL_NAMES.get());
+        ProxyBeanUtils.<IPerson>proxyBeanOf(person).set("lasName", "Puig");
+        Assert.assertEquals("Octavi Puig", person.getFullName());
+        Assert.assertEquals(computed + 3, FULL_NAMES.get());
+        // Without dependencies: any property
+        computed = INITIALS.get();
+        Assert.assertEquals("OP40", person.getInitials());
+        Assert.assertEquals("OP40", person.getInitials());
+        person.setAge(41);
+        Assert.assertEquals("OP41", person.getInitials());
+        Assert.assertEquals(computed + 2, INITIALS.get());
+        // A copy computes its own results
+        Assert.assertEquals("Octavi Puig", ProxyBeanFactory.immutableCopy(person).getFullName());
+    }
+
+    /**
+     * Test the default methods that are not memoized.
+     */
+    @Test public void testDefaultMethods()
+    {
+        IPerson person;
+
+        person = ProxyBeanFactory.newProxy(IPerson.class);
+        person.setName("Octavi");
+        Assert.assertEquals("Hello, Octavi", person.greet("Hello"));
+        person.setName("Joan");
+        Assert.assertEquals("Bye, Joan", person.greet("Bye"));
+        try
+        {
+            person.check();
+            Assert.fail("Exception not thrown");
+        }
+        catch(Exception e)
+        {
+            Assert.assertEquals("Checked", e.getMessage());
+        }
+    }
+
+    /**
+     * Test that the derived methods with parameters or without result are rejected.
+     */
+    @Test public void testNotValidDerived()
+    {
+        try
+        {
+            ProxyBeanFactory.newProxy(IFormatted.class);
+            Assert.fail("Derived method with parameters accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("format"));
+        }
+        try
+        {
+            ProxyBeanFactory.newProxy(IChecked.class);
+            Assert.fail("Derived method without result accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("check"));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.IWide;
+
+/**
+ * Test of the access by property name: the perfect hash of the names, the access of the beans and the handles.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class DynamicAccessTest
+{
+    /**
+     * Test the perfect hash, with names of equal hash codes.
+     */
+    @Test public void testPerfectHash()
+    {
+        PerfectHash hash;
+        String[] names;
+
+        names = new String[] { "Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa", "id", "name", "x" };
+        hash = new PerfectHash(names);
+        for(int n = 0; n < names.length; n++)
+        {
+            Assert.assertEquals(n, hash.indexOf(new String(names[n])));
+        }
+        Assert.assertEquals(-1, hash.indexOf("AaAaAa"));
+        Assert.assertEquals(-1, hash.indexOf(""));
+        Assert.assertEquals(-1, hash.indexOf(null));
+        Assert.assertEquals(-1, new PerfectHash(new String[0]).indexOf("id"));
+        for(int n = 0; n < 70; n++)
+        {
+            Assert.assertEquals(n, BeanDescriptor.forType(IWide.class).slotOf(BeanDescriptor.forType(IWide.class).getName(n)));
+        }
+    }
+
+    /**
+     * Test the get and set by name of the beans.
+     */
+    @Test public void testBeanAccess()
+    {
+        ProxyBeanImpl<IModel> proxy;
+        IModel model;
+
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        proxy = ProxyBeanUtils.proxyBeanOf(model);
+        proxy.set("name", "Octavi");
+        proxy.set("numberOfChildren", 2);
+        proxy.set("gender", EGender.Male);
+        proxy.set("incomingYear", null);
+        Assert.assertEquals("Octavi", model.getName());
+        Assert.assertEquals(Integer.valueOf(2), proxy.get("numberOfChildren"));
+        Assert.assertEquals(EGender.Male, proxy.get("gender"));
+        Assert.assertEquals(Double.valueOf(0D), proxy.get("incomingYear"));
+        try
+        {
+            proxy.get("unknown");
+            Assert.fail("Unknown property read");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        try
+        {
+            proxy.set("numberOfChildren", "2");
+            Assert.fail("Not valid value accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        proxy.freeze();
+        try
+        {
+            proxy.set("name", "Other");
+            Assert.fail("Frozen bean written");
+        }
+        catch(IllegalStateException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test the property handles.
+     */
+    @Test public void testHandles()
+    {
+        BeanProperty<IModel> name;
+        IModel model;
+
+        name = BeanDescriptor.forType(IModel.class).property("name");
+        Assert.assertEquals("name", name.getName());
+        Assert.assertSame(String.class, name.getType());
+        Assert.assertEquals(BeanDescriptor.forType(IModel.class).slotOf("name"), name.getSlot());
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        name.set(model, "Octavi");
+        Assert.assertEquals("Octavi", model.getName());
+        Assert.assertEquals("Octavi", name.get(model));
+        try
+        {
+            BeanDescriptor.forType(IModel.class).property("unknown");
+            Assert.fail("Unknown property resolved");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+}
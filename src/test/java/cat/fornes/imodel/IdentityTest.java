@@ -0,0 +1,130 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.collections.BeanInterner;
+import cat.fornes.imodel.models.IAccount;
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.ISparseAccount;
+import cat.fornes.imodel.utils.HashStrategy;
+
+/**
+ * Test of the equality and hash code of the beans with {@link cat.fornes.imodel.annotations.Identity} properties.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class IdentityTest
+{
+    /**
+     * Test that the beans are equal by its id, and by all the values with valueEquals.
+     */
+    @Test public void testIdentityEquality()
+    {
+        IAccount a1, a2, a3;
+        ProxyBeanImpl<IAccount> p1;
+
+        a1 = account(IAccount.class, 7L, "Anna", 10D);
+        a2 = account(IAccount.class, 7L, "Anna Smith", 20D);
+        a3 = account(IAccount.class, 8L, "Anna", 10D);
+        p1 = ProxyBeanUtils.proxyBeanOf(a1);
+        Assert.assertTrue(p1.getDescriptor().hasIdentity());
+        Assert.assertTrue(p1.getDescriptor().isIdentity(p1.getDescriptor().slotOf("id")));
+        Assert.assertFalse(p1.getDescriptor().isIdentity(p1.getDescriptor().slotOf("holder")));
+        Assert.assertEquals(a1, a2);
+        Assert.assertEquals(a1.hashCode(), a2.hashCode());
+        Assert.assertFalse(a1.equals(a3));
+        Assert.assertEquals(HashStrategy.POLYNOMIAL.hash(new Object[] { 7L }), a1.hashCode());
+        Assert.assertFalse(p1.valueEquals(a2));
+        Assert.assertTrue(p1.valueEquals(ProxyBeanUtils.proxyBeanOf(a1).clone()));
+        Assert.assertEquals(p1.valueHashCode(), ProxyBeanUtils.proxyBeanOf(p1.clone()).valueHashCode());
+        Assert.assertTrue(p1.valueHashCode() != a1.hashCode());
+        Assert.assertFalse(ProxyBeanUtils.proxyBeanOf(IModel.class.cast(ProxyBeanFactory.newProxy(IModel.class))).getDescriptor().hasIdentity());
+    }
+
+    /**
+     * Test the identity equality across storages, and the hash code of the frozen beans.
+     */
+    @Test public void testStoragesAndFrozen()
+    {
+        IAccount dense, versioned;
+        ISparseAccount sparse;
+
+        dense = account(IAccount.class, 3L, "Joan", 1D);
+        sparse = account(ISparseAccount.class, 3L, "Pere", 2D);
+        versioned = ProxyBeanFactory.newVersionedProxy(IAccount.class);
+        versioned.setId(3L);
+        Assert.assertEquals(dense, sparse);
+        Assert.assertEquals(dense, versioned);
+        Assert.assertEquals(dense.hashCode(), sparse.hashCode());
+        Assert.assertEquals(dense.hashCode(), versioned.hashCode());
+        Assert.assertFalse(ProxyBeanUtils.proxyBeanOf(sparse).valueEquals(dense));
+        Assert.assertTrue(ProxyBeanUtils.proxyBeanOf(sparse).valueEquals(ProxyBeanUtils.proxyBeanOf(sparse).clone()));
+        ProxyBeanFactory.freeze(dense);
+        ProxyBeanFactory.freeze(sparse);
+        Assert.assertEquals(dense.hashCode(), sparse.hashCode());
+        Assert.assertEquals(dense, sparse);
+    }
+
+    /**
+     * Test the beans as set members and that the interner keeps comparing all the values.
+     */
+    @Test public void testSetsAndInterner()
+    {
+        BeanInterner<IAccount> interner;
+        Set<IAccount> accounts;
+        IAccount a1, a2;
+
+        accounts = new HashSet<IAccount>();
+        for(int n = 0; n < 100; n++)
+        {
+            accounts.add(account(IAccount.class, n % 10, "Holder " + n, n));
+        }
+        Assert.assertEquals(10, accounts.size());
+        Assert.assertTrue(accounts.contains(account(IAccount.class, 4L, null, 0D)));
+        interner = new BeanInterner<IAccount>();
+        a1 = ProxyBeanFactory.freeze(account(IAccount.class, 1L, "Anna", 1D));
+        a2 = ProxyBeanFactory.freeze(account(IAccount.class, 1L, "Marta", 1D));
+        Assert.assertSame(a1, interner.intern(a1));
+        Assert.assertSame(a2, interner.intern(a2));
+        Assert.assertSame(a1, interner.intern(ProxyBeanFactory.freeze(account(IAccount.class, 1L, "Anna", 1D))));
+    }
+
+    /**
+     * An account.
+     */
+    private static <T extends IAccount> T account(Class<T> type, long id, String holder, double balance)
+    {
+        T account;
+
+        account = ProxyBeanFactory.newProxy(type);
+        account.setId(id);
+        account.setHolder(holder);
+        account.setOpened(new Date(id * 1000L));
+        account.setBalance(balance);
+        return account;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.io.BeanCodec;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Test of the lazy beans, that decode each value on its first access.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class LazyBeanTest
+{
+    /**
+     * Test that only the read values are decoded, once.
+     */
+    @Test public void testDecodeOnAccess()
+    {
+        BeanDescriptor<IModel> descriptor;
+        LazyProxyBeanImpl<IModel> proxy;
+        final BeanCodec<IModel> codec;
+        final AtomicInteger decoded;
+        final byte[] data;
+        IModel lazy;
+
+        codec = new BeanCodec<IModel>(IModel.class);
+        data = codec.encode(model());
+        decoded = new AtomicInteger();
+        descriptor = BeanDescriptor.forType(IModel.class);
+        proxy = (LazyProxyBeanImpl<IModel>) descriptor.newLazyHandler(new SlotDecoder()
+        {
+            @Override
+            public Object decode(int slot)
+            {
+                decoded.incrementAndGet();
+                return codec.decodeSlot(data, 0, slot);
+            }
+        });
+        lazy = descriptor.newProxy(proxy);
+        Assert.assertEquals(0, proxy.decodedSlots());
+        Assert.assertEquals("NAME", lazy.getName());
+        Assert.assertEquals("NAME", lazy.getName());
+        Assert.assertEquals(1, decoded.get());
+        Assert.assertEquals(1, proxy.decodedSlots());
+        lazy.setNumberOfChildren(4);
+        Assert.assertEquals(4, lazy.getNumberOfChildren());
+        Assert.assertEquals(1, decoded.get());
+        Assert.assertNull(proxy.getUnmodifiedDecoder());
+        // The whole bean reads decode the rest
+        Assert.assertEquals(EGender.Female, ProxyBeanFactory.immutableCopy(lazy).getGender());
+        Assert.assertEquals(descriptor.size() - 1, decoded.get());
+    }
+
+    /**
+     * Test the wrapped encodings: copied while not written and encoded again when written.
+     */
+    @Test public void testWrap()
+    {
+        BeanCodec<IModel> codec;
+        byte[] data, framed;
+        ByteBuffer direct;
+        IModel model, lazy;
+
+        codec = new BeanCodec<IModel>(IModel.class);
+        model = model();
+        data = codec.encode(model);
+        framed = new byte[data.length + 6];
+        System.arraycopy(data, 0, framed, 3, data.length);
+        lazy = codec.wrap(framed, 3, data.length);
+        Assert.assertEquals(346112L, lazy.getId());
+        Assert.assertArrayEquals(data, codec.encode(lazy));
+        Assert.assertEquals(model, lazy);
+        Assert.assertEquals(model.hashCode(), lazy.hashCode());
+        lazy = codec.wrap(ByteBuffer.wrap(framed, 3, data.length));
+        Assert.assertEquals(new Date(0L), lazy.getBirthDate());
+        Assert.assertArrayEquals(data, codec.encode(lazy));
+        lazy.setName("OTHER");
+        Assert.assertFalse(Arrays.equals(data, codec.encode(lazy)));
+        Assert.assertEquals("OTHER", codec.decode(codec.encode(lazy), 0, codec.encode(lazy).length).getName());
+        direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        direct.flip();
+        lazy = codec.wrap(direct);
+        Assert.assertEquals(model, lazy);
+        try
+        {
+            codec.wrap(new byte[] { 0, 0, 0, 1 }, 0, 4);
+            Assert.fail("Not valid encoding accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * A populated model.
+     */
+    private IModel model()
+    {
+        IModel model;
+
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setId(346112L);
+        model.setName("NAME");
+        model.setLasName("LAST_NAME");
+        model.setBirthDate(new Date(0L));
+        model.setNumberOfChildren(3);
+        model.setIncomingYear(32056.12D);
+        model.setGender(EGender.Female);
+        return model;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.annotations.PackedStorage;
+import cat.fornes.imodel.annotations.SparseStorage;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IPackedStatus;
+import cat.fornes.imodel.models.IStatus;
+
+/**
+ * Test of the {@link PackedStorage packed storage}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class PackedStorageTest
+{
+    /**
+     * A type with both storages.
+     */
+    @PackedStorage
+    @SparseStorage
+    public interface IConflict
+    {
+        public int getId();
+        public void setId(int id);
+    }
+
+    /**
+     * Test the storage choice and the layout.
+     */
+    @Test public void testChoice()
+    {
+        PackedLayout layout;
+
+        Assert.assertTrue(BeanDescriptor.forType(IPackedStatus.class).isPacked());
+        Assert.assertFalse(BeanDescriptor.forType(IStatus.class).isPacked());
+        Assert.assertTrue(ProxyBeanUtils.proxyBeanOf(ProxyBeanFactory.newProxy(IPackedStatus.class)) instanceof PackedProxyBeanImpl);
+        layout = BeanDescriptor.forType(IPackedStatus.class).getPackedLayout();
+        // 2 x 64 + 2 x 32 + 2 x 16 + 2 x 8 + 3 x 1 bits
+        Assert.assertEquals(4, layout.words());
+        Assert.assertEquals(2, layout.references());
+        try
+        {
+            BeanDescriptor.forType(IConflict.class);
+            Assert.fail("Both storages accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test the reads and writes of the limit values, and the equality with the dense storage.
+     */
+    @Test public void testValues() throws Exception
+    {
+        BeanDescriptor<IPackedStatus> descriptor;
+        IPackedStatus packed, dense, copy;
+        ByteArrayOutputStream baos;
+        ObjectOutputStream out;
+
+        descriptor = BeanDescriptor.forType(IPackedStatus.class);
+        packed = ProxyBeanFactory.newProxy(IPackedStatus.class);
+        dense = descriptor.newProxy(new ProxyBeanImpl<IPackedStatus>(descriptor));
+        Assert.assertFalse(packed.isEnabled());
+        Assert.assertEquals(0D, packed.getAmount(), 0D);
+        Assert.assertNull(packed.getGender());
+        Assert.assertNull(packed.getOptional());
+        Assert.assertEquals(dense, packed);
+        Assert.assertEquals(dense.hashCode(), packed.hashCode());
+        for(IPackedStatus bean : new IPackedStatus[] { packed, dense })
+        {
+            bean.setEnabled(true);
+            bean.setLocked(true);
+            bean.setPriority((byte) -128);
+            bean.setCode((short) -2);
+            bean.setGrade('\uFFFF');
+            bean.setRetries(Integer.MIN_VALUE);
+            bean.setRatio(-0F);
+            bean.setTimestamp(Long.MIN_VALUE + 1L);
+            bean.setAmount(Double.NaN);
+            bean.setGender(EGender.Male);
+            bean.setLabel("label");
+            bean.setOptional(7);
+        }
+        Assert.assertTrue(packed.isEnabled());
+        Assert.assertFalse(packed.isVisible());
+        Assert.assertTrue(packed.isLocked());
+        Assert.assertEquals(-128, packed.getPriority());
+        Assert.assertEquals(-2, packed.getCode());
+        Assert.assertEquals('\uFFFF', packed.getGrade());
+        Assert.assertEquals(Integer.MIN_VALUE, packed.getRetries());
+        Assert.assertEquals(Float.floatToRawIntBits(-0F), Float.floatToRawIntBits(packed.getRatio()));
+        Assert.assertEquals(Long.MIN_VALUE + 1L, packed.getTimestamp());
+        Assert.assertTrue(Double.isNaN(packed.getAmount()));
+        Assert.assertEquals(EGender.Male, packed.getGender());
+        Assert.assertEquals("label", packed.getLabel());
+        Assert.assertEquals(Integer.valueOf(7), packed.getOptional());
+        Assert.assertEquals(dense, packed);
+        Assert.assertEquals(dense.hashCode(), packed.hashCode());
+        Assert.assertEquals(dense.toString(), packed.toString());
+        // Neighbour fields are kept
+        packed.setLocked(false);
+        packed.setGender(null);
+        packed.setPriority((byte) 127);
+        Assert.assertTrue(packed.isEnabled());
+        Assert.assertNull(packed.getGender());
+        Assert.assertEquals(-2, packed.getCode());
+        Assert.assertEquals(127, packed.getPriority());
+        copy = packed.clone();
+        Assert.assertEquals(packed, copy);
+        copy.setGender(EGender.Female);
+        Assert.assertNull(packed.getGender());
+        // Serialization
+        baos = new ByteArrayOutputStream();
+        out = new ObjectOutputStream(baos);
+        out.writeObject(packed);
+        out.flush();
+        copy = (IPackedStatus) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+        Assert.assertEquals(packed, copy);
+        Assert.assertEquals(packed.hashCode(), ProxyBeanFactory.immutableCopy(copy).hashCode());
+    }
+
+    /**
+     * Test the versioned updates.
+     */
+    @Test public void testVersioned()
+    {
+        ProxyBeanImpl<IPackedStatus> proxy;
+        IPackedStatus packed, snapshot;
+
+        packed = ProxyBeanFactory.newVersionedProxy(IPackedStatus.class);
+        proxy = ProxyBeanUtils.proxyBeanOf(packed);
+        packed.setRetries(1);
+        snapshot = proxy.snapshot();
+        proxy.update(new Consumer<IPackedStatus>()
+        {
+            @Override
+            public void accept(IPackedStatus draft)
+            {
+                draft.setRetries(2);
+                draft.setVisible(true);
+            }
+        });
+        Assert.assertEquals(1, snapshot.getRetries());
+        Assert.assertFalse(snapshot.isVisible());
+        Assert.assertEquals(2, packed.getRetries());
+        Assert.assertTrue(packed.isVisible());
+    }
+
+    /**
+     * Test the footprint against the dense storage, with the boxes of its primitive values.
+     */
+    @Test public void testFootprint()
+    {
+        BeanDescriptor<IPackedStatus> descriptor;
+        ProxyBeanImpl<IPackedStatus> proxy;
+        IPackedStatus packed, dense;
+        long boxes;
+
+        descriptor = BeanDescriptor.forType(IPackedStatus.class);
+        packed = ProxyBeanFactory.newProxy(IPackedStatus.class);
+        dense = descriptor.newProxy(new ProxyBeanImpl<IPackedStatus>(descriptor));
+        for(IPackedStatus bean : new IPackedStatus[] { packed, dense })
+        {
+            bean.setCode((short) 1000);
+            bean.setGrade('è');
+            bean.setRetries(1000);
+            bean.setRatio(0.5F);
+            bean.setTimestamp(1400000000000L);
+            bean.setAmount(12.5D);
+        }
+        // The values out of the wrapper caches, of 16 bytes each
+        boxes = 6L * 16L;
+        proxy = ProxyBeanUtils.proxyBeanOf(packed);
+        Assert.assertTrue(proxy.estimateFootprint() < ProxyBeanUtils.proxyBeanOf(dense).estimateFootprint() + boxes);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.IPackedStatus;
+import cat.fornes.imodel.models.IPoint;
+import cat.fornes.imodel.models.IStatus;
+
+/**
+ * Test of the projections of beans to other interfaces.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class ProjectionTest
+{
+    /**
+     * A read only summary of {@link IModel}.
+     */
+    public interface ISummary
+    {
+        public String getName();
+        public Object getBirthDate();
+        public int getNumberOfChildren();
+    }
+
+    /**
+     * A named view of {@link IModel}.
+     */
+    public interface INamed
+    {
+        public String getName();
+        public void setName(String name);
+    }
+
+    /**
+     * A view of {@link IPoint}, with both coordinates.
+     */
+    public interface ICoordinates
+    {
+        public int getX();
+        public void setX(int x);
+        public int getY();
+        public void setY(int y);
+    }
+
+    /**
+     * Test that the views share the values of the source.
+     */
+    @Test public void testSharedValues() throws Exception
+    {
+        ByteArrayOutputStream baos;
+        ObjectOutputStream out;
+        ISummary summary;
+        INamed named, copy;
+        IModel model;
+
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setName("Octavi");
+        model.setNumberOfChildren(2);
+        summary = ProxyBeanFactory.project(model, ISummary.class);
+        named = ProxyBeanFactory.project(summary, INamed.class);
+        Assert.assertSame(model.getClass(), ProxyBeanFactory.project(model, IModel.class).getClass());
+        Assert.assertEquals("Octavi", summary.getName());
+        Assert.assertEquals(2, summary.getNumberOfChildren());
+        model.setName("Joan");
+        Assert.assertEquals("Joan", summary.getName());
+        Assert.assertEquals("Joan", named.getName());
+        named.setName("Pere");
+        Assert.assertEquals("Pere", model.getName());
+        Assert.assertEquals("ISummary [birthDate=null, name=Pere, numberOfChildren=2]", summary.toString());
+        ProxyBeanFactory.update(named, new Consumer<INamed>()
+        {
+            @Override
+            public void accept(INamed draft)
+            {
+                draft.setName("Anna");
+            }
+        });
+        Assert.assertEquals("Anna", model.getName());
+        Assert.assertEquals(2, model.getNumberOfChildren());
+        // Serialized as a copy
+        baos = new ByteArrayOutputStream();
+        out = new ObjectOutputStream(baos);
+        out.writeObject(named);
+        out.flush();
+        copy = (INamed) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+        Assert.assertEquals("Anna", copy.getName());
+        copy.setName("Maria");
+        Assert.assertEquals("Anna", model.getName());
+        // The frozen state is the source one
+        named.setName("Octavi");
+        ProxyBeanFactory.freeze(named);
+        Assert.assertTrue(ProxyBeanFactory.isFrozen(model));
+        try
+        {
+            named.setName("Other");
+            Assert.fail("Frozen view written");
+        }
+        catch(IllegalStateException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test that a view frozen by the source after the projection is cloned and snapshot as frozen.
+     */
+    @Test public void testFrozenSource()
+    {
+        ProxyBeanImpl<INamed> view;
+        IModel model;
+
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setName("Octavi");
+        view = ProxyBeanUtils.proxyBeanOf(ProxyBeanFactory.project(model, INamed.class));
+        Assert.assertFalse(ProxyBeanFactory.isFrozen(view.clone()));
+        ProxyBeanFactory.freeze(model);
+        Assert.assertTrue(ProxyBeanFactory.isFrozen(view.clone()));
+        Assert.assertSame(view, ProxyBeanUtils.proxyBeanOf(view.clone()));
+        Assert.assertSame(view, ProxyBeanUtils.proxyBeanOf(view.snapshot()));
+        Assert.assertEquals(view.hashCode(), ProxyBeanUtils.proxyBeanOf(view.mutableCopy()).hashCode());
+    }
+
+    /**
+     * Test that the updates of a view do not lose the concurrent writes of the source.
+     */
+    @Test public void testUpdateRace() throws Exception
+    {
+        final IPoint point, versioned;
+        final ICoordinates view, versionedView;
+        Thread[] threads;
+
+        point = ProxyBeanFactory.newProxy(IPoint.class);
+        view = ProxyBeanFactory.project(point, ICoordinates.class);
+        ProxyBeanFactory.update(view, new Consumer<ICoordinates>()
+        {
+            @Override
+            public void accept(ICoordinates draft)
+            {
+                Thread writer;
+
+                draft.setX(3);
+                // A source write while the update is in progress
+                writer = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        point.setY(7);
+                    }
+                });
+                writer.start();
+                try
+                {
+                    writer.join();
+                }
+                catch(InterruptedException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        Assert.assertEquals(3, point.getX());
+        Assert.assertEquals(7, point.getY());
+        // Updates of the view racing with updates of the source
+        versioned = ProxyBeanFactory.newVersionedProxy(IPoint.class);
+        versionedView = ProxyBeanFactory.project(versioned, ICoordinates.class);
+        threads = new Thread[] { new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < 2000; n++)
+                {
+                    ProxyBeanFactory.update(versionedView, new Consumer<ICoordinates>()
+                    {
+                        @Override
+                        public void accept(ICoordinates draft)
+                        {
+                            draft.setX(draft.getX() + 1);
+                        }
+                    });
+                }
+            }
+        }), new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(int n = 0; n < 2000; n++)
+                {
+                    ProxyBeanFactory.update(versioned, new Consumer<IPoint>()
+                    {
+                        @Override
+                        public void accept(IPoint draft)
+                        {
+                            draft.setY(draft.getY() + 1);
+                        }
+                    });
+                }
+            }
+        }) };
+        for(Thread thread : threads)
+        {
+            thread.start();
+        }
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+        Assert.assertEquals(2000, versioned.getX());
+        Assert.assertEquals(2000, versioned.getY());
+    }
+
+    /**
+     * Test the projections to sub-interfaces and the not compatible types.
+     */
+    @Test public void testCompatibility()
+    {
+        IPackedStatus packed;
+        IStatus status;
+
+        status = ProxyBeanFactory.newProxy(IStatus.class);
+        packed = ProxyBeanFactory.project(status, IPackedStatus.class);
+        packed.setRetries(3);
+        Assert.assertEquals(3, status.getRetries());
+        Assert.assertEquals(64L, ProxyBeanUtils.proxyBeanOf(packed).estimateFootprint());
+        try
+        {
+            ProxyBeanFactory.project(status, IPoint.class);
+            Assert.fail("Not compatible view");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        try
+        {
+            ProxyBeanFactory.project(status, IModel.class);
+            Assert.fail("Not compatible view");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.annotations.Deduplicated;
+import cat.fornes.imodel.annotations.MaxLength;
+import cat.fornes.imodel.models.IAddress;
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.IOwner;
+import cat.fornes.imodel.models.ModelImpl;
+
+/**
+ * Test of {@link PropertyPath}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class PropertyPathTest
+{
+    /**
+     * A type with a constrained and deduplicated property.
+     */
+    public interface ICoded
+    {
+        @MaxLength(5)
+        @Deduplicated
+        public String getCode();
+        public void setCode(String code);
+    }
+
+    /**
+     * Test that the writes along the paths are the ones of the setters, with the constraints and the deduplication.
+     */
+    @Test public void testSetterPath()
+    {
+        PropertyPath<ICoded> code;
+        ICoded c1, c2;
+
+        code = PropertyPath.compile(ICoded.class, "code");
+        c1 = ProxyBeanFactory.newProxy(ICoded.class);
+        c2 = ProxyBeanFactory.newProxy(ICoded.class);
+        Assert.assertTrue(code.set(c1, new String("ABC")));
+        Assert.assertTrue(code.set(c2, new String("ABC")));
+        Assert.assertSame(c1.getCode(), c2.getCode());
+        try
+        {
+            code.set(c1, "ABCDEF");
+            Assert.fail("Constraint violation accepted");
+        }
+        catch(ConstraintViolationException e)
+        {
+            // Expected
+        }
+        Assert.assertEquals("ABC", c1.getCode());
+    }
+
+    /**
+     * Test that the reads along the paths are the ones of the getters, with the interceptors.
+     */
+    @Test public void testGetterPath()
+    {
+        BeanDescriptor<ICoded> descriptor;
+        BeanInterceptor upperCase;
+        ICoded coded;
+
+        descriptor = BeanDescriptor.forType(ICoded.class);
+        upperCase = new BeanInterceptor()
+        {
+            @Override
+            public Object onGet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value == null ? null : value.toString().toUpperCase();
+            }
+
+            @Override
+            public Object onSet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value;
+            }
+        };
+        descriptor.addInterceptor("code", upperCase);
+        try
+        {
+            coded = ProxyBeanFactory.newProxy(ICoded.class);
+            coded.setCode("abc");
+            Assert.assertEquals("ABC", PropertyPath.compile(ICoded.class, "code").get(coded));
+        }
+        finally
+        {
+            Assert.assertTrue(descriptor.removeInterceptor(upperCase));
+        }
+    }
+
+    /**
+     * Test the reads and writes along the paths, with proxy beans and other implementations.
+     */
+    @Test public void testGetSet()
+    {
+        PropertyPath<IOwner> city, children, time;
+        IOwner owner;
+        IModel model;
+
+        city = PropertyPath.compile(IOwner.class, "address.city");
+        children = PropertyPath.compile(IOwner.class, "model.numberOfChildren");
+        time = PropertyPath.compile(IOwner.class, "model.birthDate.time");
+        Assert.assertSame(city, PropertyPath.compile(IOwner.class, "address.city"));
+        Assert.assertEquals(String.class, city.getType());
+        Assert.assertEquals(long.class, time.getType());
+
+        owner = ProxyBeanFactory.newProxy(IOwner.class);
+        // Nulls along the path
+        Assert.assertNull(city.get(owner));
+        Assert.assertNull(city.get(null));
+        Assert.assertFalse(city.set(owner, "Girona"));
+
+        owner.setAddress(ProxyBeanFactory.newProxy(IAddress.class));
+        Assert.assertTrue(city.set(owner, "Girona"));
+        Assert.assertEquals("Girona", owner.getAddress().getCity());
+        Assert.assertEquals("Girona", city.get(owner));
+
+        // Proxy bean and class implementations of the same property
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        owner.setModel(model);
+        Assert.assertTrue(children.set(owner, 3));
+        Assert.assertEquals(3, model.getNumberOfChildren());
+        owner.setModel(new ModelImpl(model));
+        Assert.assertEquals(3, children.get(owner));
+        Assert.assertTrue(children.set(owner, null));
+        Assert.assertEquals(0, owner.getModel().getNumberOfChildren());
+        owner.getModel().setBirthDate(new Date(1000L));
+        Assert.assertEquals(1000L, time.get(owner));
+        try
+        {
+            children.set(owner, "3");
+            Assert.fail("Not valid value accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test the not valid paths.
+     */
+    @Test public void testNotValidPath()
+    {
+        for(String path : new String[] { "", "unknown", "address.unknown", "address..city", "address.city.length.x" })
+        {
+            try
+            {
+                PropertyPath.compile(IOwner.class, path);
+                Assert.fail("Not valid path compiled: " + path);
+            }
+            catch(IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+}
@@ -23,14 +23,19 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IAddress;
 import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.IPoint;
 import cat.fornes.imodel.models.ModelImpl;
 
 /**
@@ -182,6 +187,27 @@ public class ProxyBeanImplTest
 		    Assert.assertTrue(m1.hashCode() == m2.hashCode());
 		}
 	}
+	/**
+	 * Test that a frozen bean equals a frozen bean of a derived type with the same values,
+	 * before and after its hash codes are cached.
+	 */
+	@Test public void testDerivedTypeEquality()
+	{
+		IBase base;
+		IDerived derived;
+
+		base = ProxyBeanFactory.newProxy(IBase.class);
+		base.setA(3);
+		derived = ProxyBeanFactory.newProxy(IDerived.class);
+		derived.setA(3);
+		derived.setB("B");
+		ProxyBeanFactory.freeze(base);
+		ProxyBeanFactory.freeze(derived);
+		Assert.assertTrue(base.equals(derived));
+		Assert.assertTrue(base.hashCode() != derived.hashCode());
+		Assert.assertTrue(base.equals(derived));
+		Assert.assertFalse(derived.equals(base));
+	}
 	/**
 	 * Test the serialization feature.
 	 */
@@ -213,6 +239,147 @@ public class ProxyBeanImplTest
 		Assert.assertEquals(model, model1);
 		Assert.assertNotSame(model, model1);
 	}
+	/**
+	 * Test the deserialization of a stream of the 1.0.0 serialized form.
+	 */
+	@Test public void testLegacySerialize() throws Exception
+	{
+		ObjectInputStream in;
+		IAddress address;
+		
+		in = new ObjectInputStream(getClass().getResourceAsStream("legacy-address.ser"));
+		try
+		{
+			address = (IAddress) in.readObject();
+		}
+		finally
+		{
+			in.close();
+		}
+		Assert.assertEquals("Rambla", address.getStreet());
+		Assert.assertEquals("Girona", address.getCity());
+		Assert.assertEquals(17001, address.getZip());
+		address.setZip(17002);
+		Assert.assertEquals(17002, address.getZip());
+	}
+	/**
+	 * Test the frozen beans.
+	 */
+	@Test public void testFreeze() throws Exception
+	{
+		ByteArrayOutputStream baos;
+		ObjectOutputStream out;
+		IModel m1, m2, m3;
+
+		m1 = ProxyBeanFactory.newProxy(IModel.class);
+		assignValues(m1);
+		m2 = ProxyBeanFactory.immutableCopy(m1);
+		Assert.assertNotSame(m1, m2);
+		Assert.assertTrue(ProxyBeanFactory.isFrozen(m2));
+		Assert.assertFalse(ProxyBeanFactory.isFrozen(m1));
+		Assert.assertEquals(m1, m2);
+		Assert.assertEquals(m1.hashCode(), m2.hashCode());
+		Assert.assertEquals(m2.hashCode(), m2.hashCode());
+		// Frozen clones are not copied
+		Assert.assertSame(m2, m2.clone());
+		Assert.assertSame(m2, ProxyBeanFactory.immutableCopy(m2));
+		try
+		{
+			m2.setName("Other");
+			Assert.fail("Frozen bean modified");
+		}
+		catch(IllegalStateException e)
+		{
+			// Expected
+		}
+		Assert.assertEquals(NAME_VALUE, m2.getName());
+		// Still frozen after serialization
+		baos = new ByteArrayOutputStream();
+		out = new ObjectOutputStream(baos);
+		out.writeObject(m2);
+		out.flush();
+		m3 = (IModel) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+		Assert.assertEquals(m2, m3);
+		Assert.assertTrue(ProxyBeanFactory.isFrozen(m3));
+		// The original bean is still mutable
+		m1.setName("Other");
+		Assert.assertFalse(m1.equals(m2));
+	}
+	/**
+	 * Test that the readers of a versioned bean see whole updates, without locking.
+	 */
+	@Test public void testVersioned() throws Exception
+	{
+		final IPoint point;
+		final List<Integer> changed;
+		Thread writer;
+		IPoint snapshot;
+		String text;
+		int reads;
+
+		point = ProxyBeanFactory.newVersionedProxy(IPoint.class);
+		changed = new ArrayList<Integer>();
+		ProxyBeanUtils.proxyBeanOf(point).addListener(new BeanListener()
+		{
+			@Override
+			public void propertyChanged(ProxyBeanImpl<?> bean, int slot, Object oldValue, Object newValue)
+			{
+				changed.add(slot);
+			}
+		});
+		ProxyBeanFactory.update(point, new Consumer<IPoint>()
+		{
+			@Override
+			public void accept(IPoint draft)
+			{
+				draft.setX(1);
+				draft.setY(1);
+				// Not published until the update returns
+				Assert.assertEquals(0, point.getX());
+			}
+		});
+		Assert.assertEquals(2, changed.size());
+		snapshot = ProxyBeanFactory.snapshot(point);
+		point.setX(2);
+		point.setY(2);
+		Assert.assertEquals(4, changed.size());
+		Assert.assertEquals(1, snapshot.getX());
+		Assert.assertTrue(ProxyBeanFactory.isFrozen(snapshot));
+		writer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				for(int n = 0; n < 20000; n++)
+				{
+					final int value = n;
+
+					ProxyBeanFactory.update(point, new Consumer<IPoint>()
+					{
+						@Override
+						public void accept(IPoint draft)
+						{
+							draft.setX(value);
+							draft.setY(value);
+						}
+					});
+				}
+			}
+		};
+		writer.start();
+		reads = 0;
+		while(writer.isAlive() || reads == 0)
+		{
+			snapshot = ProxyBeanFactory.snapshot(point);
+			Assert.assertEquals(snapshot.getX(), snapshot.getY());
+			// The whole bean readers of the live bean see a single version
+			text = point.toString();
+			Assert.assertEquals(text, text.replaceAll("[^0-9]+(\\d+)[^0-9]+(\\d+).*", "$1"), text.replaceAll("[^0-9]+(\\d+)[^0-9]+(\\d+).*", "$2"));
+			reads++;
+		}
+		writer.join();
+		Assert.assertEquals(19999, point.getY());
+	}
 	/**
 	 * Test the clone with explicit bean implementation.
 	 */
@@ -228,6 +395,71 @@ public class ProxyBeanImplTest
 		Assert.assertEquals(m1, m2);
 	}
 	
+	/**
+	 * Test the 'toString' and 'writeTo' features.
+	 */
+	@Test public void testToString() throws Exception
+	{
+		IModel m;
+		StringBuilder stb;
+		String text;
+
+		m = ProxyBeanFactory.newProxy(IModel.class);
+		assignValues(m);
+		text = m.toString();
+		Assert.assertTrue(text, text.startsWith("IModel [birthDate=" + BIRTHDATE_VALUE + ", gender=Female, id=346112, "));
+		Assert.assertTrue(text, text.endsWith(", name=NAME, numberOfChildren=3]"));
+
+		// Appendable rendering
+		stb = new StringBuilder("> ");
+		ProxyBeanUtils.proxyBeanOf(m).writeTo(stb);
+		Assert.assertEquals("> " + text, stb.toString());
+
+		// Truncated rendering
+		for(int n = 0; n < text.length() - 1; n++)
+		{
+			StringBuffer sbf = new StringBuffer();
+
+			stb = new StringBuilder();
+			ProxyBeanUtils.proxyBeanOf(m).writeTo(stb, n);
+			ProxyBeanUtils.proxyBeanOf(m).writeTo(sbf, n);
+			Assert.assertEquals(text.substring(0, n) + ProxyBeanImpl.TRUNCATION_MARK, stb.toString());
+			Assert.assertEquals(stb.toString(), sbf.toString());
+		}
+		stb = new StringBuilder();
+		ProxyBeanUtils.proxyBeanOf(m).writeTo(stb, text.length() - 1);
+		Assert.assertEquals(text, stb.toString());
+
+		// Interface without properties
+		Assert.assertEquals("IEmpty []", ProxyBeanFactory.newProxy(IEmpty.class).toString());
+	}
+
+	/**
+	 * An interface without properties.
+	 */
+	interface IEmpty
+	{
+		// Nothing
+	}
+
+	/**
+	 * A base interface.
+	 */
+	interface IBase
+	{
+		public int getA();
+		public void setA(int a);
+	}
+
+	/**
+	 * An interface derived of {@link IBase}.
+	 */
+	interface IDerived extends IBase
+	{
+		public String getB();
+		public void setB(String b);
+	}
+
 	/**
 	 * Assign the test reference values for the model.
 	 * @param model The model to assign to
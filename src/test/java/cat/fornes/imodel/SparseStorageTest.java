@@ -0,0 +1,117 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.annotations.SparseStorage;
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.IWide;
+
+/**
+ * Test of the {@link SparseStorage sparse storage}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class SparseStorageTest
+{
+    /**
+     * A narrow type with the sparse storage.
+     */
+    @SparseStorage
+    public interface ISparse
+    {
+        public long getId();
+        public void setId(long id);
+        public String getName();
+        public void setName(String name);
+    }
+
+    /**
+     * Test the storage choice by width and by annotation.
+     */
+    @Test public void testChoice()
+    {
+        Assert.assertTrue(BeanDescriptor.forType(IWide.class).isSparse());
+        Assert.assertTrue(BeanDescriptor.forType(ISparse.class).isSparse());
+        Assert.assertFalse(BeanDescriptor.forType(IModel.class).isSparse());
+        Assert.assertTrue(ProxyBeanUtils.proxyBeanOf(ProxyBeanFactory.newProxy(IWide.class)) instanceof SparseProxyBeanImpl);
+        Assert.assertSame(ProxyBeanImpl.class, ProxyBeanUtils.proxyBeanOf(ProxyBeanFactory.newProxy(IModel.class)).getClass());
+    }
+
+    /**
+     * Test the reads, writes and removals, and the equality and hash with the dense storage.
+     */
+    @Test public void testValues() throws Exception
+    {
+        BeanDescriptor<IWide> descriptor;
+        SparseProxyBeanImpl<IWide> proxy;
+        IWide sparse, dense, copy;
+        ByteArrayOutputStream baos;
+        ObjectOutputStream out;
+
+        descriptor = BeanDescriptor.forType(IWide.class);
+        sparse = ProxyBeanFactory.newProxy(IWide.class);
+        proxy = (SparseProxyBeanImpl<IWide>) ProxyBeanUtils.<IWide>proxyBeanOf(sparse);
+        dense = descriptor.newProxy(new ProxyBeanImpl<IWide>(descriptor));
+        Assert.assertEquals(0, sparse.getP00());
+        Assert.assertNull(sparse.getP69());
+        Assert.assertEquals(dense, sparse);
+        Assert.assertEquals(dense.hashCode(), sparse.hashCode());
+        for(IWide bean : new IWide[] { sparse, dense })
+        {
+            bean.setP68(68);
+            bean.setP01("one");
+            bean.setP64(64);
+            bean.setP63("sixty three");
+            bean.setP02(2);
+            bean.setP02(0);
+        }
+        Assert.assertEquals(4, proxy.setSlots());
+        Assert.assertEquals(68, sparse.getP68());
+        Assert.assertEquals("sixty three", sparse.getP63());
+        Assert.assertEquals(0, sparse.getP02());
+        Assert.assertEquals(dense, sparse);
+        Assert.assertEquals(sparse, dense);
+        Assert.assertEquals(dense.hashCode(), sparse.hashCode());
+        Assert.assertEquals(dense.toString(), sparse.toString());
+        Assert.assertTrue(proxy.estimateFootprint() < ProxyBeanUtils.proxyBeanOf(dense).estimateFootprint());
+        copy = sparse.clone();
+        Assert.assertEquals(sparse, copy);
+        copy.setP01(null);
+        Assert.assertEquals(3, ((SparseProxyBeanImpl<?>) ProxyBeanUtils.proxyBeanOf(copy)).setSlots());
+        Assert.assertEquals("one", sparse.getP01());
+        Assert.assertFalse(sparse.equals(copy));
+        // Serialization
+        baos = new ByteArrayOutputStream();
+        out = new ObjectOutputStream(baos);
+        out.writeObject(sparse);
+        out.flush();
+        copy = (IWide) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+        Assert.assertEquals(sparse, copy);
+        Assert.assertEquals(sparse.hashCode(), ProxyBeanFactory.immutableCopy(copy).hashCode());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.collections.BeanCache;
+import cat.fornes.imodel.collections.BeanLoader;
+import cat.fornes.imodel.models.IAccount;
+
+/**
+ * The cost of getting an entity bean from a {@link BeanCache}, as the frozen cached bean or as a
+ * mutable copy, against creating a new bean on each load.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanCacheBenchmark
+{
+    /** Number of distinct ids */
+    private static final int IDS = 1024;
+
+    private BeanCache<Long, IAccount> cache;
+
+    private BeanCache<Long, IAccount> copying;
+
+    private BeanLoader<Long, IAccount> loader;
+
+    private Long[] ids;
+
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        loader = new BeanLoader<Long, IAccount>()
+        {
+            @Override
+            public IAccount load(Long key)
+            {
+                return newAccount(key.longValue());
+            }
+        };
+        cache = new BeanCache<Long, IAccount>(IAccount.class);
+        copying = new BeanCache<Long, IAccount>(IAccount.class);
+        copying.setCopyOnCheckout(true);
+        ids = new Long[IDS];
+        for(int n = 0; n < IDS; n++)
+        {
+            ids[n] = Long.valueOf(n);
+            cache.get(ids[n], loader);
+            copying.get(ids[n], loader);
+        }
+    }
+
+    /**
+     * An account, as loaded from a record.
+     */
+    private static IAccount newAccount(long id)
+    {
+        IAccount account;
+
+        account = ProxyBeanFactory.newProxy(IAccount.class);
+        account.setId(id);
+        account.setHolder("Holder " + id);
+        account.setBalance(id * 1.5D);
+        return account;
+    }
+
+    @Benchmark
+    public IAccount cachedFrozen()
+    {
+        next = (next + 1) & (IDS - 1);
+        return cache.get(ids[next], loader);
+    }
+
+    @Benchmark
+    public IAccount cachedCopy()
+    {
+        next = (next + 1) & (IDS - 1);
+        return copying.get(ids[next], loader);
+    }
+
+    /**
+     * A new bean on each load, as baseline.
+     */
+    @Benchmark
+    public IAccount newBean()
+    {
+        next = (next + 1) & (IDS - 1);
+        return newAccount(ids[next].longValue());
+    }
+}
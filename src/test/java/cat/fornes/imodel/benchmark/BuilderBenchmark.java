@@ -0,0 +1,102 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanBuilder;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * The cost of populating proxy beans: proxied setters against a reused {@link BeanBuilder}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuilderBenchmark
+{
+    private BeanBuilder<IModel> builder;
+
+    private int id, name, children, gender;
+
+    private long next;
+
+    @Setup
+    public void setup()
+    {
+        builder = ProxyBeanFactory.builder(IModel.class);
+        id = builder.getDescriptor().slotOf("id");
+        name = builder.getDescriptor().slotOf("name");
+        children = builder.getDescriptor().slotOf("numberOfChildren");
+        gender = builder.getDescriptor().slotOf("gender");
+    }
+
+    /**
+     * A new bean and the proxied setters.
+     */
+    @Benchmark
+    public IModel setters()
+    {
+        IModel model;
+
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setId(next++);
+        model.setName("NAME");
+        model.setNumberOfChildren(3);
+        model.setGender(EGender.Female);
+        return model;
+    }
+
+    /**
+     * The reused builder, by slot.
+     */
+    @Benchmark
+    public IModel builder()
+    {
+        return builder.set(id, Long.valueOf(next++)).set(name, "NAME").set(children, Integer.valueOf(3)).set(gender, EGender.Female).build();
+    }
+
+    /**
+     * The reused builder, by slot, with frozen beans.
+     */
+    @Benchmark
+    public IModel builderFrozen()
+    {
+        return builder.set(id, Long.valueOf(next++)).set(name, "NAME").set(children, Integer.valueOf(3)).set(gender, EGender.Female).buildFrozen();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.IPackedStatus;
+import cat.fornes.imodel.models.IStatus;
+
+/**
+ * The throughput of the bean operations from one to many threads, on a bean shared by all the
+ * threads and on a bean confined to each thread, for each concurrency mode: the dense storage,
+ * the versioned storage and the packed storage.
+ *
+ * Run the {@link #main(String[]) main} method on the test classpath to print the scaling
+ * curves, from one thread to the number of processors or the given maximum:
+ * <pre>
+ * java -cp &lt;test classpath&gt; cat.fornes.imodel.benchmark.ConcurrencyBenchmark [max threads]
+ * </pre>
+ * Or run a single thread count with the JMH runner:
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main ConcurrencyBenchmark -t 4
+ * </pre>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ConcurrencyBenchmark
+{
+    /**
+     * The bean shared by all the threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared
+    {
+        @Param({ "dense", "versioned", "packed" })
+        public String mode;
+
+        IStatus status;
+
+        IStatus frozen;
+
+        IStatus other;
+
+        @Setup
+        public void setup()
+        {
+            status = newStatus(mode);
+            frozen = ProxyBeanFactory.freeze(newStatus(mode));
+            other = newStatus(mode);
+        }
+    }
+
+    /**
+     * The bean confined to each thread.
+     */
+    @State(Scope.Thread)
+    public static class Confined
+    {
+        IStatus status;
+
+        IStatus other;
+
+        int counter;
+
+        @Setup
+        public void setup(Shared shared)
+        {
+            status = newStatus(shared.mode);
+            other = newStatus(shared.mode);
+        }
+    }
+
+    /**
+     * A status for the mode.
+     */
+    static IStatus newStatus(String mode)
+    {
+        IStatus status;
+
+        if("packed".equals(mode))
+        {
+            status = ProxyBeanFactory.newProxy(IPackedStatus.class);
+        }
+        else if("versioned".equals(mode))
+        {
+            status = ProxyBeanFactory.newVersionedProxy(IStatus.class);
+        }
+        else
+        {
+            status = ProxyBeanFactory.newProxy(IStatus.class);
+        }
+        status.setRetries(3);
+        status.setTimestamp(346112L);
+        status.setLabel("Status");
+        status.setEnabled(true);
+        return status;
+    }
+
+    @Benchmark
+    public int sharedGet(Shared shared)
+    {
+        return shared.status.getRetries();
+    }
+
+    @Benchmark
+    public void sharedSet(Shared shared, Confined confined)
+    {
+        shared.status.setRetries(confined.counter++);
+    }
+
+    @Benchmark
+    public int sharedHashCode(Shared shared)
+    {
+        return shared.status.hashCode();
+    }
+
+    @Benchmark
+    public int sharedFrozenHashCode(Shared shared)
+    {
+        return shared.frozen.hashCode();
+    }
+
+    @Benchmark
+    public boolean sharedEquals(Shared shared)
+    {
+        return shared.status.equals(shared.other);
+    }
+
+    @Benchmark
+    public int confinedGet(Confined confined)
+    {
+        return confined.status.getRetries();
+    }
+
+    @Benchmark
+    public void confinedSet(Confined confined)
+    {
+        confined.status.setRetries(confined.counter++);
+    }
+
+    @Benchmark
+    public int confinedHashCode(Confined confined)
+    {
+        return confined.status.hashCode();
+    }
+
+    @Benchmark
+    public boolean confinedEquals(Confined confined)
+    {
+        return confined.status.equals(confined.other);
+    }
+
+    /**
+     * Runs the benchmarks from one thread to the maximum, doubling, and prints the scaling curves:
+     * the throughput of each thread count and its speed up over one thread.
+     * @param args The maximum number of threads, optional
+     * @throws RunnerException On a benchmark failure
+     */
+    public static void main(String[] args) throws RunnerException
+    {
+        Collection<RunResult> results;
+        Options options;
+        String label;
+        double[] base;
+        double score;
+        int max, row;
+        int[] threads;
+
+        max = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        row = 0;
+        for(int t = 1; t <= max; t <<= 1)
+        {
+            row++;
+        }
+        threads = new int[row];
+        row = 0;
+        for(int t = 1; t <= max; t <<= 1)
+        {
+            threads[row++] = t;
+        }
+        base = null;
+        for(int t : threads)
+        {
+            options = new OptionsBuilder().include(ConcurrencyBenchmark.class.getSimpleName()).threads(t).build();
+            results = new Runner(options).run();
+            if(base == null)
+            {
+                base = new double[results.size()];
+            }
+            System.out.println();
+            System.out.println("Threads: " + t);
+            row = 0;
+            for(RunResult result : results)
+            {
+                label = result.getParams().getBenchmark();
+                label = label.substring(label.lastIndexOf('.') + 1) + " [" + result.getParams().getParam("mode") + "]";
+                score = result.getPrimaryResult().getScore();
+                if(t == 1)
+                {
+                    base[row] = score;
+                }
+                System.out.println(String.format("  %-36s %12.3f ops/us  x%.2f", label, score, score / base[row]));
+                row++;
+            }
+        }
+    }
+}
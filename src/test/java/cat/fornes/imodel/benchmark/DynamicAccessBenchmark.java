@@ -0,0 +1,116 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.BeanProperty;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * The access by property name: the slot look up, against a hash map, and the bean access.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicAccessBenchmark
+{
+    private BeanDescriptor<IModel> descriptor;
+
+    private Map<String, Integer> map;
+
+    private ProxyBeanImpl<IModel> bean;
+
+    private BeanProperty<IModel> property;
+
+    private IModel model;
+
+    /** Not constant names, as read by a script */
+    private String name, unknown;
+
+    @Setup
+    public void setup()
+    {
+        descriptor = BeanDescriptor.forType(IModel.class);
+        map = new HashMap<String, Integer>();
+        for(int n = 0; n < descriptor.size(); n++)
+        {
+            map.put(descriptor.getName(n), n);
+        }
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setLasName("LAST_NAME");
+        bean = ProxyBeanUtils.proxyBeanOf(model);
+        property = descriptor.property("lasName");
+        name = new String("lasName");
+        unknown = new String("lastName");
+    }
+
+    @Benchmark
+    public Integer hashMapSlot()
+    {
+        return map.get(name);
+    }
+
+    @Benchmark
+    public int perfectHashSlot()
+    {
+        return descriptor.slotOf(name);
+    }
+
+    @Benchmark
+    public int perfectHashUnknown()
+    {
+        return descriptor.slotOf(unknown);
+    }
+
+    @Benchmark
+    public Object getByName()
+    {
+        return bean.get(name);
+    }
+
+    @Benchmark
+    public Object getByHandle()
+    {
+        return property.get(model);
+    }
+}
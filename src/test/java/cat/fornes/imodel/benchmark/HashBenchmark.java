@@ -0,0 +1,202 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.utils.HashStrategy;
+import cat.fornes.imodel.utils.ObjectUtils;
+
+/**
+ * Throughput and distribution quality of the {@link HashStrategy hash strategies}.
+ *
+ * The distribution quality is printed on setup: the distinct hashes and the longest
+ * bucket chain for a table with as many buckets as keys, for keys with correlated values.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark
+{
+    /** Number of keys */
+    private static final int KEYS = 1 << 16;
+
+    @Param({ "POLYNOMIAL", "MIXED_64" })
+    public String strategyName;
+
+    private HashStrategy strategy;
+
+    private Object[] values;
+
+    private Map<Key, Key> map;
+
+    private Key[] keys;
+
+    private long[] longs;
+
+    private byte[] bytes;
+
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        Random random;
+
+        strategy = "MIXED_64".equals(strategyName) ? HashStrategy.MIXED_64 : HashStrategy.POLYNOMIAL;
+        values = new Object[] { Long.valueOf(346112L), "NAME", "LAST_NAME", Integer.valueOf(3), Double.valueOf(32056.12D) };
+        keys = new Key[KEYS];
+        map = new HashMap<Key, Key>();
+        for(int n = 0; n < KEYS; n++)
+        {
+            // Sequential ids and small correlated counters
+            keys[n] = new Key(new Object[] { Integer.valueOf(n >> 8), Integer.valueOf(n & 0xFF), "Name" + (n % 100) });
+            map.put(keys[n], keys[n]);
+        }
+        random = new Random(1L);
+        longs = new long[1024];
+        bytes = new byte[8192];
+        for(int n = 0; n < longs.length; n++)
+        {
+            longs[n] = random.nextLong();
+        }
+        random.nextBytes(bytes);
+        printDistribution();
+    }
+
+    /**
+     * Prints the distinct hashes and the longest chain of the keys.
+     */
+    private void printDistribution()
+    {
+        Set<Integer> distinct;
+        int[] buckets;
+        int bucket, longest;
+
+        distinct = new HashSet<Integer>();
+        buckets = new int[KEYS];
+        longest = 0;
+        for(Key key : keys)
+        {
+            distinct.add(key.hash);
+            // As HashMap spreads the hash
+            bucket = (key.hash ^ (key.hash >>> 16)) & (KEYS - 1);
+            longest = Math.max(longest, ++buckets[bucket]);
+        }
+        System.out.println();
+        System.out.println(strategyName + ": " + distinct.size() + " distinct hashes of " + KEYS + ", longest chain " + longest);
+    }
+
+    /**
+     * Hash of a bean like sequence of values.
+     */
+    @Benchmark
+    public int hashValues()
+    {
+        return strategy.hash(values);
+    }
+
+    /**
+     * Look up on a map of correlated keys.
+     */
+    @Benchmark
+    public Key lookUp()
+    {
+        next = (next + 7919) & (KEYS - 1);
+        return map.get(keys[next]);
+    }
+
+    /**
+     * The 7/31 hash of a long array.
+     */
+    @Benchmark
+    public int polynomialLongArray()
+    {
+        return ObjectUtils.nullSafeHashCode(longs);
+    }
+
+    /**
+     * The 64 bit hash of a long array.
+     */
+    @Benchmark
+    public long hash64LongArray()
+    {
+        return ObjectUtils.nullSafeHash64(longs);
+    }
+
+    /**
+     * The 64 bit hash of a byte array.
+     */
+    @Benchmark
+    public long hash64ByteArray()
+    {
+        return ObjectUtils.nullSafeHash64(bytes);
+    }
+
+    /**
+     * A key hashed with the strategy.
+     */
+    public final class Key
+    {
+        final Object[] values;
+
+        final int hash;
+
+        Key(Object[] values)
+        {
+            this.values = values;
+            this.hash = strategy.hash(values);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            return o instanceof Key && ObjectUtils.nullSafeEquals(values, ((Key) o).values);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.models.IAccount;
+
+/**
+ * The cost of the identity equality and hash code of the beans with
+ * {@link cat.fornes.imodel.annotations.Identity} properties, against the ones of all the values.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentityBenchmark
+{
+    private IAccount account;
+
+    private IAccount other;
+
+    private ProxyBeanImpl<IAccount> bean;
+
+    private Map<IAccount, IAccount> map;
+
+    @Setup
+    public void setup()
+    {
+        account = newAccount(1L);
+        other = newAccount(1L);
+        bean = ProxyBeanUtils.proxyBeanOf(account);
+        map = new HashMap<IAccount, IAccount>();
+        for(long n = 0; n < 1024; n++)
+        {
+            map.put(newAccount(n), account);
+        }
+    }
+
+    /**
+     * An account.
+     */
+    private static IAccount newAccount(long id)
+    {
+        IAccount account;
+
+        account = ProxyBeanFactory.newProxy(IAccount.class);
+        account.setId(id);
+        account.setHolder("Holder of the account " + id);
+        account.setOpened(new Date(id));
+        account.setBalance(id * 1.5D);
+        return account;
+    }
+
+    @Benchmark
+    public int identityHashCode()
+    {
+        return account.hashCode();
+    }
+
+    @Benchmark
+    public int valueHashCode()
+    {
+        return bean.valueHashCode();
+    }
+
+    @Benchmark
+    public boolean identityEquals()
+    {
+        return account.equals(other);
+    }
+
+    @Benchmark
+    public boolean valueEquals()
+    {
+        return bean.valueEquals(other);
+    }
+
+    /**
+     * A map look up, by the identity.
+     */
+    @Benchmark
+    public IAccount mapGet()
+    {
+        return map.get(other);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.BeanInterceptor;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.models.IAddress;
+
+/**
+ * The cost of the proxied accessors, without and with a {@link BeanInterceptor}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterceptorBenchmark
+{
+    private BeanInterceptor interceptor;
+
+    private IAddress plain;
+
+    private IAddress intercepted;
+
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        plain = ProxyBeanFactory.newProxy(IAddress.class);
+        interceptor = new BeanInterceptor()
+        {
+            @Override
+            public Object onGet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value;
+            }
+
+            @Override
+            public Object onSet(ProxyBeanImpl<?> bean, int slot, Object value)
+            {
+                return value;
+            }
+        };
+        BeanDescriptor.forType(IAddress.class).addInterceptor(interceptor);
+        intercepted = ProxyBeanFactory.newProxy(IAddress.class);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        BeanDescriptor.forType(IAddress.class).removeInterceptor(interceptor);
+    }
+
+    /**
+     * A setter and a getter of a bean without interceptors.
+     */
+    @Benchmark
+    public int plainAccessors()
+    {
+        plain.setZip(next++);
+        return plain.getZip();
+    }
+
+    /**
+     * A setter and a getter of a bean with a pass-through interceptor.
+     */
+    @Benchmark
+    public int interceptedAccessors()
+    {
+        intercepted.setZip(next++);
+        return intercepted.getZip();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.io.BeanCodec;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * The eager against the lazy decoding, for encoded beans routed by a single property.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyDecodeBenchmark
+{
+    private BeanCodec<IModel> codec;
+
+    private byte[] data;
+
+    @Setup
+    public void setup()
+    {
+        IModel model;
+
+        codec = new BeanCodec<IModel>(IModel.class);
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setId(346112L);
+        model.setName("NAME");
+        model.setLasName("LAST_NAME");
+        model.setBirthDate(new Date(0L));
+        model.setNumberOfChildren(3);
+        model.setIncomingYear(32056.12D);
+        model.setGender(EGender.Female);
+        data = codec.encode(model);
+    }
+
+    /**
+     * Decodes the bean and reads a property.
+     */
+    @Benchmark
+    public EGender eagerRoute()
+    {
+        return codec.decode(data, 0, data.length).getGender();
+    }
+
+    /**
+     * Wraps the bean and reads a property.
+     */
+    @Benchmark
+    public EGender lazyRoute()
+    {
+        return codec.wrap(data, 0, data.length).getGender();
+    }
+
+    /**
+     * Decodes the bean, reads a property and encodes it again.
+     */
+    @Benchmark
+    public byte[] eagerForward()
+    {
+        IModel model;
+
+        model = codec.decode(data, 0, data.length);
+        model.getGender();
+        return codec.encode(model);
+    }
+
+    /**
+     * Wraps the bean, reads a property and encodes it again.
+     */
+    @Benchmark
+    public byte[] lazyForward()
+    {
+        IModel model;
+
+        model = codec.wrap(data, 0, data.length);
+        model.getGender();
+        return codec.encode(model);
+    }
+}
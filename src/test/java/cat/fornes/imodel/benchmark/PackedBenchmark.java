@@ -0,0 +1,166 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IPackedStatus;
+
+/**
+ * The dense against the packed storage, for an interface of booleans, enums and small primitives.
+ *
+ * The retained heap by bean of each storage is printed on setup: the heap used by a large
+ * number of populated beans, including the boxes of the dense storage.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedBenchmark
+{
+    /** Number of beans of the footprint measure */
+    private static final int BEANS = 200000;
+
+    @Param({ "dense", "packed" })
+    public String storage;
+
+    private BeanDescriptor<IPackedStatus> descriptor;
+
+    private IPackedStatus bean;
+
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        descriptor = BeanDescriptor.forType(IPackedStatus.class);
+        bean = populate();
+        printFootprint();
+    }
+
+    /**
+     * Prints the retained heap by bean.
+     */
+    private void printFootprint()
+    {
+        IPackedStatus[] beans;
+        long before, after;
+
+        beans = new IPackedStatus[BEANS];
+        before = usedHeap();
+        for(int n = 0; n < BEANS; n++)
+        {
+            beans[n] = populate();
+        }
+        after = usedHeap();
+        System.out.println();
+        System.out.println(storage + ": " + (after - before - 16L - 4L * BEANS) / BEANS + " bytes by bean, "
+            + ProxyBeanUtils.proxyBeanOf(beans[0]).estimateFootprint() + " estimated without the values");
+    }
+
+    /**
+     * The used heap, after a collection.
+     */
+    private static long usedHeap()
+    {
+        Runtime runtime;
+
+        runtime = Runtime.getRuntime();
+        for(int n = 0; n < 3; n++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A new bean with all the properties set.
+     */
+    @Benchmark
+    public IPackedStatus populate()
+    {
+        IPackedStatus status;
+
+        next++;
+        status = descriptor.newProxy("dense".equals(storage) ? new ProxyBeanImpl<IPackedStatus>(descriptor) : descriptor.newHandler());
+        status.setEnabled(true);
+        status.setLocked((next & 1) == 0);
+        status.setPriority((byte) 3);
+        status.setCode((short) (1000 + (next & 0xFF)));
+        status.setGrade('B');
+        status.setRetries(next);
+        status.setRatio(0.75F);
+        status.setTimestamp(1400000000000L + next);
+        status.setAmount(next * 0.5D);
+        status.setGender(EGender.Female);
+        status.setLabel("label");
+        return status;
+    }
+
+    @Benchmark
+    public boolean booleanGetter()
+    {
+        return bean.isLocked();
+    }
+
+    @Benchmark
+    public long longGetter()
+    {
+        return bean.getTimestamp();
+    }
+
+    @Benchmark
+    public EGender enumGetter()
+    {
+        return bean.getGender();
+    }
+
+    @Benchmark
+    public void setter()
+    {
+        bean.setRetries(++next);
+    }
+
+    @Benchmark
+    public int hashCodeOf()
+    {
+        return bean.hashCode();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * A narrower view of a bean: the projection against the copy to a new proxy.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionBenchmark
+{
+    /**
+     * The view interface.
+     */
+    public interface ISummary
+    {
+        public String getName();
+        public void setName(String name);
+        public String getLasName();
+        public void setLasName(String lasName);
+        public EGender getGender();
+        public void setGender(EGender gender);
+    }
+
+    private IModel model;
+
+    @Setup
+    public void setup()
+    {
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setId(346112L);
+        model.setName("NAME");
+        model.setLasName("LAST_NAME");
+        model.setBirthDate(new Date(0L));
+        model.setGender(EGender.Female);
+    }
+
+    @Benchmark
+    public ISummary project()
+    {
+        return ProxyBeanFactory.project(model, ISummary.class);
+    }
+
+    /**
+     * The copy by the setters of a new proxy.
+     */
+    @Benchmark
+    public ISummary copy()
+    {
+        ISummary summary;
+
+        summary = ProxyBeanFactory.newProxy(ISummary.class);
+        summary.setName(model.getName());
+        summary.setLasName(model.getLasName());
+        summary.setGender(model.getGender());
+        return summary;
+    }
+}
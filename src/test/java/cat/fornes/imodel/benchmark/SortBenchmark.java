@@ -0,0 +1,145 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanBuilder;
+import cat.fornes.imodel.BeanComparator;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Sorting beans by two keys: proxied getters against the {@link BeanComparator}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark
+{
+    @Param({ "100000" })
+    public int size;
+
+    private IModel[] beans;
+
+    private Comparator<IModel> getters;
+
+    private BeanComparator<IModel> compiled;
+
+    @Setup
+    public void setup()
+    {
+        BeanBuilder<IModel> builder;
+        Random random;
+
+        random = new Random(5L);
+        builder = ProxyBeanFactory.builder(IModel.class);
+        beans = new IModel[size];
+        for(int n = 0; n < size; n++)
+        {
+            beans[n] = builder.set("lasName", "Name" + random.nextInt(1000)).set("birthDate", new Date(random.nextInt(100000) * 1000L)).build();
+        }
+        getters = new Comparator<IModel>()
+        {
+            @Override
+            public int compare(IModel o1, IModel o2)
+            {
+                int result;
+
+                result = o1.getLasName().compareTo(o2.getLasName());
+                return result != 0 ? result : o1.getBirthDate().compareTo(o2.getBirthDate());
+            }
+        };
+        compiled = BeanComparator.of(IModel.class).by("lasName").by("birthDate");
+    }
+
+    /**
+     * Getters through the proxy.
+     */
+    @Benchmark
+    public IModel[] gettersSort()
+    {
+        IModel[] sorted;
+
+        sorted = beans.clone();
+        Arrays.sort(sorted, getters);
+        return sorted;
+    }
+
+    /**
+     * Compiled comparator, as a plain comparator.
+     */
+    @Benchmark
+    public IModel[] compiledComparator()
+    {
+        IModel[] sorted;
+
+        sorted = beans.clone();
+        Arrays.sort(sorted, compiled);
+        return sorted;
+    }
+
+    /**
+     * Compiled comparator, with the key values read once.
+     */
+    @Benchmark
+    public IModel[] compiledSort()
+    {
+        IModel[] sorted;
+
+        sorted = beans.clone();
+        compiled.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Compiled comparator, parallel sort.
+     */
+    @Benchmark
+    public IModel[] compiledParallelSort()
+    {
+        IModel[] sorted;
+
+        sorted = beans.clone();
+        compiled.parallelSort(sorted);
+        return sorted;
+    }
+}
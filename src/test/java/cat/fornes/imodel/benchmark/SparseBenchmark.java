@@ -0,0 +1,104 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.models.IWide;
+
+/**
+ * The dense against the sparse storage, for a wide interface with few properties set.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseBenchmark
+{
+    @Param({ "dense", "sparse" })
+    public String storage;
+
+    private BeanDescriptor<IWide> descriptor;
+
+    private IWide bean;
+
+    private IWide other;
+
+    @Setup
+    public void setup()
+    {
+        descriptor = BeanDescriptor.forType(IWide.class);
+        bean = populate();
+        other = populate();
+    }
+
+    /**
+     * A new bean with five properties set.
+     */
+    @Benchmark
+    public IWide populate()
+    {
+        IWide wide;
+
+        wide = descriptor.newProxy("dense".equals(storage) ? new ProxyBeanImpl<IWide>(descriptor) : descriptor.newHandler());
+        wide.setP00(1);
+        wide.setP13("thirteen");
+        wide.setP26(26);
+        wide.setP41("forty one");
+        wide.setP66(66);
+        return wide;
+    }
+
+    @Benchmark
+    public int hashCodeOf()
+    {
+        return bean.hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsTo()
+    {
+        return bean.equals(other);
+    }
+
+    @Benchmark
+    public int getter()
+    {
+        return bean.getP26();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.benchmark;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanImpl;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * The cost of the text rendering of proxy beans.
+ *
+ * Run with the JMH runner on the test classpath:
+ * <pre>
+ * java -cp &lt;test classpath&gt; org.openjdk.jmh.Main ToStringBenchmark -prof gc
+ * </pre>
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToStringBenchmark
+{
+    private IModel model;
+
+    private ProxyBeanImpl<IModel> bean;
+
+    private StringBuilder reused;
+
+    @Setup
+    public void setup()
+    {
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setId(346112L);
+        model.setName("NAME");
+        model.setLasName("LAST_NAME");
+        model.setBirthDate(new Date(0L));
+        model.setNumberOfChildren(3);
+        model.setIncomingYear(32056.12D);
+        model.setGender(EGender.Female);
+        bean = ProxyBeanUtils.proxyBeanOf(model);
+        reused = new StringBuilder(256);
+    }
+
+    /**
+     * The proxied toString.
+     */
+    @Benchmark
+    public String proxyToString()
+    {
+        return model.toString();
+    }
+
+    /**
+     * Rendering on a reused builder, as a logging framework does.
+     */
+    @Benchmark
+    public int writeToReusedBuilder() throws IOException
+    {
+        reused.setLength(0);
+        bean.writeTo(reused);
+        return reused.length();
+    }
+
+    /**
+     * Capped rendering on a reused builder.
+     */
+    @Benchmark
+    public int writeToCapped() throws IOException
+    {
+        reused.setLength(0);
+        bean.writeTo(reused, 40);
+        return reused.length();
+    }
+
+    /**
+     * The previous rendering algorithm, as baseline.
+     */
+    @Benchmark
+    public String legacyToString()
+    {
+        BeanDescriptor<IModel> descriptor;
+        StringBuilder stb;
+        String name;
+
+        descriptor = bean.getDescriptor();
+        stb = new StringBuilder(descriptor.getImplementedType().getSimpleName());
+        stb.append(" [");
+        for(int n = 0; n < descriptor.size(); n++)
+        {
+            name = descriptor.getName(n);
+            stb.append(name).append("=").append("" + bean.getSlot(n)).append(", ");
+        }
+        stb.replace(stb.length() - 2, stb.length(), "]");
+        return stb.toString();
+    }
+}
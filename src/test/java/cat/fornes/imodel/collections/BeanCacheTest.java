@@ -0,0 +1,294 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.collections;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.models.IAccount;
+import cat.fornes.imodel.models.IPoint;
+
+/**
+ * Test of {@link BeanCache}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanCacheTest
+{
+    /**
+     * Test the loads, the hits and the frozen beans handed out.
+     */
+    @Test public void testLoad()
+    {
+        BeanCache<Long, IAccount> cache;
+        AtomicInteger loads;
+        IAccount account;
+
+        cache = new BeanCache<Long, IAccount>(IAccount.class);
+        loads = new AtomicInteger();
+        account = cache.get(7L, loader(loads));
+        Assert.assertEquals(7L, account.getId());
+        Assert.assertTrue(ProxyBeanFactory.isFrozen(account));
+        Assert.assertSame(account, cache.get(7L, loader(loads)));
+        Assert.assertSame(account, cache.get(7L));
+        Assert.assertNull(cache.get(8L));
+        Assert.assertNull(cache.get(-1L, loader(loads)));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(2L, cache.getLoads());
+        Assert.assertEquals(2L, cache.getHits());
+        Assert.assertEquals(3L, cache.getMisses());
+        Assert.assertEquals(0.4D, cache.getHitRate(), 1e-9D);
+        Assert.assertTrue(cache.invalidate(7L));
+        Assert.assertFalse(cache.invalidate(7L));
+        Assert.assertNotSame(account, cache.get(7L, loader(loads)));
+    }
+
+    /**
+     * Test the put of a mutable bean and the checkout of mutable copies.
+     */
+    @Test public void testPutAndCopyOnCheckout()
+    {
+        BeanCache<Long, IAccount> cache;
+        IAccount account, copy;
+
+        cache = new BeanCache<Long, IAccount>(IAccount.class, "id", 1);
+        account = account(3L);
+        cache.put(account);
+        account.setHolder("Changed");
+        Assert.assertEquals("Holder 3", cache.get(3L).getHolder());
+        cache.setCopyOnCheckout(true);
+        copy = cache.get(3L);
+        Assert.assertFalse(ProxyBeanFactory.isFrozen(copy));
+        copy.setBalance(-1D);
+        Assert.assertEquals(4.5D, cache.get(3L).getBalance(), 0D);
+        Assert.assertTrue(ProxyBeanUtils.proxyBeanOf(copy).valueEquals(ProxyBeanFactory.mutableCopy(copy)));
+        try
+        {
+            new BeanCache<Long, IPoint>(IPoint.class);
+            Assert.fail("Type without identity accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test the eviction of the least recently used beans, by size and by weight.
+     */
+    @Test public void testEviction()
+    {
+        BeanCache<Long, IAccount> cache;
+        AtomicInteger loads;
+        long weight;
+
+        cache = new BeanCache<Long, IAccount>(IAccount.class, "id", 1);
+        cache.setMaximumSize(3);
+        loads = new AtomicInteger();
+        for(long n = 0; n < 3; n++)
+        {
+            cache.get(n, loader(loads));
+        }
+        // Uses 0, so 1 is the least recently used
+        cache.get(0L);
+        cache.get(3L, loader(loads));
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(1L, cache.getEvictions());
+        Assert.assertNull(cache.get(1L));
+        Assert.assertNotNull(cache.get(0L));
+        weight = cache.getWeight() / 3;
+        cache.setMaximumWeight(2 * weight);
+        cache.get(4L, loader(loads));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(2 * weight, cache.getWeight());
+        Assert.assertNotNull(cache.get(0L));
+        Assert.assertNotNull(cache.get(4L));
+    }
+
+    /**
+     * Test that the limits are for the whole cache, with the default stripes.
+     */
+    @Test public void testGlobalLimits()
+    {
+        BeanCache<Long, IAccount> cache;
+        AtomicInteger loads;
+        long weight;
+
+        cache = new BeanCache<Long, IAccount>(IAccount.class);
+        cache.setMaximumSize(10);
+        loads = new AtomicInteger();
+        for(long n = 0; n < 100; n++)
+        {
+            cache.get(n, loader(loads));
+            Assert.assertTrue(cache.size() <= 10);
+            Assert.assertNotNull(cache.get(n));
+        }
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals(90L, cache.getEvictions());
+        weight = cache.getWeight() / 10;
+        cache.setMaximumWeight(3 * weight);
+        for(long n = 100; n < 120; n++)
+        {
+            cache.get(n, loader(loads));
+            Assert.assertTrue(cache.getWeight() <= 3 * weight);
+            Assert.assertNotNull(cache.get(n));
+        }
+        Assert.assertEquals(3, cache.size());
+        cache.invalidate(119L);
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0L, cache.getWeight());
+    }
+
+    /**
+     * Test the expiry after write.
+     */
+    @Test public void testExpiry() throws Exception
+    {
+        BeanCache<Long, IAccount> cache;
+        AtomicInteger loads;
+
+        cache = new BeanCache<Long, IAccount>(IAccount.class);
+        cache.setExpireAfterWrite(20, TimeUnit.MILLISECONDS);
+        loads = new AtomicInteger();
+        cache.get(1L, loader(loads));
+        Assert.assertNotNull(cache.get(1L));
+        Thread.sleep(40L);
+        Assert.assertNull(cache.get(1L));
+        Assert.assertEquals(1L, cache.getExpirations());
+        Assert.assertEquals(0, cache.size());
+        cache.get(1L, loader(loads));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    /**
+     * Test that a key is loaded once by concurrent threads, and the load failures.
+     */
+    @Test public void testConcurrentLoad() throws Exception
+    {
+        final BeanCache<Long, IAccount> cache;
+        final CountDownLatch started, release;
+        final AtomicInteger loads;
+        final IAccount[] results;
+        final BeanLoader<Long, IAccount> slow;
+        Thread[] threads;
+
+        cache = new BeanCache<Long, IAccount>(IAccount.class);
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        loads = new AtomicInteger();
+        results = new IAccount[4];
+        slow = new BeanLoader<Long, IAccount>()
+        {
+            @Override
+            public IAccount load(Long key) throws Exception
+            {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return account(key);
+            }
+        };
+        threads = new Thread[results.length];
+        for(int n = 0; n < threads.length; n++)
+        {
+            final int index;
+
+            index = n;
+            threads[n] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    results[index] = cache.get(5L, slow);
+                }
+            });
+            threads[n].start();
+        }
+        started.await();
+        Thread.sleep(50L);
+        release.countDown();
+        for(Thread thread : threads)
+        {
+            thread.join();
+        }
+        Assert.assertEquals(1, loads.get());
+        for(IAccount result : results)
+        {
+            Assert.assertSame(results[0], result);
+        }
+        try
+        {
+            cache.get(6L, new BeanLoader<Long, IAccount>()
+            {
+                @Override
+                public IAccount load(Long key) throws Exception
+                {
+                    throw new IOException("Not available");
+                }
+            });
+            Assert.fail("Failure not propagated");
+        }
+        catch(IllegalStateException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(1L, cache.getLoadFailures());
+        Assert.assertNotNull(cache.get(6L, loader(loads)));
+    }
+
+    /**
+     * A loader of accounts, without account for the negative ids.
+     */
+    private static BeanLoader<Long, IAccount> loader(final AtomicInteger loads)
+    {
+        return new BeanLoader<Long, IAccount>()
+        {
+            @Override
+            public IAccount load(Long key)
+            {
+                loads.incrementAndGet();
+                return key.longValue() < 0L ? null : account(key);
+            }
+        };
+    }
+
+    /**
+     * A new account.
+     */
+    private static IAccount account(long id)
+    {
+        IAccount account;
+
+        account = ProxyBeanFactory.newProxy(IAccount.class);
+        account.setId(id);
+        account.setHolder("Holder " + id);
+        account.setBalance(id * 1.5D);
+        return account;
+    }
+}
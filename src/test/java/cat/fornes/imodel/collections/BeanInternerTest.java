@@ -0,0 +1,109 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.IPoint;
+
+/**
+ * Test of {@link BeanInterner}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanInternerTest
+{
+    /**
+     * Test that equal beans are interned to the same instance.
+     */
+    @Test public void testIntern()
+    {
+        BeanInterner<IPoint> interner;
+        List<IPoint> canonicals;
+        IPoint point, canonical;
+
+        interner = new BeanInterner<IPoint>(4, false);
+        canonicals = new ArrayList<IPoint>();
+        for(int n = 0; n < 1000; n++)
+        {
+            canonicals.add(interner.intern(point(n, -n)));
+        }
+        Assert.assertEquals(1000, interner.size());
+        for(int n = 0; n < 1000; n++)
+        {
+            point = point(n, -n);
+            canonical = interner.intern(point);
+            Assert.assertNotSame(point, canonical);
+            Assert.assertSame(canonicals.get(n), canonical);
+        }
+        Assert.assertEquals(1000, interner.size());
+        Assert.assertEquals(2000L, interner.getRequests());
+        Assert.assertEquals(1000L, interner.getHits());
+        Assert.assertEquals(0.5D, interner.getDedupRatio(), 0D);
+        Assert.assertTrue(interner.getSavedBytes() > 0L);
+    }
+
+    /**
+     * Test that only frozen beans can be interned.
+     */
+    @Test public void testNotFrozen()
+    {
+        IPoint point;
+
+        point = ProxyBeanFactory.newProxy(IPoint.class);
+        try
+        {
+            new BeanInterner<IPoint>().intern(point);
+            Assert.fail("Not frozen bean interned");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        ProxyBeanFactory.freeze(point);
+        try
+        {
+            point.setX(1);
+            Assert.fail("Frozen bean modified");
+        }
+        catch(IllegalStateException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * A frozen point.
+     */
+    private IPoint point(int x, int y)
+    {
+        IPoint point;
+
+        point = ProxyBeanFactory.newProxy(IPoint.class);
+        point.setX(x);
+        point.setY(y);
+        return ProxyBeanFactory.freeze(point);
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.collections;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Test of {@link IndexedBeanCollection}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class IndexedBeanCollectionTest
+{
+    /** Number of members */
+    private static final int SIZE = 1000;
+
+    /**
+     * Test the equality and range queries, and the index updates on the members changes.
+     */
+    @Test public void testQueries()
+    {
+        IndexedBeanCollection<IModel> models;
+        List<IModel> beans, found;
+        IModel model;
+
+        models = new IndexedBeanCollection<IModel>(IModel.class);
+        models.addHashIndex("gender");
+        beans = new ArrayList<IModel>();
+        for(int n = 0; n < SIZE; n++)
+        {
+            model = ProxyBeanFactory.newProxy(IModel.class);
+            model.setId(n);
+            model.setGender(n % 4 == 0 ? EGender.Male : EGender.Female);
+            beans.add(model);
+        }
+        Assert.assertTrue(models.addAll(beans));
+        Assert.assertFalse(models.add(beans.get(0)));
+        // Index of current members
+        models.addSortedIndex("id");
+        Assert.assertEquals(SIZE, models.size());
+        Assert.assertEquals(SIZE / 4, models.findEqual("gender", EGender.Male).size());
+        Assert.assertEquals(0, models.findEqual("gender", null).size());
+        found = models.findRange("id", 10L, true, 20L, false);
+        Assert.assertEquals(10, found.size());
+        for(int n = 0; n < found.size(); n++)
+        {
+            Assert.assertSame(beans.get(10 + n), found.get(n));
+        }
+        Assert.assertEquals(5, models.findRange("id", null, false, 5L, false).size());
+        Assert.assertEquals(5, models.findRange("id", (long) SIZE - 5, true, null, false).size());
+
+        // Updates on set
+        beans.get(1).setGender(EGender.Male);
+        beans.get(2).setGender(null);
+        beans.get(3).setId(-1L);
+        Assert.assertEquals(SIZE / 4 + 1, models.findEqual("gender", EGender.Male).size());
+        Assert.assertSame(beans.get(2), models.findEqual("gender", null).get(0));
+        Assert.assertSame(beans.get(3), models.findRange("id", null, false, 0L, false).get(0));
+        Assert.assertTrue(models.findEqual("id", 3L).isEmpty());
+
+        // Removed members are not indexed nor listened
+        Assert.assertTrue(models.remove(beans.get(1)));
+        beans.get(1).setId(-2L);
+        Assert.assertEquals(SIZE / 4, models.findEqual("gender", EGender.Male).size());
+        Assert.assertTrue(models.findEqual("id", -2L).isEmpty());
+        for(Iterator<IModel> it = models.iterator(); it.hasNext();)
+        {
+            if(it.next().getGender() == EGender.Male)
+            {
+                it.remove();
+            }
+        }
+        Assert.assertTrue(models.findEqual("gender", EGender.Male).isEmpty());
+        Assert.assertEquals(SIZE - SIZE / 4 - 1, models.size());
+    }
+
+    /**
+     * Test the not valid indexes and members.
+     */
+    @Test public void testNotValid()
+    {
+        IndexedBeanCollection<IModel> models;
+
+        models = new IndexedBeanCollection<IModel>(IModel.class);
+        models.addHashIndex("name");
+        try
+        {
+            models.addSortedIndex("name");
+            Assert.fail("Property indexed twice");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        try
+        {
+            models.findRange("name", "a", true, "b", true);
+            Assert.fail("Range query on a hash index");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+        try
+        {
+            models.findEqual("id", 1L);
+            Assert.fail("Query on a not indexed property");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ConstraintViolationException;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.ProxyBeanUtils;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IContact;
+import cat.fornes.imodel.models.IModel;
+import cat.fornes.imodel.models.ModelImpl;
+
+/**
+ * Test of {@link BeanDiff} and {@link BeanPatch}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanDiffTest
+{
+    /**
+     * Test the difference of two beans and the patch application.
+     */
+    @Test public void testDiffAndApply()
+    {
+        BeanPatch<IModel> patch;
+        IModel m1, m2, m3;
+        ModelImpl other;
+
+        m1 = model(1L, "NAME", 2);
+        m2 = model(1L, "OTHER", 3);
+        m2.setGender(EGender.Male);
+        patch = BeanDiff.diff(m1, m2);
+        Assert.assertEquals(3, patch.size());
+        Assert.assertEquals("name", patch.getProperty(0));
+        Assert.assertEquals("NAME", patch.getOldValue(0));
+        Assert.assertEquals("OTHER", patch.getNewValue(0));
+        Assert.assertTrue(BeanDiff.diff(m1, m1.clone()).isEmpty());
+
+        m3 = m1.clone();
+        patch.apply(m3);
+        Assert.assertEquals(m2, m3);
+        patch.inverse().apply(m3);
+        Assert.assertEquals(m1, m3);
+        // Other implementations
+        other = new ModelImpl(m1);
+        patch.apply(other);
+        Assert.assertEquals(m2, other);
+    }
+
+    /**
+     * Test that a patch is applied as the setters do, and as a whole: a violated constraint discards it.
+     */
+    @Test public void testApplyConstraints()
+    {
+        BeanPatch<IContact> patch;
+        IContact c1, c2, c3;
+
+        c1 = ProxyBeanFactory.newProxy(IContact.class);
+        c1.setName("Octavi");
+        c1.setAge(30);
+        c2 = ProxyBeanFactory.mutableCopy(c1);
+        c2.setAge(40);
+        ProxyBeanUtils.proxyBeanOf(c2).setSlot(ProxyBeanUtils.proxyBeanOf(c2).getDescriptor().slotOf("name"), "A very long name");
+        patch = BeanDiff.diff(c1, c2);
+        Assert.assertEquals(2, patch.size());
+        c3 = ProxyBeanFactory.mutableCopy(c1);
+        try
+        {
+            patch.apply(c3);
+            Assert.fail("Constraint violation applied");
+        }
+        catch(ConstraintViolationException e)
+        {
+            Assert.assertEquals(Arrays.asList("name"), e.getProperties());
+        }
+        Assert.assertEquals(c1, c3);
+    }
+
+    /**
+     * Test the array values, compared by content and copied on the patch.
+     */
+    @Test public void testArrays()
+    {
+        BeanPatch<ISeries> patch;
+        ISeries s1, s2;
+        double[] values;
+
+        s1 = ProxyBeanFactory.newProxy(ISeries.class);
+        s2 = ProxyBeanFactory.newProxy(ISeries.class);
+        s1.setValues(new double[] { 1D, 2D });
+        values = new double[] { 1D, 2D };
+        s2.setValues(values);
+        Assert.assertTrue(BeanDiff.diff(s1, s2).isEmpty());
+        values[1] = 3D;
+        patch = BeanDiff.diff(s1, s2);
+        Assert.assertEquals(1, patch.size());
+        values[1] = 4D;
+        patch.apply(s1);
+        Assert.assertEquals(3D, s1.getValues()[1], 0D);
+    }
+
+    /**
+     * Test the parallel difference of keyed collections.
+     */
+    @Test public void testCollections()
+    {
+        Map<BeanChange.Kind, List<BeanChange<Object, IModel>>> changes;
+        List<IModel> before, after;
+        Map<Long, IModel> byId;
+
+        before = new ArrayList<IModel>();
+        after = new ArrayList<IModel>();
+        for(int n = 0; n < 10000; n++)
+        {
+            before.add(model(n, "Name" + n, n % 3));
+            // 100 removed, 100 changed, 100 added
+            if(n >= 100)
+            {
+                after.add(model(n, n < 200 ? "Changed" : "Name" + n, n % 3));
+            }
+        }
+        for(int n = 10000; n < 10100; n++)
+        {
+            after.add(model(n, "Name" + n, 0));
+        }
+        changes = BeanDiff.diff(IModel.class, "id", before, after).collect(Collectors.groupingBy(BeanChange::getKind));
+        Assert.assertEquals(100, changes.get(BeanChange.Kind.REMOVED).size());
+        Assert.assertEquals(100, changes.get(BeanChange.Kind.ADDED).size());
+        Assert.assertEquals(100, changes.get(BeanChange.Kind.CHANGED).size());
+        byId = new HashMap<Long, IModel>();
+        for(IModel model : before)
+        {
+            byId.put(model.getId(), model);
+        }
+        for(BeanChange<Object, IModel> change : changes.get(BeanChange.Kind.CHANGED))
+        {
+            Assert.assertEquals(1, change.getPatch().size());
+            change.getPatch().apply(byId.get(change.getKey()));
+            Assert.assertEquals(change.getNewBean(), byId.get(change.getKey()));
+        }
+    }
+
+    /**
+     * A model.
+     */
+    private static IModel model(long id, String name, int children)
+    {
+        return ProxyBeanFactory.builder(IModel.class).set("id", id).set("name", name).set("numberOfChildren", children).build();
+    }
+
+    /**
+     * A model with an array property.
+     */
+    public interface ISeries
+    {
+        public double[] getValues();
+
+        public void setValues(double[] values);
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Test of {@link BeanStore} and {@link BeanCodec}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class BeanStoreTest
+{
+    /**
+     * Test the encoding of all the values and of single slots.
+     */
+    @Test public void testCodec()
+    {
+        BeanCodec<IModel> codec;
+        IModel model, decoded;
+        byte[] data;
+
+        codec = new BeanCodec<IModel>(IModel.class);
+        model = model(7L);
+        model.setLasName(null);
+        data = codec.encode(model);
+        decoded = codec.decode(data, 0, data.length);
+        Assert.assertEquals(model, decoded);
+        Assert.assertNull(decoded.getLasName());
+        Assert.assertEquals("Name7", codec.decodeSlot(data, 0, codec.getDescriptor().slotOf("name")));
+        Assert.assertEquals(EGender.Male, codec.decodeSlot(data, 0, codec.getDescriptor().slotOf("gender")));
+    }
+
+    /**
+     * Test puts, overwrites, deletes, reads and scans, across segments and a reopen.
+     */
+    @Test public void testPutGetDelete() throws IOException
+    {
+        BeanStore<IModel> store;
+        List<IModel> beans;
+        File directory;
+
+        directory = directory();
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        store.setMaxSegmentSize(4096);
+        beans = new ArrayList<IModel>();
+        for(long id = 0; id < 200; id++)
+        {
+            beans.add(model(id));
+        }
+        store.putAll(beans);
+        store.put(model(3L, "Changed"));
+        Assert.assertTrue(store.delete(Long.valueOf(5L)));
+        Assert.assertFalse(store.delete(Long.valueOf(5L)));
+        Assert.assertEquals(199, store.size());
+        Assert.assertEquals(model(3L, "Changed"), store.get(Long.valueOf(3L)));
+        Assert.assertEquals(model(150L), store.get(Integer.valueOf(150)));
+        Assert.assertNull(store.get(Long.valueOf(5L)));
+        Assert.assertNull(store.get(Long.valueOf(1000L)));
+        Assert.assertEquals(199, scan(store).size());
+        Assert.assertTrue(directory.list().length > 3);
+        store.close();
+
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        Assert.assertEquals(199, store.size());
+        Assert.assertEquals(model(3L, "Changed"), store.get(Long.valueOf(3L)));
+        Assert.assertNull(store.get(Long.valueOf(5L)));
+        store.close();
+        try
+        {
+            store.get(Long.valueOf(3L));
+            Assert.fail("Closed store read");
+        }
+        catch(IllegalStateException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Test that compaction reclaims overwritten records and keeps the live beans.
+     */
+    @Test public void testCompact() throws IOException
+    {
+        BeanStore<IModel> store;
+        File directory;
+        int segments;
+
+        directory = directory();
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        store.setMaxSegmentSize(2048);
+        for(int round = 0; round < 5; round++)
+        {
+            for(long id = 0; id < 50; id++)
+            {
+                store.put(model(id, "Round" + round));
+            }
+        }
+        store.delete(Long.valueOf(10L));
+        segments = directory.list().length;
+        Assert.assertTrue(store.compact() > 0);
+        Assert.assertTrue(directory.list().length < segments);
+        Assert.assertEquals(49, store.size());
+        Assert.assertEquals(49, scan(store).size());
+        Assert.assertEquals(model(20L, "Round4"), store.get(Long.valueOf(20L)));
+        Assert.assertNull(store.get(Long.valueOf(10L)));
+        store.close();
+
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        Assert.assertEquals(49, store.size());
+        Assert.assertNull(store.get(Long.valueOf(10L)));
+        Assert.assertEquals(model(49L, "Round4"), store.get(Long.valueOf(49L)));
+        store.close();
+    }
+
+    /**
+     * Test the recovery of a torn write and of a lost index.
+     */
+    @Test public void testRecovery() throws IOException
+    {
+        BeanStore<IModel> store;
+        RandomAccessFile raf;
+        File directory, segment;
+
+        directory = directory();
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        for(long id = 0; id < 20; id++)
+        {
+            store.put(model(id));
+        }
+        store.close();
+        // A torn record at the end of the segment
+        segment = new File(directory, "segment-000001.dat");
+        raf = new RandomAccessFile(segment, "rw");
+        try
+        {
+            raf.setLength(raf.length() - 5);
+        }
+        finally
+        {
+            raf.close();
+        }
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        Assert.assertEquals(19, store.size());
+        Assert.assertNull(store.get(Long.valueOf(19L)));
+        store.put(model(19L));
+        Assert.assertEquals(model(19L), store.get(Long.valueOf(19L)));
+        store.close();
+
+        Assert.assertTrue(new File(directory, "index.dat").delete());
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        Assert.assertEquals(20, store.size());
+        Assert.assertEquals(model(0L), store.get(Long.valueOf(0L)));
+        store.close();
+    }
+
+    /**
+     * Test the rebuild of an index not synced, after a crash that lost records it locates.
+     */
+    @Test public void testNotSyncedIndex() throws IOException
+    {
+        BeanStore<IModel> store;
+        RandomAccessFile raf;
+        File directory, crashed;
+        long synced, length;
+
+        directory = directory();
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        for(long id = 0; id < 10; id++)
+        {
+            store.put(model(id));
+        }
+        store.sync();
+        synced = new File(directory, "segment-000001.dat").length();
+        for(long id = 10; id < 20; id++)
+        {
+            store.put(model(id));
+        }
+        // The files at the crash: the index pages written, the last records not
+        crashed = directory();
+        for(String name : new String[] { "segment-000001.dat", "index.dat" })
+        {
+            Files.copy(new File(directory, name).toPath(), new File(crashed, name).toPath());
+            new File(crashed, name).deleteOnExit();
+        }
+        store.close();
+        raf = new RandomAccessFile(new File(crashed, "segment-000001.dat"), "rw");
+        try
+        {
+            length = raf.length();
+            raf.seek(synced);
+            raf.write(new byte[(int) (length - synced)]);
+        }
+        finally
+        {
+            raf.close();
+        }
+        store = new BeanStore<IModel>(crashed, IModel.class, "id");
+        Assert.assertEquals(10, store.size());
+        Assert.assertEquals(model(9L), store.get(Long.valueOf(9L)));
+        Assert.assertNull(store.get(Long.valueOf(15L)));
+        store.close();
+        // A clean close keeps the index
+        store = new BeanStore<IModel>(directory, IModel.class, "id");
+        Assert.assertEquals(20, store.size());
+        store.close();
+    }
+
+    /**
+     * Test the not valid id properties.
+     */
+    @Test public void testNotValidId() throws IOException
+    {
+        try
+        {
+            new BeanStore<IModel>(directory(), IModel.class, "name");
+            Assert.fail("Not integral id accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * A populated model.
+     */
+    private static IModel model(long id)
+    {
+        return model(id, "Name" + id);
+    }
+
+    /**
+     * A populated model.
+     */
+    private static IModel model(long id, String name)
+    {
+        IModel model;
+
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        model.setId(id);
+        model.setName(name);
+        model.setLasName("Last" + id);
+        model.setBirthDate(new Date(id * 86400000L));
+        model.setNumberOfChildren((int) id % 4);
+        model.setIncomingYear(id * 1.5D);
+        model.setGender(EGender.Male);
+        return model;
+    }
+
+    /**
+     * The scanned beans of a store.
+     */
+    private static List<IModel> scan(BeanStore<IModel> store) throws IOException
+    {
+        final List<IModel> beans;
+
+        beans = new ArrayList<IModel>();
+        store.forEach(new Consumer<IModel>()
+        {
+            @Override
+            public void accept(IModel model)
+            {
+                beans.add(model);
+            }
+        });
+        return beans;
+    }
+
+    /**
+     * A new temporary directory.
+     */
+    private static File directory() throws IOException
+    {
+        File directory;
+
+        directory = Files.createTempDirectory("imodel").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+}
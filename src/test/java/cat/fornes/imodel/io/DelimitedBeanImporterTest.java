@@ -0,0 +1,275 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.models.EGender;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Test of {@link DelimitedBeanImporter}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class DelimitedBeanImporterTest
+{
+    /** Number of rows of the generated file */
+    private static final int ROWS = 5000;
+
+    /**
+     * Test an ordered import of a file split in many chunks.
+     */
+    @Test public void testOrderedFileImport() throws Exception
+    {
+        DelimitedBeanImporter<IModel> importer;
+        List<IModel> beans;
+        File file;
+
+        file = writeFile(ROWS);
+        importer = new DelimitedBeanImporter<IModel>(IModel.class);
+        importer.setChunkSize(512);
+        importer.setMaxPendingChunks(3);
+        beans = new ArrayList<IModel>();
+        Assert.assertEquals(ROWS, importer.importFile(file, collector(beans)));
+        Assert.assertEquals(ROWS, beans.size());
+        for(int n = 0; n < ROWS; n++)
+        {
+            assertRow(n, beans.get(n));
+        }
+    }
+
+    /**
+     * Test a file import with lines longer than the chunks.
+     */
+    @Test public void testLongLinesFileImport() throws Exception
+    {
+        DelimitedBeanImporter<IModel> importer;
+        List<IModel> beans;
+        StringBuilder name;
+        FileOutputStream out;
+        File file;
+
+        name = new StringBuilder();
+        for(int n = 0; n < 300; n++)
+        {
+            name.append("Name").append(n);
+        }
+        file = File.createTempFile("imodel", ".csv");
+        file.deleteOnExit();
+        out = new FileOutputStream(file);
+        try
+        {
+            out.write(("id,name\n1," + name + "\n2,Short\n3," + name).getBytes(StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            out.close();
+        }
+        importer = new DelimitedBeanImporter<IModel>(IModel.class);
+        importer.setChunkSize(64);
+        beans = new ArrayList<IModel>();
+        Assert.assertEquals(3, importer.importFile(file, collector(beans)));
+        Assert.assertEquals(name.toString(), beans.get(0).getName());
+        Assert.assertEquals("Short", beans.get(1).getName());
+        Assert.assertEquals(3L, beans.get(2).getId());
+        Assert.assertEquals(name.toString(), beans.get(2).getName());
+    }
+
+    /**
+     * Test an unordered import of a stream.
+     */
+    @Test public void testUnorderedStreamImport() throws Exception
+    {
+        DelimitedBeanImporter<IModel> importer;
+        List<IModel> beans;
+
+        importer = new DelimitedBeanImporter<IModel>(IModel.class);
+        importer.setChunkSize(300);
+        importer.setOrdered(false);
+        beans = new ArrayList<IModel>();
+        Assert.assertEquals(ROWS, importer.importStream(new ByteArrayInputStream(content(ROWS).getBytes(StandardCharsets.UTF_8)), collector(beans)));
+        Collections.sort(beans, new Comparator<IModel>()
+        {
+            @Override
+            public int compare(IModel o1, IModel o2)
+            {
+                return Long.compare(o1.getId(), o2.getId());
+            }
+        });
+        for(int n = 0; n < ROWS; n++)
+        {
+            assertRow(n, beans.get(n));
+        }
+    }
+
+    /**
+     * Test quoted fields, empty fields, ignored columns and configured columns.
+     */
+    @Test public void testQuotesAndColumns() throws Exception
+    {
+        DelimitedBeanImporter<IModel> importer;
+        List<IModel> beans;
+        String text;
+
+        text = "1;\"Smith; \"\"Jr\"\"\";x;;\r\n"
+             + "2;\"\";y;-1.5e3;Male\n";
+        importer = new DelimitedBeanImporter<IModel>(IModel.class);
+        importer.setHeader(false);
+        importer.setDelimiter(';');
+        importer.setColumns("id", "lasName", null, "incomingYear", "gender");
+        beans = new ArrayList<IModel>();
+        importer.importStream(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), collector(beans));
+        Assert.assertEquals(2, beans.size());
+        Assert.assertEquals("Smith; \"Jr\"", beans.get(0).getLasName());
+        Assert.assertEquals(0D, beans.get(0).getIncomingYear(), 0D);
+        Assert.assertNull(beans.get(0).getGender());
+        Assert.assertEquals("", beans.get(1).getLasName());
+        Assert.assertEquals(-1500D, beans.get(1).getIncomingYear(), 0D);
+        Assert.assertEquals(EGender.Male, beans.get(1).getGender());
+    }
+
+    /**
+     * Test the errors on not valid values.
+     */
+    @Test public void testNotValidValue() throws Exception
+    {
+        DelimitedBeanImporter<IModel> importer;
+
+        importer = new DelimitedBeanImporter<IModel>(IModel.class);
+        try
+        {
+            importer.importStream(new ByteArrayInputStream("id,numberOfChildren\n1,2\n2,x3\n".getBytes(StandardCharsets.UTF_8)), collector(new ArrayList<IModel>()));
+            Assert.fail("Not valid int accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("numberOfChildren"));
+        }
+    }
+
+    /**
+     * Test the primitive parsers against the JDK ones.
+     */
+    @Test public void testPrimitiveParsers()
+    {
+        String[] doubles = { "0", "-0.0", "1.5", "3.14159265358979", "1e22", "1e23", "123456789012345678901234", "2.2250738585072014E-308", "NaN", "-Infinity", "0.1", "  42 " };
+        String[] longs = { "0", "-1", "9223372036854775807", "-9223372036854775808", "+17" };
+        byte[] bytes;
+
+        for(String value : doubles)
+        {
+            bytes = value.getBytes(StandardCharsets.US_ASCII);
+            Assert.assertEquals(value, Double.parseDouble(value), ColumnParsers.parseDouble(bytes, 0, bytes.length), 0D);
+            Assert.assertEquals(value, Float.parseFloat(value), ColumnParsers.parseFloat(bytes, 0, bytes.length), 0F);
+        }
+        for(String value : longs)
+        {
+            bytes = value.getBytes(StandardCharsets.US_ASCII);
+            Assert.assertEquals(value, Long.parseLong(value), ColumnParsers.parseLong(bytes, 0, bytes.length));
+        }
+        try
+        {
+            bytes = "9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+            ColumnParsers.parseLong(bytes, 0, bytes.length);
+            Assert.fail("Overflow accepted");
+        }
+        catch(NumberFormatException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * Asserts the values of a generated row.
+     */
+    private void assertRow(int n, IModel model)
+    {
+        Assert.assertEquals(n, model.getId());
+        Assert.assertEquals("Name" + n, model.getName());
+        Assert.assertEquals(n % 4, model.getNumberOfChildren());
+        Assert.assertEquals(n * 1.25D, model.getIncomingYear(), 0D);
+        Assert.assertEquals(n % 2 == 0 ? EGender.Female : EGender.Male, model.getGender());
+    }
+
+    /**
+     * The delimited content of the generated rows.
+     */
+    private String content(int rows)
+    {
+        StringBuilder stb;
+
+        stb = new StringBuilder("id,name,numberOfChildren,incomingYear,gender,unknown\n");
+        for(int n = 0; n < rows; n++)
+        {
+            stb.append(n).append(",Name").append(n).append(',').append(n % 4).append(',').append(n * 1.25D)
+                .append(',').append(n % 2 == 0 ? EGender.Female : EGender.Male).append(",ignored\n");
+        }
+        return stb.toString();
+    }
+
+    /**
+     * Writes a temporary file with the generated rows.
+     */
+    private File writeFile(int rows) throws IOException
+    {
+        FileOutputStream out;
+        File file;
+
+        file = File.createTempFile("imodel", ".csv");
+        file.deleteOnExit();
+        out = new FileOutputStream(file);
+        try
+        {
+            out.write(content(rows).getBytes(StandardCharsets.UTF_8));
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * A handler that collects the beans.
+     */
+    private BeanBatchHandler<IModel> collector(final List<IModel> beans)
+    {
+        return new BeanBatchHandler<IModel>()
+        {
+            @Override
+            public void onBatch(List<IModel> batch)
+            {
+                beans.addAll(batch);
+            }
+        };
+    }
+}
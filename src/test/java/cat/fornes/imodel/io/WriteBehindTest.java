@@ -0,0 +1,227 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.IModel;
+
+/**
+ * Test of {@link WriteBehind}, with an in-memory sink.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class WriteBehindTest
+{
+    /**
+     * Test that the writes of a bean within the window are coalesced in a single sink write.
+     */
+    @Test public void testCoalescing() throws IOException
+    {
+        WriteBehind<IModel> writer;
+        List<IModel> written;
+        IModel model;
+
+        written = Collections.synchronizedList(new ArrayList<IModel>());
+        writer = new WriteBehind<IModel>(collector(written));
+        writer.setWindow(1L, TimeUnit.MINUTES);
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        Assert.assertTrue(writer.register(model));
+        Assert.assertFalse(writer.register(model));
+        for(int n = 0; n < 100; n++)
+        {
+            model.setNumberOfChildren(n);
+        }
+        Assert.assertEquals(1, writer.getQueueDepth());
+        Assert.assertEquals(99L, writer.getCoalescedWrites());
+        Assert.assertTrue(written.isEmpty());
+        writer.flush();
+        Assert.assertEquals(1, written.size());
+        Assert.assertEquals(99, written.get(0).getNumberOfChildren());
+        Assert.assertTrue(ProxyBeanFactory.isFrozen(written.get(0)));
+        Assert.assertEquals(0, writer.getQueueDepth());
+        Assert.assertEquals(1L, writer.getFlushCount());
+        model.setName("Closing");
+        writer.close();
+        Assert.assertEquals(2, written.size());
+        Assert.assertEquals("Closing", written.get(1).getName());
+        // Not listened after close
+        model.setName("Closed");
+        Assert.assertEquals(2, written.size());
+    }
+
+    /**
+     * Test that the background thread writes the beans out of its window.
+     */
+    @Test public void testBackgroundFlush() throws Exception
+    {
+        WriteBehind<IModel> writer;
+        List<IModel> written;
+        IModel model;
+        long timeout;
+
+        written = Collections.synchronizedList(new ArrayList<IModel>());
+        writer = new WriteBehind<IModel>(collector(written));
+        writer.setWindow(10L, TimeUnit.MILLISECONDS);
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        writer.register(model);
+        model.setId(7L);
+        timeout = System.currentTimeMillis() + 10000L;
+        while(written.isEmpty() && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(5L);
+        }
+        Assert.assertEquals(1, written.size());
+        Assert.assertEquals(7L, written.get(0).getId());
+        Assert.assertTrue(writer.getMaxFlushLatency(TimeUnit.NANOSECONDS) >= writer.getMeanFlushLatency(TimeUnit.NANOSECONDS));
+        writer.close();
+    }
+
+    /**
+     * Test that the setters block while the queue is full.
+     */
+    @Test public void testBackPressure() throws Exception
+    {
+        final WriteBehind<IModel> writer;
+        final CountDownLatch release, blocked;
+        final IModel[] models;
+        final AtomicInteger batches;
+        Thread producer;
+
+        release = new CountDownLatch(1);
+        batches = new AtomicInteger();
+        writer = new WriteBehind<IModel>(new BeanBatchHandler<IModel>()
+        {
+            @Override
+            public void onBatch(List<IModel> beans) throws IOException
+            {
+                batches.incrementAndGet();
+                try
+                {
+                    release.await();
+                }
+                catch(InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+            }
+        });
+        writer.setWindow(0L, TimeUnit.MILLISECONDS);
+        writer.setMaxPending(2);
+        writer.setBatchSize(1);
+        models = new IModel[4];
+        for(int n = 0; n < models.length; n++)
+        {
+            models[n] = ProxyBeanFactory.newProxy(IModel.class);
+            writer.register(models[n]);
+        }
+        blocked = new CountDownLatch(1);
+        producer = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for(IModel model : models)
+                {
+                    model.setId(1L);
+                }
+                blocked.countDown();
+            }
+        };
+        producer.start();
+        // One bean on the sink, two queued: the last setter waits
+        Assert.assertFalse(blocked.await(300L, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, writer.getQueueDepth());
+        release.countDown();
+        Assert.assertTrue(blocked.await(10L, TimeUnit.SECONDS));
+        writer.close();
+        Assert.assertEquals(4L, writer.getFlushedBeans());
+        Assert.assertEquals(4, batches.get());
+    }
+
+    /**
+     * Test that a failed batch is retried and reported by the flush.
+     */
+    @Test public void testFailure() throws IOException
+    {
+        final AtomicInteger calls;
+        final List<IModel> written;
+        WriteBehind<IModel> writer;
+        IModel model;
+
+        calls = new AtomicInteger();
+        written = Collections.synchronizedList(new ArrayList<IModel>());
+        writer = new WriteBehind<IModel>(new BeanBatchHandler<IModel>()
+        {
+            @Override
+            public void onBatch(List<IModel> beans) throws IOException
+            {
+                if(calls.incrementAndGet() == 1)
+                {
+                    throw new IOException("Sink down");
+                }
+                written.addAll(beans);
+            }
+        });
+        writer.setWindow(1L, TimeUnit.MINUTES);
+        model = ProxyBeanFactory.newProxy(IModel.class);
+        writer.register(model);
+        model.setName("Retried");
+        try
+        {
+            writer.flush();
+            Assert.fail("Failure not reported");
+        }
+        catch(IOException e)
+        {
+            Assert.assertEquals("Sink down", e.getCause().getMessage());
+        }
+        Assert.assertEquals(1L, writer.getFailureCount());
+        Assert.assertEquals(1, writer.getQueueDepth());
+        writer.flush();
+        Assert.assertEquals("Retried", written.get(0).getName());
+        writer.close();
+    }
+
+    /**
+     * A sink that collects the beans.
+     */
+    private static BeanBatchHandler<IModel> collector(final List<IModel> written)
+    {
+        return new BeanBatchHandler<IModel>()
+        {
+            @Override
+            public void onBatch(List<IModel> beans)
+            {
+                written.addAll(beans);
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.models;
+
+import cat.fornes.imodel.annotations.MaxLength;
+import cat.fornes.imodel.annotations.NotNull;
+import cat.fornes.imodel.annotations.Pattern;
+import cat.fornes.imodel.annotations.Range;
+
+/**
+ * A contact with constrained properties, for validation purposes.
+ * 
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public interface IContact
+{
+	/** Name */
+	@NotNull
+	@MaxLength(10)
+	public String getName();
+	/** Name */
+	public void setName(String name);
+	/** Age */
+	@Range(min = 0, max = 150)
+	public int getAge();
+	/** Age */
+	public void setAge(int age);
+	/** Mail */
+	public String getMail();
+	/** Mail */
+	@Pattern("[^@]+@[^@]+")
+	public void setMail(String mail);
+}
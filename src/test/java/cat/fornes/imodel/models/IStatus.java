@@ -0,0 +1,81 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.models;
+
+/**
+ * A model with boolean, enum and small primitive properties, for storage layout purposes.
+ * 
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public interface IStatus
+{
+	/** If enabled */
+	public boolean isEnabled();
+	/** If enabled */
+	public void setEnabled(boolean enabled);
+	/** If visible */
+	public boolean isVisible();
+	/** If visible */
+	public void setVisible(boolean visible);
+	/** If locked */
+	public boolean isLocked();
+	/** If locked */
+	public void setLocked(boolean locked);
+	/** Priority */
+	public byte getPriority();
+	/** Priority */
+	public void setPriority(byte priority);
+	/** Code */
+	public short getCode();
+	/** Code */
+	public void setCode(short code);
+	/** Grade */
+	public char getGrade();
+	/** Grade */
+	public void setGrade(char grade);
+	/** Retries */
+	public int getRetries();
+	/** Retries */
+	public void setRetries(int retries);
+	/** Ratio */
+	public float getRatio();
+	/** Ratio */
+	public void setRatio(float ratio);
+	/** Time stamp */
+	public long getTimestamp();
+	/** Time stamp */
+	public void setTimestamp(long timestamp);
+	/** Amount */
+	public double getAmount();
+	/** Amount */
+	public void setAmount(double amount);
+	/** Gender */
+	public EGender getGender();
+	/** Gender */
+	public void setGender(EGender gender);
+	/** Label */
+	public String getLabel();
+	/** Label */
+	public void setLabel(String label);
+	/** Optional count */
+	public Integer getOptional();
+	/** Optional count */
+	public void setOptional(Integer optional);
+}
@@ -0,0 +1,312 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.models;
+
+/**
+ * A wide model, with more properties than {@link cat.fornes.imodel.BeanDescriptor#SPARSE_WIDTH},
+ * for sparse storage purposes. The even properties are ints, the odd ones Strings.
+ * 
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public interface IWide extends Cloneable
+{
+	/** Property 0 */
+	public int getP00();
+	/** Property 0 */
+	public void setP00(int p00);
+	/** Property 1 */
+	public String getP01();
+	/** Property 1 */
+	public void setP01(String p01);
+	/** Property 2 */
+	public int getP02();
+	/** Property 2 */
+	public void setP02(int p02);
+	/** Property 3 */
+	public String getP03();
+	/** Property 3 */
+	public void setP03(String p03);
+	/** Property 4 */
+	public int getP04();
+	/** Property 4 */
+	public void setP04(int p04);
+	/** Property 5 */
+	public String getP05();
+	/** Property 5 */
+	public void setP05(String p05);
+	/** Property 6 */
+	public int getP06();
+	/** Property 6 */
+	public void setP06(int p06);
+	/** Property 7 */
+	public String getP07();
+	/** Property 7 */
+	public void setP07(String p07);
+	/** Property 8 */
+	public int getP08();
+	/** Property 8 */
+	public void setP08(int p08);
+	/** Property 9 */
+	public String getP09();
+	/** Property 9 */
+	public void setP09(String p09);
+	/** Property 10 */
+	public int getP10();
+	/** Property 10 */
+	public void setP10(int p10);
+	/** Property 11 */
+	public String getP11();
+	/** Property 11 */
+	public void setP11(String p11);
+	/** Property 12 */
+	public int getP12();
+	/** Property 12 */
+	public void setP12(int p12);
+	/** Property 13 */
+	public String getP13();
+	/** Property 13 */
+	public void setP13(String p13);
+	/** Property 14 */
+	public int getP14();
+	/** Property 14 */
+	public void setP14(int p14);
+	/** Property 15 */
+	public String getP15();
+	/** Property 15 */
+	public void setP15(String p15);
+	/** Property 16 */
+	public int getP16();
+	/** Property 16 */
+	public void setP16(int p16);
+	/** Property 17 */
+	public String getP17();
+	/** Property 17 */
+	public void setP17(String p17);
+	/** Property 18 */
+	public int getP18();
+	/** Property 18 */
+	public void setP18(int p18);
+	/** Property 19 */
+	public String getP19();
+	/** Property 19 */
+	public void setP19(String p19);
+	/** Property 20 */
+	public int getP20();
+	/** Property 20 */
+	public void setP20(int p20);
+	/** Property 21 */
+	public String getP21();
+	/** Property 21 */
+	public void setP21(String p21);
+	/** Property 22 */
+	public int getP22();
+	/** Property 22 */
+	public void setP22(int p22);
+	/** Property 23 */
+	public String getP23();
+	/** Property 23 */
+	public void setP23(String p23);
+	/** Property 24 */
+	public int getP24();
+	/** Property 24 */
+	public void setP24(int p24);
+	/** Property 25 */
+	public String getP25();
+	/** Property 25 */
+	public void setP25(String p25);
+	/** Property 26 */
+	public int getP26();
+	/** Property 26 */
+	public void setP26(int p26);
+	/** Property 27 */
+	public String getP27();
+	/** Property 27 */
+	public void setP27(String p27);
+	/** Property 28 */
+	public int getP28();
+	/** Property 28 */
+	public void setP28(int p28);
+	/** Property 29 */
+	public String getP29();
+	/** Property 29 */
+	public void setP29(String p29);
+	/** Property 30 */
+	public int getP30();
+	/** Property 30 */
+	public void setP30(int p30);
+	/** Property 31 */
+	public String getP31();
+	/** Property 31 */
+	public void setP31(String p31);
+	/** Property 32 */
+	public int getP32();
+	/** Property 32 */
+	public void setP32(int p32);
+	/** Property 33 */
+	public String getP33();
+	/** Property 33 */
+	public void setP33(String p33);
+	/** Property 34 */
+	public int getP34();
+	/** Property 34 */
+	public void setP34(int p34);
+	/** Property 35 */
+	public String getP35();
+	/** Property 35 */
+	public void setP35(String p35);
+	/** Property 36 */
+	public int getP36();
+	/** Property 36 */
+	public void setP36(int p36);
+	/** Property 37 */
+	public String getP37();
+	/** Property 37 */
+	public void setP37(String p37);
+	/** Property 38 */
+	public int getP38();
+	/** Property 38 */
+	public void setP38(int p38);
+	/** Property 39 */
+	public String getP39();
+	/** Property 39 */
+	public void setP39(String p39);
+	/** Property 40 */
+	public int getP40();
+	/** Property 40 */
+	public void setP40(int p40);
+	/** Property 41 */
+	public String getP41();
+	/** Property 41 */
+	public void setP41(String p41);
+	/** Property 42 */
+	public int getP42();
+	/** Property 42 */
+	public void setP42(int p42);
+	/** Property 43 */
+	public String getP43();
+	/** Property 43 */
+	public void setP43(String p43);
+	/** Property 44 */
+	public int getP44();
+	/** Property 44 */
+	public void setP44(int p44);
+	/** Property 45 */
+	public String getP45();
+	/** Property 45 */
+	public void setP45(String p45);
+	/** Property 46 */
+	public int getP46();
+	/** Property 46 */
+	public void setP46(int p46);
+	/** Property 47 */
+	public String getP47();
+	/** Property 47 */
+	public void setP47(String p47);
+	/** Property 48 */
+	public int getP48();
+	/** Property 48 */
+	public void setP48(int p48);
+	/** Property 49 */
+	public String getP49();
+	/** Property 49 */
+	public void setP49(String p49);
+	/** Property 50 */
+	public int getP50();
+	/** Property 50 */
+	public void setP50(int p50);
+	/** Property 51 */
+	public String getP51();
+	/** Property 51 */
+	public void setP51(String p51);
+	/** Property 52 */
+	public int getP52();
+	/** Property 52 */
+	public void setP52(int p52);
+	/** Property 53 */
+	public String getP53();
+	/** Property 53 */
+	public void setP53(String p53);
+	/** Property 54 */
+	public int getP54();
+	/** Property 54 */
+	public void setP54(int p54);
+	/** Property 55 */
+	public String getP55();
+	/** Property 55 */
+	public void setP55(String p55);
+	/** Property 56 */
+	public int getP56();
+	/** Property 56 */
+	public void setP56(int p56);
+	/** Property 57 */
+	public String getP57();
+	/** Property 57 */
+	public void setP57(String p57);
+	/** Property 58 */
+	public int getP58();
+	/** Property 58 */
+	public void setP58(int p58);
+	/** Property 59 */
+	public String getP59();
+	/** Property 59 */
+	public void setP59(String p59);
+	/** Property 60 */
+	public int getP60();
+	/** Property 60 */
+	public void setP60(int p60);
+	/** Property 61 */
+	public String getP61();
+	/** Property 61 */
+	public void setP61(String p61);
+	/** Property 62 */
+	public int getP62();
+	/** Property 62 */
+	public void setP62(int p62);
+	/** Property 63 */
+	public String getP63();
+	/** Property 63 */
+	public void setP63(String p63);
+	/** Property 64 */
+	public int getP64();
+	/** Property 64 */
+	public void setP64(int p64);
+	/** Property 65 */
+	public String getP65();
+	/** Property 65 */
+	public void setP65(String p65);
+	/** Property 66 */
+	public int getP66();
+	/** Property 66 */
+	public void setP66(int p66);
+	/** Property 67 */
+	public String getP67();
+	/** Property 67 */
+	public void setP67(String p67);
+	/** Property 68 */
+	public int getP68();
+	/** Property 68 */
+	public void setP68(int p68);
+	/** Property 69 */
+	public String getP69();
+	/** Property 69 */
+	public void setP69(String p69);
+	/** Clone */
+	public IWide clone();
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.utils;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.models.IPoint;
+
+/**
+ * Test of {@link HashStrategy} and the array paths of {@link ObjectUtils}.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class HashStrategyTest
+{
+    /**
+     * Test that the polynomial strategy, by terms, and the unrolled array hashes keep the 7/31 values.
+     */
+    @Test public void testPolynomialCompatibility()
+    {
+        Random random;
+        Object[] values;
+        int[] ints;
+        long[] longs;
+        int expected;
+
+        random = new Random(17L);
+        for(int length = 0; length < 70; length++)
+        {
+            values = new Object[length];
+            ints = new int[length];
+            longs = new long[length];
+            for(int n = 0; n < length; n++)
+            {
+                ints[n] = random.nextInt();
+                longs[n] = random.nextLong();
+                values[n] = n % 3 == 0 ? null : Integer.valueOf(ints[n]);
+            }
+            expected = 7;
+            for(Object value : values)
+            {
+                expected = 31 * expected + (value == null ? 0 : value.hashCode());
+            }
+            Assert.assertEquals(expected, ObjectUtils.nullSafeHashCode(values));
+            Assert.assertEquals(expected, sumOfTerms(HashStrategy.POLYNOMIAL, values));
+            expected = 7;
+            for(int value : ints)
+            {
+                expected = 31 * expected + value;
+            }
+            Assert.assertEquals(expected, ObjectUtils.nullSafeHashCode(ints));
+            expected = 7;
+            for(long value : longs)
+            {
+                expected = 31 * expected + Long.valueOf(value).hashCode();
+            }
+            Assert.assertEquals(expected, ObjectUtils.nullSafeHashCode(longs));
+        }
+    }
+
+    /**
+     * Test that the mixed strategy spreads correlated values, where the polynomial collides.
+     */
+    @Test public void testMixedDistribution()
+    {
+        Set<Integer> polynomial, mixed;
+        Object[] values;
+
+        polynomial = new HashSet<Integer>();
+        mixed = new HashSet<Integer>();
+        for(int x = 0; x < 100; x++)
+        {
+            for(int y = 0; y < 100; y++)
+            {
+                values = new Object[] { Integer.valueOf(x), Integer.valueOf(y) };
+                polynomial.add(HashStrategy.POLYNOMIAL.hash(values));
+                mixed.add(HashStrategy.MIXED_64.hash(values));
+            }
+        }
+        Assert.assertTrue("Polynomial: " + polynomial.size(), polynomial.size() < 4000);
+        Assert.assertTrue("Mixed: " + mixed.size(), mixed.size() > 9990);
+    }
+
+    /**
+     * Test the beans of an interface with {@link cat.fornes.imodel.annotations.HashedBy}.
+     */
+    @Test public void testHashedBean()
+    {
+        IPoint p1, p2;
+
+        p1 = ProxyBeanFactory.newProxy(IPoint.class);
+        p1.setX(3);
+        p1.setY(5);
+        p2 = ProxyBeanFactory.newProxy(IPoint.class);
+        p2.setY(5);
+        p2.setX(3);
+        Assert.assertEquals(p1, p2);
+        Assert.assertEquals(p1.hashCode(), p2.hashCode());
+        Assert.assertTrue(p1.hashCode() == HashStrategy.MIXED_64.hash(new Object[] { 3, 5 }) || p1.hashCode() == HashStrategy.MIXED_64.hash(new Object[] { 5, 3 }));
+    }
+
+    /**
+     * Test the 64 bit array hashes and the mismatch search.
+     */
+    @Test public void testArrays()
+    {
+        byte[] b1, b2;
+        long[] l1, l2;
+
+        for(int length = 0; length < 80; length++)
+        {
+            b1 = new byte[length];
+            l1 = new long[length];
+            for(int n = 0; n < length; n++)
+            {
+                b1[n] = (byte) n;
+                l1[n] = n * 1000003L;
+            }
+            for(int n = 0; n < length; n++)
+            {
+                b2 = b1.clone();
+                b2[n]++;
+                l2 = l1.clone();
+                l2[n]++;
+                Assert.assertEquals(n, ObjectUtils.mismatch(b1, b2));
+                Assert.assertEquals(n, ObjectUtils.mismatch(l1, l2));
+                Assert.assertFalse(ObjectUtils.nullSafeEquals(b1, b2));
+                Assert.assertTrue(ObjectUtils.nullSafeHash64(b1) != ObjectUtils.nullSafeHash64(b2));
+                Assert.assertTrue(ObjectUtils.nullSafeHash64(l1) != ObjectUtils.nullSafeHash64(l2));
+            }
+            Assert.assertEquals(-1, ObjectUtils.mismatch(b1, b1.clone()));
+            Assert.assertEquals(-1, ObjectUtils.mismatch(l1, l1.clone()));
+            Assert.assertTrue(ObjectUtils.nullSafeEquals(b1, b1.clone()));
+            Assert.assertEquals(ObjectUtils.nullSafeHash64(b1), ObjectUtils.nullSafeHash64(b1.clone()));
+        }
+        Assert.assertEquals(2, ObjectUtils.mismatch(new int[] { 1, 2 }, new int[] { 1, 2, 3 }));
+        Assert.assertFalse(ObjectUtils.nullSafeEquals(new double[] { 0D }, new double[] { -0D }));
+        Assert.assertTrue(ObjectUtils.nullSafeEquals(new String[] { "a" }, new Object[] { "a" }));
+        Assert.assertFalse(ObjectUtils.nullSafeEquals(new int[] { 1 }, new long[] { 1L }));
+    }
+
+    /**
+     * The hash of the values by the sum of terms.
+     */
+    private int sumOfTerms(HashStrategy strategy, Object[] values)
+    {
+        long sum;
+
+        sum = strategy.seed(values.length);
+        for(int n = 0; n < values.length; n++)
+        {
+            sum += strategy.term(n, values.length, values[n]);
+        }
+        return strategy.finish(sum);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of "imodel".
+ *
+ * "imodel" is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * "imodel" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with calendar.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2013 Octavi Fornés
+ */
+package cat.fornes.imodel.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cat.fornes.imodel.BeanDescriptor;
+import cat.fornes.imodel.ProxyBeanFactory;
+import cat.fornes.imodel.annotations.Deduplicated;
+import cat.fornes.imodel.io.BeanCodec;
+
+/**
+ * Test of {@link StringPool} and the deduplicated properties.
+ *
+ * @author octavi@fornes.cat
+ * @since 1.1.0
+ */
+public class StringPoolTest
+{
+    /**
+     * A type with a deduplicated property.
+     */
+    public interface ICity
+    {
+        @Deduplicated
+        public String getName();
+        public void setName(String name);
+        public String getCountry();
+        public void setCountry(String country);
+    }
+
+    /**
+     * Test the pooled instances, the bound and the statistics.
+     */
+    @Test public void testPool()
+    {
+        StringPool pool;
+        String first;
+
+        pool = new StringPool(100);
+        Assert.assertEquals(128, pool.getCapacity());
+        Assert.assertNull(pool.deduplicate(null));
+        first = new String("Barcelona");
+        Assert.assertSame(first, pool.deduplicate(first));
+        Assert.assertSame(first, pool.deduplicate(new String("Barcelona")));
+        Assert.assertSame(first, pool.deduplicate(first));
+        Assert.assertEquals(2L, pool.getHits());
+        Assert.assertEquals(1L, pool.getMisses());
+        Assert.assertEquals(2D / 3D, pool.getHitRate(), 1E-9);
+        Assert.assertEquals(StringPool.footprint(first), pool.getSavedBytes());
+        for(int n = 0; n < 10000; n++)
+        {
+            pool.deduplicate("value" + n);
+        }
+        Assert.assertTrue(pool.size() <= pool.getCapacity());
+        Assert.assertTrue(pool.getRetainedBytes() < 128L * 64L);
+        pool.clear();
+        Assert.assertEquals(0, pool.size());
+        Assert.assertEquals(0D, pool.getHitRate(), 0D);
+    }
+
+    /**
+     * Test that the repeated strings are not evicted by the strings seen once.
+     */
+    @Test public void testSecondChance()
+    {
+        StringPool pool;
+        String repeated;
+
+        pool = new StringPool(2);
+        repeated = new String("Girona");
+        pool.deduplicate(repeated);
+        for(int n = 0; n < 100; n++)
+        {
+            Assert.assertSame(repeated, pool.deduplicate(new String("Girona")));
+            pool.deduplicate("value" + n);
+        }
+        Assert.assertEquals(100L, pool.getHits());
+    }
+
+    /**
+     * Test the deduplication on the setters, the builder, the deserialization and the decoding.
+     */
+    @Test public void testDeduplicatedProperties() throws Exception
+    {
+        BeanDescriptor<ICity> descriptor;
+        ByteArrayOutputStream baos;
+        ObjectOutputStream out;
+        BeanCodec<ICity> codec;
+        ICity city, other;
+        StringPool pool;
+        byte[] encoded;
+
+        descriptor = BeanDescriptor.forType(ICity.class);
+        Assert.assertSame(StringPool.shared(), descriptor.getStringPool(descriptor.slotOf("name")));
+        Assert.assertNull(descriptor.getStringPool(descriptor.slotOf("country")));
+        city = ProxyBeanFactory.newProxy(ICity.class);
+        city.setName(new String("Girona"));
+        city.setCountry(new String("Catalonia"));
+        other = ProxyBeanFactory.builder(ICity.class).set("name", new String("Girona")).set("country", new String("Catalonia")).build();
+        Assert.assertSame(city.getName(), other.getName());
+        Assert.assertNotSame(city.getCountry(), other.getCountry());
+        baos = new ByteArrayOutputStream();
+        out = new ObjectOutputStream(baos);
+        out.writeObject(city);
+        out.flush();
+        other = (ICity) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+        Assert.assertSame(city.getName(), other.getName());
+        codec = new BeanCodec<ICity>(ICity.class);
+        encoded = codec.encode(city);
+        Assert.assertSame(city.getName(), codec.decode(encoded, 0, encoded.length).getName());
+        Assert.assertSame(city.getName(), codec.wrap(encoded, 0, encoded.length).getName());
+        Assert.assertNotSame(city.getCountry(), codec.decode(encoded, 0, encoded.length).getCountry());
+        // A pool of its own
+        pool = new StringPool(16);
+        descriptor.setStringPool("country", pool);
+        try
+        {
+            city.setCountry(new String("Catalonia"));
+            other.setCountry(new String("Catalonia"));
+            Assert.assertSame(city.getCountry(), other.getCountry());
+            Assert.assertEquals(1L, pool.getHits());
+        }
+        finally
+        {
+            descriptor.setStringPool("country", null);
+        }
+        try
+        {
+            descriptor.setStringPool("unknown", pool);
+            Assert.fail("Unknown property accepted");
+        }
+        catch(IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+}